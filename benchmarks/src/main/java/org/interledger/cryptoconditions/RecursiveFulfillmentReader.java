@@ -0,0 +1,104 @@
+package org.interledger.cryptoconditions;
+
+import org.interledger.cryptoconditions.der.DerEncodingException;
+import org.interledger.cryptoconditions.der.DerInputStream;
+import org.interledger.cryptoconditions.der.DerTag;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Reads chains of PREFIX-SHA-256 fulfillments around a PREIMAGE-SHA-256 fulfillment by
+ * recursion, as {@link CryptoConditionReader} did before it read nested fulfillments with an
+ * explicit stack.</p>
+ *
+ * <p>Each level takes the same steps as {@link CryptoConditionReader#readFulfillment(byte[],
+ * VerificationPolicy)} with an unrestricted policy, in the same order, so that the two differ only
+ * in how they keep track of the fulfillments that are waiting for a subfulfillment. It lives in
+ * the package of the library to use the same package-private constructors, and is only for
+ * benchmarking.</p>
+ */
+public final class RecursiveFulfillmentReader {
+
+  private RecursiveFulfillmentReader() {
+  }
+
+  /**
+   * Reads a DER encoded chain of PREFIX-SHA-256 fulfillments around a PREIMAGE-SHA-256
+   * fulfillment.
+   *
+   * @param buffer The buffer holding the DER encoded fulfillment.
+   *
+   * @return The fulfillment read from the buffer.
+   *
+   * @throws DerEncodingException when DER encoding fails for any reason.
+   */
+  public static Fulfillment readFulfillment(final byte[] buffer) throws DerEncodingException {
+    try {
+      return readFulfillment(new DerInputStream(new ByteArrayInputStream(buffer)),
+          new AtomicInteger(), VerificationPolicy.UNRESTRICTED, 1);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static Fulfillment readFulfillment(
+      final DerInputStream in, final AtomicInteger bytesRead, final VerificationPolicy policy,
+      final int depth
+  ) throws DerEncodingException, IOException {
+
+    final int tag = in.readTag(bytesRead, DerTag.CONSTRUCTED, DerTag.TAGGED);
+    final CryptoConditionType type = CryptoConditionType.valueOf(tag);
+    policy.checkDepth(depth);
+    policy.checkType(type);
+    final int length = in.readLength(bytesRead);
+
+    if (length == 0) {
+      throw new DerEncodingException("Encountered an empty fulfillment.");
+    }
+
+    final AtomicInteger innerBytesRead = new AtomicInteger();
+    switch (type) {
+      case PREIMAGE_SHA256: {
+        final byte[] preimage =
+            in.readTaggedObject(0, length - innerBytesRead.get(), innerBytesRead).getValue();
+
+        bytesRead.addAndGet(innerBytesRead.get());
+
+        final DerivedCondition preimageCondition =
+            DerivedCondition.preimage(preimage, 0, preimage.length);
+        policy.checkCost(preimageCondition.getCost());
+
+        return new PreimageSha256Fulfillment(preimage,
+            (PreimageSha256Condition) preimageCondition.toCondition());
+      }
+
+      case PREFIX_SHA256: {
+        final byte[] prefix =
+            in.readTaggedObject(0, length - innerBytesRead.get(), innerBytesRead).getValue();
+        final long maxMessageLength = new BigInteger(
+            in.readTaggedObject(1, length - innerBytesRead.get(), innerBytesRead).getValue())
+            .longValue();
+
+        in.readTag(2, innerBytesRead, DerTag.CONSTRUCTED, DerTag.TAGGED);
+        in.readLength(innerBytesRead);
+
+        final Fulfillment child = readFulfillment(in, innerBytesRead, policy, depth + 1);
+
+        bytesRead.addAndGet(innerBytesRead.get());
+
+        final DerivedCondition prefixCondition = DerivedCondition.prefix(prefix, 0, prefix.length,
+            maxMessageLength, DerivedCondition.of(child.getCondition()));
+        policy.checkCost(prefixCondition.getCost());
+
+        return new PrefixSha256Fulfillment(prefix, maxMessageLength, child,
+            (PrefixSha256Condition) prefixCondition.toCondition());
+      }
+
+      default:
+        throw new DerEncodingException("Unsupported fulfillment type: " + type);
+    }
+  }
+}
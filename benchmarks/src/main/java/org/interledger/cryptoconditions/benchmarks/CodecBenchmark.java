@@ -0,0 +1,248 @@
+package org.interledger.cryptoconditions.benchmarks;
+
+import org.interledger.cryptoconditions.Condition;
+import org.interledger.cryptoconditions.CryptoConditionReader;
+import org.interledger.cryptoconditions.CryptoConditionWriter;
+import org.interledger.cryptoconditions.Ed25519Sha256Condition;
+import org.interledger.cryptoconditions.Fulfillment;
+import org.interledger.cryptoconditions.PrefixSha256Fulfillment;
+import org.interledger.cryptoconditions.PreimageSha256Condition;
+import org.interledger.cryptoconditions.PreimageSha256Fulfillment;
+import org.interledger.cryptoconditions.RsaSha256Condition;
+import org.interledger.cryptoconditions.ThresholdSha256Fulfillment;
+import org.interledger.cryptoconditions.der.DerEncodingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Measures the throughput of {@link CryptoConditionReader} and {@link CryptoConditionWriter} for
+ * every condition type, using the valid test vectors of the library, which are packaged with the
+ * benchmarks, and two synthetic trees that are much larger than any of the vectors.</p>
+ *
+ * <p>Run with {@code -prof gc} to report the bytes allocated per operation as {@code
+ * gc.alloc.rate.norm}. Everything can be built and run offline from the root of the repository,
+ * once the dependencies are in the local Maven repository:</p>
+ *
+ * <pre>
+ * mvn -o install -DskipTests &amp;&amp; mvn -o -f benchmarks/pom.xml package &amp;&amp; \
+ *   java -jar benchmarks/target/benchmarks.jar CodecBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+  private static final String VECTORS = "/org/interledger/cryptoconditions/vectors/valid/";
+  private static final Pattern FULFILLMENT = Pattern.compile("\"fulfillment\"\\s*:\\s*\"(\\w*)\"");
+  private static final Pattern CONDITION =
+      Pattern.compile("\"conditionBinary\"\\s*:\\s*\"(\\w*)\"");
+
+  /**
+   * The fulfillment to encode and decode.
+   */
+  public enum Input {
+    /**
+     * A PREIMAGE-SHA-256 fulfillment.
+     */
+    PREIMAGE("0005_test-basic-preimage.json"),
+
+    /**
+     * A PREFIX-SHA-256 fulfillment of an ED25519-SHA-256 fulfillment.
+     */
+    PREFIX("0006_test-basic-prefix.json"),
+
+    /**
+     * A THRESHOLD-SHA-256 fulfillment with fulfilled and unfulfilled subconditions.
+     */
+    THRESHOLD("0008_test-basic-threshold.json"),
+
+    /**
+     * An RSA-SHA-256 fulfillment with a 2048-bit key.
+     */
+    RSA("0013_test-basic-rsa.json"),
+
+    /**
+     * An RSA-SHA-256 fulfillment with a 4096-bit key.
+     */
+    RSA4096("0014_test-basic-rsa4096.json"),
+
+    /**
+     * An ED25519-SHA-256 fulfillment.
+     */
+    ED25519("0015_test-basic-ed25519.json"),
+
+    /**
+     * A notarized receipt with several notaries, which nests every compound type.
+     */
+    NOTARIZED_RECEIPT("0017_test-advanced-notarized-receipt-multiple-notaries.json"),
+
+    /**
+     * A synthetic THRESHOLD-SHA-256 fulfillment with 256 subfulfillments and 1024 unfulfilled
+     * subconditions of every simple type.
+     */
+    WIDE_THRESHOLD(null),
+
+    /**
+     * A synthetic chain of 256 PREFIX-SHA-256 fulfillments around the ED25519-SHA-256 vector.
+     */
+    DEEP_PREFIX(null);
+
+    private final String vector;
+
+    Input(final String vector) {
+      this.vector = vector;
+    }
+  }
+
+  @Param
+  public Input input;
+
+  private byte[] fulfillmentDer;
+  private byte[] conditionDer;
+  private Fulfillment fulfillment;
+  private Condition condition;
+
+  /**
+   * Loads or builds the selected fulfillment, and checks that it survives a round trip.
+   */
+  @Setup
+  public void setUp() throws Exception {
+    switch (input) {
+      case WIDE_THRESHOLD:
+        fulfillment = wideThreshold();
+        break;
+      case DEEP_PREFIX:
+        fulfillment = CryptoConditionReader.readFulfillment(
+            readVector(Input.ED25519.vector, FULFILLMENT));
+        for (int i = 0; i < 256; i++) {
+          fulfillment = new PrefixSha256Fulfillment(("prefix" + i).getBytes(), 1024, fulfillment);
+        }
+        break;
+      default:
+        fulfillment = CryptoConditionReader.readFulfillment(readVector(input.vector, FULFILLMENT));
+        break;
+    }
+    condition = fulfillment.getCondition();
+    fulfillmentDer = CryptoConditionWriter.writeFulfillment(fulfillment);
+    conditionDer = CryptoConditionWriter.writeCondition(condition);
+
+    if (!CryptoConditionReader.readFulfillment(fulfillmentDer).equals(fulfillment)) {
+      throw new IllegalStateException("Fulfillment does not survive a round trip: " + input);
+    }
+    if (input.vector != null && !Arrays.equals(conditionDer,
+        readVector(input.vector, CONDITION))) {
+      throw new IllegalStateException("Condition does not match its test vector: " + input);
+    }
+  }
+
+  private static Fulfillment wideThreshold() {
+    final Random random = new Random(42);
+    final List<Condition> subconditions = new ArrayList<>();
+    for (int i = 0; i < 1024; i++) {
+      final byte[] fingerprint = new byte[32];
+      random.nextBytes(fingerprint);
+      switch (i % 3) {
+        case 0:
+          subconditions.add(new PreimageSha256Condition(32, fingerprint));
+          break;
+        case 1:
+          subconditions.add(new RsaSha256Condition(65536, fingerprint));
+          break;
+        default:
+          subconditions.add(new Ed25519Sha256Condition(fingerprint));
+          break;
+      }
+    }
+    final List<Fulfillment> subfulfillments = new ArrayList<>();
+    for (int i = 0; i < 256; i++) {
+      final byte[] preimage = new byte[32];
+      random.nextBytes(preimage);
+      subfulfillments.add(new PreimageSha256Fulfillment(preimage));
+    }
+    return new ThresholdSha256Fulfillment(subconditions, subfulfillments);
+  }
+
+  private static byte[] readVector(final String name, final Pattern field) throws IOException {
+    try (InputStream in = CodecBenchmark.class.getResourceAsStream(VECTORS + name)) {
+      if (in == null) {
+        throw new IOException("Test vector is not packaged with the benchmarks: " + name);
+      }
+      final ByteArrayOutputStream json = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[4096];
+      for (int count = in.read(buffer); count >= 0; count = in.read(buffer)) {
+        json.write(buffer, 0, count);
+      }
+      final Matcher matcher = field.matcher(new String(json.toByteArray(),
+          StandardCharsets.UTF_8));
+      if (!matcher.find()) {
+        throw new IOException("Test vector has no " + field + ": " + name);
+      }
+      return fromHex(matcher.group(1));
+    }
+  }
+
+  private static byte[] fromHex(final String hex) {
+    final byte[] bytes = new byte[hex.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+    }
+    return bytes;
+  }
+
+  /**
+   * Decodes the fulfillment, deriving its condition.
+   */
+  @Benchmark
+  public Fulfillment readFulfillment() throws DerEncodingException {
+    return CryptoConditionReader.readFulfillment(fulfillmentDer);
+  }
+
+  /**
+   * Encodes the fulfillment.
+   */
+  @Benchmark
+  public byte[] writeFulfillment() throws DerEncodingException {
+    return CryptoConditionWriter.writeFulfillment(fulfillment);
+  }
+
+  /**
+   * Decodes the condition of the fulfillment.
+   */
+  @Benchmark
+  public Condition readCondition() throws DerEncodingException {
+    return CryptoConditionReader.readCondition(conditionDer);
+  }
+
+  /**
+   * Encodes the condition of the fulfillment.
+   */
+  @Benchmark
+  public byte[] writeCondition() throws DerEncodingException {
+    return CryptoConditionWriter.writeCondition(condition);
+  }
+}
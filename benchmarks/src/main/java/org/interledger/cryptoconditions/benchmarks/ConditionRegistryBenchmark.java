@@ -0,0 +1,139 @@
+package org.interledger.cryptoconditions.benchmarks;
+
+import org.interledger.cryptoconditions.Condition;
+import org.interledger.cryptoconditions.ConditionRegistry;
+import org.interledger.cryptoconditions.Fulfillment;
+import org.interledger.cryptoconditions.PreimageSha256Condition;
+import org.interledger.cryptoconditions.PreimageSha256Fulfillment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures a {@link ConditionRegistry} holding millions of pending conditions that expire over
+ * the next hour, while conditions are registered, matched, cancelled and expired.</p>
+ *
+ * <p>Registries of tens of millions of conditions need a larger heap, for example {@code -jvmArgs
+ * -Xmx8g}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConditionRegistryBenchmark {
+
+  private static final int FULFILLMENTS = 1 << 12;
+  private static final byte[] MESSAGE = new byte[0];
+  private static final Duration TIME_TO_LIVE = Duration.ofMillis(1);
+
+  @Param({"1000000", "10000000"})
+  public int size;
+
+  private ConditionRegistry<Object> registry;
+  private Fulfillment[] fulfillments;
+  private Fulfillment[] misses;
+  private final Object attachment = new Object();
+  private final byte[] fingerprint = new byte[32];
+  private long counter;
+  private int next;
+
+  /**
+   * Registers {@code size} random conditions, and creates the fulfillments to match.
+   */
+  @Setup
+  public void setUp() {
+    final Random random = new Random(42);
+    registry = new ConditionRegistry<>(new ConditionRegistry.Listener<Object>() {
+      @Override
+      public void onMatch(
+          final ConditionRegistry.Registration<?> registration, final Fulfillment fulfillment
+      ) {
+      }
+
+      @Override
+      public void onExpiry(final ConditionRegistry.Registration<?> registration) {
+      }
+    }, Duration.ofMillis(1), size);
+
+    final byte[] fingerprint = new byte[32];
+    for (int i = 0; i < size; i++) {
+      random.nextBytes(fingerprint);
+      registry.register(new PreimageSha256Condition(32, fingerprint), attachment,
+          Duration.ofMillis(Duration.ofHours(1).toMillis() + random.nextInt(3_600_000)));
+    }
+    registry.expire();
+
+    fulfillments = new Fulfillment[FULFILLMENTS];
+    misses = new Fulfillment[FULFILLMENTS];
+    for (int i = 0; i < FULFILLMENTS; i++) {
+      fulfillments[i] = new PreimageSha256Fulfillment(("preimage" + i).getBytes());
+      misses[i] = new PreimageSha256Fulfillment(("miss" + i).getBytes());
+      // Derive each condition once, as a connector would on receiving the fulfillment
+      fulfillments[i].getCondition();
+      misses[i].getCondition();
+    }
+  }
+
+  private int nextIndex() {
+    final int index = next;
+    next = (next + 1) & (FULFILLMENTS - 1);
+    return index;
+  }
+
+  /**
+   * Looks up a fulfillment whose condition is not registered.
+   */
+  @Benchmark
+  public Object matchMiss() {
+    return registry.match(misses[nextIndex()], MESSAGE);
+  }
+
+  /**
+   * Registers a condition and matches its fulfillment.
+   */
+  @Benchmark
+  public Object registerAndMatch() {
+    final Fulfillment fulfillment = fulfillments[nextIndex()];
+    registry.register(fulfillment.getCondition(), attachment, Duration.ofHours(1));
+    return registry.match(fulfillment, MESSAGE);
+  }
+
+  /**
+   * Registers a condition and cancels it.
+   */
+  @Benchmark
+  public boolean registerAndCancel() {
+    final Condition condition = fulfillments[nextIndex()].getCondition();
+    return registry.cancel(registry.register(condition, attachment, Duration.ofHours(1)));
+  }
+
+  /**
+   * Registers a new condition that expires after a millisecond, and expires every condition that
+   * is due, so that conditions expire at the rate they are registered.
+   */
+  @Benchmark
+  public int registerAndExpire() {
+    final long id = counter++;
+    final long mixed = id * 0x9E3779B97F4A7C15L;
+    for (int i = 0; i < 8; i++) {
+      fingerprint[i] = (byte) (mixed >>> (56 - 8 * i));
+      fingerprint[8 + i] = (byte) (id >>> (56 - 8 * i));
+    }
+    registry.register(new PreimageSha256Condition(32, fingerprint), attachment, TIME_TO_LIVE);
+    return registry.expire();
+  }
+}
@@ -0,0 +1,79 @@
+package org.interledger.cryptoconditions.benchmarks;
+
+import org.interledger.cryptoconditions.CryptoConditionReader;
+import org.interledger.cryptoconditions.CryptoConditionWriter;
+import org.interledger.cryptoconditions.Fulfillment;
+import org.interledger.cryptoconditions.PrefixSha256Fulfillment;
+import org.interledger.cryptoconditions.PreimageSha256Fulfillment;
+import org.interledger.cryptoconditions.RecursiveFulfillmentReader;
+import org.interledger.cryptoconditions.VerificationPolicy;
+import org.interledger.cryptoconditions.der.DerEncodingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Compares reading a chain of nested PREFIX-SHA-256 fulfillments with the explicit stack of
+ * {@link CryptoConditionReader} against reading it by recursion, with {@link
+ * RecursiveFulfillmentReader}, which takes the same steps at each level.</p>
+ *
+ * <p>The deepest chain is one that {@link CryptoConditionWriter} and the recursive reader can still
+ * handle on a default thread stack. Much deeper chains can only be read with the explicit
+ * stack.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeepChainBenchmark {
+
+  @Param({"1", "16", "256", "1024"})
+  public int depth;
+
+  private byte[] fulfillmentDer;
+
+  /**
+   * Builds a chain of {@link #depth} PREFIX-SHA-256 fulfillments around a PREIMAGE-SHA-256
+   * fulfillment, and checks that both readers read it back.
+   */
+  @Setup
+  public void setUp() throws Exception {
+    Fulfillment fulfillment = new PreimageSha256Fulfillment("preimage".getBytes());
+    for (int i = 0; i < depth; i++) {
+      fulfillment = new PrefixSha256Fulfillment(("prefix" + i).getBytes(), 1024, fulfillment);
+    }
+    fulfillmentDer = CryptoConditionWriter.writeFulfillment(fulfillment);
+
+    if (!explicitStack().equals(fulfillment) || !recursion().equals(fulfillment)) {
+      throw new IllegalStateException("Fulfillment does not survive a round trip: " + depth);
+    }
+  }
+
+  /**
+   * Reads the chain with the explicit stack of {@link CryptoConditionReader}.
+   */
+  @Benchmark
+  public Fulfillment explicitStack() throws DerEncodingException {
+    return CryptoConditionReader.readFulfillment(fulfillmentDer, VerificationPolicy.UNRESTRICTED);
+  }
+
+  /**
+   * Reads the chain by recursion.
+   */
+  @Benchmark
+  public Fulfillment recursion() throws DerEncodingException {
+    return RecursiveFulfillmentReader.readFulfillment(fulfillmentDer);
+  }
+}
@@ -0,0 +1,181 @@
+package org.interledger.cryptoconditions.benchmarks;
+
+import org.interledger.cryptoconditions.ConditionFilter;
+import org.interledger.cryptoconditions.CryptoConditionReader;
+import org.interledger.cryptoconditions.CryptoConditionVerifier;
+import org.interledger.cryptoconditions.CryptoConditionWriter;
+import org.interledger.cryptoconditions.Fulfillment;
+import org.interledger.cryptoconditions.PrefixSha256Fulfillment;
+import org.interledger.cryptoconditions.PreimageSha256Fulfillment;
+import org.interledger.cryptoconditions.VerificationResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures the throughput of rejecting malformed or invalid fulfillments, comparing the
+ * throwing APIs with {@link CryptoConditionVerifier#tryVerify(byte[], byte[], ByteBuffer)} and
+ * with the front door of a {@link ConditionFilter}.</p>
+ *
+ * <p>Each benchmark cycles through a pool of distinct inputs of the same kind, so that the JIT
+ * cannot specialise on a single failure.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FailurePathBenchmark {
+
+  private static final int POOL_SIZE = 1024;
+  private static final byte[] MESSAGE = "Hello World! Conditions are here!".getBytes();
+
+  /**
+   * The kind of bad input to reject.
+   */
+  public enum Input {
+    /**
+     * Random bytes, which usually fail on the first tag or length.
+     */
+    RANDOM,
+
+    /**
+     * A valid fulfillment with its last byte removed.
+     */
+    TRUNCATED,
+
+    /**
+     * A valid fulfillment whose outermost tag names an unknown type.
+     */
+    UNKNOWN_TYPE,
+
+    /**
+     * A valid fulfillment of a PREFIX-SHA-256 condition whose message is too long.
+     */
+    MESSAGE_TOO_LONG
+  }
+
+  @Param
+  public Input input;
+
+  private byte[] conditionDer;
+  private ConditionFilter filter;
+  private byte[][] fulfillments;
+  private ByteBuffer message;
+  private int next;
+
+  /**
+   * Builds a pool of bad fulfillments of the selected kind.
+   */
+  @Setup
+  public void setUp() throws Exception {
+    final Random random = new Random(42);
+    fulfillments = new byte[POOL_SIZE][];
+    message = ByteBuffer.wrap(MESSAGE);
+    filter = new ConditionFilter(1_000_000, 0.001);
+
+    for (int i = 0; i < POOL_SIZE; i++) {
+      final byte[] preimage = new byte[32];
+      random.nextBytes(preimage);
+      final Fulfillment fulfillment = new PrefixSha256Fulfillment(new byte[0],
+          input == Input.MESSAGE_TOO_LONG ? MESSAGE.length - 1 : MESSAGE.length,
+          new PreimageSha256Fulfillment(preimage));
+      final byte[] fulfillmentDer = CryptoConditionWriter.writeFulfillment(fulfillment);
+      if (i == 0) {
+        conditionDer = CryptoConditionWriter.writeCondition(fulfillment.getCondition());
+        filter.add(fulfillment.getCondition());
+      }
+
+      switch (input) {
+        case RANDOM:
+          fulfillments[i] = new byte[fulfillmentDer.length];
+          random.nextBytes(fulfillments[i]);
+          break;
+        case TRUNCATED:
+          fulfillments[i] = Arrays.copyOf(fulfillmentDer, fulfillmentDer.length - 1);
+          break;
+        case UNKNOWN_TYPE:
+          fulfillmentDer[0] = (byte) 0xA7;
+          fulfillments[i] = fulfillmentDer;
+          break;
+        default:
+          fulfillments[i] = fulfillmentDer;
+          break;
+      }
+    }
+  }
+
+  private byte[] nextFulfillment() {
+    final byte[] fulfillment = fulfillments[next];
+    next = (next + 1) & (POOL_SIZE - 1);
+    return fulfillment;
+  }
+
+  /**
+   * Decodes the fulfillment with {@link CryptoConditionReader}, catching the exception.
+   */
+  @Benchmark
+  public Object readFulfillment() {
+    try {
+      return CryptoConditionReader.readFulfillment(nextFulfillment());
+    } catch (Exception e) {
+      return e;
+    }
+  }
+
+  /**
+   * Verifies the fulfillment with the throwing API, catching the exception.
+   */
+  @Benchmark
+  public Object verify() {
+    try {
+      return CryptoConditionVerifier.verify(conditionDer, nextFulfillment(), message);
+    } catch (Exception e) {
+      return e;
+    }
+  }
+
+  /**
+   * Verifies the fulfillment with the throwing API and reads the message of the exception, as a
+   * caller that logs every rejection would.
+   */
+  @Benchmark
+  public Object verifyWithMessage() {
+    try {
+      return CryptoConditionVerifier.verify(conditionDer, nextFulfillment(), message);
+    } catch (Exception e) {
+      return e.getMessage();
+    }
+  }
+
+  /**
+   * Verifies the fulfillment with the result-returning API.
+   */
+  @Benchmark
+  public VerificationResult tryVerify() {
+    return CryptoConditionVerifier.tryVerify(conditionDer, nextFulfillment(), message);
+  }
+
+  /**
+   * Checks the fulfillment against a {@link ConditionFilter} holding the condition, which rejects
+   * it without verifying any signature.
+   */
+  @Benchmark
+  public boolean mightMatch() {
+    return filter.mightMatch(nextFulfillment());
+  }
+}
@@ -0,0 +1,101 @@
+package org.interledger.cryptoconditions.benchmarks;
+
+import org.interledger.cryptoconditions.FingerprintMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Compares looking up pending conditions by fingerprint in a {@link FingerprintMap} with a
+ * {@link HashMap} keyed by the Base64Url encoding of each fingerprint, as connectors did before.
+ * Half of the lookups miss.</p>
+ *
+ * <p>Tables of tens of millions of entries need a larger heap, for example {@code -jvmArgs
+ * -Xmx8g}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FingerprintMapBenchmark {
+
+  private static final int LOOKUPS = 1 << 16;
+
+  @Param({"1000000", "10000000"})
+  public int size;
+
+  private FingerprintMap<Object> fingerprintMap;
+  private Map<String, Object> hashMap;
+  private byte[] lookups;
+  private int next;
+
+  /**
+   * Fills both tables with the same random fingerprints, and picks the fingerprints to look up.
+   */
+  @Setup
+  public void setUp() {
+    final Random random = new Random(42);
+    final Object value = new Object();
+    final byte[] fingerprint = new byte[32];
+    lookups = new byte[32 * LOOKUPS];
+
+    fingerprintMap = new FingerprintMap<>(size);
+    hashMap = new HashMap<>(size * 4 / 3 + 1);
+    for (int i = 0; i < size; i++) {
+      random.nextBytes(fingerprint);
+      fingerprintMap.put(fingerprint, 0, value);
+      hashMap.put(encode(fingerprint, 0), value);
+      if (i < LOOKUPS / 2) {
+        System.arraycopy(fingerprint, 0, lookups, 32 * 2 * i, 32);
+      }
+    }
+    for (int i = 0; i < LOOKUPS / 2; i++) {
+      random.nextBytes(fingerprint);
+      System.arraycopy(fingerprint, 0, lookups, 32 * (2 * i + 1), 32);
+    }
+  }
+
+  private static String encode(final byte[] buffer, final int offset) {
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(Arrays.copyOfRange(buffer, offset, offset + 32));
+  }
+
+  private int nextOffset() {
+    final int offset = 32 * next;
+    next = (next + 1) & (LOOKUPS - 1);
+    return offset;
+  }
+
+  /**
+   * Looks up a fingerprint in the {@link FingerprintMap}.
+   */
+  @Benchmark
+  public Object fingerprintMapGet() {
+    return fingerprintMap.get(lookups, nextOffset());
+  }
+
+  /**
+   * Encodes a fingerprint and looks it up in the {@link HashMap}.
+   */
+  @Benchmark
+  public Object hashMapGet() {
+    return hashMap.get(encode(lookups, nextOffset()));
+  }
+}
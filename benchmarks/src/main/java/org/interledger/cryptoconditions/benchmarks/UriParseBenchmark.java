@@ -0,0 +1,93 @@
+package org.interledger.cryptoconditions.benchmarks;
+
+import org.interledger.cryptoconditions.Condition;
+import org.interledger.cryptoconditions.CryptoConditionUri;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures the throughput of parsing crypto-condition URIs, as they arrive in JSON documents,
+ * with {@link CryptoConditionUri#parse(CharSequence)}. The {@link #parseUri()} benchmark includes
+ * building the {@link URI} first, which is what callers holding text had to do before.</p>
+ *
+ * <p>Run with {@code -prof gc} to compare the bytes allocated per parse.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UriParseBenchmark {
+
+  /**
+   * The kind of condition to parse.
+   */
+  public enum Input {
+    /**
+     * A PREIMAGE-SHA-256 condition, with no subtypes.
+     */
+    PREIMAGE("ni:///sha-256;47DEQpj8HBSa-_TImW-5JCeuQeRkm5NMpJWZG3hSuFU?fpt=preimage-sha-256"
+        + "&cost=0"),
+
+    /**
+     * A THRESHOLD-SHA-256 condition with every other type as a subtype.
+     */
+    THRESHOLD("ni:///sha-256;47DEQpj8HBSa-_TImW-5JCeuQeRkm5NMpJWZG3hSuFU?fpt=threshold-sha-256"
+        + "&cost=400132&subtypes=preimage-sha-256,prefix-sha-256,rsa-sha-256,ed25519-sha-256"),
+
+    /**
+     * A PREFIX-SHA-256 condition with a percent-escaped query.
+     */
+    ESCAPED("ni:///sha-256;47DEQpj8HBSa-_TImW-5JCeuQeRkm5NMpJWZG3hSuFU?fpt=prefix-sha-256"
+        + "&cost=1024&subtypes=ed25519-sha-256%2Crsa-sha-256");
+
+    private final String uri;
+
+    Input(final String uri) {
+      this.uri = uri;
+    }
+  }
+
+  @Param
+  public Input input;
+
+  private String text;
+
+  /**
+   * Selects the URI to parse.
+   */
+  @Setup
+  public void setUp() {
+    text = input.uri;
+  }
+
+  /**
+   * Parses the text directly.
+   */
+  @Benchmark
+  public Condition parseText() throws URISyntaxException {
+    return CryptoConditionUri.parse(text);
+  }
+
+  /**
+   * Builds a {@link URI} from the text and parses that.
+   */
+  @Benchmark
+  public Condition parseUri() throws URISyntaxException {
+    return CryptoConditionUri.parse(new URI(text));
+  }
+}
@@ -0,0 +1,210 @@
+package org.interledger.cryptoconditions;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p>Verifies fulfillments asynchronously, returning a {@link CompletableFuture} instead of
+ * blocking the calling thread.</p>
+ *
+ * <p>All work, including checking the derived condition, runs on the supplied {@link Executor}.
+ * The leaves of compound fulfillments are fanned out in the same way as they are by a {@link
+ * ParallelVerifier}, so an executor that runs each task on its own virtual thread (see {@link
+ * #newVirtualThreadPerTaskExecutor()}) works well.</p>
+ *
+ * <p>A verification may be given a deadline. Once the deadline passes, the returned future
+ * completes exceptionally with a {@link TimeoutException}, and leaves of the fulfillment that have
+ * not yet been verified are cancelled. Cancelling the returned future has the same effect.</p>
+ */
+public class AsyncVerifier {
+
+  private final Executor executor;
+  private final ScheduledExecutorService scheduler;
+  private final long parallelCostThreshold;
+
+  /**
+   * Constructs a verifier that enforces deadlines using a shared, daemon scheduler thread, and
+   * uses the {@link ParallelVerifier#DEFAULT_PARALLEL_COST_THRESHOLD}.
+   *
+   * @param executor The {@link Executor} that verification work is submitted to.
+   */
+  public AsyncVerifier(final Executor executor) {
+    this(executor, DeadlineScheduler.INSTANCE);
+  }
+
+  /**
+   * Constructs a verifier that uses the {@link ParallelVerifier#DEFAULT_PARALLEL_COST_THRESHOLD}.
+   *
+   * @param executor  The {@link Executor} that verification work is submitted to.
+   * @param scheduler The {@link ScheduledExecutorService} used to enforce deadlines.
+   */
+  public AsyncVerifier(final Executor executor, final ScheduledExecutorService scheduler) {
+    this(executor, scheduler, ParallelVerifier.DEFAULT_PARALLEL_COST_THRESHOLD);
+  }
+
+  /**
+   * Required-args Constructor.
+   *
+   * @param executor              The {@link Executor} that verification work is submitted to.
+   * @param scheduler             The {@link ScheduledExecutorService} used to enforce deadlines.
+   * @param parallelCostThreshold The minimum total cost of all leaves in a fulfillment for its
+   *                              leaves to be verified as separate tasks. Cheaper fulfillments
+   *                              are verified in a single task.
+   */
+  public AsyncVerifier(
+      final Executor executor, final ScheduledExecutorService scheduler,
+      final long parallelCostThreshold
+  ) {
+    this.executor = Objects.requireNonNull(executor, "Executor must not be null!");
+    this.scheduler = Objects.requireNonNull(scheduler, "Scheduler must not be null!");
+    if (parallelCostThreshold < 0) {
+      throw new IllegalArgumentException("Parallel cost threshold must not be negative!");
+    }
+    this.parallelCostThreshold = parallelCostThreshold;
+  }
+
+  /**
+   * Asynchronously verifies a fulfillment against a condition and a message, without a deadline.
+   *
+   * @param fulfillment The {@link Fulfillment} to verify.
+   * @param condition   A {@link Condition} that {@code fulfillment} should verify.
+   * @param message     A byte array that is part of verifying the supplied condition.
+   *
+   * @return A {@link CompletableFuture} that completes with {@code true} if {@code fulfillment}
+   *     validates the supplied condition and message, or {@code false} otherwise.
+   */
+  public CompletableFuture<Boolean> verify(
+      final Fulfillment fulfillment, final Condition condition, final byte[] message
+  ) {
+    return verify(fulfillment, condition, message, null);
+  }
+
+  /**
+   * Asynchronously verifies a fulfillment against a condition and a message, abandoning the
+   * verification if it has not completed before the deadline.
+   *
+   * @param fulfillment The {@link Fulfillment} to verify.
+   * @param condition   A {@link Condition} that {@code fulfillment} should verify.
+   * @param message     A byte array that is part of verifying the supplied condition.
+   * @param timeout     The time from now after which the verification is abandoned, or {@code
+   *                    null} for no deadline.
+   *
+   * @return A {@link CompletableFuture} that completes with {@code true} if {@code fulfillment}
+   *     validates the supplied condition and message, {@code false} if it does not, or
+   *     exceptionally with a {@link TimeoutException} if the deadline passes first.
+   */
+  public CompletableFuture<Boolean> verify(
+      final Fulfillment fulfillment, final Condition condition, final byte[] message,
+      final Duration timeout
+  ) {
+    Objects.requireNonNull(fulfillment, "Fulfillment must not be null!");
+    Objects.requireNonNull(condition, "Can't verify a Fulfillment against a null condition!");
+    Objects.requireNonNull(message, "Message must not be null!");
+
+    final CompletableFuture<Boolean> result = new CompletableFuture<>();
+    if (timeout != null) {
+      final ScheduledFuture<?> deadline = scheduler.schedule(
+          () -> result.completeExceptionally(
+              new TimeoutException("Verification did not complete within " + timeout)),
+          timeout.toNanos(), TimeUnit.NANOSECONDS
+      );
+      result.whenComplete((valid, error) -> deadline.cancel(false));
+    }
+
+    try {
+      executor.execute(() -> start(fulfillment, condition, message, result));
+    } catch (RejectedExecutionException e) {
+      result.completeExceptionally(e);
+    }
+    return result;
+  }
+
+  private void start(
+      final Fulfillment fulfillment, final Condition condition, final byte[] message,
+      final CompletableFuture<Boolean> result
+  ) {
+    if (result.isDone()) {
+      return;
+    }
+
+    try {
+      if (!fulfillment.getCondition().equals(condition)) {
+        result.complete(false);
+        return;
+      }
+
+      final List<LeafVerification> leaves = LeafVerification.collect(fulfillment, message);
+      LeafVerification.sortByCost(leaves);
+
+      if (!ParallelVerifier.isWorthFanningOut(leaves, parallelCostThreshold)) {
+        for (int i = 0; i < leaves.size() && !result.isDone(); i++) {
+          if (!leaves.get(i).verify()) {
+            result.complete(false);
+            return;
+          }
+        }
+        result.complete(true);
+        return;
+      }
+
+      final CompletableFuture<Boolean> leavesResult = ParallelVerifier.submit(leaves, executor);
+      // Abandoning the verification (deadline or cancellation) must cancel outstanding leaves.
+      result.whenComplete((valid, error) -> leavesResult.cancel(false));
+      leavesResult.whenComplete((valid, error) -> {
+        if (error != null) {
+          result.completeExceptionally(error);
+        } else {
+          result.complete(valid);
+        }
+      });
+    } catch (RuntimeException e) {
+      result.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Creates an executor that starts a new virtual thread for each task, when running on a JVM that
+   * supports virtual threads (Java 21 or later).
+   *
+   * @return An {@link Optional} holding the new {@link ExecutorService}, or an empty {@link
+   *     Optional} if the running JVM does not support virtual threads.
+   */
+  public static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+    try {
+      return Optional.of((ExecutorService) Executors.class
+          .getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+    } catch (ReflectiveOperationException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Lazily holds the scheduler shared by all verifiers that were not given one.
+   */
+  private static final class DeadlineScheduler {
+
+    private static final ScheduledExecutorService INSTANCE = create();
+
+    private static ScheduledExecutorService create() {
+      final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+        final Thread thread = new Thread(runnable, "crypto-conditions-deadlines");
+        thread.setDaemon(true);
+        return thread;
+      });
+      scheduler.setRemoveOnCancelPolicy(true);
+      return scheduler;
+    }
+  }
+}
@@ -0,0 +1,412 @@
+package org.interledger.cryptoconditions;
+
+import net.i2p.crypto.eddsa.EdDSAEngine;
+
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Verifies large batches of (fulfillment, condition, message) tuples, such as those that
+ * accumulate during a settlement window.</p>
+ *
+ * <p>Rather than verifying each tuple in turn, every tuple whose derived condition matches is
+ * flattened into its leaves, and the leaves of all tuples are grouped by type. Each group is then
+ * split into chunks that are verified on an {@link Executor}, with each chunk reusing a single
+ * signature engine. RSA-SHA-256 leaves are ordered by public key, so that consecutive signatures
+ * made with the same key only initialize the engine once. PREIMAGE-SHA-256 leaves need no work
+ * beyond the condition comparison, which has already happened.</p>
+ *
+ * <p>Unlike {@link Fulfillment#verify(Condition, byte[])}, a tuple that cannot be verified at all
+ * (for example, because its message is too long for one of its PREFIX-SHA-256 fulfillments, or a
+ * signature is malformed) does not abort the batch; it is simply reported as invalid.</p>
+ */
+public class BatchVerifier {
+
+  /**
+   * The smallest number of leaves worth handing to another thread.
+   */
+  private static final int MIN_CHUNK_SIZE = 16;
+
+  private final Executor executor;
+  private final int parallelism;
+
+  /**
+   * Constructs a verifier that uses the {@link ForkJoinPool#commonPool()}.
+   */
+  public BatchVerifier() {
+    this(ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism());
+  }
+
+  /**
+   * Required-args Constructor.
+   *
+   * @param executor    The {@link Executor} that chunks of leaves are verified on.
+   * @param parallelism The number of chunks that each group of leaves is split into, which should
+   *                    generally match the number of threads available to {@code executor}.
+   */
+  public BatchVerifier(final Executor executor, final int parallelism) {
+    this.executor = Objects.requireNonNull(executor, "Executor must not be null!");
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be positive!");
+    }
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Verifies every tuple in a batch.
+   *
+   * @param fulfillments The fulfillments to verify.
+   * @param conditions   The conditions that each fulfillment should verify, in the same order as
+   *                     {@code fulfillments}.
+   * @param messages     The messages that each fulfillment should be verified against, in the same
+   *                     order as {@code fulfillments}.
+   *
+   * @return A {@link BitSet} in which bit {@code i} is set if, and only if, the {@code i}th
+   *     fulfillment is valid.
+   */
+  public BitSet verifyAll(
+      final List<? extends Fulfillment> fulfillments, final List<? extends Condition> conditions,
+      final List<byte[]> messages
+  ) {
+    return verifyAll(fulfillments, conditions, messages, new Timings());
+  }
+
+  /**
+   * Verifies every tuple in a batch, recording how long was spent on each type of leaf.
+   *
+   * @param fulfillments The fulfillments to verify.
+   * @param conditions   The conditions that each fulfillment should verify, in the same order as
+   *                     {@code fulfillments}.
+   * @param messages     The messages that each fulfillment should be verified against, in the same
+   *                     order as {@code fulfillments}.
+   * @param timings      A {@link Timings} that the time spent on each type of leaf is added to.
+   *
+   * @return A {@link BitSet} in which bit {@code i} is set if, and only if, the {@code i}th
+   *     fulfillment is valid.
+   */
+  public BitSet verifyAll(
+      final List<? extends Fulfillment> fulfillments, final List<? extends Condition> conditions,
+      final List<byte[]> messages, final Timings timings
+  ) {
+    Objects.requireNonNull(fulfillments, "Fulfillments must not be null!");
+    Objects.requireNonNull(conditions, "Conditions must not be null!");
+    Objects.requireNonNull(messages, "Messages must not be null!");
+    Objects.requireNonNull(timings, "Timings must not be null!");
+    if (fulfillments.size() != conditions.size() || fulfillments.size() != messages.size()) {
+      throw new IllegalArgumentException(
+          "Fulfillments, conditions and messages must all be the same size!");
+    }
+
+    // Written by many chunks, but only ever from false to true, and read after all have joined.
+    final boolean[] invalid = new boolean[fulfillments.size()];
+    final Map<CryptoConditionType, List<BatchLeaf>> groups =
+        new EnumMap<>(CryptoConditionType.class);
+
+    for (int i = 0; i < fulfillments.size(); i++) {
+      final Fulfillment fulfillment = Objects.requireNonNull(fulfillments.get(i));
+      final Condition condition = Objects.requireNonNull(conditions.get(i));
+      final byte[] message = Objects.requireNonNull(messages.get(i));
+
+      if (!fulfillment.getCondition().equals(condition)) {
+        invalid[i] = true;
+        continue;
+      }
+
+      final List<LeafVerification> leaves;
+      try {
+        leaves = LeafVerification.collect(fulfillment, message);
+      } catch (IllegalArgumentException e) {
+        invalid[i] = true;
+        continue;
+      }
+      for (int j = 0; j < leaves.size(); j++) {
+        final LeafVerification leaf = leaves.get(j);
+        groups.computeIfAbsent(leaf.getFulfillment().getType(), type -> new ArrayList<>())
+            .add(new BatchLeaf(i, leaf));
+      }
+    }
+
+    final List<Runnable> chunks = new ArrayList<>();
+    groups.forEach((type, leaves) -> {
+      if (type == CryptoConditionType.RSA_SHA256) {
+        leaves.sort(BatchLeaf::compareKeys);
+      }
+      final int chunkSize = Math.max(MIN_CHUNK_SIZE,
+          (leaves.size() + parallelism - 1) / parallelism);
+      for (int from = 0; from < leaves.size(); from += chunkSize) {
+        final List<BatchLeaf> chunk =
+            leaves.subList(from, Math.min(leaves.size(), from + chunkSize));
+        chunks.add(() -> {
+          final long start = System.nanoTime();
+          verifyChunk(type, chunk, invalid);
+          timings.record(type, chunk.size(), System.nanoTime() - start);
+        });
+      }
+    });
+
+    runAll(chunks);
+
+    final BitSet valid = new BitSet(fulfillments.size());
+    for (int i = 0; i < invalid.length; i++) {
+      if (!invalid[i]) {
+        valid.set(i);
+      }
+    }
+    return valid;
+  }
+
+  private void runAll(final List<Runnable> chunks) {
+    if (chunks.size() == 1) {
+      chunks.get(0).run();
+      return;
+    }
+
+    final CompletableFuture<?>[] futures = new CompletableFuture<?>[chunks.size()];
+    for (int i = 0; i < chunks.size(); i++) {
+      try {
+        futures[i] = CompletableFuture.runAsync(chunks.get(i), executor);
+      } catch (RejectedExecutionException e) {
+        chunks.get(i).run();
+        futures[i] = CompletableFuture.completedFuture(null);
+      }
+    }
+
+    try {
+      CompletableFuture.allOf(futures).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Verifies a chunk of leaves that all have the same type, reusing one signature engine.
+   */
+  private static void verifyChunk(
+      final CryptoConditionType type, final List<BatchLeaf> chunk, final boolean[] invalid
+  ) {
+    switch (type) {
+      case PREIMAGE_SHA256:
+        for (int i = 0; i < chunk.size(); i++) {
+          final BatchLeaf leaf = chunk.get(i);
+          // The derived condition of a preimage is its fingerprint, which has already been
+          // matched, but other implementations may have more to check.
+          if (!invalid[leaf.index]
+              && !(leaf.leaf.getFulfillment() instanceof PreimageSha256Fulfillment)) {
+            verifyLeaf(leaf, invalid);
+          }
+        }
+        return;
+
+      case RSA_SHA256: {
+        Signature verifier = null;
+        PublicKey initializedKey = null;
+        for (int i = 0; i < chunk.size(); i++) {
+          final BatchLeaf leaf = chunk.get(i);
+          if (invalid[leaf.index]) {
+            continue;
+          }
+          if (!(leaf.leaf.getFulfillment() instanceof RsaSha256Fulfillment)) {
+            verifyLeaf(leaf, invalid);
+            continue;
+          }
+          final RsaSha256Fulfillment fulfillment =
+              (RsaSha256Fulfillment) leaf.leaf.getFulfillment();
+          if (verifier == null) {
+            verifier = newSignature(RsaSha256Fulfillment.SHA_256_WITH_RSA_PSS);
+          }
+          try {
+            if (!fulfillment.getPublicKey().equals(initializedKey)) {
+              verifier.initVerify(fulfillment.getPublicKey());
+              initializedKey = fulfillment.getPublicKey();
+            }
+            if (!fulfillment.verifySignature(verifier, leaf.leaf.getMessage())) {
+              invalid[leaf.index] = true;
+            }
+          } catch (InvalidKeyException | SignatureException e) {
+            invalid[leaf.index] = true;
+            initializedKey = null;
+          }
+        }
+        return;
+      }
+
+      case ED25519_SHA256: {
+        final Signature verifier = new EdDSAEngine(newDigest("SHA-512"));
+        for (int i = 0; i < chunk.size(); i++) {
+          final BatchLeaf leaf = chunk.get(i);
+          if (invalid[leaf.index]) {
+            continue;
+          }
+          if (!(leaf.leaf.getFulfillment() instanceof Ed25519Sha256Fulfillment)) {
+            verifyLeaf(leaf, invalid);
+            continue;
+          }
+          final Ed25519Sha256Fulfillment fulfillment =
+              (Ed25519Sha256Fulfillment) leaf.leaf.getFulfillment();
+          try {
+            verifier.initVerify(fulfillment.getPublicKey());
+            if (!fulfillment.verifySignature(verifier, leaf.leaf.getMessage())) {
+              invalid[leaf.index] = true;
+            }
+          } catch (InvalidKeyException | SignatureException e) {
+            invalid[leaf.index] = true;
+          }
+        }
+        return;
+      }
+
+      default:
+        for (int i = 0; i < chunk.size(); i++) {
+          final BatchLeaf leaf = chunk.get(i);
+          if (!invalid[leaf.index]) {
+            verifyLeaf(leaf, invalid);
+          }
+        }
+    }
+  }
+
+  /**
+   * Verifies a single leaf with its own {@link Fulfillment#verify(Condition, byte[])}, for leaves
+   * that cannot share a signature engine.
+   */
+  private static void verifyLeaf(final BatchLeaf leaf, final boolean[] invalid) {
+    try {
+      if (!leaf.leaf.verify()) {
+        invalid[leaf.index] = true;
+      }
+    } catch (RuntimeException e) {
+      invalid[leaf.index] = true;
+    }
+  }
+
+  private static Signature newSignature(final String algorithm) {
+    try {
+      return Signature.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static MessageDigest newDigest(final String algorithm) {
+    try {
+      return MessageDigest.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * A leaf together with the index of the tuple that it belongs to.
+   */
+  private static final class BatchLeaf {
+
+    private static final byte[] NO_FINGERPRINT = new byte[0];
+
+    private final int index;
+    private final LeafVerification leaf;
+    private final byte[] fingerprint;
+
+    private BatchLeaf(final int index, final LeafVerification leaf) {
+      this.index = index;
+      this.leaf = leaf;
+      final Condition condition = leaf.getFulfillment().getCondition();
+      // Other implementations are verified one at a time, so their order does not matter.
+      this.fingerprint = condition instanceof Sha256Condition
+          ? ((Sha256Condition) condition).fingerprint() : NO_FINGERPRINT;
+    }
+
+    /**
+     * Orders RSA leaves so that leaves sharing a public key are adjacent.
+     */
+    private static int compareKeys(final BatchLeaf leaf1, final BatchLeaf leaf2) {
+      final int length = Math.min(leaf1.fingerprint.length, leaf2.fingerprint.length);
+      for (int i = 0; i < length; i++) {
+        final int result = Integer.compare(leaf1.fingerprint[i] & 0xFF,
+            leaf2.fingerprint[i] & 0xFF);
+        if (result != 0) {
+          return result;
+        }
+      }
+      return leaf1.fingerprint.length - leaf2.fingerprint.length;
+    }
+  }
+
+  /**
+   * Accumulates the number of leaves of each type verified by a {@link BatchVerifier}, and the
+   * time spent verifying them. Instances are thread-safe, and may be shared across batches.
+   */
+  public static final class Timings {
+
+    private final Map<CryptoConditionType, LongAdder> nanos =
+        new EnumMap<>(CryptoConditionType.class);
+    private final Map<CryptoConditionType, LongAdder> leaves =
+        new EnumMap<>(CryptoConditionType.class);
+
+    /**
+     * No-args Constructor.
+     */
+    public Timings() {
+      for (CryptoConditionType type : CryptoConditionType.values()) {
+        nanos.put(type, new LongAdder());
+        leaves.put(type, new LongAdder());
+      }
+    }
+
+    private void record(final CryptoConditionType type, final int count, final long elapsed) {
+      leaves.get(type).add(count);
+      nanos.get(type).add(elapsed);
+    }
+
+    /**
+     * Accessor for the total time that threads spent verifying leaves of the supplied type.
+     *
+     * @param type A {@link CryptoConditionType}.
+     *
+     * @return The total time in nanoseconds, summed across all threads.
+     */
+    public long getNanos(final CryptoConditionType type) {
+      return nanos.get(Objects.requireNonNull(type)).sum();
+    }
+
+    /**
+     * Accessor for the number of leaves of the supplied type that were verified.
+     *
+     * @param type A {@link CryptoConditionType}.
+     *
+     * @return The number of leaves.
+     */
+    public long getLeaves(final CryptoConditionType type) {
+      return leaves.get(Objects.requireNonNull(type)).sum();
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder sb = new StringBuilder("Timings{");
+      for (CryptoConditionType type : CryptoConditionType.values()) {
+        sb.append("\n\t").append(type).append("=").append(getLeaves(type)).append(" leaves in ")
+            .append(getNanos(type)).append("ns");
+      }
+      sb.append("\n}");
+      return sb.toString();
+    }
+  }
+}
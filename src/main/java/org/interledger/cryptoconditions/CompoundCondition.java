@@ -13,4 +13,14 @@ public interface CompoundCondition extends Condition {
 
   EnumSet<CryptoConditionType> getSubtypes();
 
+  /**
+   * Accessor for the subtypes of this condition as a type mask, which avoids building a set.
+   *
+   * @return A mask with the bit {@link CryptoConditionType#getTypeMask()} set for each subtype.
+   */
+  default int getSubtypeMask() {
+    final EnumSet<CryptoConditionType> subtypes = getSubtypes();
+    return subtypes == null ? 0 : CryptoConditionType.getMaskOfTypes(subtypes);
+  }
+
 }
@@ -9,7 +9,7 @@ import java.util.Objects;
  */
 public abstract class CompoundSha256Condition extends Sha256Condition implements CompoundCondition {
 
-  private final EnumSet<CryptoConditionType> subtypes;
+  private final int subtypeMask;
 
   /**
    * Constructor that accepts a fingerprint and a cost number.
@@ -24,14 +24,38 @@ public abstract class CompoundSha256Condition extends Sha256Condition implements
   protected CompoundSha256Condition(
       final CryptoConditionType type, final long cost, final byte[] fingerprint,
       final EnumSet<CryptoConditionType> subtypes
+  ) {
+    this(type, cost, fingerprint,
+        CryptoConditionType.getMaskOfTypes(Objects.requireNonNull(subtypes)));
+  }
+
+  /**
+   * Constructor that accepts a fingerprint, a cost number and a mask of subtypes.
+   *
+   * @param type        A {@link CryptoConditionType} that represents the type of this condition.
+   * @param cost        A {@link long} representing the anticipated cost of this condition,
+   *                    calculated per
+   *                    the rules of the crypto-conditions specification.
+   * @param fingerprint The binary representation of the fingerprint for this condition.
+   * @param subtypeMask A type mask of the types that this condition will hold as subconditions.
+   *                    Bits that do not identify a known type are ignored.
+   */
+  protected CompoundSha256Condition(
+      final CryptoConditionType type, final long cost, final byte[] fingerprint,
+      final int subtypeMask
   ) {
     super(type, cost, fingerprint);
-    this.subtypes = EnumSet.copyOf(Objects.requireNonNull(subtypes));
+    this.subtypeMask = subtypeMask & CryptoConditionType.ALL_TYPES_MASK;
   }
 
   @Override
   public final EnumSet<CryptoConditionType> getSubtypes() {
-    return EnumSet.copyOf(subtypes);
+    return CryptoConditionType.getTypesOfMask(subtypeMask);
+  }
+
+  @Override
+  public final int getSubtypeMask() {
+    return subtypeMask;
   }
 
   @Override
@@ -48,13 +72,13 @@ public abstract class CompoundSha256Condition extends Sha256Condition implements
 
     CompoundSha256Condition that = (CompoundSha256Condition) object;
 
-    return subtypes.equals(that.subtypes);
+    return subtypeMask == that.subtypeMask;
   }
 
   @Override
   public int hashCode() {
     int result = super.hashCode();
-    result = 31 * result + subtypes.hashCode();
+    result = 31 * result + subtypeMask;
     return result;
   }
 }
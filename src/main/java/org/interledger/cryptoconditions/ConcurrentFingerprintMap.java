@@ -0,0 +1,299 @@
+package org.interledger.cryptoconditions;
+
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * <p>A thread-safe {@link FingerprintMap}, split into independently locked stripes.</p>
+ *
+ * <p>Each stripe is a {@link FingerprintMap} guarded by a read-write lock, and a fingerprint's
+ * stripe is chosen by its first byte, which is independent of the bits that choose its slot
+ * within the stripe. Lookups of different fingerprints only contend if they share a stripe and one
+ * of them is a write.</p>
+ *
+ * @param <V> The type of the values.
+ */
+public class ConcurrentFingerprintMap<V> {
+
+  private static final int STRIPES = 64;
+
+  private final ReentrantReadWriteLock[] locks;
+  private final FingerprintMap<V>[] maps;
+
+  /**
+   * No-args Constructor.
+   */
+  public ConcurrentFingerprintMap() {
+    this(0);
+  }
+
+  /**
+   * Constructor that sizes this map to hold a number of entries without resizing.
+   *
+   * @param expectedSize The number of entries expected.
+   */
+  @SuppressWarnings("unchecked")
+  public ConcurrentFingerprintMap(final int expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("Expected size must not be negative!");
+    }
+    this.locks = new ReentrantReadWriteLock[STRIPES];
+    this.maps = new FingerprintMap[STRIPES];
+    for (int i = 0; i < STRIPES; i++) {
+      this.locks[i] = new ReentrantReadWriteLock();
+      this.maps[i] = new FingerprintMap<>(expectedSize / STRIPES + 1);
+    }
+  }
+
+  /**
+   * The stripe of a fingerprint, from the top bits of its first byte.
+   */
+  static int stripeOf(final byte[] buffer, final int offset, final int stripes) {
+    return (buffer[offset] & 0xFF) * stripes >>> 8;
+  }
+
+  private int stripe(final byte[] buffer, final int offset) {
+    FingerprintTable.checkFingerprint(buffer, offset);
+    return stripeOf(buffer, offset, STRIPES);
+  }
+
+  /**
+   * Accessor for the value mapped to the fingerprint of a condition.
+   *
+   * @param condition The {@link Condition} whose fingerprint is the key.
+   *
+   * @return The value, or {@code null} if there is none.
+   */
+  public V get(final Condition condition) {
+    return get(FingerprintTable.fingerprintOf(condition), 0);
+  }
+
+  /**
+   * Accessor for the value mapped to a fingerprint.
+   *
+   * @param buffer The buffer holding the fingerprint.
+   * @param offset The position of the fingerprint within {@code buffer}.
+   *
+   * @return The value, or {@code null} if there is none.
+   */
+  public V get(final byte[] buffer, final int offset) {
+    final int stripe = stripe(buffer, offset);
+    final ReentrantReadWriteLock.ReadLock lock = locks[stripe].readLock();
+    lock.lock();
+    try {
+      return maps[stripe].get(buffer, offset);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Whether this map holds a value for the fingerprint of a condition.
+   *
+   * @param condition The {@link Condition} whose fingerprint is the key.
+   *
+   * @return {@code true} if there is a value for the fingerprint.
+   */
+  public boolean containsKey(final Condition condition) {
+    return get(condition) != null;
+  }
+
+  /**
+   * Whether this map holds a value for a fingerprint.
+   *
+   * @param buffer The buffer holding the fingerprint.
+   * @param offset The position of the fingerprint within {@code buffer}.
+   *
+   * @return {@code true} if there is a value for the fingerprint.
+   */
+  public boolean containsKey(final byte[] buffer, final int offset) {
+    return get(buffer, offset) != null;
+  }
+
+  /**
+   * Maps the fingerprint of a condition to a value.
+   *
+   * @param condition The {@link Condition} whose fingerprint is the key.
+   * @param value     The value.
+   *
+   * @return The value previously mapped to the fingerprint, or {@code null} if there was none.
+   */
+  public V put(final Condition condition, final V value) {
+    return put(FingerprintTable.fingerprintOf(condition), 0, value);
+  }
+
+  /**
+   * Maps a fingerprint to a value.
+   *
+   * @param buffer The buffer holding the fingerprint, which is copied.
+   * @param offset The position of the fingerprint within {@code buffer}.
+   * @param value  The value.
+   *
+   * @return The value previously mapped to the fingerprint, or {@code null} if there was none.
+   */
+  public V put(final byte[] buffer, final int offset, final V value) {
+    final int stripe = stripe(buffer, offset);
+    final ReentrantReadWriteLock.WriteLock lock = locks[stripe].writeLock();
+    lock.lock();
+    try {
+      return maps[stripe].put(buffer, offset, value);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Maps the fingerprint of a condition to a value, unless it is already mapped.
+   *
+   * @param condition The {@link Condition} whose fingerprint is the key.
+   * @param value     The value.
+   *
+   * @return The value already mapped to the fingerprint, or {@code null} if {@code value} was
+   *     added.
+   */
+  public V putIfAbsent(final Condition condition, final V value) {
+    return putIfAbsent(FingerprintTable.fingerprintOf(condition), 0, value);
+  }
+
+  /**
+   * Maps a fingerprint to a value, unless it is already mapped.
+   *
+   * @param buffer The buffer holding the fingerprint, which is copied.
+   * @param offset The position of the fingerprint within {@code buffer}.
+   * @param value  The value.
+   *
+   * @return The value already mapped to the fingerprint, or {@code null} if {@code value} was
+   *     added.
+   */
+  public V putIfAbsent(final byte[] buffer, final int offset, final V value) {
+    final int stripe = stripe(buffer, offset);
+    final ReentrantReadWriteLock.WriteLock lock = locks[stripe].writeLock();
+    lock.lock();
+    try {
+      return maps[stripe].putIfAbsent(buffer, offset, value);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes the value mapped to the fingerprint of a condition.
+   *
+   * @param condition The {@link Condition} whose fingerprint is the key.
+   *
+   * @return The value that was removed, or {@code null} if there was none.
+   */
+  public V remove(final Condition condition) {
+    return remove(FingerprintTable.fingerprintOf(condition), 0);
+  }
+
+  /**
+   * Removes the value mapped to a fingerprint.
+   *
+   * @param buffer The buffer holding the fingerprint.
+   * @param offset The position of the fingerprint within {@code buffer}.
+   *
+   * @return The value that was removed, or {@code null} if there was none.
+   */
+  public V remove(final byte[] buffer, final int offset) {
+    final int stripe = stripe(buffer, offset);
+    final ReentrantReadWriteLock.WriteLock lock = locks[stripe].writeLock();
+    lock.lock();
+    try {
+      return maps[stripe].remove(buffer, offset);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes the value mapped to a fingerprint, only if it is a given value.
+   *
+   * @param buffer The buffer holding the fingerprint.
+   * @param offset The position of the fingerprint within {@code buffer}.
+   * @param value  The value expected to be mapped to the fingerprint.
+   *
+   * @return {@code true} if the value was removed.
+   */
+  public boolean remove(final byte[] buffer, final int offset, final Object value) {
+    final int stripe = stripe(buffer, offset);
+    final ReentrantReadWriteLock.WriteLock lock = locks[stripe].writeLock();
+    lock.lock();
+    try {
+      return maps[stripe].remove(buffer, offset, value);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Copies every entry of a map into this map, replacing any existing values.
+   *
+   * @param other The {@link FingerprintMap} to copy, which must not be modified concurrently.
+   */
+  public void putAll(final FingerprintMap<? extends V> other) {
+    Objects.requireNonNull(other, "Map must not be null!");
+    other.forEach((fingerprint, value) -> put(fingerprint, 0, value));
+  }
+
+  /**
+   * Calls an action for every entry of this map, in no particular order, locking one stripe at a
+   * time. Every call is passed the same 32-byte array, which holds the fingerprint of that entry
+   * and must be copied if it is kept. The action must not modify this map.
+   *
+   * @param action The action to call with each fingerprint and its value.
+   */
+  public void forEach(final BiConsumer<byte[], ? super V> action) {
+    Objects.requireNonNull(action, "Action must not be null!");
+    for (int stripe = 0; stripe < STRIPES; stripe++) {
+      final ReentrantReadWriteLock.ReadLock lock = locks[stripe].readLock();
+      lock.lock();
+      try {
+        maps[stripe].forEach(action);
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Accessor for the number of entries in this map, which is only exact if it is not being
+   * modified.
+   *
+   * @return The number of entries.
+   */
+  public long size() {
+    long size = 0;
+    for (int stripe = 0; stripe < STRIPES; stripe++) {
+      final ReentrantReadWriteLock.ReadLock lock = locks[stripe].readLock();
+      lock.lock();
+      try {
+        size += maps[stripe].size();
+      } finally {
+        lock.unlock();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Removes every entry from this map, one stripe at a time.
+   */
+  public void clear() {
+    for (int stripe = 0; stripe < STRIPES; stripe++) {
+      final ReentrantReadWriteLock.WriteLock lock = locks[stripe].writeLock();
+      lock.lock();
+      try {
+        maps[stripe].clear();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ConcurrentFingerprintMap{size=" + size() + "}";
+  }
+}
@@ -0,0 +1,220 @@
+package org.interledger.cryptoconditions;
+
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * <p>A thread-safe {@link FingerprintSet}, split into independently locked stripes in the same way
+ * as a {@link ConcurrentFingerprintMap}.</p>
+ */
+public class ConcurrentFingerprintSet {
+
+  private static final int STRIPES = 64;
+
+  private final ReentrantReadWriteLock[] locks;
+  private final FingerprintSet[] sets;
+
+  /**
+   * No-args Constructor.
+   */
+  public ConcurrentFingerprintSet() {
+    this(0);
+  }
+
+  /**
+   * Constructor that sizes this set to hold a number of fingerprints without resizing.
+   *
+   * @param expectedSize The number of fingerprints expected.
+   */
+  public ConcurrentFingerprintSet(final int expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("Expected size must not be negative!");
+    }
+    this.locks = new ReentrantReadWriteLock[STRIPES];
+    this.sets = new FingerprintSet[STRIPES];
+    for (int i = 0; i < STRIPES; i++) {
+      this.locks[i] = new ReentrantReadWriteLock();
+      this.sets[i] = new FingerprintSet(expectedSize / STRIPES + 1);
+    }
+  }
+
+  private static int stripe(final byte[] buffer, final int offset) {
+    FingerprintTable.checkFingerprint(buffer, offset);
+    return ConcurrentFingerprintMap.stripeOf(buffer, offset, STRIPES);
+  }
+
+  /**
+   * Whether this set holds the fingerprint of a condition.
+   *
+   * @param condition The {@link Condition} whose fingerprint to look for.
+   *
+   * @return {@code true} if this set holds the fingerprint.
+   */
+  public boolean contains(final Condition condition) {
+    return contains(FingerprintTable.fingerprintOf(condition), 0);
+  }
+
+  /**
+   * Whether this set holds a fingerprint.
+   *
+   * @param buffer The buffer holding the fingerprint.
+   * @param offset The position of the fingerprint within {@code buffer}.
+   *
+   * @return {@code true} if this set holds the fingerprint.
+   */
+  public boolean contains(final byte[] buffer, final int offset) {
+    final int stripe = stripe(buffer, offset);
+    final ReentrantReadWriteLock.ReadLock lock = locks[stripe].readLock();
+    lock.lock();
+    try {
+      return sets[stripe].contains(buffer, offset);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Adds the fingerprint of a condition to this set.
+   *
+   * @param condition The {@link Condition} whose fingerprint to add.
+   *
+   * @return {@code true} if the fingerprint was not already in this set.
+   */
+  public boolean add(final Condition condition) {
+    return add(FingerprintTable.fingerprintOf(condition), 0);
+  }
+
+  /**
+   * Adds a fingerprint to this set.
+   *
+   * @param buffer The buffer holding the fingerprint, which is copied.
+   * @param offset The position of the fingerprint within {@code buffer}.
+   *
+   * @return {@code true} if the fingerprint was not already in this set.
+   */
+  public boolean add(final byte[] buffer, final int offset) {
+    final int stripe = stripe(buffer, offset);
+    final ReentrantReadWriteLock.WriteLock lock = locks[stripe].writeLock();
+    lock.lock();
+    try {
+      return sets[stripe].add(buffer, offset);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes the fingerprint of a condition from this set.
+   *
+   * @param condition The {@link Condition} whose fingerprint to remove.
+   *
+   * @return {@code true} if the fingerprint was in this set.
+   */
+  public boolean remove(final Condition condition) {
+    return remove(FingerprintTable.fingerprintOf(condition), 0);
+  }
+
+  /**
+   * Removes a fingerprint from this set.
+   *
+   * @param buffer The buffer holding the fingerprint.
+   * @param offset The position of the fingerprint within {@code buffer}.
+   *
+   * @return {@code true} if the fingerprint was in this set.
+   */
+  public boolean remove(final byte[] buffer, final int offset) {
+    final int stripe = stripe(buffer, offset);
+    final ReentrantReadWriteLock.WriteLock lock = locks[stripe].writeLock();
+    lock.lock();
+    try {
+      return sets[stripe].remove(buffer, offset);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Adds a run of fingerprints, held back to back in a buffer.
+   *
+   * @param buffer The buffer holding the fingerprints.
+   * @param offset The position of the first fingerprint within {@code buffer}.
+   * @param count  The number of fingerprints.
+   *
+   * @return The number of fingerprints that were not already in this set.
+   */
+  public int addAll(final byte[] buffer, final int offset, final int count) {
+    Objects.requireNonNull(buffer, "Buffer must not be null!");
+    if (count < 0 || offset < 0
+        || offset + (long) count * FingerprintTable.FINGERPRINT_LENGTH > buffer.length) {
+      throw new IndexOutOfBoundsException("Buffer does not hold " + count + " fingerprints.");
+    }
+    int added = 0;
+    for (int i = 0; i < count; i++) {
+      if (add(buffer, offset + i * FingerprintTable.FINGERPRINT_LENGTH)) {
+        added++;
+      }
+    }
+    return added;
+  }
+
+  /**
+   * Calls an action for every fingerprint in this set, in no particular order, locking one stripe
+   * at a time. Every call is passed the same 32-byte array, which must be copied if it is kept.
+   * The action must not modify this set.
+   *
+   * @param action The action to call with each fingerprint.
+   */
+  public void forEach(final Consumer<byte[]> action) {
+    Objects.requireNonNull(action, "Action must not be null!");
+    for (int stripe = 0; stripe < STRIPES; stripe++) {
+      final ReentrantReadWriteLock.ReadLock lock = locks[stripe].readLock();
+      lock.lock();
+      try {
+        sets[stripe].forEach(action);
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Accessor for the number of fingerprints in this set, which is only exact if it is not being
+   * modified.
+   *
+   * @return The number of fingerprints.
+   */
+  public long size() {
+    long size = 0;
+    for (int stripe = 0; stripe < STRIPES; stripe++) {
+      final ReentrantReadWriteLock.ReadLock lock = locks[stripe].readLock();
+      lock.lock();
+      try {
+        size += sets[stripe].size();
+      } finally {
+        lock.unlock();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Removes every fingerprint from this set, one stripe at a time.
+   */
+  public void clear() {
+    for (int stripe = 0; stripe < STRIPES; stripe++) {
+      final ReentrantReadWriteLock.WriteLock lock = locks[stripe].writeLock();
+      lock.lock();
+      try {
+        sets[stripe].clear();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ConcurrentFingerprintSet{size=" + size() + "}";
+  }
+}
@@ -12,6 +12,12 @@ public abstract class ConditionBase implements Condition {
   private final CryptoConditionType type;
   private final long cost;
 
+  /**
+   * The URI of this condition, computed on first use. Like {@link String#hashCode()}, it may be
+   * computed more than once by racing threads, which all compute the same value.
+   */
+  private String uri;
+
   /**
    * Default internal constructor for all conditions. Sub-classes must statically calculate the cost
    * of a condition and call this constructor with the correct cost value.
@@ -64,11 +70,17 @@ public abstract class ConditionBase implements Condition {
 
   /**
    * Overrides the default {@link java.lang.Object#toString()} and returns the result of {@link
-   * CryptoConditionUri#toUri(Condition)} as a string.
+   * CryptoConditionUri#toUri(Condition)} as a string. The string is built on the first call and
+   * returned by later calls.
    */
   @Override
   public final String toString() {
-    return CryptoConditionUri.toUri(this).toString();
+    String uri = this.uri;
+    if (uri == null) {
+      uri = CryptoConditionUri.toUriString(this);
+      this.uri = uri;
+    }
+    return uri;
   }
 
   /**
@@ -0,0 +1,223 @@
+package org.interledger.cryptoconditions;
+
+import org.interledger.cryptoconditions.der.DerEncodingException;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>A Bloom filter over condition fingerprints, for rejecting fulfillments that cannot match any
+ * known condition before doing any other work on them.</p>
+ *
+ * <p>A filter never forgets a fingerprint, but may report a fingerprint that was never added with
+ * a probability close to the false positive rate it was sized for, so a positive answer must be
+ * confirmed with a {@link ConditionRegistry} or similar. Fingerprints are SHA-256 digests, so their
+ * bytes are used as the hashes of the filter directly. The filter is sized up to a power of two
+ * bits, which makes the false positive rate at the expected size no more than the requested
+ * rate.</p>
+ *
+ * <p>{@link #mightMatch(byte[])} derives the condition of a DER encoded fulfillment in a single
+ * pass, hashing keys, prefixes and subconditions directly from the buffer, without verifying any
+ * signature or constructing any {@link Fulfillment}, and then looks up its fingerprint.</p>
+ *
+ * <p>Fingerprints cannot be removed. A filter whose conditions are mostly settled should be
+ * replaced with a new one, built from the conditions that are still pending.</p>
+ *
+ * <p>A filter is thread-safe and lock-free. A fingerprint is reported by every lookup that starts
+ * after {@link #add(byte[], int)} returns.</p>
+ */
+public class ConditionFilter {
+
+  private static final int MAX_HASHES = 16;
+  // 2^36 bits, or 8 GiB
+  private static final int MAX_BITS_LOG2 = 36;
+
+  private final AtomicLongArray words;
+  private final long bitMask;
+  private final int hashes;
+  private final LongAdder count = new LongAdder();
+
+  /**
+   * Required-args Constructor.
+   *
+   * @param expectedSize      The number of fingerprints expected to be added.
+   * @param falsePositiveRate The acceptable probability of reporting a fingerprint that was never
+   *                          added, once {@code expectedSize} fingerprints have been added.
+   */
+  public ConditionFilter(final long expectedSize, final double falsePositiveRate) {
+    if (expectedSize <= 0) {
+      throw new IllegalArgumentException("Expected size must be positive!");
+    }
+    if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+      throw new IllegalArgumentException("False positive rate must be between 0 and 1!");
+    }
+
+    final double ln2 = Math.log(2);
+    final double optimalBits = -expectedSize * Math.log(falsePositiveRate) / (ln2 * ln2);
+    int bitsLog2 = 6;
+    while (bitsLog2 < MAX_BITS_LOG2 && (double) (1L << bitsLog2) < optimalBits) {
+      bitsLog2++;
+    }
+    if ((double) (1L << bitsLog2) < optimalBits) {
+      throw new IllegalArgumentException("Filter would need more than 2^" + MAX_BITS_LOG2
+          + " bits!");
+    }
+    final long bits = 1L << bitsLog2;
+
+    this.words = new AtomicLongArray((int) (bits >>> 6));
+    this.bitMask = bits - 1;
+    // The optimal number of hashes for the bits actually used, less one where that is still
+    // within the requested rate, since each hash costs a cache miss.
+    int hashes = (int) Math.max(1, Math.min(MAX_HASHES, Math.round(bits * ln2 / expectedSize)));
+    while (hashes > 1 && falsePositiveRate(bits, hashes - 1, expectedSize) <= falsePositiveRate) {
+      hashes--;
+    }
+    this.hashes = hashes;
+  }
+
+  private static double falsePositiveRate(final long bits, final int hashes, final double count) {
+    return Math.pow(1 - Math.exp(-hashes * count / bits), hashes);
+  }
+
+  /**
+   * Adds the fingerprint of a condition.
+   *
+   * @param condition The {@link Condition} whose fingerprint to add.
+   *
+   * @return {@code true} if the fingerprint was certainly not in this filter already.
+   */
+  public boolean add(final Condition condition) {
+    return add(FingerprintTable.fingerprintOf(condition), 0);
+  }
+
+  /**
+   * Adds a fingerprint.
+   *
+   * @param buffer The buffer holding the fingerprint.
+   * @param offset The position of the 32-byte fingerprint within {@code buffer}.
+   *
+   * @return {@code true} if the fingerprint was certainly not in this filter already.
+   */
+  public boolean add(final byte[] buffer, final int offset) {
+    FingerprintTable.checkFingerprint(buffer, offset);
+    final long hash = FingerprintTable.readLong(buffer, offset);
+    final long step = FingerprintTable.readLong(buffer, offset + 8) | 1;
+
+    boolean added = false;
+    for (int i = 0; i < hashes; i++) {
+      final long bitIndex = (hash + i * step) & bitMask;
+      final int wordIndex = (int) (bitIndex >>> 6);
+      final long bit = 1L << bitIndex;
+      long word = words.get(wordIndex);
+      while ((word & bit) == 0) {
+        if (words.compareAndSet(wordIndex, word, word | bit)) {
+          added = true;
+          break;
+        }
+        word = words.get(wordIndex);
+      }
+    }
+    if (added) {
+      count.increment();
+    }
+    return added;
+  }
+
+  /**
+   * Whether this filter might hold the fingerprint of a condition.
+   *
+   * @param condition The {@link Condition} whose fingerprint to look for.
+   *
+   * @return {@code false} if the fingerprint was certainly never added.
+   */
+  public boolean mightContain(final Condition condition) {
+    return mightContain(FingerprintTable.fingerprintOf(condition), 0);
+  }
+
+  /**
+   * Whether this filter might hold a fingerprint.
+   *
+   * @param buffer The buffer holding the fingerprint.
+   * @param offset The position of the 32-byte fingerprint within {@code buffer}.
+   *
+   * @return {@code false} if the fingerprint was certainly never added.
+   */
+  public boolean mightContain(final byte[] buffer, final int offset) {
+    FingerprintTable.checkFingerprint(buffer, offset);
+    final long hash = FingerprintTable.readLong(buffer, offset);
+    final long step = FingerprintTable.readLong(buffer, offset + 8) | 1;
+
+    for (int i = 0; i < hashes; i++) {
+      final long bitIndex = (hash + i * step) & bitMask;
+      if ((words.get((int) (bitIndex >>> 6)) & (1L << bitIndex)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Whether a DER encoded fulfillment might fulfill a condition whose fingerprint is in this
+   * filter. The condition of the fulfillment is derived without verifying any signature, so a
+   * positive answer says nothing about whether the fulfillment is valid.
+   *
+   * @param fulfillmentDer The DER encoding of a fulfillment.
+   *
+   * @return {@code false} if the fulfillment certainly fulfills none of the conditions, cannot be
+   *     decoded, or is nested more deeply than {@link VerificationPolicy#DEFAULT_MAX_DEPTH}.
+   */
+  public boolean mightMatch(final byte[] fulfillmentDer) {
+    Objects.requireNonNull(fulfillmentDer, "Fulfillment must not be null!");
+    try {
+      return mightContain(CryptoConditionVerifier.derive(fulfillmentDer).fingerprint(), 0);
+    } catch (DerEncodingException | VerificationFailure e) {
+      return false;
+    }
+  }
+
+  /**
+   * Removes every fingerprint. Fingerprints added while this filter is being cleared may or may
+   * not be kept.
+   */
+  public void clear() {
+    for (int i = 0; i < words.length(); i++) {
+      words.set(i, 0);
+    }
+    count.reset();
+  }
+
+  /**
+   * Accessor for the number of bits in this filter.
+   *
+   * @return The number of bits.
+   */
+  public long getBitCount() {
+    return bitMask + 1;
+  }
+
+  /**
+   * Accessor for the number of bits set for each fingerprint.
+   *
+   * @return The number of hashes.
+   */
+  public int getHashCount() {
+    return hashes;
+  }
+
+  /**
+   * Estimates the current false positive rate, from the number of fingerprints that have been
+   * added. Fingerprints that were reported as possibly present when added are not counted.
+   *
+   * @return The estimated probability of reporting a fingerprint that was never added.
+   */
+  public double getFalsePositiveRate() {
+    return falsePositiveRate(getBitCount(), hashes, count.sum());
+  }
+
+  @Override
+  public String toString() {
+    return "ConditionFilter{bits=" + getBitCount() + ", hashes=" + hashes + ", count="
+        + count.sum() + "}";
+  }
+}
@@ -0,0 +1,372 @@
+package org.interledger.cryptoconditions;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>An opt-in pool that interns conditions and fulfillments, so that identical instances decoded
+ * many times (for example, a popular THRESHOLD-SHA-256 condition, or the ED25519-SHA-256
+ * subconditions shared by many thresholds) are held in memory only once.</p>
+ *
+ * <p>Conditions are keyed by their type and fingerprint, and compared with {@code equals}.
+ * Fulfillments are keyed by the type and fingerprint of their condition, and compared by their own
+ * fields, with their subfulfillments and subconditions compared by identity. Neither walks a
+ * subtree, so interning takes the same time and stack at any depth. Instances are only weakly
+ * referenced, so a pool never keeps alive an instance that is no longer used elsewhere.</p>
+ *
+ * <p>When {@link CryptoConditionReader} reads with a pool, every condition and fulfillment is
+ * interned as soon as it is decoded, bottom-up, so each node is built from children that have
+ * already been interned. A subtree that was decoded before is therefore replaced as a whole by its
+ * existing instance (hash-consing). A fulfillment whose children were not interned first is only
+ * replaced by a pooled fulfillment with the very same children.</p>
+ *
+ * <p>The pool is split into independently locked stripes. It counts the instances that were
+ * replaced by existing ones, and estimates the heap that those replacements saved.</p>
+ */
+public class ConditionPool {
+
+  private static final int STRIPE_BITS = 4;
+  private static final int STRIPES = 1 << STRIPE_BITS;
+  private static final int INITIAL_CAPACITY = 16;
+
+  /**
+   * The estimated size of a SHA-256 condition, including its fingerprint and the Base64Url
+   * encoding of its fingerprint.
+   */
+  private static final long CONDITION_SIZE = 40 + arraySize(32) + stringSize(43);
+
+  /**
+   * The estimated size of an {@link net.i2p.crypto.eddsa.EdDSAPublicKey}, which holds the decoded
+   * point of the key as well as its encoding.
+   */
+  private static final long ED25519_KEY_SIZE = 768;
+
+  private final Stripe[] stripes;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder bytesSaved = new LongAdder();
+
+  /**
+   * No-args Constructor.
+   */
+  public ConditionPool() {
+    this.stripes = new Stripe[STRIPES];
+    for (int i = 0; i < STRIPES; i++) {
+      this.stripes[i] = new Stripe();
+    }
+  }
+
+  /**
+   * Returns the pooled instance that is equal to a condition, adding the condition to this pool if
+   * there is none.
+   *
+   * @param condition The {@link Condition} to intern.
+   * @param <T>       The type of the condition.
+   *
+   * @return A condition equal to {@code condition}, which is {@code condition} itself if no equal
+   *     condition was pooled.
+   */
+  public <T extends Condition> T internCondition(final T condition) {
+    Objects.requireNonNull(condition, "Condition must not be null!");
+    return intern(condition, hash(condition));
+  }
+
+  /**
+   * Returns the pooled instance that is equal to a fulfillment, adding the fulfillment to this pool
+   * if there is none. A pooled fulfillment is only returned if its subfulfillments and
+   * subconditions are the same instances as those of {@code fulfillment}, which they are if they
+   * were interned first.
+   *
+   * @param fulfillment The {@link Fulfillment} to intern.
+   * @param <T>         The type of the fulfillment.
+   *
+   * @return A fulfillment equal to {@code fulfillment}, which is {@code fulfillment} itself if no
+   *     equal fulfillment was pooled.
+   */
+  public <T extends Fulfillment> T internFulfillment(final T fulfillment) {
+    Objects.requireNonNull(fulfillment, "Fulfillment must not be null!");
+    return intern(fulfillment, hash(fulfillment.getCondition()));
+  }
+
+  /**
+   * Hashes the type and fingerprint of a condition, which is also the key of the fulfillments of
+   * the condition.
+   */
+  private static int hash(final Condition condition) {
+    final long bits = FingerprintTable.readLong(FingerprintTable.fingerprintOf(condition), 0);
+    return 31 * condition.getType().getTypeCode() + (int) (bits ^ bits >>> 32);
+  }
+
+  /**
+   * Whether a pooled instance can replace another of the same class. Fulfillments are compared
+   * field by field, and their subfulfillments and subconditions by identity, so that no subtree is
+   * compared in depth.
+   */
+  private static boolean matches(final Object pooled, final Object instance) {
+    if (pooled instanceof PreimageSha256Fulfillment) {
+      return ((PreimageSha256Fulfillment) pooled).getPreimage()
+          .equals(((PreimageSha256Fulfillment) instance).getPreimage());
+    } else if (pooled instanceof PrefixSha256Fulfillment) {
+      final PrefixSha256Fulfillment a = (PrefixSha256Fulfillment) pooled;
+      final PrefixSha256Fulfillment b = (PrefixSha256Fulfillment) instance;
+      return a.getSubfulfillment() == b.getSubfulfillment()
+          && a.getMaxMessageLength() == b.getMaxMessageLength()
+          && a.getPrefixBase64Url().equals(b.getPrefixBase64Url());
+    } else if (pooled instanceof ThresholdSha256Fulfillment) {
+      final ThresholdSha256Fulfillment a = (ThresholdSha256Fulfillment) pooled;
+      final ThresholdSha256Fulfillment b = (ThresholdSha256Fulfillment) instance;
+      return sameElements(a.getSubfulfillments(), b.getSubfulfillments())
+          && sameElements(a.getSubconditions(), b.getSubconditions());
+    } else if (pooled instanceof RsaSha256Fulfillment) {
+      final RsaSha256Fulfillment a = (RsaSha256Fulfillment) pooled;
+      final RsaSha256Fulfillment b = (RsaSha256Fulfillment) instance;
+      return a.getSignatureBase64Url().equals(b.getSignatureBase64Url())
+          && a.getPublicKey().equals(b.getPublicKey());
+    } else if (pooled instanceof Ed25519Sha256Fulfillment) {
+      final Ed25519Sha256Fulfillment a = (Ed25519Sha256Fulfillment) pooled;
+      final Ed25519Sha256Fulfillment b = (Ed25519Sha256Fulfillment) instance;
+      return a.getSignatureBase64Url().equals(b.getSignatureBase64Url())
+          && a.getPublicKey().equals(b.getPublicKey());
+    } else {
+      return pooled.equals(instance);
+    }
+  }
+
+  private static boolean sameElements(final List<?> a, final List<?> b) {
+    if (a.size() != b.size()) {
+      return false;
+    }
+    for (int i = 0; i < a.size(); i++) {
+      if (a.get(i) != b.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private <T> T intern(final T instance, final int hash) {
+    final int spread = hash ^ hash >>> 16;
+    // The stripe is taken from the high bits, since each stripe takes its bucket from the low bits
+    final T pooled = stripes[spread >>> (Integer.SIZE - STRIPE_BITS)].intern(instance, spread);
+    if (pooled == instance) {
+      misses.increment();
+    } else {
+      hits.increment();
+      bytesSaved.add(estimateSize(instance));
+    }
+    return pooled;
+  }
+
+  /**
+   * Accessor for the number of distinct instances currently pooled, which may include instances
+   * that have been collected but not yet removed.
+   *
+   * @return The number of pooled instances.
+   */
+  public long size() {
+    long size = 0;
+    for (Stripe stripe : stripes) {
+      size += stripe.size();
+    }
+    return size;
+  }
+
+  /**
+   * Accessor for the number of interned instances that were replaced by a pooled instance.
+   *
+   * @return The number of hits.
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Accessor for the number of interned instances that were added to this pool.
+   *
+   * @return The number of misses.
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * Accessor for the proportion of interned instances that were replaced by a pooled instance.
+   *
+   * @return A value between 0 and 1, or 0 if nothing has been interned yet.
+   */
+  public double getDedupRatio() {
+    final long hitCount = hits.sum();
+    final long total = hitCount + misses.sum();
+    return total == 0 ? 0 : (double) hitCount / total;
+  }
+
+  /**
+   * <p>Accessor for an estimate of the heap saved by this pool, which is the sum of the sizes of
+   * the instances that were replaced by pooled instances.</p>
+   *
+   * <p>Only the size of each replaced node is counted, without its children or its condition,
+   * which are counted when they are themselves replaced. Sizes are estimated for a 64-bit JVM with
+   * compressed references.</p>
+   *
+   * @return The estimated number of bytes saved.
+   */
+  public long getEstimatedBytesSaved() {
+    return bytesSaved.sum();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("ConditionPool{");
+    sb.append("\nsize=").append(size());
+    sb.append(", \n\thits=").append(getHitCount());
+    sb.append(", \n\tmisses=").append(getMissCount());
+    sb.append(", \n\testimatedBytesSaved=").append(getEstimatedBytesSaved());
+    sb.append("\n}");
+    return sb.toString();
+  }
+
+  /**
+   * Estimates the size of a condition, or of a fulfillment excluding its condition and
+   * subfulfillments.
+   */
+  static long estimateSize(final Object instance) {
+    if (instance instanceof Condition) {
+      return CONDITION_SIZE;
+    } else if (instance instanceof PreimageSha256Fulfillment) {
+      return 24 + stringSize(((PreimageSha256Fulfillment) instance).getPreimage().length());
+    } else if (instance instanceof PrefixSha256Fulfillment) {
+      final int encodedLength = ((PrefixSha256Fulfillment) instance).getPrefixBase64Url().length();
+      return 40 + arraySize(encodedLength * 3 / 4) + stringSize(encodedLength);
+    } else if (instance instanceof RsaSha256Fulfillment) {
+      // The modulus is as long as the signature
+      final int encodedLength = ((RsaSha256Fulfillment) instance).getSignatureBase64Url().length();
+      return 32 + 2 * arraySize(encodedLength * 3 / 4) + stringSize(encodedLength) + 96;
+    } else if (instance instanceof Ed25519Sha256Fulfillment) {
+      return 32 + arraySize(64) + stringSize(86) + ED25519_KEY_SIZE;
+    } else if (instance instanceof ThresholdSha256Fulfillment) {
+      final ThresholdSha256Fulfillment threshold = (ThresholdSha256Fulfillment) instance;
+      return 24 + listSize(threshold.getSubconditions()) + listSize(threshold.getSubfulfillments());
+    } else {
+      return 16;
+    }
+  }
+
+  private static long arraySize(final int length) {
+    return (16 + length + 7) & ~7;
+  }
+
+  private static long stringSize(final int length) {
+    return 24 + arraySize(length);
+  }
+
+  /**
+   * The size of an unmodifiable copy of a list.
+   */
+  private static long listSize(final List<?> list) {
+    return 16 + 24 + arraySize(4 * list.size());
+  }
+
+  /**
+   * A hash table of weakly referenced instances guarded by its own lock. Entries whose instances
+   * have been collected are removed whenever the stripe is locked.
+   */
+  private static final class Stripe {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+    private Entry[] table = new Entry[INITIAL_CAPACITY];
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    private <T> T intern(final T instance, final int hash) {
+      lock.lock();
+      try {
+        expungeCollected();
+
+        final int index = hash & (table.length - 1);
+        for (Entry entry = table[index]; entry != null; entry = entry.next) {
+          if (entry.hash == hash) {
+            final Object pooled = entry.get();
+            if (pooled != null && pooled.getClass() == instance.getClass()
+                && matches(pooled, instance)) {
+              return (T) pooled;
+            }
+          }
+        }
+
+        table[index] = new Entry(instance, hash, table[index], queue);
+        if (++size > table.length * 3 / 4) {
+          resize();
+        }
+        return instance;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private int size() {
+      lock.lock();
+      try {
+        expungeCollected();
+        return size;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void expungeCollected() {
+      for (Object reference; (reference = queue.poll()) != null; ) {
+        final Entry collected = (Entry) reference;
+        final int index = collected.hash & (table.length - 1);
+        Entry previous = null;
+        for (Entry entry = table[index]; entry != null; previous = entry, entry = entry.next) {
+          if (entry == collected) {
+            if (previous == null) {
+              table[index] = entry.next;
+            } else {
+              previous.next = entry.next;
+            }
+            size--;
+            break;
+          }
+        }
+      }
+    }
+
+    private void resize() {
+      final Entry[] newTable = new Entry[table.length * 2];
+      for (Entry head : table) {
+        for (Entry entry = head; entry != null; ) {
+          final Entry next = entry.next;
+          final int index = entry.hash & (newTable.length - 1);
+          entry.next = newTable[index];
+          newTable[index] = entry;
+          entry = next;
+        }
+      }
+      table = newTable;
+    }
+  }
+
+  /**
+   * A weakly referenced instance in the chain of its hash bucket.
+   */
+  private static final class Entry extends WeakReference<Object> {
+
+    private final int hash;
+    private Entry next;
+
+    private Entry(
+        final Object instance, final int hash, final Entry next, final ReferenceQueue<Object> queue
+    ) {
+      super(instance, queue);
+      this.hash = hash;
+      this.next = next;
+    }
+  }
+}
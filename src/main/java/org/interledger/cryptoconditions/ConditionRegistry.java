@@ -0,0 +1,358 @@
+package org.interledger.cryptoconditions;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * <p>A registry of outstanding conditions, each of which expires after a time-to-live, for
+ * matching the fulfillments that arrive for them.</p>
+ *
+ * <p>Registrations are indexed by fingerprint in a {@link ConcurrentFingerprintMap}, so a
+ * fulfillment is matched by looking up the fingerprint of its derived condition, and their expiry
+ * is tracked by a hierarchical timing wheel rather than by scanning registrations sorted by expiry.
+ * Registering, matching and cancelling only lock the stripe of the fingerprint concerned. Each
+ * registration is settled exactly once, by whichever of a match, a cancellation or its expiry
+ * claims it first. A matched or cancelled registration is only marked as settled, and is dropped
+ * when it is taken from the queue of new registrations or its bucket of the wheel is reached, so
+ * that settling never waits for expiry.</p>
+ *
+ * <p>Expired registrations are collected by {@link #expire()}, which callers should run
+ * periodically, for example from a scheduled executor, at about the tick duration of the registry.
+ * Only one thread advances the wheel at a time; a call made while another thread is advancing it
+ * returns at once. New registrations are handed to the wheel through a lock-free queue, so
+ * registering never waits for expiry to finish.</p>
+ *
+ * <p>Match and expiry events are delivered to a {@link Listener} on the thread that settled the
+ * registration, with no lock held.</p>
+ *
+ * @param <T> The type of the value attached to each registration, such as a transfer.
+ */
+public class ConditionRegistry<T> {
+
+  private static final Duration DEFAULT_TICK = Duration.ofMillis(10);
+  private static final Duration MAX_TIME_TO_LIVE = Duration.ofNanos(Long.MAX_VALUE);
+
+  private final Listener<? super T> listener;
+  private final long tickNanos;
+  private final LongSupplier ticker;
+  private final long origin;
+
+  private final ConcurrentFingerprintMap<Registration<T>> registrations;
+  private final Queue<Registration<T>> added = new ConcurrentLinkedQueue<>();
+  private final ReentrantLock wheelLock = new ReentrantLock();
+  private final TimingWheel wheel;
+
+  /**
+   * Required-args Constructor, with a tick of 10 milliseconds.
+   *
+   * @param listener The {@link Listener} to deliver match and expiry events to.
+   */
+  public ConditionRegistry(final Listener<? super T> listener) {
+    this(listener, DEFAULT_TICK, 0);
+  }
+
+  /**
+   * Constructor that sets the resolution of expiry, and sizes the registry for a number of
+   * outstanding conditions.
+   *
+   * @param listener     The {@link Listener} to deliver match and expiry events to.
+   * @param tick         The resolution of expiry. A registration expires within one tick after
+   *                     its time-to-live has passed, and never before.
+   * @param expectedSize The number of outstanding conditions expected.
+   */
+  public ConditionRegistry(
+      final Listener<? super T> listener, final Duration tick, final int expectedSize
+  ) {
+    this(listener, tick, expectedSize, System::nanoTime);
+  }
+
+  ConditionRegistry(
+      final Listener<? super T> listener, final Duration tick, final int expectedSize,
+      final LongSupplier ticker
+  ) {
+    this.listener = Objects.requireNonNull(listener, "Listener must not be null!");
+    Objects.requireNonNull(tick, "Tick must not be null!");
+    if (tick.isNegative() || tick.isZero()) {
+      throw new IllegalArgumentException("Tick must be positive!");
+    }
+    this.tickNanos = tick.toNanos();
+    this.ticker = Objects.requireNonNull(ticker);
+    this.origin = ticker.getAsLong();
+    this.registrations = new ConcurrentFingerprintMap<>(expectedSize);
+    this.wheel = new TimingWheel(0);
+  }
+
+  /**
+   * Registers an outstanding condition.
+   *
+   * @param condition  The {@link Condition} that is expected to be fulfilled.
+   * @param attachment The value to attach to the registration, which must not be {@code null}.
+   * @param timeToLive How long the condition may be matched for. Any time to live that would
+   *                   expire more than about 146 years after the registry was created, such as
+   *                   {@link java.time.temporal.ChronoUnit#FOREVER}, is clamped to that time.
+   *
+   * @return The {@link Registration}.
+   *
+   * @throws IllegalStateException if a condition with the same fingerprint is already registered.
+   */
+  public Registration<T> register(
+      final Condition condition, final T attachment, final Duration timeToLive
+  ) {
+    Objects.requireNonNull(condition, "Condition must not be null!");
+    Objects.requireNonNull(attachment, "Attachment must not be null!");
+    Objects.requireNonNull(timeToLive, "Time to live must not be null!");
+    if (timeToLive.isNegative()) {
+      throw new IllegalArgumentException("Time to live must not be negative!");
+    }
+
+    // Round up, so that a registration never expires early
+    final long elapsed = ticker.getAsLong() - origin;
+    final long timeToLiveNanos = timeToLive.compareTo(MAX_TIME_TO_LIVE) < 0
+        ? timeToLive.toNanos() : Long.MAX_VALUE;
+    final long deadline = elapsed + Math.min(timeToLiveNanos, Long.MAX_VALUE / 2 - elapsed);
+    final long expiryTick = (deadline + tickNanos - 1) / tickNanos;
+
+    final Registration<T> registration = new Registration<>(condition, attachment, expiryTick);
+    if (registrations.putIfAbsent(condition, registration) != null) {
+      throw new IllegalStateException("A condition with this fingerprint is already registered!");
+    }
+    added.add(registration);
+    return registration;
+  }
+
+  /**
+   * Accessor for the pending registration of a condition with the same fingerprint as a
+   * condition.
+   *
+   * @param condition The {@link Condition} to look for.
+   *
+   * @return The registration, or {@code null} if there is none.
+   */
+  public Registration<T> get(final Condition condition) {
+    final Registration<T> registration = registrations.get(condition);
+    return registration != null && registration.isPending() ? registration : null;
+  }
+
+  /**
+   * <p>Matches a fulfillment against the registered conditions. The registration whose
+   * fingerprint is that of the fulfillment's derived condition is settled, and a match event
+   * delivered, if the registered condition equals the derived condition and the fulfillment
+   * verifies it with the message.</p>
+   *
+   * @param fulfillment The {@link Fulfillment} that has arrived.
+   * @param message     The message that the fulfillment must verify.
+   *
+   * @return The matched {@link Registration}, or {@code null} if no pending registration was
+   *     matched.
+   */
+  public Registration<T> match(final Fulfillment<?> fulfillment, final byte[] message) {
+    Objects.requireNonNull(fulfillment, "Fulfillment must not be null!");
+    Objects.requireNonNull(message, "Message must not be null!");
+
+    final Condition derived = fulfillment.getCondition();
+    final Registration<T> registration = registrations.get(derived);
+    if (registration == null || !registration.isPending()
+        || !registration.condition.equals(derived)
+        || !verify(fulfillment, message)
+        || !settle(registration, Registration.MATCHED)) {
+      return null;
+    }
+    listener.onMatch(registration, fulfillment);
+    return registration;
+  }
+
+  /**
+   * Cancels a registration, so that it can no longer be matched or expire. No event is delivered.
+   *
+   * @param registration The {@link Registration} to cancel.
+   *
+   * @return {@code true} if the registration was pending and is now cancelled.
+   */
+  public boolean cancel(final Registration<T> registration) {
+    Objects.requireNonNull(registration, "Registration must not be null!");
+    return settle(registration, Registration.CANCELLED);
+  }
+
+  /**
+   * Verifies a fulfillment against its derived condition, which has been found to equal the
+   * registered condition.
+   */
+  private static <C extends Condition> boolean verify(
+      final Fulfillment<C> fulfillment, final byte[] message
+  ) {
+    return fulfillment.verify(fulfillment.getCondition(), message);
+  }
+
+  private boolean settle(final Registration<T> registration, final int state) {
+    if (!registration.state.compareAndSet(Registration.PENDING, state)) {
+      return false;
+    }
+    registrations.remove(FingerprintTable.fingerprintOf(registration.condition), 0, registration);
+    return true;
+  }
+
+  /**
+   * Expires every registration whose time-to-live has passed, delivering an expiry event for each
+   * of them. Returns at once if another thread is already expiring registrations.
+   *
+   * @return The number of registrations that expired.
+   */
+  @SuppressWarnings("unchecked")
+  public int expire() {
+    if (!wheelLock.tryLock()) {
+      return 0;
+    }
+    final List<Registration<?>> due = new ArrayList<>();
+    try {
+      for (Registration<T> registration; (registration = added.poll()) != null; ) {
+        if (registration.isPending()) {
+          wheel.add(registration);
+        }
+      }
+      // Only ticks that have fully passed are processed
+      wheel.advance((ticker.getAsLong() - origin) / tickNanos, due);
+    } finally {
+      wheelLock.unlock();
+    }
+
+    int count = 0;
+    for (Registration<?> registration : due) {
+      if (settle((Registration<T>) registration, Registration.EXPIRED)) {
+        listener.onExpiry((Registration<T>) registration);
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Accessor for the number of pending registrations, which is only exact if the registry is not
+   * being modified.
+   *
+   * @return The number of pending registrations.
+   */
+  public long size() {
+    return registrations.size();
+  }
+
+  @Override
+  public String toString() {
+    return "ConditionRegistry{size=" + size() + "}";
+  }
+
+  /**
+   * Receives the events of a {@link ConditionRegistry}.
+   *
+   * @param <T> The type of the value attached to each registration.
+   */
+  public interface Listener<T> {
+
+    /**
+     * Called when a registration is matched by a fulfillment.
+     *
+     * @param registration The matched {@link Registration}.
+     * @param fulfillment  The {@link Fulfillment} that matched it.
+     */
+    void onMatch(Registration<? extends T> registration, Fulfillment fulfillment);
+
+    /**
+     * Called when a registration expires without having been matched or cancelled.
+     *
+     * @param registration The expired {@link Registration}.
+     */
+    void onExpiry(Registration<? extends T> registration);
+  }
+
+  /**
+   * An outstanding condition and the value attached to it.
+   *
+   * @param <T> The type of the attached value.
+   */
+  public static final class Registration<T> {
+
+    static final int PENDING = 0;
+    static final int MATCHED = 1;
+    static final int CANCELLED = 2;
+    static final int EXPIRED = 3;
+
+    private final Condition condition;
+    private final T attachment;
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+
+    // Owned by the timing wheel
+    final long expiryTick;
+    Registration<?> wheelNext;
+
+    private Registration(final Condition condition, final T attachment, final long expiryTick) {
+      this.condition = condition;
+      this.attachment = attachment;
+      this.expiryTick = expiryTick;
+    }
+
+    /**
+     * Accessor for the registered condition.
+     *
+     * @return The {@link Condition}.
+     */
+    public Condition getCondition() {
+      return condition;
+    }
+
+    /**
+     * Accessor for the value attached to this registration.
+     *
+     * @return The attachment.
+     */
+    public T getAttachment() {
+      return attachment;
+    }
+
+    /**
+     * Whether this registration has not yet been matched, cancelled or expired.
+     *
+     * @return {@code true} if this registration is pending.
+     */
+    public boolean isPending() {
+      return state.get() == PENDING;
+    }
+
+    /**
+     * Whether this registration was matched by a fulfillment.
+     *
+     * @return {@code true} if this registration was matched.
+     */
+    public boolean isMatched() {
+      return state.get() == MATCHED;
+    }
+
+    /**
+     * Whether this registration was cancelled.
+     *
+     * @return {@code true} if this registration was cancelled.
+     */
+    public boolean isCancelled() {
+      return state.get() == CANCELLED;
+    }
+
+    /**
+     * Whether this registration expired.
+     *
+     * @return {@code true} if this registration expired.
+     */
+    public boolean isExpired() {
+      return state.get() == EXPIRED;
+    }
+
+    @Override
+    public String toString() {
+      return "Registration{condition=" + condition + ", attachment=" + attachment + "}";
+    }
+  }
+}
@@ -0,0 +1,725 @@
+package org.interledger.cryptoconditions;
+
+import org.interledger.cryptoconditions.der.DerEncodingException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * <p>An append-only store of DER encoded conditions and fulfillments, held in a memory-mapped file
+ * and indexed by fingerprint in a second memory-mapped file, so that a restarted process can look
+ * up what it stored without loading or decoding anything first.</p>
+ *
+ * <p>Each record in the data file is the DER encoding written by {@link CryptoConditionWriter},
+ * preceded by a small header holding the kind of the record, its length, a CRC-32 checksum and the
+ * fingerprint it is indexed by. A fulfillment is indexed by the fingerprint of its derived
+ * condition, so that the fulfillment of a known condition can be found. A condition and a
+ * fulfillment with the same fingerprint can both be stored, but appending a condition or
+ * fulfillment whose fingerprint is already stored for its kind returns the existing record.</p>
+ *
+ * <p>The index file, named after the data file with an {@code .idx} suffix, is an open-addressing
+ * hash table of 16-byte slots, each holding the position of a record and the leading bytes of its
+ * fingerprint. It is marked clean when the store is flushed or closed, and dirty before it is next
+ * changed. Opening a store whose index is clean only maps the two files, so lookups can be made at
+ * once. If the index is missing or was not marked clean, for example after a crash, it is rebuilt
+ * from the data file, whose records are checked against their checksums. The data file ends at the
+ * first record that is incomplete or corrupt: everything from there to the end of the file is
+ * cleared, and is overwritten by later appends. Records appended since the last {@link #flush()}
+ * may be lost in a crash.</p>
+ *
+ * <p>The index is never truncated while it is mapped. When it grows, or is rebuilt, a new index is
+ * written to a temporary file, which is then moved over the old one.</p>
+ *
+ * <p>Lookups return read-only views of the mapped DER encodings, without copying them. They can
+ * be inspected in place with {@link ConditionView}, or decoded with {@link
+ * CryptoConditionReader#readCondition(ByteBuffer)} and {@link
+ * CryptoConditionReader#readFulfillment(ByteBuffer)}. A store is thread-safe: lookups run
+ * concurrently with each other, and appends are serialized.</p>
+ */
+public class ConditionStore implements Closeable {
+
+  private static final long DATA_MAGIC = 0x4343535444415431L; // "CCSTDAT1"
+  private static final long INDEX_MAGIC = 0x4343535449445831L; // "CCSTIDX1"
+
+  private static final int DATA_HEADER = 16;
+  private static final int INDEX_HEADER = 64;
+
+  // Offsets within the index header
+  private static final int CLEAN = 8;
+  private static final int CAPACITY = 16;
+  private static final int SIZE = 24;
+  private static final int DATA_LENGTH = 32;
+
+  private static final byte CONDITION = 1;
+  private static final byte FULFILLMENT = 2;
+  private static final byte PADDING = 3;
+
+  // A record is its kind, length, checksum and fingerprint, then its DER encoding
+  private static final int RECORD_LENGTH = 1;
+  private static final int RECORD_CHECKSUM = 5;
+  private static final int RECORD_FINGERPRINT = 9;
+  private static final int RECORD_HEADER = RECORD_FINGERPRINT + FingerprintTable.FINGERPRINT_LENGTH;
+
+  private static final int SLOT = 16;
+  private static final int SLOTS_PER_REGION = 1 << 26;
+  private static final long MIN_CAPACITY = 1024;
+  private static final int MIN_MAPPING = 1 << 16;
+
+  static final int DEFAULT_REGION_SIZE = 1 << 30;
+
+  private final Path dataPath;
+  private final Path indexPath;
+  private final Path rebuiltIndexPath;
+  private final int regionSize;
+  private final FileChannel data;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  // Records never straddle regions, so each is read from a single mapping
+  private final List<MappedByteBuffer> dataRegions = new ArrayList<>();
+  private long end;
+
+  private FileChannel index;
+  private MappedByteBuffer indexHeader;
+  private MappedByteBuffer[] indexRegions;
+  private long capacity;
+  private long size;
+  private boolean clean;
+  private boolean closed;
+
+  /**
+   * Opens the store held in a data file and its index, creating them if they do not exist, and
+   * rebuilding the index if it is missing or was not closed cleanly.
+   *
+   * @param path The path of the data file.
+   *
+   * @return The {@link ConditionStore}.
+   *
+   * @throws IOException if the files cannot be opened, or the data file is not a store.
+   */
+  public static ConditionStore open(final Path path) throws IOException {
+    return new ConditionStore(path, DEFAULT_REGION_SIZE);
+  }
+
+  ConditionStore(final Path path, final int regionSize) throws IOException {
+    this.dataPath = Objects.requireNonNull(path, "Path must not be null!");
+    this.indexPath = Paths.get(path.toString() + ".idx");
+    this.rebuiltIndexPath = Paths.get(path.toString() + ".idx.tmp");
+    this.regionSize = regionSize;
+    this.data = FileChannel.open(path,
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      openData();
+      openIndex();
+    } catch (IOException | RuntimeException e) {
+      closeQuietly(data);
+      closeQuietly(index);
+      throw e;
+    }
+  }
+
+  private void openData() throws IOException {
+    final long length = data.size();
+    if (length == 0) {
+      ensureMapped(DATA_HEADER);
+      dataRegions.get(0).putLong(0, DATA_MAGIC);
+      end = DATA_HEADER;
+      return;
+    }
+    if (length < DATA_HEADER) {
+      throw new IOException("Not a condition store: " + dataPath);
+    }
+    for (long start = 0; start < length; start += regionSize) {
+      dataRegions.add(data.map(FileChannel.MapMode.READ_WRITE, start,
+          Math.min(regionSize, length - start)));
+    }
+    if (dataRegions.get(0).getLong(0) != DATA_MAGIC) {
+      throw new IOException("Not a condition store: " + dataPath);
+    }
+  }
+
+  private void openIndex() throws IOException {
+    index = FileChannel.open(indexPath,
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    final long length = index.size();
+    if (length >= INDEX_HEADER) {
+      final MappedByteBuffer header = index.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER);
+      final long capacity = header.getLong(CAPACITY);
+      final long dataLength = header.getLong(DATA_LENGTH);
+      if (header.getLong(0) == INDEX_MAGIC && header.getInt(CLEAN) == 1
+          && capacity >= MIN_CAPACITY && Long.bitCount(capacity) == 1
+          && length == INDEX_HEADER + capacity * SLOT
+          && dataLength >= DATA_HEADER && dataLength <= data.size()) {
+        this.indexHeader = header;
+        this.capacity = capacity;
+        this.size = header.getLong(SIZE);
+        this.end = dataLength;
+        this.indexRegions = mapIndexRegions(capacity);
+        this.clean = true;
+        return;
+      }
+    }
+
+    // Find the end of the valid records, and then index them
+    long count = 0;
+    long position = DATA_HEADER;
+    for (long next; (next = nextRecord(position, true)) >= 0; position = next) {
+      if (dataByte(position) != PADDING) {
+        count++;
+      }
+    }
+    end = position;
+    clearData(end);
+    rebuildIndex(capacityFor(count));
+  }
+
+  /**
+   * Clears the mapped data from a position to the end of the file, so that nothing after the last
+   * valid record can be taken for a record once later appends have overwritten part of it.
+   */
+  private void clearData(final long from) {
+    final byte[] zeros = new byte[MIN_MAPPING];
+    for (long position = from; ; ) {
+      final int regionIndex = (int) (position / regionSize);
+      if (regionIndex >= dataRegions.size()) {
+        break;
+      }
+      final MappedByteBuffer region = dataRegions.get(regionIndex);
+      final ByteBuffer cleared = region.duplicate();
+      ((Buffer) cleared).position(Math.min(offsetInRegion(position), region.capacity()));
+      while (cleared.hasRemaining()) {
+        cleared.put(zeros, 0, Math.min(zeros.length, cleared.remaining()));
+      }
+      region.force();
+      position = (regionIndex + 1L) * regionSize;
+    }
+  }
+
+  private static long capacityFor(final long count) {
+    long capacity = MIN_CAPACITY;
+    while (count > capacity / 4 * 3) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  private MappedByteBuffer[] mapIndexRegions(final long capacity) throws IOException {
+    return mapIndexRegions(index, capacity);
+  }
+
+  private static MappedByteBuffer[] mapIndexRegions(
+      final FileChannel index, final long capacity
+  ) throws IOException {
+    final int regions = (int) ((capacity + SLOTS_PER_REGION - 1) / SLOTS_PER_REGION);
+    final MappedByteBuffer[] mapped = new MappedByteBuffer[regions];
+    for (int i = 0; i < regions; i++) {
+      final long slots = Math.min(SLOTS_PER_REGION, capacity - (long) i * SLOTS_PER_REGION);
+      mapped[i] = index.map(FileChannel.MapMode.READ_WRITE,
+          INDEX_HEADER + (long) i * SLOTS_PER_REGION * SLOT, slots * SLOT);
+    }
+    return mapped;
+  }
+
+  /**
+   * Replaces the index with one of a given capacity that indexes every record up to the end of the
+   * data. The new index is written to a temporary file, which is then moved over the old index, so
+   * that the old index is never truncated while it is mapped. The new index is dirty.
+   */
+  private void rebuildIndex(final long capacity) throws IOException {
+    final FileChannel previousIndex = index;
+    final MappedByteBuffer previousHeader = indexHeader;
+    final MappedByteBuffer[] previousRegions = indexRegions;
+    final long previousCapacity = this.capacity;
+    final long previousSize = size;
+    final boolean previousClean = clean;
+
+    final FileChannel rebuilt = FileChannel.open(rebuiltIndexPath, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      final MappedByteBuffer header = rebuilt.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER);
+      header.putLong(0, INDEX_MAGIC);
+      header.putInt(CLEAN, 0);
+      header.putLong(CAPACITY, capacity);
+      this.indexHeader = header;
+      this.indexRegions = mapIndexRegions(rebuilt, capacity);
+      this.capacity = capacity;
+      this.size = 0;
+      this.clean = false;
+      indexRecords();
+      header.force();
+
+      Files.move(rebuiltIndexPath, indexPath, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException e) {
+      this.indexHeader = previousHeader;
+      this.indexRegions = previousRegions;
+      this.capacity = previousCapacity;
+      this.size = previousSize;
+      this.clean = previousClean;
+      closeQuietly(rebuilt);
+      Files.deleteIfExists(rebuiltIndexPath);
+      throw e;
+    }
+    this.index = rebuilt;
+    closeQuietly(previousIndex);
+  }
+
+  /**
+   * Adds every record up to the end of the data to the empty index.
+   */
+  private void indexRecords() {
+    for (long position = DATA_HEADER; position < end; position = nextRecord(position, false)) {
+      final byte kind = dataByte(position);
+      if (kind != PADDING) {
+        final ByteBuffer region = region(position);
+        final int offset = offsetInRegion(position);
+        final long hash = hash(region.getLong(offset + RECORD_FINGERPRINT), kind);
+        long slot = hash & (capacity - 1);
+        while (slotRecord(slot) != 0) {
+          slot = (slot + 1) & (capacity - 1);
+        }
+        setSlot(slot, position, hash);
+        size++;
+      }
+    }
+  }
+
+  /**
+   * The position of the record after the one at {@code position}, or {@code -1} if there is no
+   * valid record at {@code position}.
+   *
+   * @param verify Whether to check the checksum of the record.
+   */
+  private long nextRecord(final long position, final boolean verify) {
+    final int regionIndex = (int) (position / regionSize);
+    if (regionIndex >= dataRegions.size()) {
+      return -1;
+    }
+    final ByteBuffer region = dataRegions.get(regionIndex);
+    final int offset = offsetInRegion(position);
+    if (offset >= region.capacity()) {
+      return -1;
+    }
+    final byte kind = region.get(offset);
+    if (kind == PADDING) {
+      return (regionIndex + 1L) * regionSize;
+    }
+    if ((kind != CONDITION && kind != FULFILLMENT) || offset > region.capacity() - RECORD_HEADER) {
+      return -1;
+    }
+    final int length = region.getInt(offset + RECORD_LENGTH);
+    if (length <= 0 || length > region.capacity() - offset - RECORD_HEADER) {
+      return -1;
+    }
+    if (verify) {
+      final ByteBuffer covered = region.duplicate();
+      ((Buffer) covered).limit(offset + RECORD_HEADER + length);
+      ((Buffer) covered).position(offset + RECORD_FINGERPRINT);
+      final CRC32 crc = new CRC32();
+      crc.update(covered);
+      if ((int) crc.getValue() != region.getInt(offset + RECORD_CHECKSUM)) {
+        return -1;
+      }
+    }
+    return position + RECORD_HEADER + length;
+  }
+
+  /**
+   * Appends the DER encoding of a condition, unless it is already stored.
+   *
+   * @param condition The {@link Condition} to store.
+   *
+   * @return The id of the record, which can be passed to {@link #get(long)}.
+   *
+   * @throws DerEncodingException if the condition cannot be encoded.
+   * @throws IOException          if the store cannot be extended.
+   */
+  public long appendCondition(final Condition condition) throws DerEncodingException, IOException {
+    Objects.requireNonNull(condition, "Condition must not be null!");
+    return append(CONDITION, FingerprintTable.fingerprintOf(condition), condition, null);
+  }
+
+  /**
+   * Appends the DER encoding of a fulfillment, indexed by the fingerprint of its derived condition,
+   * unless it is already stored.
+   *
+   * @param fulfillment The {@link Fulfillment} to store.
+   *
+   * @return The id of the record, which can be passed to {@link #get(long)}.
+   *
+   * @throws DerEncodingException if the fulfillment cannot be encoded.
+   * @throws IOException          if the store cannot be extended.
+   */
+  public long appendFulfillment(final Fulfillment fulfillment)
+      throws DerEncodingException, IOException {
+    Objects.requireNonNull(fulfillment, "Fulfillment must not be null!");
+    return append(FULFILLMENT, FingerprintTable.fingerprintOf(fulfillment.getCondition()), null,
+        fulfillment);
+  }
+
+  private long append(
+      final byte kind, final byte[] fingerprint, final Condition condition,
+      final Fulfillment fulfillment
+  ) throws DerEncodingException, IOException {
+    final ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
+    writeLock.lock();
+    try {
+      checkOpen();
+      final long existing = find(fingerprint, 0, kind);
+      if (existing >= 0) {
+        return existing;
+      }
+
+      final byte[] der = kind == CONDITION ? CryptoConditionWriter.writeCondition(condition)
+          : CryptoConditionWriter.writeFulfillment(fulfillment);
+      final int length = RECORD_HEADER + der.length;
+      if (length > regionSize - DATA_HEADER) {
+        throw new IllegalArgumentException("Encoding of " + der.length + " bytes is too large.");
+      }
+      markDirty();
+      if (size + 1 > capacity / 4 * 3) {
+        rebuildIndex(capacity << 1);
+      }
+
+      // Records do not straddle regions, so pad to the next region if this one is too full
+      long position = end;
+      if (offsetInRegion(position) + length > regionSize) {
+        ensureMapped(position + 1);
+        region(position).put(offsetInRegion(position), PADDING);
+        position = (position / regionSize + 1) * regionSize;
+      }
+      ensureMapped(position + length);
+
+      final CRC32 crc = new CRC32();
+      crc.update(fingerprint, 0, fingerprint.length);
+      crc.update(der, 0, der.length);
+
+      final ByteBuffer record = region(position).duplicate();
+      ((Buffer) record).position(offsetInRegion(position));
+      record.put(kind).putInt(der.length).putInt((int) crc.getValue()).put(fingerprint).put(der);
+      end = position + length;
+
+      final long hash = hash(FingerprintTable.readLong(fingerprint, 0), kind);
+      long slot = hash & (capacity - 1);
+      while (slotRecord(slot) != 0) {
+        slot = (slot + 1) & (capacity - 1);
+      }
+      setSlot(slot, position, hash);
+      size++;
+      return position;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Maps enough of the data file to hold everything before {@code limit}, growing the mapping of
+   * the last region geometrically. Earlier regions are left as they are, since nothing more is
+   * written to them.
+   */
+  private void ensureMapped(final long limit) throws IOException {
+    final int last = (int) ((limit - 1) / regionSize);
+    for (int i = 0; i <= last; i++) {
+      final long required = i < last ? 1 : limit - (long) last * regionSize;
+      final MappedByteBuffer mapped = i < dataRegions.size() ? dataRegions.get(i) : null;
+      if (mapped != null && mapped.capacity() >= required) {
+        continue;
+      }
+      long mapping = Math.max(MIN_MAPPING, mapped == null ? 0 : (long) mapped.capacity() * 2);
+      mapping = Math.min(regionSize, Math.max(mapping, required));
+      final MappedByteBuffer remapped =
+          data.map(FileChannel.MapMode.READ_WRITE, (long) i * regionSize, mapping);
+      if (mapped == null) {
+        dataRegions.add(remapped);
+      } else {
+        dataRegions.set(i, remapped);
+      }
+    }
+  }
+
+  /**
+   * Marks the index dirty, and forces the mark to disk before the index is changed, so that a
+   * crash while it is being changed leaves it to be rebuilt.
+   */
+  private void markDirty() {
+    if (clean) {
+      indexHeader.putInt(CLEAN, 0);
+      indexHeader.force();
+      clean = false;
+    }
+  }
+
+  /**
+   * Accessor for the DER encoding of the stored condition with the same fingerprint as a
+   * condition.
+   *
+   * @param condition The {@link Condition} to look for.
+   *
+   * @return A read-only view of the DER encoding, or {@code null} if there is none.
+   */
+  public ByteBuffer findCondition(final Condition condition) {
+    return findCondition(FingerprintTable.fingerprintOf(condition), 0);
+  }
+
+  /**
+   * Accessor for the DER encoding of the stored condition with a fingerprint.
+   *
+   * @param buffer The buffer holding the fingerprint.
+   * @param offset The position of the fingerprint within {@code buffer}.
+   *
+   * @return A read-only view of the DER encoding, or {@code null} if there is none.
+   */
+  public ByteBuffer findCondition(final byte[] buffer, final int offset) {
+    return lookup(buffer, offset, CONDITION);
+  }
+
+  /**
+   * Accessor for the DER encoding of the stored fulfillment of a condition, found by fingerprint.
+   * The fulfillment must still be verified against the condition, which may differ from the
+   * stored fulfillment's derived condition in anything but its fingerprint.
+   *
+   * @param condition The {@link Condition} whose fulfillment to look for.
+   *
+   * @return A read-only view of the DER encoding, or {@code null} if there is none.
+   */
+  public ByteBuffer findFulfillment(final Condition condition) {
+    return findFulfillment(FingerprintTable.fingerprintOf(condition), 0);
+  }
+
+  /**
+   * Accessor for the DER encoding of the stored fulfillment whose derived condition has a
+   * fingerprint.
+   *
+   * @param buffer The buffer holding the fingerprint.
+   * @param offset The position of the fingerprint within {@code buffer}.
+   *
+   * @return A read-only view of the DER encoding, or {@code null} if there is none.
+   */
+  public ByteBuffer findFulfillment(final byte[] buffer, final int offset) {
+    return lookup(buffer, offset, FULFILLMENT);
+  }
+
+  private ByteBuffer lookup(final byte[] buffer, final int offset, final byte kind) {
+    FingerprintTable.checkFingerprint(buffer, offset);
+    final ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
+    readLock.lock();
+    try {
+      checkOpen();
+      final long position = find(buffer, offset, kind);
+      return position < 0 ? null : view(position);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Accessor for the DER encoding of a record.
+   *
+   * @param id The id of the record, as returned when it was appended.
+   *
+   * @return A read-only view of the DER encoding.
+   *
+   * @throws IllegalArgumentException if there is no record with the id.
+   */
+  public ByteBuffer get(final long id) {
+    final ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
+    readLock.lock();
+    try {
+      checkOpen();
+      if (id < DATA_HEADER || id >= end) {
+        throw new IllegalArgumentException("No record with id " + id + ".");
+      }
+      final byte kind = dataByte(id);
+      if (kind != CONDITION && kind != FULFILLMENT) {
+        throw new IllegalArgumentException("No record with id " + id + ".");
+      }
+      return view(id);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  private ByteBuffer view(final long position) {
+    final ByteBuffer region = region(position);
+    final int offset = offsetInRegion(position);
+    final ByteBuffer view = region.asReadOnlyBuffer();
+    ((Buffer) view).limit(offset + RECORD_HEADER + region.getInt(offset + RECORD_LENGTH));
+    ((Buffer) view).position(offset + RECORD_HEADER);
+    return view.slice();
+  }
+
+  /**
+   * The position of the record of a kind with a fingerprint, or {@code -1} if there is none.
+   */
+  private long find(final byte[] buffer, final int offset, final byte kind) {
+    final long hash = hash(FingerprintTable.readLong(buffer, offset), kind);
+    for (long slot = hash & (capacity - 1); ; slot = (slot + 1) & (capacity - 1)) {
+      final long record = slotRecord(slot);
+      if (record == 0) {
+        return -1;
+      }
+      if (slotHash(slot) == hash && matches(record - 1, buffer, offset, kind)) {
+        return record - 1;
+      }
+    }
+  }
+
+  private boolean matches(
+      final long position, final byte[] buffer, final int offset, final byte kind
+  ) {
+    final ByteBuffer region = region(position);
+    final int recordOffset = offsetInRegion(position);
+    if (region.get(recordOffset) != kind) {
+      return false;
+    }
+    for (int i = 0; i < FingerprintTable.FINGERPRINT_LENGTH; i += 8) {
+      if (region.getLong(recordOffset + RECORD_FINGERPRINT + i)
+          != FingerprintTable.readLong(buffer, offset + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The hash of a fingerprint, which is uniformly distributed, so its leading bytes are used as
+   * they are. Conditions and fulfillments with the same fingerprint hash differently.
+   */
+  private static long hash(final long hash, final byte kind) {
+    return kind == FULFILLMENT ? hash * 0x9E3779B97F4A7C15L : hash;
+  }
+
+  private long slotRecord(final long slot) {
+    return indexRegions[(int) (slot / SLOTS_PER_REGION)]
+        .getLong((int) (slot % SLOTS_PER_REGION) * SLOT);
+  }
+
+  private long slotHash(final long slot) {
+    return indexRegions[(int) (slot / SLOTS_PER_REGION)]
+        .getLong((int) (slot % SLOTS_PER_REGION) * SLOT + 8);
+  }
+
+  private void setSlot(final long slot, final long position, final long hash) {
+    final MappedByteBuffer region = indexRegions[(int) (slot / SLOTS_PER_REGION)];
+    final int offset = (int) (slot % SLOTS_PER_REGION) * SLOT;
+    region.putLong(offset + 8, hash);
+    region.putLong(offset, position + 1);
+  }
+
+  private ByteBuffer region(final long position) {
+    return dataRegions.get((int) (position / regionSize));
+  }
+
+  private int offsetInRegion(final long position) {
+    return (int) (position % regionSize);
+  }
+
+  private byte dataByte(final long position) {
+    return region(position).get(offsetInRegion(position));
+  }
+
+  /**
+   * Accessor for the number of records in this store.
+   *
+   * @return The number of conditions and fulfillments stored.
+   */
+  public long size() {
+    final ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
+    readLock.lock();
+    try {
+      return size;
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Writes every appended record and the index to disk, and marks the index clean.
+   */
+  public void flush() {
+    final ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
+    writeLock.lock();
+    try {
+      checkOpen();
+      if (clean) {
+        return;
+      }
+      for (MappedByteBuffer region : dataRegions) {
+        region.force();
+      }
+      for (MappedByteBuffer region : indexRegions) {
+        region.force();
+      }
+      indexHeader.putLong(SIZE, size);
+      indexHeader.putLong(DATA_LENGTH, end);
+      indexHeader.force();
+      indexHeader.putInt(CLEAN, 1);
+      indexHeader.force();
+      clean = true;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Flushes and closes this store. Views already returned remain readable.
+   *
+   * @throws IOException if either file cannot be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    final ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
+    writeLock.lock();
+    try {
+      if (closed) {
+        return;
+      }
+      try {
+        flush();
+      } finally {
+        closed = true;
+        try {
+          data.close();
+        } finally {
+          index.close();
+        }
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private void checkOpen() {
+    if (closed) {
+      throw new IllegalStateException("Store is closed!");
+    }
+  }
+
+  private static void closeQuietly(final Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException e) {
+        // The original failure is more useful
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ConditionStore{path=" + dataPath + ", size=" + size() + "}";
+  }
+}
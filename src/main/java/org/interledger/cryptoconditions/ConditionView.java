@@ -0,0 +1,381 @@
+package org.interledger.cryptoconditions;
+
+import org.interledger.cryptoconditions.der.DerEncodingException;
+import org.interledger.cryptoconditions.der.DerTag;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * <p>A view of the type, cost, fingerprint and subtypes of a DER encoded condition, read in place
+ * from the encoded bytes without constructing a {@link Condition}.</p>
+ *
+ * <p>Conditions have a small, fixed layout, so the cost is read directly into a {@code long}, the
+ * subtypes into an {@code int} mask and the fingerprint is left where it is. A single view can be
+ * reused for any number of conditions by calling {@link #read(byte[], int)} or {@link
+ * #read(ByteBuffer, int)}, so that index builders and routers can inspect conditions without
+ * allocating anything per condition. Arrays are read by index, without wrapping them in a {@link
+ * ByteBuffer}. The static {@code peek} methods read into a new view.</p>
+ *
+ * <p>Encodings are checked as they are read, applying the same rules as {@link
+ * CryptoConditionReader#readCondition(byte[])}, except that a cost that does not fit in a
+ * non-negative {@code long} is rejected as malformed rather than truncated, as {@link
+ * org.interledger.cryptoconditions.der.DerCursor#readLong(int)} does. As with that method, the
+ * cost of an ED25519-SHA-256 condition is always {@code 131072}, whatever is encoded. A view is not
+ * thread-safe, and refers to the buffer it was read from, which must not be modified while the
+ * view is in use.</p>
+ */
+public final class ConditionView {
+
+  private static final int TAGGED = DerTag.TAGGED.getTag();
+  private static final int CONSTRUCTED_TAGGED = DerTag.CONSTRUCTED.getTag() + TAGGED;
+
+  private static final int FINGERPRINT_LENGTH = 32;
+  private static final long ED25519_COST = 131072;
+
+  private byte[] array;
+  private ByteBuffer buffer;
+  private CryptoConditionType type;
+  private long cost;
+  private int fingerprintOffset;
+  private int subtypeMask;
+  private int offset;
+  private int length;
+
+  /**
+   * Reads the condition encoded at {@code offset} within an array into a new view.
+   *
+   * @param buffer The buffer holding the DER encoded condition.
+   * @param offset The position of the condition within {@code buffer}.
+   *
+   * @return A view of the condition.
+   *
+   * @throws DerEncodingException if the condition is malformed.
+   */
+  public static ConditionView peek(final byte[] buffer, final int offset)
+      throws DerEncodingException {
+    return new ConditionView().read(buffer, offset);
+  }
+
+  /**
+   * Reads the condition encoded at {@code offset} within a buffer, which may be a direct buffer,
+   * into a new view.
+   *
+   * @param buffer The buffer holding the DER encoded condition. Its position is ignored, and is not
+   *               changed.
+   * @param offset The absolute position of the condition within {@code buffer}.
+   *
+   * @return A view of the condition.
+   *
+   * @throws DerEncodingException if the condition is malformed.
+   */
+  public static ConditionView peek(final ByteBuffer buffer, final int offset)
+      throws DerEncodingException {
+    return new ConditionView().read(buffer, offset);
+  }
+
+  /**
+   * Reads the condition encoded at {@code offset} within an array into this view.
+   *
+   * @param buffer The buffer holding the DER encoded condition.
+   * @param offset The position of the condition within {@code buffer}.
+   *
+   * @return This view.
+   *
+   * @throws DerEncodingException if the condition is malformed. The view is left unchanged.
+   */
+  public ConditionView read(final byte[] buffer, final int offset) throws DerEncodingException {
+    Objects.requireNonNull(buffer, "Buffer must not be null!");
+    if (offset < 0 || offset > buffer.length) {
+      throw new IndexOutOfBoundsException("Offset [" + offset + "] does not fit the buffer.");
+    }
+
+    try {
+      return readAt(buffer, null, offset, buffer.length);
+    } catch (DerEncodingException e) {
+      throw e.withStackTrace();
+    }
+  }
+
+  /**
+   * Reads the condition encoded at {@code offset} within a buffer, which may be a direct buffer,
+   * into this view.
+   *
+   * @param buffer The buffer holding the DER encoded condition. Its position is ignored, and is not
+   *               changed.
+   * @param offset The absolute position of the condition within {@code buffer}.
+   *
+   * @return This view.
+   *
+   * @throws DerEncodingException if the condition is malformed. The view is left unchanged.
+   */
+  public ConditionView read(final ByteBuffer buffer, final int offset)
+      throws DerEncodingException {
+    Objects.requireNonNull(buffer, "Buffer must not be null!");
+    if (offset < 0 || offset > buffer.limit()) {
+      throw new IndexOutOfBoundsException("Offset [" + offset + "] does not fit the buffer.");
+    }
+
+    try {
+      return readAt(null, buffer, offset, buffer.limit());
+    } catch (DerEncodingException e) {
+      throw e.withStackTrace();
+    }
+  }
+
+  /**
+   * Reads a condition from either {@code array} or {@code buffer}, whichever is not null, into this
+   * view, raising lightweight exceptions.
+   */
+  private ConditionView readAt(
+      final byte[] array, final ByteBuffer buffer, final int offset, final int limit
+  ) throws DerEncodingException {
+    int position = offset;
+
+    final int tag = readByte(array, buffer, position++, limit) - CONSTRUCTED_TAGGED;
+    if (tag < 0) {
+      throw new DerEncodingException(offset,
+          () -> "Some flags are missing resulting in a tag value of < 0.");
+    }
+    final CryptoConditionType type = CryptoConditionType.lookup(tag);
+    if (type == null) {
+      throw new DerEncodingException(offset, () -> "Invalid Condition Type code.");
+    }
+    int valueLength = readLength(array, buffer, position, limit);
+    position += lengthOfLength(array, buffer, position);
+    final int end = position + valueLength;
+
+    // [0] fingerprint
+    expectTag(array, buffer, position++, end, TAGGED);
+    valueLength = readLength(array, buffer, position, end);
+    position += lengthOfLength(array, buffer, position);
+    if (valueLength != FINGERPRINT_LENGTH) {
+      final int fingerprintAt = position;
+      throw new DerEncodingException(fingerprintAt, () -> "Fingerprint must be 32 bytes.");
+    }
+    final int fingerprintOffset = position;
+    position += valueLength;
+
+    // [1] cost
+    expectTag(array, buffer, position++, end, TAGGED + 1);
+    valueLength = readLength(array, buffer, position, end);
+    position += lengthOfLength(array, buffer, position);
+    if (valueLength == 0) {
+      final int costAt = position;
+      throw new DerEncodingException(costAt, () -> "Encountered an empty integer.");
+    }
+    // As in DerCursor#readLong, leading zeros are allowed but the value must fit in a long
+    final int costEnd = position + valueLength;
+    int costStart = position;
+    while (costStart < costEnd - 1 && byteAt(array, buffer, costStart) == 0) {
+      costStart++;
+    }
+    if (costEnd - costStart > 8 || byteAt(array, buffer, costStart) < 0) {
+      final int costAt = position;
+      throw new DerEncodingException(costAt, () -> "Integer must be a non-negative 64-bit value.");
+    }
+    long cost = 0;
+    for (int i = costStart; i < costEnd; i++) {
+      cost = (cost << 8) | (byteAt(array, buffer, i) & 0xFF);
+    }
+    position = costEnd;
+
+    // [2] subtypes
+    int subtypeMask = 0;
+    if (type == CryptoConditionType.PREFIX_SHA256 || type == CryptoConditionType.THRESHOLD_SHA256) {
+      expectTag(array, buffer, position++, end, TAGGED + 2);
+      valueLength = readLength(array, buffer, position, end);
+      position += lengthOfLength(array, buffer, position);
+      final int subtypesAt = position;
+      if (valueLength == 1) {
+        throw new DerEncodingException(subtypesAt, () -> "Corrupt bit string.");
+      }
+      if (valueLength > 2 || (valueLength == 2 && byteAt(array, buffer, position) < 3)) {
+        throw new DerEncodingException(subtypesAt, () -> "Unknown rsa in bit string.");
+      }
+      if (valueLength == 2) {
+        subtypeMask = CryptoConditionType.getMaskOfBits(byteAt(array, buffer, position + 1));
+      }
+    }
+
+    this.array = array;
+    this.buffer = buffer;
+    this.type = type;
+    this.cost = type == CryptoConditionType.ED25519_SHA256 ? ED25519_COST : cost;
+    this.fingerprintOffset = fingerprintOffset;
+    this.subtypeMask = subtypeMask;
+    this.offset = offset;
+    this.length = end - offset;
+    return this;
+  }
+
+  /**
+   * Accessor for the type of the condition.
+   *
+   * @return The {@link CryptoConditionType} of the condition, or {@code null} if nothing has been
+   *     read.
+   */
+  public CryptoConditionType getType() {
+    return type;
+  }
+
+  /**
+   * Accessor for the ASN.1 enumeration number of the type of the condition.
+   *
+   * @return The type code.
+   */
+  public int getTypeCode() {
+    return type.getTypeCode();
+  }
+
+  public long getCost() {
+    return cost;
+  }
+
+  /**
+   * Accessor for the fingerprint of the condition, without copying it.
+   *
+   * @return A read-only {@link ByteBuffer} whose 32 remaining bytes are the fingerprint.
+   */
+  public ByteBuffer getFingerprint() {
+    if (array != null) {
+      return ByteBuffer.wrap(array, fingerprintOffset, FINGERPRINT_LENGTH).slice()
+          .asReadOnlyBuffer();
+    }
+    final ByteBuffer fingerprint = buffer.asReadOnlyBuffer();
+    ((Buffer) fingerprint).limit(fingerprintOffset + FINGERPRINT_LENGTH);
+    ((Buffer) fingerprint).position(fingerprintOffset);
+    return fingerprint.slice();
+  }
+
+  /**
+   * Accessor for the position of the fingerprint within the buffer that the condition was read
+   * from.
+   *
+   * @return The absolute position of the first of the 32 bytes of the fingerprint.
+   */
+  public int getFingerprintOffset() {
+    return fingerprintOffset;
+  }
+
+  /**
+   * Accessor for the subtypes of the condition.
+   *
+   * @return A mask with bit {@code 1 << typeCode} set for each subtype, which is zero for simple
+   *     conditions.
+   */
+  public int getSubtypeMask() {
+    return subtypeMask;
+  }
+
+  /**
+   * Accessor for the position of the condition within the buffer that it was read from.
+   *
+   * @return The absolute position of the tag of the condition.
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  /**
+   * Accessor for the length of the encoded condition, so that a sequence of conditions can be read
+   * one after another.
+   *
+   * @return The number of bytes in the encoding, including its tag and length.
+   */
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * Reads the byte at {@code position} from either {@code array} or {@code buffer}, whichever is
+   * not null.
+   */
+  private static byte byteAt(final byte[] array, final ByteBuffer buffer, final int position) {
+    return array != null ? array[position] : buffer.get(position);
+  }
+
+  private static int readByte(
+      final byte[] array, final ByteBuffer buffer, final int position, final int limit
+  ) throws DerEncodingException {
+    if (position >= limit) {
+      throw new DerEncodingException(position, () -> "Expected tag, got end of stream.");
+    }
+    return byteAt(array, buffer, position) & 0xFF;
+  }
+
+  private static void expectTag(
+      final byte[] array, final ByteBuffer buffer, final int position, final int limit,
+      final int expectedTag
+  ) throws DerEncodingException {
+    final int tag = readByte(array, buffer, position, limit);
+    if (tag != expectedTag) {
+      throw new DerEncodingException(position, () -> "Expected tag: "
+          + Integer.toHexString(expectedTag) + ", got: " + Integer.toHexString(tag));
+    }
+  }
+
+  /**
+   * Reads the DER length at {@code position}, and checks that a value of that length fits before
+   * {@code limit}.
+   */
+  private static int readLength(
+      final byte[] array, final ByteBuffer buffer, final int position, final int limit
+  ) throws DerEncodingException {
+    if (position >= limit) {
+      throw new DerEncodingException(position, () -> "End of stream found reading length.");
+    }
+
+    int length = byteAt(array, buffer, position) & 0xFF;
+    int next = position + 1;
+    if (length > 127) {
+      final int lengthOfLength = length & 0x7f;
+      if (lengthOfLength > 4) {
+        throw new DerEncodingException(position,
+            () -> "DER length more than 4 bytes: " + lengthOfLength);
+      }
+      if (lengthOfLength > limit - next) {
+        throw new DerEncodingException(position, () -> "End of stream found reading length.");
+      }
+      length = 0;
+      for (int i = 0; i < lengthOfLength; i++) {
+        length = (length << 8) + (byteAt(array, buffer, next++) & 0xFF);
+      }
+      if (length < 0) {
+        final int negativeLength = length;
+        throw new DerEncodingException(position,
+            () -> "Negative length found: " + negativeLength);
+      }
+    }
+
+    if (length > limit - next) {
+      final int tooLong = length;
+      throw new DerEncodingException(position,
+          () -> "Object length [" + tooLong + "] is larger than allowed.");
+    }
+    return length;
+  }
+
+  /**
+   * The number of bytes taken by the DER length at {@code position}, which has been read already.
+   */
+  private static int lengthOfLength(
+      final byte[] array, final ByteBuffer buffer, final int position
+  ) {
+    final int first = byteAt(array, buffer, position) & 0xFF;
+    return first > 127 ? 1 + (first & 0x7f) : 1;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("ConditionView{");
+    sb.append("type=").append(type);
+    sb.append(", cost=").append(cost);
+    sb.append(", subtypeMask=").append(subtypeMask);
+    sb.append(", offset=").append(offset);
+    sb.append(", length=").append(length);
+    sb.append('}');
+    return sb.toString();
+  }
+}
@@ -0,0 +1,26 @@
+package org.interledger.cryptoconditions;
+
+/**
+ * <p>Receives the fields of DER encoded conditions as they are scanned by {@link
+ * CryptoConditionScanner}, without any {@link Condition} being constructed.</p>
+ *
+ * <p>Values are passed as positions within the encoded buffer, which is not copied and must not be
+ * modified or retained beyond the call.</p>
+ */
+@FunctionalInterface
+public interface ConditionVisitor {
+
+  /**
+   * Visits a condition.
+   *
+   * @param type              The type of the condition.
+   * @param cost              The cost of the condition, as encoded.
+   * @param buffer            The encoded buffer.
+   * @param fingerprintOffset The position within {@code buffer} of the 32 byte fingerprint.
+   * @param subtypes          The subtypes of the condition, with bit {@code 1 << typeCode} set for
+   *                          each type, or zero for simple conditions.
+   */
+  void visitCondition(
+      CryptoConditionType type, long cost, byte[] buffer, int fingerprintOffset, int subtypes
+  );
+}
@@ -10,21 +10,37 @@ import org.interledger.cryptoconditions.utils.UnsignedBigInteger;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.interfaces.RSAPublicKey;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.RSAPublicKeySpec;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.EnumSet;
+import java.util.Deque;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Provides utility methods to read a crypto-condition from DER encoding.
+ * <p>Provides utility methods to read a crypto-condition from DER encoding.</p>
+ *
+ * <p>When reading a fulfillment, the condition of each node is derived bottom-up as it is decoded,
+ * from the values just read and the already-derived conditions of its children, and handed to the
+ * fulfillment so that its constructor does not derive it again.</p>
+ *
+ * <p>When reading with a {@link ConditionPool}, each condition and fulfillment is interned as soon
+ * as it has been decoded, so that identical subtrees are shared with those already in the
+ * pool.</p>
+ *
+ * <p>Fulfillments read without a {@link VerificationPolicy} are checked against {@link
+ * VerificationPolicy#DEFAULT}, so one nested more deeply than {@link
+ * VerificationPolicy#DEFAULT_MAX_DEPTH} is rejected with a {@link VerificationPolicyException}.</p>
  */
 public class CryptoConditionReader {
 
@@ -43,6 +59,42 @@ public class CryptoConditionReader {
     return readCondition(buffer, 0, buffer.length);
   }
 
+  /**
+   * Reads a DER encoded condition from the buffer, and checks it against a policy.
+   *
+   * @param buffer contains the raw DER encoded condition.
+   * @param policy the {@link VerificationPolicy} that the condition must satisfy.
+   *
+   * @return The condition read from the buffer.
+   *
+   * @throws DerEncodingException        when DER encoding fails for any reason.
+   * @throws VerificationPolicyException if the condition breaks any limit of {@code policy}.
+   */
+  public static Condition readCondition(byte[] buffer, VerificationPolicy policy)
+      throws DerEncodingException, VerificationPolicyException {
+    Objects.requireNonNull(policy, "Policy must not be null!");
+
+    final Condition condition = readCondition(buffer);
+    policy.checkCondition(condition);
+    return condition;
+  }
+
+  /**
+   * Reads a DER encoded condition from the buffer, and interns it in a pool.
+   *
+   * @param buffer contains the raw DER encoded condition.
+   * @param pool   the {@link ConditionPool} to intern the condition in.
+   *
+   * @return The pooled condition equal to the condition read from the buffer.
+   *
+   * @throws DerEncodingException when DER encoding fails for any reason.
+   */
+  public static Condition readCondition(byte[] buffer, ConditionPool pool)
+      throws DerEncodingException {
+    Objects.requireNonNull(pool, "Pool must not be null!");
+    return pool.internCondition(readCondition(buffer));
+  }
+
   /**
    * Reads a DER encoded condition from the buffer.
    *
@@ -73,6 +125,31 @@ public class CryptoConditionReader {
     }
   }
 
+  /**
+   * Reads a DER encoded condition from the remaining bytes of a buffer, which may be a direct or
+   * memory-mapped buffer, without first copying them into an array.
+   *
+   * @param buffer contains the raw DER encoded condition. Its position is not changed.
+   *
+   * @return The condition read from the buffer.
+   *
+   * @throws DerEncodingException when DER encoding fails for any reason.
+   */
+  public static Condition readCondition(ByteBuffer buffer) throws DerEncodingException {
+    Objects.requireNonNull(buffer, "Buffer must not be null!");
+    if (buffer.hasArray()) {
+      return readCondition(buffer.array(), buffer.arrayOffset() + buffer.position(),
+          buffer.remaining());
+    }
+
+    DerInputStream in = new DerInputStream(new ByteBufferInputStream(buffer));
+    try {
+      return readCondition(in);
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
   /**
    * Reads a DER encoded condition from the input stream.
    *
@@ -112,9 +189,9 @@ public class CryptoConditionReader {
     long cost = new BigInteger(
         in.readTaggedObject(1, length - innerBytesRead.get(), innerBytesRead).getValue())
         .longValue();
-    EnumSet<CryptoConditionType> subtypes = null;
+    int subtypeMask = 0;
     if (type == CryptoConditionType.PREFIX_SHA256 || type == CryptoConditionType.THRESHOLD_SHA256) {
-      subtypes = CryptoConditionType.getEnumOfTypesFromBitString(
+      subtypeMask = CryptoConditionType.getMaskFromBitString(
           in.readTaggedObject(2, length - innerBytesRead.get(), innerBytesRead).getValue());
     }
     bytesRead.addAndGet(innerBytesRead.get());
@@ -123,9 +200,9 @@ public class CryptoConditionReader {
       case PREIMAGE_SHA256:
         return new PreimageSha256Condition(cost, fingerprint);
       case PREFIX_SHA256:
-        return new PrefixSha256Condition(cost, fingerprint, subtypes);
+        return new PrefixSha256Condition(cost, fingerprint, subtypeMask);
       case THRESHOLD_SHA256:
-        return new ThresholdSha256Condition(cost, fingerprint, subtypes);
+        return new ThresholdSha256Condition(cost, fingerprint, subtypeMask);
       case RSA_SHA256:
         return new RsaSha256Condition(cost, fingerprint);
       case ED25519_SHA256:
@@ -142,12 +219,100 @@ public class CryptoConditionReader {
    *
    * @return The fulfillment read from the buffer.
    *
-   * @throws DerEncodingException when DER encoding fails for any reason.
+   * @throws DerEncodingException        when DER encoding fails for any reason.
+   * @throws VerificationPolicyException if the fulfillment is nested more deeply than {@link
+   *                                     VerificationPolicy#DEFAULT_MAX_DEPTH}.
    */
   public static Fulfillment readFulfillment(byte[] buffer) throws DerEncodingException {
     return readFulfillment(buffer, 0, buffer.length);
   }
 
+  /**
+   * Reads a DER encoded fulfillment from the buffer, enforcing a policy as it is decoded. The depth
+   * and type of each fulfillment are checked before its contents are read, and the cost of each
+   * derived condition is checked as soon as it is known.
+   *
+   * @param buffer The buffer holding the DER encoded fulfillment
+   * @param policy the {@link VerificationPolicy} that the fulfillment must satisfy.
+   *
+   * @return The fulfillment read from the buffer.
+   *
+   * @throws DerEncodingException        when DER encoding fails for any reason.
+   * @throws VerificationPolicyException if the fulfillment breaks any limit of {@code policy}.
+   */
+  public static Fulfillment readFulfillment(byte[] buffer, VerificationPolicy policy)
+      throws DerEncodingException, VerificationPolicyException {
+    Objects.requireNonNull(policy, "Policy must not be null!");
+    return decodeFulfillment(buffer, policy, null);
+  }
+
+  /**
+   * Reads a DER encoded fulfillment from the buffer, interning each condition and fulfillment in a
+   * pool as soon as it has been decoded.
+   *
+   * @param buffer The buffer holding the DER encoded fulfillment
+   * @param pool   the {@link ConditionPool} to intern conditions and fulfillments in.
+   *
+   * @return The pooled fulfillment equal to the fulfillment read from the buffer.
+   *
+   * @throws DerEncodingException        when DER encoding fails for any reason.
+   * @throws VerificationPolicyException if the fulfillment is nested more deeply than {@link
+   *                                     VerificationPolicy#DEFAULT_MAX_DEPTH}.
+   */
+  public static Fulfillment readFulfillment(byte[] buffer, ConditionPool pool)
+      throws DerEncodingException {
+    return readFulfillment(buffer, VerificationPolicy.DEFAULT, pool);
+  }
+
+  /**
+   * Reads a DER encoded fulfillment from the buffer, enforcing a policy as it is decoded and
+   * interning each condition and fulfillment in a pool as soon as it has been decoded.
+   *
+   * @param buffer The buffer holding the DER encoded fulfillment
+   * @param policy the {@link VerificationPolicy} that the fulfillment must satisfy.
+   * @param pool   the {@link ConditionPool} to intern conditions and fulfillments in.
+   *
+   * @return The pooled fulfillment equal to the fulfillment read from the buffer.
+   *
+   * @throws DerEncodingException        when DER encoding fails for any reason.
+   * @throws VerificationPolicyException if the fulfillment breaks any limit of {@code policy}.
+   */
+  public static Fulfillment readFulfillment(
+      byte[] buffer, VerificationPolicy policy, ConditionPool pool
+  ) throws DerEncodingException, VerificationPolicyException {
+    Objects.requireNonNull(policy, "Policy must not be null!");
+    Objects.requireNonNull(pool, "Pool must not be null!");
+    return decodeFulfillment(buffer, policy, pool);
+  }
+
+  /**
+   * Reads a DER encoded fulfillment from the whole buffer, converting failures into the exceptions
+   * of the public APIs.
+   *
+   * @param pool the {@link ConditionPool} to intern conditions and fulfillments in, or {@code
+   *             null} to read without interning.
+   */
+  private static Fulfillment decodeFulfillment(
+      byte[] buffer, VerificationPolicy policy, ConditionPool pool
+  ) throws DerEncodingException {
+    ByteArrayInputStream bais = new ByteArrayInputStream(buffer);
+    DerInputStream in = new DerInputStream(bais);
+
+    try {
+      return readFulfillment(in, new AtomicInteger(), policy, pool, 1);
+    } catch (VerificationFailure f) {
+      throw f.toException();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      try {
+        in.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
   /**
    * Reads a DER encoded fulfillment from the buffer.
    *
@@ -157,7 +322,9 @@ public class CryptoConditionReader {
    *
    * @return The fulfillment read from the buffer.
    *
-   * @throws DerEncodingException when DER encoding fails for any reason.
+   * @throws DerEncodingException        when DER encoding fails for any reason.
+   * @throws VerificationPolicyException if the fulfillment is nested more deeply than {@link
+   *                                     VerificationPolicy#DEFAULT_MAX_DEPTH}.
    */
   public static Fulfillment readFulfillment(byte[] buffer, int offset, int length)
       throws DerEncodingException {
@@ -178,6 +345,33 @@ public class CryptoConditionReader {
     }
   }
 
+  /**
+   * Reads a DER encoded fulfillment from the remaining bytes of a buffer, which may be a direct or
+   * memory-mapped buffer, without first copying them into an array.
+   *
+   * @param buffer The buffer holding the DER encoded fulfillment. Its position is not changed.
+   *
+   * @return The fulfillment read from the buffer.
+   *
+   * @throws DerEncodingException        when DER encoding fails for any reason.
+   * @throws VerificationPolicyException if the fulfillment is nested more deeply than {@link
+   *                                     VerificationPolicy#DEFAULT_MAX_DEPTH}.
+   */
+  public static Fulfillment readFulfillment(ByteBuffer buffer) throws DerEncodingException {
+    Objects.requireNonNull(buffer, "Buffer must not be null!");
+    if (buffer.hasArray()) {
+      return readFulfillment(buffer.array(), buffer.arrayOffset() + buffer.position(),
+          buffer.remaining());
+    }
+
+    DerInputStream in = new DerInputStream(new ByteBufferInputStream(buffer));
+    try {
+      return readFulfillment(in);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
   /**
    * Reads a DER encoded fulfillment from the input stream.
    *
@@ -185,8 +379,10 @@ public class CryptoConditionReader {
    *
    * @return The fulfillment read from the stream.
    *
-   * @throws DerEncodingException when DER encoding fails for any reason.
-   * @throws IOException          if any I/O operation fails for any reason.
+   * @throws DerEncodingException        when DER encoding fails for any reason.
+   * @throws VerificationPolicyException if the fulfillment is nested more deeply than {@link
+   *                                     VerificationPolicy#DEFAULT_MAX_DEPTH}.
+   * @throws IOException                 if any I/O operation fails for any reason.
    */
   public static Fulfillment readFulfillment(DerInputStream in)
       throws DerEncodingException, IOException {
@@ -201,127 +397,363 @@ public class CryptoConditionReader {
    *
    * @return The fulfillment read from the stream.
    *
-   * @throws DerEncodingException when DER encoding fails for any reason.
-   * @throws IOException          if any I/O operation fails for any reason.
+   * @throws DerEncodingException        when DER encoding fails for any reason.
+   * @throws VerificationPolicyException if the fulfillment is nested more deeply than {@link
+   *                                     VerificationPolicy#DEFAULT_MAX_DEPTH}.
+   * @throws IOException                 if any I/O operation fails for any reason.
    */
   public static Fulfillment readFulfillment(DerInputStream in, AtomicInteger bytesRead)
       throws DerEncodingException, IOException {
+    try {
+      return readFulfillment(in, bytesRead, VerificationPolicy.DEFAULT, null, 1);
+    } catch (VerificationFailure f) {
+      throw f.toException();
+    }
+  }
 
-    int tag = in.readTag(bytesRead, DerTag.CONSTRUCTED, DerTag.TAGGED);
-    CryptoConditionType type = CryptoConditionType.valueOf(tag);
-    int length = in.readLength(bytesRead);
+  /**
+   * <p>Reads a DER encoded fulfillment from the input stream, enforcing a policy as it is
+   * decoded.</p>
+   *
+   * <p>Nested fulfillments are read with an explicit stack rather than by recursion, so the depth
+   * of a fulfillment is limited only by {@link VerificationPolicy#getMaxDepth()} and never by the
+   * size of the thread stack. Each PREFIX-SHA-256 or THRESHOLD-SHA-256 fulfillment that is waiting
+   * for a subfulfillment is held as a {@link PendingFulfillment}.</p>
+   *
+   * @param in        The input stream containing the DER encoded fulfillment.
+   * @param bytesRead will be updated with the number of bytes read from the stream.
+   * @param policy    the {@link VerificationPolicy} that the fulfillment must satisfy.
+   * @param pool      the {@link ConditionPool} to intern conditions and fulfillments in, or {@code
+   *                  null} to read without interning.
+   * @param depth     the depth of the fulfillment being read, where the root is at depth 1.
+   *
+   * @return The fulfillment read from the stream.
+   */
+  private static Fulfillment readFulfillment(
+      DerInputStream in, AtomicInteger bytesRead, VerificationPolicy policy, ConditionPool pool,
+      int depth
+  ) throws DerEncodingException, IOException {
+
+    final Deque<PendingFulfillment> pending = new ArrayDeque<>();
+    PendingFulfillment current = PendingFulfillment.open(in, bytesRead, policy, pool, depth);
+
+    while (true) {
+      if (!current.isComplete()) {
+        pending.push(current);
+        current = PendingFulfillment.open(in, current.getChildBytesRead(), policy, pool,
+            current.depth + 1);
+      } else if (pending.isEmpty()) {
+        return current.fulfillment;
+      } else {
+        final PendingFulfillment parent = pending.pop();
+        parent.addChild(in, current.fulfillment, policy, pool);
+        current = parent;
+      }
+    }
+  }
 
-    if (length == 0) {
-      throw new DerEncodingException("Encountered an empty fulfillment.");
+  /**
+   * A fulfillment that is being read. Simple fulfillments are read completely as soon as they are
+   * opened, while compound fulfillments are completed by adding their subfulfillments one at a
+   * time, as each of them is read.
+   */
+  private static final class PendingFulfillment {
+
+    private final CryptoConditionType type;
+    private final int depth;
+    private final AtomicInteger bytesRead;
+    private final AtomicInteger innerBytesRead = new AtomicInteger();
+
+    private Fulfillment fulfillment;
+
+    // PREFIX-SHA-256
+    private byte[] prefix;
+    private long maxMessageLength;
+
+    // THRESHOLD-SHA-256
+    private List<Fulfillment> subfulfillments;
+    private AtomicInteger subfulfillmentsBytesRead;
+    private int subfulfillmentsLength;
+
+    private PendingFulfillment(
+        final CryptoConditionType type, final int depth, final AtomicInteger bytesRead
+    ) {
+      this.type = type;
+      this.depth = depth;
+      this.bytesRead = bytesRead;
     }
 
-    AtomicInteger innerBytesRead = new AtomicInteger();
-    switch (type) {
-      case PREIMAGE_SHA256:
+    /**
+     * Reads the start of a fulfillment, and all of it if it has no subfulfillments.
+     */
+    private static PendingFulfillment open(
+        DerInputStream in, AtomicInteger bytesRead, VerificationPolicy policy, ConditionPool pool,
+        int depth
+    ) throws DerEncodingException, IOException {
+
+      int tag = in.readTag(bytesRead, DerTag.CONSTRUCTED, DerTag.TAGGED);
+      CryptoConditionType type = CryptoConditionType.valueOf(tag);
+      policy.checkDepth(depth);
+      policy.checkType(type);
+      int length = in.readLength(bytesRead);
+
+      if (length == 0) {
+        throw new DerEncodingException("Encountered an empty fulfillment.");
+      }
+
+      final PendingFulfillment pending = new PendingFulfillment(type, depth, bytesRead);
+      final AtomicInteger innerBytesRead = pending.innerBytesRead;
+      switch (type) {
+        case PREIMAGE_SHA256:
+          pending.fulfillment = readPreimage(in, length, bytesRead, innerBytesRead, policy, pool);
+          return pending;
+
+        case PREFIX_SHA256:
+          pending.prefix =
+              in.readTaggedObject(0, length - innerBytesRead.get(), innerBytesRead).getValue();
+          pending.maxMessageLength = new BigInteger(
+              in.readTaggedObject(1, length - innerBytesRead.get(), innerBytesRead).getValue())
+              .longValue();
+
+          in.readTag(2, innerBytesRead, DerTag.CONSTRUCTED, DerTag.TAGGED);
+          in.readLength(innerBytesRead);
+          return pending;
+
+        case THRESHOLD_SHA256:
+          pending.subfulfillments = new ArrayList<>();
+          pending.subfulfillmentsBytesRead = new AtomicInteger();
+
+          tag = in.readTag(innerBytesRead, DerTag.CONSTRUCTED, DerTag.TAGGED);
+          length = in.readLength(innerBytesRead);
 
-        byte[] preimage =
-            in.readTaggedObject(0, length - innerBytesRead.get(), innerBytesRead).getValue();
+          // It is legal (per the encoding rules) for a THRESHOLD fulfillment to have only
+          // sub-conditions even though it will never verify so we need to check if we've
+          // skipped tag number 0
+          if (tag == 0) {
+            pending.subfulfillmentsLength = length;
+            if (length > 0) {
+              return pending;
+            }
+            in.readTag(1, innerBytesRead, DerTag.CONSTRUCTED, DerTag.TAGGED);
+            length = in.readLength(innerBytesRead);
+
+          } else if (tag != 1) {
+            throw new DerEncodingException("Expected tag: 1, got: " + tag);
+          }
+          pending.completeThreshold(in, length, policy, pool);
+          return pending;
 
-        bytesRead.addAndGet(innerBytesRead.get());
+        case RSA_SHA256:
+          pending.fulfillment = readRsa(in, length, bytesRead, innerBytesRead, policy, pool);
+          return pending;
 
-        return new PreimageSha256Fulfillment(preimage);
+        case ED25519_SHA256:
+          pending.fulfillment = readEd25519(in, length, bytesRead, innerBytesRead, policy, pool);
+          return pending;
 
-      case PREFIX_SHA256:
+        default:
+          throw new DerEncodingException("Unrecogized condition type: " + type);
+      }
+    }
 
-        final byte[] prefix =
-            in.readTaggedObject(0, length - innerBytesRead.get(), innerBytesRead).getValue();
-        final long maxMessageLength = new BigInteger(
-            in.readTaggedObject(1, length - innerBytesRead.get(), innerBytesRead).getValue())
-            .longValue();
+    private boolean isComplete() {
+      return fulfillment != null;
+    }
 
-        in.readTag(2, innerBytesRead, DerTag.CONSTRUCTED, DerTag.TAGGED);
-        in.readLength(innerBytesRead);
+    /**
+     * Accessor for the counter that the next subfulfillment should update as it is read.
+     */
+    private AtomicInteger getChildBytesRead() {
+      return type == CryptoConditionType.PREFIX_SHA256 ? innerBytesRead : subfulfillmentsBytesRead;
+    }
 
-        Fulfillment subfulfillment = readFulfillment(in, innerBytesRead);
+    /**
+     * Adds a subfulfillment that has just been read, completing this fulfillment if it was the
+     * last.
+     */
+    private void addChild(
+        DerInputStream in, Fulfillment child, VerificationPolicy policy, ConditionPool pool
+    ) throws DerEncodingException, IOException {
 
+      if (type == CryptoConditionType.PREFIX_SHA256) {
         bytesRead.addAndGet(innerBytesRead.get());
 
-        return new PrefixSha256Fulfillment(prefix, maxMessageLength, subfulfillment);
+        final DerivedCondition prefixCondition = DerivedCondition.prefix(prefix, 0, prefix.length,
+            maxMessageLength, DerivedCondition.of(child.getCondition()));
+        policy.checkCost(prefixCondition.getCost());
 
-      case THRESHOLD_SHA256:
+        fulfillment = intern(pool, new PrefixSha256Fulfillment(prefix, maxMessageLength, child,
+            intern(pool, (PrefixSha256Condition) prefixCondition.toCondition())));
+        return;
+      }
+
+      subfulfillments.add(child);
+      if (subfulfillmentsBytesRead.get() < subfulfillmentsLength) {
+        return;
+      }
+      innerBytesRead.addAndGet(subfulfillmentsBytesRead.get());
 
-        List<Fulfillment> subfulfillments = new ArrayList<>();
+      in.readTag(1, innerBytesRead, DerTag.CONSTRUCTED, DerTag.TAGGED);
+      completeThreshold(in, in.readLength(innerBytesRead), policy, pool);
+    }
 
-        tag = in.readTag(innerBytesRead, DerTag.CONSTRUCTED, DerTag.TAGGED);
-        length = in.readLength(innerBytesRead);
+    /**
+     * Reads the subconditions of a THRESHOLD-SHA-256 fulfillment, once all of its subfulfillments
+     * have been read, and completes it.
+     */
+    private void completeThreshold(
+        DerInputStream in, int length, VerificationPolicy policy, ConditionPool pool
+    ) throws DerEncodingException, IOException {
+
+      List<Condition> subconditions = new ArrayList<>();
+
+      AtomicInteger subconditionsBytesRead = new AtomicInteger();
+      while (subconditionsBytesRead.get() < length) {
+        final Condition subcondition = readCondition(in, subconditionsBytesRead);
+        policy.checkCondition(subcondition);
+        subconditions.add(intern(pool, subcondition));
+      }
+      innerBytesRead.addAndGet(subconditionsBytesRead.get());
 
-        // It is legal (per the encoding rules) for a THRESHOLD fulfillment to have only
-        // sub-conditions even though it will never verify so we need to check if we've
-        // skipped tag number 0
-        if (tag == 0) {
+      bytesRead.addAndGet(innerBytesRead.get());
 
-          AtomicInteger subfulfillmentsBytesRead = new AtomicInteger();
-          while (subfulfillmentsBytesRead.get() < length) {
-            subfulfillments.add(readFulfillment(in, subfulfillmentsBytesRead));
-          }
-          innerBytesRead.addAndGet(subfulfillmentsBytesRead.get());
+      // The threshold is the number of subfulfillments, as in ThresholdSha256Fulfillment.
+      final List<DerivedCondition> allConditions = new ArrayList<>();
+      for (int i = 0; i < subconditions.size(); i++) {
+        allConditions.add(DerivedCondition.of(subconditions.get(i)));
+      }
+      for (int i = 0; i < subfulfillments.size(); i++) {
+        allConditions.add(DerivedCondition.of(subfulfillments.get(i).getCondition()));
+      }
+      final DerivedCondition thresholdCondition =
+          DerivedCondition.threshold(subfulfillments.size(), allConditions);
+      policy.checkCost(thresholdCondition.getCost());
 
-          in.readTag(1, innerBytesRead, DerTag.CONSTRUCTED, DerTag.TAGGED);
-          length = in.readLength(innerBytesRead);
+      fulfillment = intern(pool, new ThresholdSha256Fulfillment(subconditions, subfulfillments,
+          intern(pool, (ThresholdSha256Condition) thresholdCondition.toCondition())));
+    }
+  }
 
-        } else if (tag != 1) {
-          throw new DerEncodingException("Expected tag: 1, got: " + tag);
-        }
+  private static Fulfillment readPreimage(
+      DerInputStream in, int length, AtomicInteger bytesRead, AtomicInteger innerBytesRead,
+      VerificationPolicy policy, ConditionPool pool
+  ) throws DerEncodingException, IOException {
 
-        List<Condition> subconditions = new ArrayList<>();
+    byte[] preimage =
+        in.readTaggedObject(0, length - innerBytesRead.get(), innerBytesRead).getValue();
 
-        AtomicInteger subconditionsBytesRead = new AtomicInteger();
-        while (subconditionsBytesRead.get() < length) {
-          subconditions.add(readCondition(in, subconditionsBytesRead));
-        }
-        innerBytesRead.addAndGet(subconditionsBytesRead.get());
+    bytesRead.addAndGet(innerBytesRead.get());
 
-        bytesRead.addAndGet(innerBytesRead.get());
+    final DerivedCondition preimageCondition =
+        DerivedCondition.preimage(preimage, 0, preimage.length);
+    policy.checkCost(preimageCondition.getCost());
 
-        return new ThresholdSha256Fulfillment(subconditions, subfulfillments);
+    return intern(pool, new PreimageSha256Fulfillment(preimage,
+        intern(pool, (PreimageSha256Condition) preimageCondition.toCondition())));
+  }
 
-      case RSA_SHA256:
+  private static Fulfillment readRsa(
+      DerInputStream in, int length, AtomicInteger bytesRead, AtomicInteger innerBytesRead,
+      VerificationPolicy policy, ConditionPool pool
+  ) throws DerEncodingException, IOException {
 
-        final BigInteger modulus = UnsignedBigInteger.fromUnsignedByteArray(
-            in.readTaggedObject(0, length - innerBytesRead.get(), innerBytesRead).getValue()
-        );
+    final byte[] modulusBytes =
+        in.readTaggedObject(0, length - innerBytesRead.get(), innerBytesRead).getValue();
+    final BigInteger modulus = UnsignedBigInteger.fromUnsignedByteArray(modulusBytes);
 
-        final byte[] rsaSignature = in.readTaggedObject(
-            1, length - innerBytesRead.get(), innerBytesRead
-        ).getValue();
+    final byte[] rsaSignature = in.readTaggedObject(
+        1, length - innerBytesRead.get(), innerBytesRead
+    ).getValue();
 
-        bytesRead.addAndGet(innerBytesRead.get());
+    bytesRead.addAndGet(innerBytesRead.get());
 
-        final RSAPublicKeySpec rsaSpec = new RSAPublicKeySpec(
-            modulus, RsaSha256Fulfillment.PUBLIC_EXPONENT
-        );
+    final DerivedCondition rsaCondition =
+        DerivedCondition.rsa(modulusBytes, 0, modulusBytes.length);
+    policy.checkCost(rsaCondition.getCost());
 
-        try {
-          final KeyFactory rsaKeyFactory = KeyFactory.getInstance("RSA");
-          final PublicKey publicKey = rsaKeyFactory.generatePublic(rsaSpec);
+    final RSAPublicKeySpec rsaSpec = new RSAPublicKeySpec(
+        modulus, RsaSha256Fulfillment.PUBLIC_EXPONENT
+    );
 
-          return new RsaSha256Fulfillment((RSAPublicKey) publicKey, rsaSignature);
+    try {
+      final KeyFactory rsaKeyFactory = KeyFactory.getInstance("RSA");
+      final PublicKey publicKey = rsaKeyFactory.generatePublic(rsaSpec);
 
-        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
-          throw new RuntimeException("Error creating RSA key.", e);
-        }
+      return intern(pool, new RsaSha256Fulfillment((RSAPublicKey) publicKey, rsaSignature,
+          intern(pool, (RsaSha256Condition) rsaCondition.toCondition())));
 
-      case ED25519_SHA256:
-        byte[] ed25519key =
-            in.readTaggedObject(0, length - innerBytesRead.get(), innerBytesRead).getValue();
-        byte[] ed25519Signature =
-            in.readTaggedObject(1, length - innerBytesRead.get(), innerBytesRead).getValue();
+    } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+      throw new RuntimeException("Error creating RSA key.", e);
+    }
+  }
 
-        bytesRead.addAndGet(innerBytesRead.get());
+  private static Fulfillment readEd25519(
+      DerInputStream in, int length, AtomicInteger bytesRead, AtomicInteger innerBytesRead,
+      VerificationPolicy policy, ConditionPool pool
+  ) throws DerEncodingException, IOException {
 
-        EdDSAPublicKeySpec ed25519spec = new EdDSAPublicKeySpec(ed25519key,
-            EdDSANamedCurveTable.getByName(ED_25519));
-        EdDSAPublicKey ed25519PublicKey = new EdDSAPublicKey(ed25519spec);
+    byte[] ed25519key =
+        in.readTaggedObject(0, length - innerBytesRead.get(), innerBytesRead).getValue();
+    byte[] ed25519Signature =
+        in.readTaggedObject(1, length - innerBytesRead.get(), innerBytesRead).getValue();
 
-        return new Ed25519Sha256Fulfillment(ed25519PublicKey, ed25519Signature);
+    bytesRead.addAndGet(innerBytesRead.get());
 
-      default:
-        throw new DerEncodingException("Unrecogized condition type: " + type);
+    EdDSAPublicKeySpec ed25519spec = new EdDSAPublicKeySpec(ed25519key,
+        EdDSANamedCurveTable.getByName(ED_25519));
+    EdDSAPublicKey ed25519PublicKey = new EdDSAPublicKey(ed25519spec);
+
+    // The fingerprint covers the canonical encoding of the key, which the key already holds.
+    final byte[] canonicalKey = ed25519PublicKey.getAbyte();
+    final DerivedCondition ed25519Condition =
+        DerivedCondition.ed25519(canonicalKey, 0, canonicalKey.length);
+    policy.checkCost(ed25519Condition.getCost());
+
+    return intern(pool, new Ed25519Sha256Fulfillment(ed25519PublicKey, ed25519Signature,
+        intern(pool, (Ed25519Sha256Condition) ed25519Condition.toCondition())));
+  }
+
+  private static <T extends Condition> T intern(ConditionPool pool, T condition) {
+    return pool == null ? condition : pool.internCondition(condition);
+  }
+
+  private static <T extends Fulfillment> T intern(ConditionPool pool, T fulfillment) {
+    return pool == null ? fulfillment : pool.internFulfillment(fulfillment);
+  }
+
+  /**
+   * An {@link InputStream} over the remaining bytes of a buffer, which reads from a duplicate so
+   * that the position of the buffer is not changed.
+   */
+  private static final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    private ByteBufferInputStream(final ByteBuffer buffer) {
+      this.buffer = buffer.duplicate();
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      final int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
     }
   }
 }
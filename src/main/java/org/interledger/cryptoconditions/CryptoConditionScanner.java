@@ -0,0 +1,493 @@
+package org.interledger.cryptoconditions;
+
+import org.interledger.cryptoconditions.der.DerCursor;
+import org.interledger.cryptoconditions.der.DerEncodingException;
+import org.interledger.cryptoconditions.der.DerTag;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * <p>Scans DER encoded conditions and fulfillments, reporting their structure and fields to a
+ * {@link ConditionVisitor} or {@link FulfillmentVisitor} without constructing any {@link
+ * Condition} or {@link Fulfillment} objects.</p>
+ *
+ * <p>Scanning is driven directly by the tags and lengths in the buffer, and nothing is copied out
+ * of it. Nested fulfillments are scanned with an explicit stack, so deep nesting cannot overflow
+ * the thread stack. Callers that only need a few facts about a fulfillment, such as the types it
+ * contains or the number of subfulfillments, can collect them in a single pass and skip the
+ * subtrees that they are not interested in.</p>
+ *
+ * <p>Scanning accepts the same encodings as {@link CryptoConditionReader}, except that every
+ * constructed value must be exactly filled by its contents. The {@code validate} methods perform
+ * the same pass with no visitor, and also require the encoding to be canonical: lengths and
+ * integers must be minimally encoded, integers must not be negative, subtypes must be encoded
+ * without trailing zero bits, RSA moduli must not have leading zeros, the subfulfillments of a
+ * THRESHOLD-SHA-256 fulfillment must not be omitted and no bytes may follow the encoding.</p>
+ *
+ * <p>All problems are reported with a {@link DerEncodingException} that carries the offset of the
+ * problem. Scanning itself raises lightweight exceptions, which only get a message and a stack
+ * trace once they reach a public method.</p>
+ */
+public class CryptoConditionScanner {
+
+  private static final int TAGGED = DerTag.TAGGED.getTag();
+  private static final int CONSTRUCTED_TAGGED = DerTag.CONSTRUCTED.getTag() + TAGGED;
+
+  private static final CryptoConditionType[] TYPES = CryptoConditionType.values();
+
+  private static final int FINGERPRINT_LENGTH = 32;
+  private static final int ED25519_KEY_LENGTH = 32;
+
+  /**
+   * Used when validating, which visits every part of a fulfillment but does nothing with it.
+   */
+  private static final FulfillmentVisitor NO_OP_VISITOR = new FulfillmentVisitor() {
+  };
+
+  // Each frame of the stack holds a compound fulfillment whose subfulfillments are being scanned.
+  private static final int FRAME_TYPE = 0;
+  private static final int FRAME_DEPTH = 1;
+  private static final int FRAME_END = 2;
+  private static final int FRAME_CHILDREN_END = 3;
+  private static final int FRAME_SIZE = 4;
+
+  private final DerCursor cursor;
+  private final byte[] buffer;
+  private final boolean canonical;
+
+  private int[] stack = new int[8 * FRAME_SIZE];
+  private int stackSize;
+
+  private CryptoConditionScanner(final DerCursor cursor, final boolean canonical) {
+    this.cursor = cursor;
+    this.buffer = cursor.getBuffer();
+    this.canonical = canonical;
+  }
+
+  /**
+   * Scans a DER encoded condition.
+   *
+   * @param buffer  The buffer holding the DER encoded condition.
+   * @param visitor The {@link ConditionVisitor} to report the condition to.
+   *
+   * @throws DerEncodingException if the encoding is malformed.
+   */
+  public static void scanCondition(final byte[] buffer, final ConditionVisitor visitor)
+      throws DerEncodingException {
+    Objects.requireNonNull(visitor, "Visitor must not be null!");
+
+    final CryptoConditionScanner scanner = new CryptoConditionScanner(new DerCursor(buffer), false);
+    try {
+      scanner.scanConditionAt(buffer.length, visitor);
+    } catch (DerEncodingException e) {
+      throw e.withStackTrace();
+    }
+  }
+
+  /**
+   * Scans a DER encoded fulfillment.
+   *
+   * @param buffer  The buffer holding the DER encoded fulfillment.
+   * @param visitor The {@link FulfillmentVisitor} to report the fulfillment to.
+   *
+   * @throws DerEncodingException if the encoding is malformed.
+   */
+  public static void scanFulfillment(final byte[] buffer, final FulfillmentVisitor visitor)
+      throws DerEncodingException {
+    scanFulfillment(buffer, 0, buffer.length, visitor);
+  }
+
+  /**
+   * Scans a DER encoded fulfillment. Offsets reported to {@code visitor} are positions within the
+   * whole of {@code buffer}.
+   *
+   * @param buffer  The buffer holding the DER encoded fulfillment.
+   * @param offset  The position within the buffer to begin scanning.
+   * @param length  The number of bytes that may be scanned.
+   * @param visitor The {@link FulfillmentVisitor} to report the fulfillment to.
+   *
+   * @throws DerEncodingException if the encoding is malformed.
+   */
+  public static void scanFulfillment(
+      final byte[] buffer, final int offset, final int length, final FulfillmentVisitor visitor
+  ) throws DerEncodingException {
+    Objects.requireNonNull(visitor, "Visitor must not be null!");
+
+    final CryptoConditionScanner scanner =
+        new CryptoConditionScanner(new DerCursor(buffer, offset, length), false);
+    try {
+      scanner.scanFulfillmentAt(offset + length, visitor);
+    } catch (DerEncodingException e) {
+      throw e.withStackTrace();
+    }
+  }
+
+  /**
+   * Checks that a buffer holds exactly one canonically encoded condition.
+   *
+   * @param buffer The buffer holding the DER encoded condition.
+   *
+   * @throws DerEncodingException if the encoding is malformed or not canonical.
+   */
+  public static void validateCondition(final byte[] buffer) throws DerEncodingException {
+    final CryptoConditionScanner scanner = new CryptoConditionScanner(new DerCursor(buffer), true);
+    try {
+      scanner.scanConditionAt(buffer.length, NO_OP_VISITOR);
+      scanner.checkEnd(buffer.length);
+    } catch (DerEncodingException e) {
+      throw e.withStackTrace();
+    }
+  }
+
+  /**
+   * Checks that a buffer holds exactly one canonically encoded fulfillment, in a single pass and
+   * without constructing it.
+   *
+   * @param buffer The buffer holding the DER encoded fulfillment.
+   *
+   * @throws DerEncodingException if the encoding is malformed or not canonical.
+   */
+  public static void validateFulfillment(final byte[] buffer) throws DerEncodingException {
+    final CryptoConditionScanner scanner = new CryptoConditionScanner(new DerCursor(buffer), true);
+    try {
+      scanner.scanFulfillmentAt(buffer.length, NO_OP_VISITOR);
+      scanner.checkEnd(buffer.length);
+    } catch (DerEncodingException e) {
+      throw e.withStackTrace();
+    }
+  }
+
+  /**
+   * Scans a fulfillment and all of its subfulfillments.
+   *
+   * @param limit The position after the last byte that the fulfillment may occupy.
+   */
+  private void scanFulfillmentAt(int limit, final FulfillmentVisitor visitor)
+      throws DerEncodingException {
+
+    int depth = 1;
+    while (depth > 0) {
+      final int offset = cursor.getPosition();
+      final CryptoConditionType type = readType(limit);
+      final int length = readLength(limit);
+      if (length == 0) {
+        throw new DerEncodingException(offset, () -> "Encountered an empty fulfillment.");
+      }
+      final int end = cursor.getPosition() + length;
+
+      if (!visitor.enterFulfillment(type, depth, offset, end - offset)) {
+        cursor.skip(length);
+      } else {
+        final int childrenEnd = scanContents(type, end, visitor);
+        if (childrenEnd > cursor.getPosition()) {
+          // Scan the first subfulfillment next.
+          push(type, depth, end, childrenEnd);
+          depth++;
+          limit = childrenEnd;
+          continue;
+        }
+        if (type == CryptoConditionType.THRESHOLD_SHA256) {
+          scanSubconditions(end, visitor);
+        }
+        checkEnd(end);
+        visitor.exitFulfillment(type, depth);
+      }
+
+      // Complete every enclosing fulfillment whose subfulfillments have all been scanned.
+      depth = 0;
+      while (stackSize > 0) {
+        final int top = stackSize - FRAME_SIZE;
+        final CryptoConditionType parentType = TYPES[stack[top + FRAME_TYPE]];
+        final int parentEnd = stack[top + FRAME_END];
+        final int childrenEnd = stack[top + FRAME_CHILDREN_END];
+
+        if (cursor.getPosition() < childrenEnd) {
+          // Scan the next subfulfillment.
+          depth = stack[top + FRAME_DEPTH] + 1;
+          limit = childrenEnd;
+          break;
+        }
+        checkEnd(childrenEnd);
+        if (parentType == CryptoConditionType.THRESHOLD_SHA256) {
+          scanSubconditions(parentEnd, visitor);
+        }
+        checkEnd(parentEnd);
+        stackSize = top;
+        visitor.exitFulfillment(parentType, stack[top + FRAME_DEPTH]);
+      }
+    }
+  }
+
+  /**
+   * Scans the fields of a fulfillment, up to its subfulfillments if it has any.
+   *
+   * @param end The position after the last byte of the fulfillment.
+   *
+   * @return The position after the last byte of the subfulfillments, or the current position if
+   *     there are none.
+   */
+  private int scanContents(
+      final CryptoConditionType type, final int end, final FulfillmentVisitor visitor
+  ) throws DerEncodingException {
+
+    switch (type) {
+      case PREIMAGE_SHA256: {
+        final int length = readPrimitive(TAGGED, end);
+        visitor.visitPreimage(buffer, cursor.getPosition(), length);
+        cursor.skip(length);
+        return cursor.getPosition();
+      }
+
+      case PREFIX_SHA256: {
+        final int length = readPrimitive(TAGGED, end);
+        final int offset = cursor.getPosition();
+        cursor.skip(length);
+        final long maxMessageLength = readInteger(TAGGED + 1, end);
+        visitor.visitPrefix(buffer, offset, length, maxMessageLength);
+
+        final int headerOffset = cursor.getPosition();
+        readTag(CONSTRUCTED_TAGGED + 2, end);
+        final int subfulfillmentLength = readLength(end);
+        if (subfulfillmentLength == 0) {
+          throw new DerEncodingException(headerOffset,
+              () -> "Encountered an empty subfulfillment.");
+        }
+        return cursor.getPosition() + subfulfillmentLength;
+      }
+
+      case THRESHOLD_SHA256: {
+        final int headerOffset = cursor.getPosition();
+        if (headerOffset < end && (buffer[headerOffset] & 0xFF) == CONSTRUCTED_TAGGED) {
+          cursor.skip(1);
+          final int length = readLength(end);
+          return cursor.getPosition() + length;
+        }
+        if (canonical) {
+          throw new DerEncodingException(headerOffset,
+              () -> "Expected tag: " + Integer.toHexString(CONSTRUCTED_TAGGED) + ", got: "
+                  + Integer.toHexString(buffer[headerOffset] & 0xFF));
+        }
+        // As in CryptoConditionReader, the subfulfillments may be omitted entirely.
+        return cursor.getPosition();
+      }
+
+      case RSA_SHA256: {
+        final int modulusLength = readPrimitive(TAGGED, end);
+        final int modulusOffset = cursor.getPosition();
+        if (canonical && modulusLength > 0 && buffer[modulusOffset] == 0) {
+          throw new DerEncodingException(modulusOffset,
+              () -> "RSA modulus has a leading zero.");
+        }
+        visitor.visitPublicKey(type, buffer, modulusOffset, modulusLength);
+        cursor.skip(modulusLength);
+        scanSignature(type, end, visitor);
+        return cursor.getPosition();
+      }
+
+      default: {
+        final int keyLength = readPrimitive(TAGGED, end);
+        final int keyOffset = cursor.getPosition();
+        if (keyLength != ED25519_KEY_LENGTH) {
+          throw new DerEncodingException(keyOffset, () -> "public-key length is wrong");
+        }
+        visitor.visitPublicKey(type, buffer, keyOffset, keyLength);
+        cursor.skip(keyLength);
+        scanSignature(type, end, visitor);
+        return cursor.getPosition();
+      }
+    }
+  }
+
+  private void scanSignature(
+      final CryptoConditionType type, final int end, final FulfillmentVisitor visitor
+  ) throws DerEncodingException {
+    final int length = readPrimitive(TAGGED + 1, end);
+    visitor.visitSignature(type, buffer, cursor.getPosition(), length);
+    cursor.skip(length);
+  }
+
+  /**
+   * Scans the unfulfilled subconditions of a THRESHOLD-SHA-256 fulfillment.
+   */
+  private void scanSubconditions(final int end, final ConditionVisitor visitor)
+      throws DerEncodingException {
+    readTag(CONSTRUCTED_TAGGED + 1, end);
+    final int setLength = readLength(end);
+    final int setEnd = cursor.getPosition() + setLength;
+    while (cursor.getPosition() < setEnd) {
+      scanConditionAt(setEnd, visitor);
+    }
+  }
+
+  /**
+   * Scans a single condition.
+   *
+   * @param limit The position after the last byte that the condition may occupy.
+   */
+  private void scanConditionAt(final int limit, final ConditionVisitor visitor)
+      throws DerEncodingException {
+    final CryptoConditionType type = readType(limit);
+    final int length = readLength(limit);
+    final int end = cursor.getPosition() + length;
+
+    final int fingerprintLength = readPrimitive(TAGGED, end);
+    final int fingerprintOffset = cursor.getPosition();
+    if (fingerprintLength != FINGERPRINT_LENGTH) {
+      throw new DerEncodingException(fingerprintOffset, () -> "Fingerprint must be 32 bytes.");
+    }
+    cursor.skip(fingerprintLength);
+
+    final long cost = readInteger(TAGGED + 1, end);
+
+    int subtypes = 0;
+    if (type == CryptoConditionType.PREFIX_SHA256
+        || type == CryptoConditionType.THRESHOLD_SHA256) {
+      subtypes = readSubtypes(end);
+    }
+    checkEnd(end);
+
+    visitor.visitCondition(type, cost, buffer, fingerprintOffset, subtypes);
+  }
+
+  /**
+   * Reads a set of subtypes, encoded as a BIT STRING, applying the same rules as {@link
+   * CryptoConditionType#getMaskFromBitString(byte[])}.
+   *
+   * @return The subtypes, as a type mask.
+   */
+  private int readSubtypes(final int end) throws DerEncodingException {
+    final int length = readPrimitive(TAGGED + 2, end);
+    final int offset = cursor.getPosition();
+    if (length == 1) {
+      throw new DerEncodingException(offset, () -> "Corrupt bit string.");
+    }
+    if (length > 2 || (length == 2 && buffer[offset] < 3)) {
+      throw new DerEncodingException(offset, () -> "Unknown rsa in bit string.");
+    }
+    cursor.skip(length);
+    if (length == 0) {
+      return 0;
+    }
+
+    final int padBits = buffer[offset];
+    final int bits = buffer[offset + 1] & 0xFF;
+    // The last used bit is set, and the unused bits that follow it are clear.
+    if (canonical && (padBits > 7 || (bits & (0xFF >> (7 - padBits))) != 1 << padBits)) {
+      throw new DerEncodingException(offset, () -> "Bit string is not canonically encoded.");
+    }
+
+    return CryptoConditionType.getMaskOfBits(bits);
+  }
+
+  /**
+   * Reads the tag of a condition or fulfillment, which identifies its type.
+   */
+  private CryptoConditionType readType(final int limit) throws DerEncodingException {
+    final int offset = cursor.getPosition();
+    if (offset >= limit) {
+      throw new DerEncodingException(offset, () -> "Expected tag, got end of stream.");
+    }
+    final int tag = cursor.readTag() - CONSTRUCTED_TAGGED;
+    if (tag < 0) {
+      throw new DerEncodingException(offset,
+          () -> "Some flags are missing resulting in a tag value of < 0.");
+    }
+    final CryptoConditionType type = CryptoConditionType.lookup(tag);
+    if (type == null) {
+      throw new DerEncodingException(offset, () -> "Invalid Condition Type code.");
+    }
+    return type;
+  }
+
+  private void readTag(final int expectedTag, final int limit) throws DerEncodingException {
+    if (cursor.getPosition() >= limit) {
+      throw new DerEncodingException(cursor.getPosition(),
+          () -> "Expected tag, got end of stream.");
+    }
+    cursor.readTag(expectedTag);
+  }
+
+  /**
+   * Reads a length, which must fit before {@code limit} and, when validating, must be minimally
+   * encoded.
+   */
+  private int readLength(final int limit) throws DerEncodingException {
+    final int offset = cursor.getPosition();
+    if (offset >= limit) {
+      throw new DerEncodingException(offset, () -> "End of stream found reading length.");
+    }
+    final int length = cursor.readLength();
+    if (length > limit - cursor.getPosition()) {
+      throw new DerEncodingException(offset,
+          () -> "Object length [" + length + "] is larger than allowed.");
+    }
+    if (canonical && cursor.getPosition() - offset != lengthOfLength(length)) {
+      throw new DerEncodingException(offset, () -> "Length is not minimally encoded.");
+    }
+    return length;
+  }
+
+  /**
+   * Reads the tag and length of a primitive value, leaving the cursor at the start of its value.
+   */
+  private int readPrimitive(final int expectedTag, final int limit) throws DerEncodingException {
+    readTag(expectedTag, limit);
+    return readLength(limit);
+  }
+
+  /**
+   * Reads an INTEGER which, when validating, must be minimally encoded, not negative and fit in a
+   * {@code long}.
+   */
+  private long readInteger(final int expectedTag, final int limit) throws DerEncodingException {
+    final int length = readPrimitive(expectedTag, limit);
+    final int offset = cursor.getPosition();
+    if (canonical && length > 0) {
+      if (buffer[offset] < 0) {
+        throw new DerEncodingException(offset, () -> "Integer must not be negative.");
+      }
+      if (length > 1 && buffer[offset] == 0 && buffer[offset + 1] >= 0) {
+        throw new DerEncodingException(offset, () -> "Integer is not minimally encoded.");
+      }
+      if (length > 8) {
+        throw new DerEncodingException(offset, () -> "Integer is too large.");
+      }
+    }
+    return cursor.readLong(length);
+  }
+
+  /**
+   * Checks that the cursor has reached the end of a value.
+   */
+  private void checkEnd(final int end) throws DerEncodingException {
+    final int position = cursor.getPosition();
+    if (position != end) {
+      throw new DerEncodingException(position,
+          () -> "Expected end of value at [" + end + "], found more bytes.");
+    }
+  }
+
+  private void push(
+      final CryptoConditionType type, final int depth, final int end, final int childrenEnd
+  ) {
+    if (stackSize == stack.length) {
+      stack = Arrays.copyOf(stack, stack.length * 2);
+    }
+    stack[stackSize + FRAME_TYPE] = type.ordinal();
+    stack[stackSize + FRAME_DEPTH] = depth;
+    stack[stackSize + FRAME_END] = end;
+    stack[stackSize + FRAME_CHILDREN_END] = childrenEnd;
+    stackSize += FRAME_SIZE;
+  }
+
+  /**
+   * The number of bytes in the minimal encoding of a DER length.
+   */
+  private static int lengthOfLength(final int length) {
+    if (length < 128) {
+      return 1;
+    }
+    return 1 + (32 - Integer.numberOfLeadingZeros(length) + 7) / 8;
+  }
+}
@@ -1,7 +1,9 @@
 package org.interledger.cryptoconditions;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.Locale;
 import java.util.Objects;
 
 /**
@@ -15,8 +17,52 @@ public enum CryptoConditionType {
   RSA_SHA256(3, "RSA-SHA-256", 0x10, 0),
   ED25519_SHA256(4, "ED25519-SHA-256", 0x08, 0);
 
+  /**
+   * The types, indexed by type code.
+   */
+  private static final CryptoConditionType[] BY_TYPE_CODE;
+
+  /**
+   * The types, in the alphabetical order of their lower-case names.
+   */
+  private static final CryptoConditionType[] BY_SORTED_NAME;
+
+  /**
+   * The type mask for each value of the byte that follows the padding count in a subtypes BIT
+   * STRING.
+   */
+  private static final int[] MASK_OF_BITS = new int[256];
+
+  /**
+   * The type mask of all known types.
+   */
+  static final int ALL_TYPES_MASK;
+
+  static {
+    final CryptoConditionType[] types = values();
+
+    BY_TYPE_CODE = new CryptoConditionType[types.length];
+    for (CryptoConditionType type : types) {
+      BY_TYPE_CODE[type.typeCode] = type;
+    }
+
+    ALL_TYPES_MASK = (1 << types.length) - 1;
+
+    BY_SORTED_NAME = types.clone();
+    Arrays.sort(BY_SORTED_NAME, (t1, t2) -> t1.lowerCaseName.compareTo(t2.lowerCaseName));
+
+    for (int bits = 0; bits < MASK_OF_BITS.length; bits++) {
+      for (CryptoConditionType type : types) {
+        if ((bits & type.bitMask) != 0) {
+          MASK_OF_BITS[bits] |= type.getTypeMask();
+        }
+      }
+    }
+  }
+
   private final int typeCode;
   private final String name;
+  private final String lowerCaseName;
   private final int bitMask;
   private final int byteIndex;
 
@@ -25,6 +71,7 @@ public enum CryptoConditionType {
   ) {
     this.typeCode = typeCode;
     this.name = Objects.requireNonNull(algorithmName);
+    this.lowerCaseName = algorithmName.toLowerCase(Locale.ENGLISH);
     this.bitMask = bitMask;
     this.byteIndex = byteIndex;
   }
@@ -41,10 +88,29 @@ public enum CryptoConditionType {
     return this.name;
   }
 
+  /**
+   * Returns the name of this type in lower case, as it appears in condition URIs.
+   */
+  String getLowerCaseName() {
+    return this.lowerCaseName;
+  }
+
+  /**
+   * Returns the bit that identifies this type in the BIT STRING encoding of a set of subtypes.
+   */
   public int getMask() {
     return this.bitMask;
   }
 
+  /**
+   * Returns the bit that identifies this type in a type mask, which is {@code 1 << typeCode}. Type
+   * masks represent sets of subtypes as a single {@code int}, so that they can be combined and
+   * tested with integer operations.
+   */
+  public int getTypeMask() {
+    return 1 << this.typeCode;
+  }
+
   public int getByteIndex() {
     return this.byteIndex;
   }
@@ -60,78 +126,259 @@ public enum CryptoConditionType {
    * @return The matching condition type, if one can be found.
    */
   public static CryptoConditionType valueOf(int typeCode) {
-    for (CryptoConditionType conditionType : EnumSet.allOf(CryptoConditionType.class)) {
-      if (typeCode == conditionType.typeCode) {
-        return conditionType;
+    final CryptoConditionType conditionType = lookup(typeCode);
+    if (conditionType == null) {
+      throw new IllegalArgumentException("Invalid Condition Type code.");
+    }
+    return conditionType;
+  }
+
+  /**
+   * Finds the type with the supplied type code without throwing, for callers that reject unknown
+   * types without building an exception.
+   *
+   * @param typeCode The ASN.1 enumeration number of a type.
+   *
+   * @return The matching type, or {@code null} if there is none.
+   */
+  static CryptoConditionType lookup(int typeCode) {
+    return typeCode >= 0 && typeCode < BY_TYPE_CODE.length ? BY_TYPE_CODE[typeCode] : null;
+  }
+
+  /**
+   * Finds the type whose name matches a range of characters, ignoring case in the same way as
+   * {@link String#equalsIgnoreCase(String)}, without copying the range.
+   *
+   * @return The type, or {@code null} if no type has that name.
+   */
+  static CryptoConditionType lookupName(final CharSequence chars, final int start, final int end) {
+    for (CryptoConditionType type : BY_TYPE_CODE) {
+      if (type.name.length() == end - start && matchesIgnoreCase(type.name, chars, start)) {
+        return type;
       }
     }
+    return null;
+  }
 
-    throw new IllegalArgumentException("Invalid Condition Type code.");
+  private static boolean matchesIgnoreCase(
+      final String name, final CharSequence chars, final int start
+  ) {
+    for (int i = 0; i < name.length(); i++) {
+      final char c1 = name.charAt(i);
+      final char c2 = chars.charAt(start + i);
+      if (c1 == c2) {
+        continue;
+      }
+      final char u1 = Character.toUpperCase(c1);
+      final char u2 = Character.toUpperCase(c2);
+      if (u1 != u2 && Character.toLowerCase(u1) != Character.toLowerCase(u2)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   /**
-   * TODO This will break if the possible rsa exceeds 8. Only works for our current known set.
-   * Convert a set of rsa into a byte that can be used to encode a BIT STRING.
+   * Convert a set of types into a type mask.
+   *
+   * @param types A set of types.
+   *
+   * @return A mask with the bit {@link #getTypeMask()} set for each type in {@code types}.
+   */
+  public static int getMaskOfTypes(EnumSet<CryptoConditionType> types) {
+    int mask = 0;
+    for (CryptoConditionType type : types) {
+      mask |= type.getTypeMask();
+    }
+    return mask;
+  }
+
+  /**
+   * Convert a type mask into a set of types. Bits that do not identify a known type are ignored.
+   *
+   * @param mask A type mask.
+   *
+   * @return A new set of the types in {@code mask}.
+   */
+  public static EnumSet<CryptoConditionType> getTypesOfMask(int mask) {
+    final EnumSet<CryptoConditionType> types = EnumSet.noneOf(CryptoConditionType.class);
+    for (CryptoConditionType type : BY_TYPE_CODE) {
+      if ((mask & type.getTypeMask()) != 0) {
+        types.add(type);
+      }
+    }
+    return types;
+  }
+
+  /**
+   * Convert a type mask into the raw BIT STRING encoding of a set of subtypes.
+   *
+   * @param mask A type mask.
    *
-   * @param types set of rsa to encode as a BIT STRING.
    * @return byte array where first byte indicates the number of unused bits in last byte and
    *     remaining bytes encode the bit string
    */
-  public static byte[] getEnumOfTypesAsBitString(EnumSet<CryptoConditionType> types) {
+  public static byte[] getMaskAsBitString(int mask) {
+    final int knownTypes = mask & ALL_TYPES_MASK;
+    if (knownTypes == 0) {
+      return new byte[] {(byte) 0x00};
+    }
+    final int lastUsedBit = 31 - Integer.numberOfLeadingZeros(knownTypes);
+    // Type code n is bit n of the mask, but the n-th bit from the left of the BIT STRING.
+    return new byte[] {(byte) (7 - lastUsedBit), (byte) (Integer.reverse(knownTypes) >>> 24)};
+  }
 
-    byte[] data = new byte[2];
-    int lastUsedBit = -1;
+  /**
+   * Get the type mask represented by a raw bit string, applying the same rules as {@link
+   * #getEnumOfTypesFromBitString(byte[])}.
+   *
+   * @param bitStringData a raw BIT STRING including the padding bit count in the first byte
+   * @return A type mask.
+   */
+  public static int getMaskFromBitString(byte[] bitStringData) {
 
-    // No guarantee that iterating through the rsa will be done in order so just test for each
-    if (types.contains(PREIMAGE_SHA256)) {
-      data[1] += CryptoConditionType.PREIMAGE_SHA256.getMask();
-      lastUsedBit = PREIMAGE_SHA256.getTypeCode();
+    // We only have 5 known types so shouldn't be more than a padding byte and the bitmap
+    if (bitStringData.length > 2) {
+      throw new IllegalArgumentException("Unknown rsa in bit string.");
     }
 
-    if (types.contains(PREFIX_SHA256)) {
-      data[1] += CryptoConditionType.PREFIX_SHA256.getMask();
-      lastUsedBit = PREFIX_SHA256.getTypeCode();
+    if (bitStringData.length == 1) {
+      throw new IllegalArgumentException("Corrupt bit string.");
     }
 
-    if (types.contains(THRESHOLD_SHA256)) {
-      data[1] += CryptoConditionType.THRESHOLD_SHA256.getMask();
-      lastUsedBit = THRESHOLD_SHA256.getTypeCode();
+    if (bitStringData.length == 0) {
+      return 0;
     }
 
-    if (types.contains(RSA_SHA256)) {
-      data[1] += CryptoConditionType.RSA_SHA256.getMask();
-      lastUsedBit = RSA_SHA256.getTypeCode();
+    // We only have 5 known types so should have at least 3 padding bits
+    if (bitStringData[0] < 3) {
+      throw new IllegalArgumentException("Unknown rsa in bit string.");
     }
 
-    if (types.contains(ED25519_SHA256)) {
-      data[1] += CryptoConditionType.ED25519_SHA256.getMask();
-      lastUsedBit = ED25519_SHA256.getTypeCode();
+    return getMaskOfBits(bitStringData[1]);
+  }
+
+  /**
+   * Get the type mask represented by the byte that follows the padding count in a subtypes BIT
+   * STRING, once its length and padding have been checked.
+   */
+  static int getMaskOfBits(int bits) {
+    return MASK_OF_BITS[bits & 0xFF];
+  }
+
+  /**
+   * Convert a type mask into a comma separated list of lower-case type names, in alphabetical
+   * order.
+   *
+   * @param mask A type mask.
+   */
+  public static String getMaskAsString(int mask) {
+    final StringBuilder sb = new StringBuilder();
+    for (CryptoConditionType type : BY_SORTED_NAME) {
+      if ((mask & type.getTypeMask()) != 0) {
+        if (sb.length() > 0) {
+          sb.append(',');
+        }
+        sb.append(type.lowerCaseName);
+      }
     }
+    return sb.toString();
+  }
 
-    if (lastUsedBit > -1) {
-      data[0] = (byte) (7 - lastUsedBit);
-      return data;
-    } else {
-      return new byte[] {(byte) 0x00};
+  /**
+   * Appends the names of the types in a type mask, as {@link #getMaskAsString(int)} lists them,
+   * without building the list first.
+   *
+   * @param mask A type mask.
+   * @param out  The destination of the names.
+   */
+  static void appendMaskAsString(final int mask, final Appendable out) throws IOException {
+    boolean first = true;
+    for (CryptoConditionType type : BY_SORTED_NAME) {
+      if ((mask & type.getTypeMask()) != 0) {
+        if (!first) {
+          out.append(',');
+        }
+        out.append(type.lowerCaseName);
+        first = false;
+      }
     }
   }
 
   /**
-   * Convert a set of rsa into a comma separated list.
+   * Convert a comma separated list of type names into a type mask.
    *
-   * @param types set of rsa to encode
+   * @param subtypes a comma separated list of type names.
+   * @return A type mask.
    */
-  public static String getEnumOfTypesAsString(EnumSet<CryptoConditionType> types) {
+  public static int getMaskFromString(String subtypes) {
+    return subtypes == null ? 0 : getMaskOfNames(subtypes);
+  }
+
+  /**
+   * Convert a comma separated list of type names into a type mask, as {@link
+   * #getMaskFromString(String)} does, without copying any of the names.
+   */
+  static int getMaskOfNames(final CharSequence subtypes) {
+    return getMaskOfNames(subtypes, 0, subtypes.length());
+  }
+
+  /**
+   * Convert the comma separated list of type names in a range of characters into a type mask, as
+   * {@link #getMaskOfNames(CharSequence)} does.
+   */
+  static int getMaskOfNames(final CharSequence subtypes, final int start, final int end) {
+    // A blank list, as String.trim() would find it, is empty
+    int first = start;
+    while (first < end && subtypes.charAt(first) <= ' ') {
+      first++;
+    }
+    if (first == end) {
+      return 0;
+    }
 
-    String[] names = new String[types.size()];
-    int idx = 0;
-    for (CryptoConditionType conditionType : types) {
-      names[idx++] = conditionType.toString().toLowerCase();
+    // Trailing empty names are ignored, as they are by String.split
+    int last = end;
+    while (last > start && subtypes.charAt(last - 1) == ',') {
+      last--;
+    }
+
+    int mask = 0;
+    int nameStart = start;
+    while (nameStart < last) {
+      int nameEnd = nameStart;
+      while (nameEnd < last && subtypes.charAt(nameEnd) != ',') {
+        nameEnd++;
+      }
+      final CryptoConditionType type = lookupName(subtypes, nameStart, nameEnd);
+      if (type == null) {
+        throw new IllegalArgumentException("Invalid Condition Type name.");
+      }
+      mask |= type.getTypeMask();
+      nameStart = nameEnd + 1;
     }
+    return mask;
+  }
 
-    Arrays.sort(names);
+  /**
+   * TODO This will break if the possible rsa exceeds 8. Only works for our current known set.
+   * Convert a set of rsa into a byte that can be used to encode a BIT STRING.
+   *
+   * @param types set of rsa to encode as a BIT STRING.
+   * @return byte array where first byte indicates the number of unused bits in last byte and
+   *     remaining bytes encode the bit string
+   */
+  public static byte[] getEnumOfTypesAsBitString(EnumSet<CryptoConditionType> types) {
+    return getMaskAsBitString(getMaskOfTypes(types));
+  }
 
-    return String.join(",", names);
+  /**
+   * Convert a set of rsa into a comma separated list.
+   *
+   * @param types set of rsa to encode
+   */
+  public static String getEnumOfTypesAsString(EnumSet<CryptoConditionType> types) {
+    return getMaskAsString(getMaskOfTypes(types));
   }
 
   /**
@@ -141,13 +388,12 @@ public enum CryptoConditionType {
    * @return The condition type with matching name, if any.
    */
   public static CryptoConditionType fromString(String typeName) {
-    for (CryptoConditionType conditionType : EnumSet.allOf(CryptoConditionType.class)) {
-      if (conditionType.name.equalsIgnoreCase(typeName)) {
-        return conditionType;
-      }
+    final CryptoConditionType conditionType =
+        typeName == null ? null : lookupName(typeName, 0, typeName.length());
+    if (conditionType == null) {
+      throw new IllegalArgumentException("Invalid Condition Type name.");
     }
-
-    throw new IllegalArgumentException("Invalid Condition Type name.");
+    return conditionType;
   }
 
   /**
@@ -157,18 +403,7 @@ public enum CryptoConditionType {
    * @return A set of condition rsa based on the list.
    */
   public static EnumSet<CryptoConditionType> getEnumOfTypesFromString(String subtypes) {
-    EnumSet<CryptoConditionType> types = EnumSet.noneOf(CryptoConditionType.class);
-
-    if (subtypes == null || subtypes.trim().isEmpty()) {
-      return types;
-    }
-
-    String[] names = subtypes.split(",");
-    for (String typeName : names) {
-      types.add(CryptoConditionType.fromString(typeName));
-    }
-
-    return types;
+    return getTypesOfMask(getMaskFromString(subtypes));
   }
 
   /**
@@ -178,35 +413,6 @@ public enum CryptoConditionType {
    * @return A set of condition rsa based on the bit string.
    */
   public static EnumSet<CryptoConditionType> getEnumOfTypesFromBitString(byte[] bitStringData) {
-
-    // We only have 5 known rsa so shouldn't be more than a padding byte and the bitmap
-    if (bitStringData.length > 2) {
-      throw new IllegalArgumentException("Unknown rsa in bit string.");
-    }
-
-    if (bitStringData.length == 1) {
-      throw new IllegalArgumentException("Corrupt bit string.");
-    }
-
-    EnumSet<CryptoConditionType> subtypes = EnumSet.noneOf(CryptoConditionType.class);
-    if (bitStringData.length == 0) {
-      return subtypes;
-    }
-
-    int padBits = bitStringData[0];
-
-    // We only have 5 known rsa so should have at least 3 padding bits
-    if (padBits < 3) {
-      throw new IllegalArgumentException("Unknown rsa in bit string.");
-    }
-
-    // We only expect 1 byte of data so let's keep it simple
-    for (CryptoConditionType type : CryptoConditionType.values()) {
-      if (type.isBitSet(bitStringData)) {
-        subtypes.add(type);
-      }
-    }
-
-    return subtypes;
+    return getTypesOfMask(getMaskFromBitString(bitStringData));
   }
 }
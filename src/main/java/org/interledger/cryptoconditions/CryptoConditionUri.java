@@ -1,21 +1,13 @@
 package org.interledger.cryptoconditions;
 
-import org.interledger.cryptoconditions.NamedInformationUri.HashFunction;
-
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
-import java.util.EnumSet;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
 import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * This class is responsible for parsing a uri-formatted crypto-condition.
@@ -27,6 +19,16 @@ public class CryptoConditionUri {
   public static final String SCHEME_PREFIX = "ni://";
   public static final String HASH_FUNCTION_NAME = "sha-256";
 
+  private static final String HASH_PREFIX = "/" + HASH_FUNCTION_NAME + ";";
+  private static final int MAX_FINGERPRINT_LENGTH = 86;
+  private static final String[] PARAM_NAMES = {
+      QueryParams.TYPE, QueryParams.COST, QueryParams.SUBTYPES
+  };
+
+  /**
+   * The format of a crypto-condition URI, as a regular expression. It describes what {@link
+   * #parse(CharSequence)} accepts, but is not used when parsing.
+   */
   public static final String CONDITION_REGEX_STRICT = "^" + SCHEME_PREFIX + "([A-Za-z0-9_-]?)/"
       + HASH_FUNCTION_NAME + ";([a-zA-Z0-9_-]{0,86})\\?(.+)$";
 
@@ -46,64 +48,158 @@ public class CryptoConditionUri {
    */
   public static Condition parse(final URI uri) throws URISyntaxException {
     Objects.requireNonNull(uri);
+    return parse(uri.toString());
+  }
+
+  /**
+   * <p>Parses a URI formatted crypto-condition held as text, such as a field of a JSON document,
+   * without building a {@link URI}.</p>
+   *
+   * <p>The text is read in a single pass, accepting exactly the URIs accepted by {@link
+   * #parse(URI)} and failing with the same exceptions. Text that is not a valid URI, such as text
+   * containing spaces, may be accepted, provided that it matches {@link
+   * #CONDITION_REGEX_STRICT}.</p>
+   *
+   * @param uri The crypto-condition formatted as a URI.
+   *
+   * @return The equivalent crypto-condition.
+   */
+  public static Condition parse(final CharSequence uri) throws URISyntaxException {
+    Objects.requireNonNull(uri);
 
     // based strongly on the five bells implementation at
     // https://github.com/interledgerjs/five-bells-condition
     // (7b6a97990cd3a51ee41b276c290e4ae65feb7882)
 
-    if (!"ni".equals(uri.getScheme())) {
+    if (!regionEquals(uri, 0, uri.length(), "ni:")) {
       throw new URISyntaxException(uri.toString(), "Serialized condition must start with 'ni:'");
     }
 
-    // the regex covers the entire uri format including the 'ni:' scheme
-    Matcher matcher = Pattern.compile(CONDITION_REGEX_STRICT).matcher(uri.toString());
-
-    if (!matcher.matches()) {
+    // The same checks as CONDITION_REGEX_STRICT, which covers the entire uri format
+    final int length = uri.length();
+    int position = SCHEME_PREFIX.length();
+    if (!regionEquals(uri, 0, length, SCHEME_PREFIX)) {
       throw new URISyntaxException(uri.toString(), "Invalid condition format");
     }
-
-    Map<String, List<String>> queryParams;
-    try {
-      queryParams = splitQuery(uri.getQuery());
-    } catch (UnsupportedEncodingException x) {
+    if (position < length && isBase64UrlChar(uri.charAt(position))) {
+      position++;
+    }
+    if (!regionEquals(uri, position, length, HASH_PREFIX)) {
+      throw new URISyntaxException(uri.toString(), "Invalid condition format");
+    }
+    position += HASH_PREFIX.length();
+    final int fingerprintStart = position;
+    while (position < length && isBase64UrlChar(uri.charAt(position))) {
+      position++;
+    }
+    final int fingerprintEnd = position;
+    if (fingerprintEnd - fingerprintStart > MAX_FINGERPRINT_LENGTH || length - position < 2
+        || uri.charAt(position) != '?' || containsLineTerminator(uri, position + 1, length)) {
       throw new URISyntaxException(uri.toString(), "Invalid condition format");
     }
 
-    if (!queryParams.containsKey(QueryParams.TYPE)) {
+    // The query ends at the fragment, if there is one. Like URI#getQuery, escapes in the query are
+    // decoded before it is split into parameters, which are then each URL decoded.
+    CharSequence query = uri;
+    int queryStart = position + 1;
+    int queryEnd = queryStart;
+    while (queryEnd < length && uri.charAt(queryEnd) != '#') {
+      queryEnd++;
+    }
+    if (indexOf(uri, queryStart, queryEnd, '%') >= 0) {
+      query = decodeEscapes(uri, queryStart, queryEnd);
+      queryStart = 0;
+      queryEnd = query.length();
+    }
+
+    // Only the first value of each parameter is used. A parameter with no value is present, but
+    // its value is null. Values are kept as ranges of the characters that hold them, which are
+    // those of the query unless the value had to be decoded.
+    boolean hasType = false;
+    boolean hasCost = false;
+    boolean hasSubtypes = false;
+    CharSequence typeName = null;
+    CharSequence costValue = null;
+    CharSequence subtypesValue = null;
+    int typeStart = 0;
+    int typeEnd = 0;
+    int costStart = 0;
+    int costEnd = 0;
+    int subtypesStart = 0;
+    int subtypesEnd = 0;
+    int pairStart = queryStart;
+    while (pairStart <= queryEnd) {
+      int pairEnd = indexOf(query, pairStart, queryEnd, '&');
+      if (pairEnd < 0) {
+        pairEnd = queryEnd;
+      }
+      // A pair with nothing before its first '=' is taken whole as a name, and is not decoded
+      final int separator = indexOf(query, pairStart, pairEnd, '=');
+      final boolean hasName = separator > pairStart;
+      final String name = paramName(uri, query, pairStart, hasName ? separator : pairEnd, hasName);
+      // Other values are only decoded to reject bad escapes, as they would be if they were used
+      final CharSequence value = hasName && pairEnd > separator + 1
+          && (name != null || indexOf(query, separator + 1, pairEnd, '%') >= 0)
+          ? urlDecode(uri, query, separator + 1, pairEnd) : null;
+      final int valueStart = value == query ? separator + 1 : 0;
+      final int valueEnd = value == query ? pairEnd : value == null ? 0 : value.length();
+
+      if (QueryParams.TYPE.equals(name) && !hasType) {
+        hasType = true;
+        typeName = value;
+        typeStart = valueStart;
+        typeEnd = valueEnd;
+      } else if (QueryParams.COST.equals(name) && !hasCost) {
+        hasCost = true;
+        costValue = value;
+        costStart = valueStart;
+        costEnd = valueEnd;
+      } else if (QueryParams.SUBTYPES.equals(name) && !hasSubtypes) {
+        hasSubtypes = true;
+        subtypesValue = value;
+        subtypesStart = valueStart;
+        subtypesEnd = valueEnd;
+      }
+      pairStart = pairEnd + 1;
+    }
+
+    if (!hasType) {
       throw new URISyntaxException(uri.toString(), "No fingerprint type provided");
     }
 
-    CryptoConditionType type = CryptoConditionType
-        .fromString(queryParams.get(QueryParams.TYPE).get(0));
+    final CryptoConditionType type = typeName == null ? null
+        : CryptoConditionType.lookupName(typeName, typeStart, typeEnd);
+    if (type == null) {
+      throw new IllegalArgumentException("Invalid Condition Type name.");
+    }
 
-    long cost = 0;
+    final long cost;
     try {
-      cost = Long.parseLong(queryParams.get(QueryParams.COST).get(0));
+      cost = parseLong(costValue, costStart, costEnd);
     } catch (NumberFormatException | NullPointerException x) {
       throw new URISyntaxException(uri.toString(), "No or invalid cost provided");
     }
 
-    byte[] fingerprint = Base64.getUrlDecoder().decode(matcher.group(2));
+    final byte[] fingerprint = decodeBase64Url(uri, fingerprintStart, fingerprintEnd);
 
-    EnumSet<CryptoConditionType> subtypes = null;
+    int subtypeMask = 0;
     if (type == CryptoConditionType.PREFIX_SHA256 || type == CryptoConditionType.THRESHOLD_SHA256) {
 
-      if (!queryParams.containsKey(QueryParams.SUBTYPES)) {
+      if (!hasSubtypes) {
         throw new URISyntaxException(uri.toString(), "No subtypes provided");
       }
 
-      subtypes =
-          CryptoConditionType
-              .getEnumOfTypesFromString(queryParams.get(QueryParams.SUBTYPES).get(0));
+      subtypeMask = subtypesValue == null ? 0
+          : CryptoConditionType.getMaskOfNames(subtypesValue, subtypesStart, subtypesEnd);
     }
 
     switch (type) {
       case PREIMAGE_SHA256:
         return new PreimageSha256Condition(cost, fingerprint);
       case PREFIX_SHA256:
-        return new PrefixSha256Condition(cost, fingerprint, subtypes);
+        return new PrefixSha256Condition(cost, fingerprint, subtypeMask);
       case THRESHOLD_SHA256:
-        return new ThresholdSha256Condition(cost, fingerprint, subtypes);
+        return new ThresholdSha256Condition(cost, fingerprint, subtypeMask);
       case RSA_SHA256:
         return new RsaSha256Condition(cost, fingerprint);
       case ED25519_SHA256:
@@ -121,67 +217,293 @@ public class CryptoConditionUri {
    * @return A {@link URI} representing the ni-schemed version of the supplied {@code condition}.
    */
   public static URI toUri(final Condition condition) {
+    return URI.create(toUriString(condition));
+  }
+
+  /**
+   * Convert a crypto condition to its ni-schemed URI representation, without building a {@link
+   * URI}.
+   *
+   * @param condition A {@link Condition} to convert.
+   *
+   * @return The ni-schemed version of the supplied {@code condition}, as returned by {@link
+   *     #toUri(Condition)}.
+   */
+  public static String toUriString(final Condition condition) {
+    return appendUri(condition, new StringBuilder(128)).toString();
+  }
+
+  /**
+   * Writes the ni-schemed URI representation of a crypto condition to a {@link StringBuilder}.
+   *
+   * @param condition A {@link Condition} to convert.
+   * @param sb        The {@link StringBuilder} to append the URI to.
+   *
+   * @return {@code sb}.
+   */
+  public static StringBuilder appendUri(final Condition condition, final StringBuilder sb) {
+    try {
+      appendUri(condition, (Appendable) sb);
+    } catch (IOException e) {
+      // A StringBuilder does not throw IOException
+      throw new RuntimeException(e);
+    }
+    return sb;
+  }
+
+  /**
+   * <p>Writes the ni-schemed URI representation of a crypto condition to an {@link Appendable},
+   * such as a {@link java.io.Writer} or a {@link java.nio.CharBuffer}.</p>
+   *
+   * <p>The characters written are the same as those of {@link #toUri(Condition)}. Nothing is
+   * written if the condition is of an unhandled type, which is rejected with an {@link
+   * IllegalArgumentException}.</p>
+   *
+   * @param condition A {@link Condition} to convert.
+   * @param out       The {@link Appendable} to write the URI to.
+   *
+   * @return {@code out}.
+   *
+   * @throws IOException If {@code out} fails.
+   */
+  public static <T extends Appendable> T appendUri(final Condition condition, final T out)
+      throws IOException {
+    Objects.requireNonNull(condition);
+    Objects.requireNonNull(out);
+
+    final int subtypeMask;
     if (condition instanceof SimpleCondition) {
-      return writeSingleCondition((SimpleCondition) condition);
+      subtypeMask = 0;
     } else if (condition instanceof CompoundCondition) {
-      return writeCompoundCondition((CompoundCondition) condition);
+      subtypeMask = ((CompoundCondition) condition).getSubtypeMask();
     } else {
       throw new IllegalArgumentException(
           String.format("Unhandled Condition type: %s", condition.getClass().getName())
       );
     }
+
+    // The parameters are in the order that they have always been written in
+    out.append(SCHEME_PREFIX).append(HASH_PREFIX).append(condition.getFingerprintBase64Url())
+        .append('?').append(QueryParams.COST).append('=')
+        .append(Long.toString(condition.getCost()))
+        .append('&').append(QueryParams.TYPE).append('=')
+        .append(condition.getType().getLowerCaseName());
+    if (subtypeMask != 0) {
+      out.append('&').append(QueryParams.SUBTYPES).append('=');
+      CryptoConditionType.appendMaskAsString(subtypeMask, out);
+    }
+    return out;
   }
 
-  private static URI writeSingleCondition(final SimpleCondition condition) {
-    Objects.requireNonNull(condition);
-    final Map<String, String> params = new HashMap<>();
-    params.put(CryptoConditionUri.QueryParams.TYPE, condition.getType().toString().toLowerCase());
-    params.put(CryptoConditionUri.QueryParams.COST, Long.toString(condition.getCost()));
+  /**
+   * Whether {@code chars}, which ends at {@code end}, holds {@code expected} at {@code start}.
+   */
+  private static boolean regionEquals(
+      final CharSequence chars, final int start, final int end, final String expected
+  ) {
+    if (end - start < expected.length()) {
+      return false;
+    }
+    for (int i = 0; i < expected.length(); i++) {
+      if (chars.charAt(start + i) != expected.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
 
-    return NamedInformationUri.getUri(HashFunction.SHA_256, condition.getFingerprint(), params);
+  private static int indexOf(
+      final CharSequence chars, final int start, final int end, final char target
+  ) {
+    for (int i = start; i < end; i++) {
+      if (chars.charAt(i) == target) {
+        return i;
+      }
+    }
+    return -1;
   }
 
+  private static boolean isBase64UrlChar(final char ch) {
+    return (ch >= 'A' && ch <= 'Z') || (ch >= 'a' && ch <= 'z') || (ch >= '0' && ch <= '9')
+        || ch == '_' || ch == '-';
+  }
 
-  private static URI writeCompoundCondition(final CompoundCondition condition) {
-    Objects.requireNonNull(condition);
+  /**
+   * Whether a range contains a character that the {@code .} of a regular expression would not
+   * match.
+   */
+  private static boolean containsLineTerminator(
+      final CharSequence chars, final int start, final int end
+  ) {
+    for (int i = start; i < end; i++) {
+      final char c = chars.charAt(i);
+      if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Decodes the percent-escaped UTF-8 octets in a range, as {@link URI#getQuery()} does.
+   */
+  private static String decodeEscapes(final CharSequence uri, final int start, final int end)
+      throws URISyntaxException {
+    final StringBuilder sb = new StringBuilder(end - start);
+    final byte[] octets = new byte[(end - start) / 3];
+    int position = start;
+    while (position < end) {
+      if (uri.charAt(position) != '%') {
+        sb.append(uri.charAt(position++));
+        continue;
+      }
+      int count = 0;
+      while (position < end && uri.charAt(position) == '%') {
+        final int high = position + 2 < end ? Character.digit(uri.charAt(position + 1), 16) : -1;
+        final int low = high < 0 ? -1 : Character.digit(uri.charAt(position + 2), 16);
+        if (low < 0) {
+          throw new URISyntaxException(uri.toString(), "Invalid condition format");
+        }
+        octets[count++] = (byte) ((high << 4) | low);
+        position += 3;
+      }
+      sb.append(new String(octets, 0, count, StandardCharsets.UTF_8));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Identifies the name of a query parameter without copying it.
+   *
+   * @return One of the names in {@link QueryParams}, or {@code null} for any other name.
+   */
+  private static String paramName(
+      final CharSequence uri, final CharSequence query, final int start, final int end,
+      final boolean decode
+  ) throws URISyntaxException {
+    CharSequence name = query;
+    int nameStart = start;
+    int nameEnd = end;
+    if (decode && (indexOf(query, start, end, '%') >= 0 || indexOf(query, start, end, '+') >= 0)) {
+      name = urlDecode(uri, query, start, end);
+      nameStart = 0;
+      nameEnd = name.length();
+    }
+    for (String param : PARAM_NAMES) {
+      if (nameEnd - nameStart == param.length() && regionEquals(name, nameStart, nameEnd, param)) {
+        return param;
+      }
+    }
+    return null;
+  }
 
-    Map<String, String> params = new HashMap<>();
-    params.put(CryptoConditionUri.QueryParams.TYPE, condition.getType().toString().toLowerCase());
-    params.put(CryptoConditionUri.QueryParams.COST, Long.toString(condition.getCost()));
+  /**
+   * URL decodes a key or value from the query.
+   *
+   * @return {@code query} itself, in which the range holds the value, if the range holds no
+   *     escape, or else a new string of the decoded value.
+   */
+  private static CharSequence urlDecode(
+      final CharSequence uri, final CharSequence query, final int start, final int end
+  ) throws URISyntaxException {
+    if (indexOf(query, start, end, '%') < 0 && indexOf(query, start, end, '+') < 0) {
+      return query;
+    }
+    try {
+      return URLDecoder.decode(query.subSequence(start, end).toString(), "UTF-8");
+    } catch (UnsupportedEncodingException x) {
+      throw new URISyntaxException(uri.toString(), "Invalid condition format");
+    }
+  }
 
-    if (condition.getSubtypes() != null && !condition.getSubtypes().isEmpty()) {
-      params.put(CryptoConditionUri.QueryParams.SUBTYPES,
-          CryptoConditionType.getEnumOfTypesAsString(condition.getSubtypes()));
+  /**
+   * Parses a decimal number from a range of characters, applying the same rules as {@link
+   * Long#parseLong(String)}.
+   */
+  private static long parseLong(final CharSequence chars, final int start, final int end) {
+    if (end == start) {
+      throw new NumberFormatException("For input string: \"\"");
+    }
+
+    int position = start;
+    boolean negative = false;
+    long limit = -Long.MAX_VALUE;
+    final char first = chars.charAt(start);
+    if (first < '0') {
+      if (first == '-') {
+        negative = true;
+        limit = Long.MIN_VALUE;
+      } else if (first != '+') {
+        throw numberFormatException(chars, start, end);
+      }
+      if (end - start == 1) {
+        throw numberFormatException(chars, start, end);
+      }
+      position++;
     }
 
-    return NamedInformationUri.getUri(HashFunction.SHA_256, condition.getFingerprint(), params);
+    // Accumulate negatively, so that Long.MIN_VALUE can be parsed
+    final long multiplyLimit = limit / 10;
+    long result = 0;
+    while (position < end) {
+      final int digit = Character.digit(chars.charAt(position++), 10);
+      if (digit < 0 || result < multiplyLimit) {
+        throw numberFormatException(chars, start, end);
+      }
+      result *= 10;
+      if (result < limit + digit) {
+        throw numberFormatException(chars, start, end);
+      }
+      result -= digit;
+    }
+    return negative ? result : -result;
   }
 
+  private static NumberFormatException numberFormatException(
+      final CharSequence chars, final int start, final int end
+  ) {
+    return new NumberFormatException("For input string: \"" + chars.subSequence(start, end) + "\"");
+  }
 
   /**
-   * Unpacks an URL encoded string of query parameters into a map of keys and values.
-   *
-   * @param queryParams The url-encoded query parameters.
-   *
-   * @return A map containing keyed on the query parameter names containing the associated values.
+   * Decodes unpadded base64url, as {@link Base64#getUrlDecoder()} does, from characters that have
+   * already been checked to be in the base64url alphabet.
    */
-  private static Map<String, List<String>> splitQuery(String queryParams)
-      throws UnsupportedEncodingException {
-    // Used to avoid dependencies on additional libraries. Lightly adapted from
-    // http://stackoverflow.com/questions/13592236/parse-a-uri-string-into-name-value-collection
-    final Map<String, List<String>> query_pairs = new LinkedHashMap<String, List<String>>();
-    final String[] pairs = queryParams.split("&");
-    for (String pair : pairs) {
-      final int idx = pair.indexOf("=");
-      final String key = idx > 0 ? URLDecoder.decode(pair.substring(0, idx), "UTF-8") : pair;
-      if (!query_pairs.containsKey(key)) {
-        query_pairs.put(key, new LinkedList<String>());
+  private static byte[] decodeBase64Url(final CharSequence chars, final int start, final int end) {
+    final int length = end - start;
+    // The same checks, in the same order, as Base64.getUrlDecoder()
+    if (length == 1) {
+      throw new IllegalArgumentException(
+          "Input byte[] should at least have 2 bytes for base64 bytes");
+    }
+    if (length % 4 == 1) {
+      throw new IllegalArgumentException("Last unit does not have enough valid bits");
+    }
+
+    final byte[] result = new byte[length / 4 * 3 + Math.max(0, length % 4 - 1)];
+    int bits = 0;
+    int bitCount = 0;
+    int index = 0;
+    for (int i = start; i < end; i++) {
+      bits = (bits << 6) | base64UrlValue(chars.charAt(i));
+      bitCount += 6;
+      if (bitCount >= 8) {
+        bitCount -= 8;
+        result[index++] = (byte) (bits >> bitCount);
       }
-      final String value = idx > 0 && pair.length() > idx + 1
-          ? URLDecoder.decode(pair.substring(idx + 1), "UTF-8") : null;
-      query_pairs.get(key).add(value);
     }
-    return query_pairs;
+    return result;
   }
-}
 
+  private static int base64UrlValue(final char ch) {
+    if (ch >= 'A' && ch <= 'Z') {
+      return ch - 'A';
+    } else if (ch >= 'a' && ch <= 'z') {
+      return ch - 'a' + 26;
+    } else if (ch >= '0' && ch <= '9') {
+      return ch - '0' + 52;
+    } else {
+      return ch == '-' ? 62 : 63;
+    }
+  }
+}
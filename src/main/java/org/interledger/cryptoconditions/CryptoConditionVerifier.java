@@ -0,0 +1,504 @@
+package org.interledger.cryptoconditions;
+
+import static org.interledger.cryptoconditions.CryptoConditionType.ED25519_SHA256;
+
+import net.i2p.crypto.eddsa.EdDSAEngine;
+import net.i2p.crypto.eddsa.EdDSAPublicKey;
+import net.i2p.crypto.eddsa.spec.EdDSANamedCurveTable;
+import net.i2p.crypto.eddsa.spec.EdDSAPublicKeySpec;
+import org.interledger.cryptoconditions.der.DerCursor;
+import org.interledger.cryptoconditions.der.DerEncodingException;
+import org.interledger.cryptoconditions.der.DerTag;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <p>Verifies DER encoded fulfillments against DER encoded conditions, without decoding either of
+ * them into {@link Fulfillment} or {@link Condition} objects.</p>
+ *
+ * <p>The fulfillment is walked once. The condition of each node is derived while it is parsed
+ * (hashing keys, prefixes and subconditions directly from the encoded buffer), and the derived
+ * condition of the root is compared with the supplied condition before any signature is checked.
+ * The signatures of the leaves are then verified, cheapest first, against the message as seen
+ * through any enclosing PREFIX-SHA-256 fulfillments, which is never copied.</p>
+ *
+ * <p>The result is the same as reading both encodings with {@link CryptoConditionReader} and
+ * calling {@link Fulfillment#verify(Condition, ByteBuffer)}, except that ED25519-SHA-256 public
+ * keys that are not canonically encoded never verify, and that the encodings are read with a
+ * {@link DerCursor}, which is stricter than the reader: lengths written in more than four bytes,
+ * lengths that run past the end of their enclosing element, and integers that do not fit in a
+ * non-negative {@code long}, such as a cost or maximum message length, are rejected as
+ * malformed.</p>
+ *
+ * <p>The fulfillment is walked by a recursive call per level, so the methods that take no policy
+ * enforce {@link VerificationPolicy#DEFAULT}, whose maximum depth is checked before each level is
+ * entered. A policy with a much greater maximum depth lets a deeply nested fulfillment overflow
+ * the thread stack.</p>
+ *
+ * <p>Each check is available in two forms. The {@code verify} methods throw exceptions, as {@link
+ * CryptoConditionReader} does, while the {@code tryVerify} methods return a {@link
+ * VerificationResult} holding a status and an offset. Internally, failures are raised as
+ * lightweight exceptions that have no stack trace and whose messages are only built if a {@code
+ * verify} method has to report them.</p>
+ */
+public class CryptoConditionVerifier {
+
+  private static final int TAGGED = DerTag.TAGGED.getTag();
+  private static final int CONSTRUCTED_TAGGED = DerTag.CONSTRUCTED.getTag() + TAGGED;
+
+  /**
+   * Verifies a DER encoded fulfillment against a DER encoded condition and a message, enforcing
+   * {@link VerificationPolicy#DEFAULT}.
+   *
+   * @param conditionDer   The DER encoding of the condition to verify.
+   * @param fulfillmentDer The DER encoding of a fulfillment of {@code conditionDer}.
+   * @param message        A {@link ByteBuffer} whose remaining bytes are the message. Its position
+   *                       and limit are not modified.
+   *
+   * @return {@code true} if the fulfillment validates the condition and message; {@code false}
+   *     otherwise.
+   *
+   * @throws DerEncodingException        if either encoding is malformed.
+   * @throws IllegalArgumentException    if the message is too long for a PREFIX-SHA-256
+   *                                     fulfillment.
+   * @throws VerificationPolicyException if the fulfillment is nested more deeply than {@link
+   *                                     VerificationPolicy#DEFAULT_MAX_DEPTH}.
+   */
+  public static boolean verify(
+      final byte[] conditionDer, final byte[] fulfillmentDer, final ByteBuffer message
+  ) throws DerEncodingException {
+    return verify(conditionDer, fulfillmentDer, message, VerificationPolicy.DEFAULT);
+  }
+
+  /**
+   * Verifies a DER encoded fulfillment against a DER encoded condition and a message, enforcing a
+   * policy. The message length and the condition are checked before the fulfillment is read, and
+   * the depth, type and cost of each part of the fulfillment are checked as it is read.
+   *
+   * @param conditionDer   The DER encoding of the condition to verify.
+   * @param fulfillmentDer The DER encoding of a fulfillment of {@code conditionDer}.
+   * @param message        A {@link ByteBuffer} whose remaining bytes are the message. Its position
+   *                       and limit are not modified.
+   * @param policy         The {@link VerificationPolicy} to enforce.
+   *
+   * @return {@code true} if the fulfillment validates the condition and message; {@code false}
+   *     otherwise.
+   *
+   * @throws DerEncodingException        if either encoding is malformed.
+   * @throws IllegalArgumentException    if the message is too long for a PREFIX-SHA-256
+   *                                     fulfillment.
+   * @throws VerificationPolicyException if the request breaks any limit of {@code policy}.
+   */
+  public static boolean verify(
+      final byte[] conditionDer, final byte[] fulfillmentDer, final ByteBuffer message,
+      final VerificationPolicy policy
+  ) throws DerEncodingException, VerificationPolicyException {
+    Objects.requireNonNull(conditionDer, "Condition must not be null!");
+    Objects.requireNonNull(fulfillmentDer, "Fulfillment must not be null!");
+    Objects.requireNonNull(message, "Message must not be null!");
+    Objects.requireNonNull(policy, "Policy must not be null!");
+
+    try {
+      policy.checkMessageLength(message.remaining());
+      final DerivedCondition condition = DerivedCondition.read(new DerCursor(conditionDer));
+      return verifyAgainst(condition, fulfillmentDer, message, policy);
+    } catch (DerEncodingException e) {
+      throw e.withStackTrace();
+    } catch (VerificationFailure f) {
+      throw f.toException();
+    }
+  }
+
+  /**
+   * Verifies a DER encoded fulfillment against a DER encoded condition and a message, enforcing
+   * {@link VerificationPolicy#DEFAULT}, and reports every failure as a {@link VerificationResult}
+   * rather than an exception.
+   *
+   * @param conditionDer   The DER encoding of the condition to verify.
+   * @param fulfillmentDer The DER encoding of a fulfillment of {@code conditionDer}.
+   * @param message        A {@link ByteBuffer} whose remaining bytes are the message. Its position
+   *                       and limit are not modified.
+   *
+   * @return A {@link VerificationResult} that is valid if the fulfillment validates the condition
+   *     and message, and otherwise says why it does not.
+   */
+  public static VerificationResult tryVerify(
+      final byte[] conditionDer, final byte[] fulfillmentDer, final ByteBuffer message
+  ) {
+    return tryVerify(conditionDer, fulfillmentDer, message, VerificationPolicy.DEFAULT);
+  }
+
+  /**
+   * <p>Verifies a DER encoded fulfillment against a DER encoded condition and a message, enforcing
+   * a policy, and reports every failure as a {@link VerificationResult} rather than an
+   * exception.</p>
+   *
+   * <p>This is the same check as {@link #verify(byte[], byte[], ByteBuffer, VerificationPolicy)},
+   * but malformed, disallowed and invalid input is rejected without filling in a stack trace or
+   * building a message, so that a stream of hostile input costs little more than reading it.</p>
+   *
+   * @param conditionDer   The DER encoding of the condition to verify.
+   * @param fulfillmentDer The DER encoding of a fulfillment of {@code conditionDer}.
+   * @param message        A {@link ByteBuffer} whose remaining bytes are the message. Its position
+   *                       and limit are not modified.
+   * @param policy         The {@link VerificationPolicy} to enforce.
+   *
+   * @return A {@link VerificationResult} that is valid if the fulfillment validates the condition
+   *     and message, and otherwise says why it does not.
+   */
+  public static VerificationResult tryVerify(
+      final byte[] conditionDer, final byte[] fulfillmentDer, final ByteBuffer message,
+      final VerificationPolicy policy
+  ) {
+    Objects.requireNonNull(conditionDer, "Condition must not be null!");
+    Objects.requireNonNull(fulfillmentDer, "Fulfillment must not be null!");
+    Objects.requireNonNull(message, "Message must not be null!");
+    Objects.requireNonNull(policy, "Policy must not be null!");
+
+    if (!policy.allowsMessageLength(message.remaining())) {
+      return new VerificationResult(VerificationResult.Status.MESSAGE_EXCEEDS_POLICY, -1);
+    }
+
+    final DerivedCondition condition;
+    try {
+      condition = DerivedCondition.read(new DerCursor(conditionDer));
+    } catch (DerEncodingException e) {
+      return new VerificationResult(VerificationResult.Status.MALFORMED_CONDITION, e.getOffset());
+    } catch (VerificationFailure f) {
+      return new VerificationResult(VerificationResult.Status.MALFORMED_CONDITION, f.getOffset());
+    }
+
+    try {
+      return verifyAgainst(condition, fulfillmentDer, message, policy)
+          ? VerificationResult.VALID : VerificationResult.INVALID;
+    } catch (DerEncodingException e) {
+      return new VerificationResult(VerificationResult.Status.MALFORMED_ENCODING, e.getOffset());
+    } catch (VerificationFailure f) {
+      return f.toResult();
+    }
+  }
+
+  /**
+   * Verifies a DER encoded fulfillment against a condition that has already been read. Failures
+   * other than malformed encodings are thrown as {@link VerificationFailure}s.
+   */
+  private static boolean verifyAgainst(
+      final DerivedCondition condition, final byte[] fulfillmentDer, final ByteBuffer message,
+      final VerificationPolicy policy
+  ) throws DerEncodingException {
+    admit(policy, condition, -1);
+
+    final Walk walk = new Walk(policy, true);
+    final DerivedCondition derived =
+        walk.readFulfillment(new DerCursor(fulfillmentDer), SegmentedMessage.of(message), 1);
+
+    // As in PrefixSha256Fulfillment#verify, a PREFIX-SHA-256 fulfillment checks the length of its
+    // message before its condition, but the fulfillments below it are only reached on a match.
+    if (walk.tooLong != null && walk.tooLongAtRoot) {
+      throw walk.tooLong;
+    }
+    if (!derived.equals(condition)) {
+      return false;
+    }
+    if (walk.tooLong != null) {
+      throw walk.tooLong;
+    }
+
+    final List<Leaf> leaves = walk.leaves;
+    leaves.sort((l1, l2) -> Long.compare(l1.cost, l2.cost));
+    for (int i = 0; i < leaves.size(); i++) {
+      if (!leaves.get(i).verify()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Derives the condition of a DER encoded fulfillment, enforcing {@link
+   * VerificationPolicy#DEFAULT} as {@link CryptoConditionReader#readFulfillment(byte[])} does,
+   * without verifying any signature or constructing any {@link Fulfillment}. Failures other than
+   * malformed encodings, including fulfillments nested too deeply, are thrown as {@link
+   * VerificationFailure}s.
+   */
+  static DerivedCondition derive(final byte[] fulfillmentDer) throws DerEncodingException {
+    return new Walk(VerificationPolicy.DEFAULT, false)
+        .readFulfillment(new DerCursor(fulfillmentDer), SegmentedMessage.EMPTY, 1);
+  }
+
+  /**
+   * Checks the type, subtypes and cost of a condition against a policy, as {@link
+   * VerificationPolicy#checkCondition(Condition)} does, but without building an exception.
+   *
+   * @param offset The offset of the condition within the encoded fulfillment, or -1.
+   */
+  private static DerivedCondition admit(
+      final VerificationPolicy policy, final DerivedCondition condition, final int offset
+  ) {
+    if (!policy.allowsType(condition.getType())) {
+      throw violation(policy, VerificationPolicy.Reason.TYPE_NOT_ALLOWED, offset,
+          condition.getType());
+    }
+    final CryptoConditionType subtype = policy.firstDisallowedType(condition.getSubtypeMask());
+    if (subtype != null) {
+      throw violation(policy, VerificationPolicy.Reason.TYPE_NOT_ALLOWED, offset, subtype);
+    }
+    return admitCost(policy, condition, offset);
+  }
+
+  private static DerivedCondition admitCost(
+      final VerificationPolicy policy, final DerivedCondition condition, final int offset
+  ) {
+    if (!policy.allowsCost(condition.getCost())) {
+      throw violation(policy, VerificationPolicy.Reason.COST_EXCEEDED, offset,
+          condition.getCost());
+    }
+    return condition;
+  }
+
+  private static VerificationFailure violation(
+      final VerificationPolicy policy, final VerificationPolicy.Reason reason, final int offset,
+      final Object value
+  ) {
+    return new VerificationFailure(VerificationResult.statusOf(reason), offset,
+        () -> policy.violation(reason, value));
+  }
+
+  /**
+   * The state of a single walk over a fulfillment.
+   */
+  private static final class Walk {
+
+    private final VerificationPolicy policy;
+    private final boolean collectLeaves;
+    private final List<Leaf> leaves = new ArrayList<>();
+    private VerificationFailure tooLong;
+    private boolean tooLongAtRoot;
+
+    private Walk(final VerificationPolicy policy, final boolean collectLeaves) {
+      this.policy = policy;
+      this.collectLeaves = collectLeaves;
+    }
+
+    /**
+     * Reads a fulfillment, applying the same rules as {@link
+     * CryptoConditionReader#readFulfillment(byte[])}, and derives its condition. Every signature
+     * leaf is recorded, along with the message it must be verified against.
+     */
+    private DerivedCondition readFulfillment(
+        final DerCursor in, final SegmentedMessage message, final int depth
+    ) throws DerEncodingException {
+
+      final int offset = in.getPosition();
+      final int tag = in.readTag() - CONSTRUCTED_TAGGED;
+      if (tag < 0) {
+        throw new DerEncodingException(offset,
+            () -> "Some flags are missing resulting in a tag value of < 0.");
+      }
+      final CryptoConditionType type = CryptoConditionType.lookup(tag);
+      if (type == null) {
+        throw new VerificationFailure(VerificationResult.Status.UNKNOWN_TYPE, offset,
+            () -> new IllegalArgumentException("Invalid Condition Type code."));
+      }
+      if (!policy.allowsDepth(depth)) {
+        throw violation(policy, VerificationPolicy.Reason.DEPTH_EXCEEDED, offset, depth);
+      }
+      if (!policy.allowsType(type)) {
+        throw violation(policy, VerificationPolicy.Reason.TYPE_NOT_ALLOWED, offset, type);
+      }
+      final int length = in.readLength();
+      if (length == 0) {
+        throw new DerEncodingException(offset, () -> "Encountered an empty fulfillment.");
+      }
+
+      final DerCursor inner = in.slice(length);
+      try {
+        return readContents(type, inner, message, depth, offset);
+      } catch (VerificationFailure f) {
+        // Derivations that fail without knowing where report the start of this fulfillment.
+        throw f.getOffset() < 0 ? f.at(offset) : f;
+      }
+    }
+
+    private DerivedCondition readContents(
+        final CryptoConditionType type, final DerCursor inner, final SegmentedMessage message,
+        final int depth, final int offset
+    ) throws DerEncodingException {
+      final byte[] buffer = inner.getBuffer();
+
+      switch (type) {
+        case PREIMAGE_SHA256: {
+          final int preimageLength = inner.readHeader(TAGGED);
+          return admitCost(policy,
+              DerivedCondition.preimage(buffer, inner.getPosition(), preimageLength), offset);
+        }
+
+        case PREFIX_SHA256: {
+          final int prefixLength = inner.readHeader(TAGGED);
+          final int prefixOffset = inner.getPosition();
+          inner.skip(prefixLength);
+          final long maxMessageLength = inner.readLong(inner.readHeader(TAGGED + 1));
+
+          final long messageLength = message.length();
+          if (messageLength > maxMessageLength && tooLong == null) {
+            tooLong = new VerificationFailure(VerificationResult.Status.MESSAGE_TOO_LONG, offset,
+                () -> new IllegalArgumentException(String.format(
+                    "Message length (%s) exceeds maximum message length of (%s).",
+                    messageLength, maxMessageLength)));
+            tooLongAtRoot = depth == 1;
+          }
+
+          inner.readHeader(CONSTRUCTED_TAGGED + 2);
+          final DerivedCondition subcondition = readFulfillment(inner,
+              message.prepend(ByteBuffer.wrap(buffer, prefixOffset, prefixLength)), depth + 1);
+
+          return admitCost(policy, DerivedCondition.prefix(buffer, prefixOffset, prefixLength,
+              maxMessageLength, subcondition), offset);
+        }
+
+        case THRESHOLD_SHA256: {
+          final List<DerivedCondition> subconditions = new ArrayList<>();
+          int threshold = 0;
+
+          int setOffset = inner.getPosition();
+          int setTag = inner.readTag();
+          int setLength = inner.readLength();
+
+          // As in CryptoConditionReader, the subfulfillments may be omitted entirely.
+          if (setTag == CONSTRUCTED_TAGGED) {
+            final DerCursor subfulfillments = inner.slice(setLength);
+            while (subfulfillments.hasRemaining()) {
+              subconditions.add(readFulfillment(subfulfillments, message, depth + 1));
+              threshold++;
+            }
+            setOffset = inner.getPosition();
+            setTag = inner.readTag();
+            setLength = inner.readLength();
+          }
+          if (setTag != CONSTRUCTED_TAGGED + 1) {
+            final int unexpectedTag = setTag - CONSTRUCTED_TAGGED;
+            throw new DerEncodingException(setOffset,
+                () -> "Expected tag: 1, got: " + unexpectedTag);
+          }
+
+          final DerCursor unfulfilled = inner.slice(setLength);
+          while (unfulfilled.hasRemaining()) {
+            final int subconditionOffset = unfulfilled.getPosition();
+            subconditions.add(
+                admit(policy, DerivedCondition.read(unfulfilled), subconditionOffset));
+          }
+
+          return admitCost(policy, DerivedCondition.threshold(threshold, subconditions), offset);
+        }
+
+        case RSA_SHA256: {
+          final int modulusLength = inner.readHeader(TAGGED);
+          final int modulusOffset = inner.getPosition();
+          inner.skip(modulusLength);
+          final int signatureLength = inner.readHeader(TAGGED + 1);
+
+          final DerivedCondition condition = admitCost(policy,
+              DerivedCondition.rsa(buffer, modulusOffset, modulusLength), offset);
+          if (collectLeaves) {
+            leaves.add(new Leaf(type, condition.getCost(), buffer, modulusOffset, modulusLength,
+                inner.getPosition(), signatureLength, message));
+          }
+          return condition;
+        }
+
+        default: {
+          final int keyLength = inner.readHeader(TAGGED);
+          final int keyOffset = inner.getPosition();
+          inner.skip(keyLength);
+          final int signatureLength = inner.readHeader(TAGGED + 1);
+
+          final DerivedCondition condition = admitCost(policy,
+              DerivedCondition.ed25519(buffer, keyOffset, keyLength), offset);
+          if (collectLeaves) {
+            leaves.add(new Leaf(type, condition.getCost(), buffer, keyOffset, keyLength,
+                inner.getPosition(), signatureLength, message));
+          }
+          return condition;
+        }
+      }
+    }
+  }
+
+  /**
+   * A signature that must be verified, identified by its position within the encoded fulfillment.
+   */
+  private static final class Leaf {
+
+    private final CryptoConditionType type;
+    private final long cost;
+    private final byte[] buffer;
+    private final int keyOffset;
+    private final int keyLength;
+    private final int signatureOffset;
+    private final int signatureLength;
+    private final SegmentedMessage message;
+
+    private Leaf(
+        final CryptoConditionType type, final long cost, final byte[] buffer, final int keyOffset,
+        final int keyLength, final int signatureOffset, final int signatureLength,
+        final SegmentedMessage message
+    ) {
+      this.type = type;
+      this.cost = cost;
+      this.buffer = buffer;
+      this.keyOffset = keyOffset;
+      this.keyLength = keyLength;
+      this.signatureOffset = signatureOffset;
+      this.signatureLength = signatureLength;
+      this.message = message;
+    }
+
+    private boolean verify() {
+      try {
+        final Signature verifier;
+        if (type == ED25519_SHA256) {
+          final byte[] key = Arrays.copyOfRange(buffer, keyOffset, keyOffset + keyLength);
+          final EdDSAPublicKey publicKey = new EdDSAPublicKey(new EdDSAPublicKeySpec(key,
+              EdDSANamedCurveTable.getByName(CryptoConditionReader.ED_25519)));
+          // The fingerprint was derived from the key as encoded, so it must be canonical.
+          if (!Arrays.equals(publicKey.getA().toByteArray(), key)) {
+            return false;
+          }
+          verifier = new EdDSAEngine(MessageDigest.getInstance("SHA-512"));
+          verifier.initVerify(publicKey);
+        } else {
+          final BigInteger modulus = new BigInteger(1,
+              Arrays.copyOfRange(buffer, keyOffset, keyOffset + keyLength));
+          final PublicKey publicKey = KeyFactory.getInstance("RSA").generatePublic(
+              new RSAPublicKeySpec(modulus, RsaSha256Fulfillment.PUBLIC_EXPONENT));
+          verifier = Signature.getInstance(RsaSha256Fulfillment.SHA_256_WITH_RSA_PSS);
+          verifier.initVerify(publicKey);
+        }
+
+        message.updateTo(verifier);
+        return verifier.verify(buffer, signatureOffset, signatureLength);
+      } catch (InvalidKeyException | InvalidKeySpecException | NoSuchAlgorithmException
+          | SignatureException e) {
+        throw new VerificationFailure(VerificationResult.Status.INVALID_VALUE, keyOffset,
+            () -> new RuntimeException(e));
+      } catch (IllegalArgumentException e) {
+        // Thrown for public keys that cannot be decoded.
+        throw new VerificationFailure(VerificationResult.Status.INVALID_VALUE, keyOffset, () -> e);
+      }
+    }
+  }
+}
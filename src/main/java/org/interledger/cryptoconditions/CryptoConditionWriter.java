@@ -116,7 +116,7 @@ public class CryptoConditionWriter {
       out.writeTaggedObject(1, BigInteger.valueOf(condition.getCost()).toByteArray());
 
       // Encode Subconditions...
-      byte[] bitStringData = CryptoConditionType.getEnumOfTypesAsBitString(condition.getSubtypes());
+      byte[] bitStringData = CryptoConditionType.getMaskAsBitString(condition.getSubtypeMask());
       out.writeTaggedObject(2, bitStringData);
 
       out.close();
@@ -0,0 +1,483 @@
+package org.interledger.cryptoconditions;
+
+import static org.interledger.cryptoconditions.CryptoConditionType.ED25519_SHA256;
+import static org.interledger.cryptoconditions.CryptoConditionType.PREFIX_SHA256;
+import static org.interledger.cryptoconditions.CryptoConditionType.PREIMAGE_SHA256;
+import static org.interledger.cryptoconditions.CryptoConditionType.RSA_SHA256;
+import static org.interledger.cryptoconditions.CryptoConditionType.THRESHOLD_SHA256;
+
+import org.interledger.cryptoconditions.der.DerCursor;
+import org.interledger.cryptoconditions.der.DerEncodingException;
+import org.interledger.cryptoconditions.der.DerTag;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <p>The type, cost, fingerprint and subtypes of a condition, derived directly from the DER
+ * encoding of a fulfillment or condition without constructing a {@link Condition} object.</p>
+ *
+ * <p>Fingerprints are calculated by feeding the DER headers and the value bytes (read in place from
+ * the encoded buffer) straight into a {@link MessageDigest}, rather than by building the
+ * fingerprint contents in a series of intermediate buffers. The results are identical to those of
+ * the corresponding {@link Condition} implementations.</p>
+ */
+final class DerivedCondition {
+
+  private static final int SEQUENCE = DerTag.CONSTRUCTED.getTag() + DerTag.SEQUENCE.getTag();
+  private static final int TAGGED = DerTag.TAGGED.getTag();
+  private static final int CONSTRUCTED_TAGGED = DerTag.CONSTRUCTED.getTag() + TAGGED;
+
+  private static final long ED25519_COST = 131072;
+  private static final int ED25519_KEY_LENGTH = 32;
+
+  private final CryptoConditionType type;
+  private final long cost;
+  private final byte[] fingerprint;
+  private final int subtypeMask;
+
+  private byte[] encoded;
+
+  /**
+   * Required-args Constructor.
+   *
+   * @param type        The type of the condition.
+   * @param cost        The cost of the condition.
+   * @param fingerprint The fingerprint of the condition.
+   * @param subtypeMask A type mask of the subtypes of the condition, which is zero for simple
+   *                    conditions.
+   */
+  private DerivedCondition(
+      final CryptoConditionType type, final long cost, final byte[] fingerprint,
+      final int subtypeMask
+  ) {
+    this.type = Objects.requireNonNull(type);
+    if (cost < 0) {
+      throw invalidValue(-1, "Cost must be positive!");
+    }
+    this.cost = cost;
+    this.fingerprint = Objects.requireNonNull(fingerprint);
+    if (fingerprint.length != 32) {
+      throw invalidValue(-1, "Fingerprint must be 32 bytes.");
+    }
+    this.subtypeMask = subtypeMask;
+  }
+
+  /**
+   * Captures the fields of an existing condition, so that it can take part in deriving the
+   * condition of a compound fulfillment. The fingerprint of a {@link Sha256Condition} is shared
+   * rather than copied.
+   *
+   * @param condition A {@link Condition}.
+   *
+   * @return A derived condition with the same type, cost, fingerprint and subtypes.
+   */
+  static DerivedCondition of(final Condition condition) {
+    Objects.requireNonNull(condition);
+    final int subtypeMask = condition instanceof CompoundCondition
+        ? ((CompoundCondition) condition).getSubtypeMask() : 0;
+    return new DerivedCondition(condition.getType(), condition.getCost(),
+        FingerprintTable.fingerprintOf(condition), subtypeMask);
+  }
+
+  /**
+   * Derives the condition of a PREIMAGE-SHA-256 fulfillment.
+   *
+   * @param buffer The buffer holding the preimage.
+   * @param offset The position of the preimage within {@code buffer}.
+   * @param length The length of the preimage.
+   *
+   * @return The derived condition.
+   */
+  static DerivedCondition preimage(final byte[] buffer, final int offset, final int length) {
+    final MessageDigest digest = newDigest();
+    digest.update(buffer, offset, length);
+    return new DerivedCondition(PREIMAGE_SHA256, length, digest.digest(), 0);
+  }
+
+  /**
+   * Derives the condition of an RSA-SHA-256 fulfillment.
+   *
+   * @param buffer The buffer holding the unsigned, big-endian modulus of the public key.
+   * @param offset The position of the modulus within {@code buffer}.
+   * @param length The length of the modulus.
+   *
+   * @return The derived condition.
+   */
+  static DerivedCondition rsa(final byte[] buffer, final int offset, final int length) {
+    // Leading zeros are not part of the canonical unsigned encoding of the modulus.
+    int start = offset;
+    final int end = offset + length;
+    while (start < end && buffer[start] == 0) {
+      start++;
+    }
+    final int modulusLength = end - start;
+    final int bitLength = modulusLength == 0 ? 0
+        : (modulusLength - 1) * 8 + 32 - Integer.numberOfLeadingZeros(buffer[start] & 0xFF);
+    if (bitLength <= 1017 || bitLength > 4096) {
+      throw invalidValue(offset,
+          "Modulus of RSA key must be greater than 128 bytes and less than 512 bytes.");
+    }
+
+    final MessageDigest digest = newDigest();
+    updateHeader(digest, SEQUENCE, headerLength(modulusLength) + modulusLength);
+    updateHeader(digest, TAGGED, modulusLength);
+    digest.update(buffer, start, modulusLength);
+    return new DerivedCondition(RSA_SHA256, (long) modulusLength * modulusLength, digest.digest(),
+        0);
+  }
+
+  /**
+   * Derives the condition of an ED25519-SHA-256 fulfillment.
+   *
+   * @param buffer The buffer holding the encoded public key.
+   * @param offset The position of the public key within {@code buffer}.
+   * @param length The length of the public key.
+   *
+   * @return The derived condition.
+   */
+  static DerivedCondition ed25519(final byte[] buffer, final int offset, final int length) {
+    if (length != ED25519_KEY_LENGTH) {
+      throw invalidValue(offset, "public-key length is wrong");
+    }
+
+    final MessageDigest digest = newDigest();
+    updateHeader(digest, SEQUENCE, headerLength(length) + length);
+    updateHeader(digest, TAGGED, length);
+    digest.update(buffer, offset, length);
+    return new DerivedCondition(ED25519_SHA256, ED25519_COST, digest.digest(), 0);
+  }
+
+  /**
+   * Derives the condition of a PREFIX-SHA-256 fulfillment.
+   *
+   * @param buffer           The buffer holding the prefix.
+   * @param offset           The position of the prefix within {@code buffer}.
+   * @param length           The length of the prefix.
+   * @param maxMessageLength The maximum length of the message.
+   * @param subcondition     The derived condition of the subfulfillment.
+   *
+   * @return The derived condition.
+   */
+  static DerivedCondition prefix(
+      final byte[] buffer, final int offset, final int length, final long maxMessageLength,
+      final DerivedCondition subcondition
+  ) {
+    final byte[] maxMessageLengthBytes = BigInteger.valueOf(maxMessageLength).toByteArray();
+    final byte[] subconditionBytes = subcondition.encode();
+
+    final MessageDigest digest = newDigest();
+    updateHeader(digest, SEQUENCE,
+        headerLength(length) + length
+            + headerLength(maxMessageLengthBytes.length) + maxMessageLengthBytes.length
+            + headerLength(subconditionBytes.length) + subconditionBytes.length);
+    updateHeader(digest, TAGGED, length);
+    digest.update(buffer, offset, length);
+    updateHeader(digest, TAGGED + 1, maxMessageLengthBytes.length);
+    digest.update(maxMessageLengthBytes);
+    updateHeader(digest, CONSTRUCTED_TAGGED + 2, subconditionBytes.length);
+    digest.update(subconditionBytes);
+
+    final int subtypeMask = (subcondition.type.getTypeMask() | subcondition.subtypeMask)
+        & ~PREFIX_SHA256.getTypeMask();
+
+    return new DerivedCondition(PREFIX_SHA256,
+        length + maxMessageLength + subcondition.cost + 1024, digest.digest(), subtypeMask);
+  }
+
+  /**
+   * Derives the condition of a THRESHOLD-SHA-256 fulfillment.
+   *
+   * <p>Note: {@code subconditions} is sorted in place.</p>
+   *
+   * @param threshold     The number of subconditions that must be fulfilled.
+   * @param subconditions The derived conditions of the subfulfillments, followed by the
+   *                      unfulfilled subconditions.
+   *
+   * @return The derived condition.
+   */
+  static DerivedCondition threshold(
+      final int threshold, final List<DerivedCondition> subconditions
+  ) {
+    // Sort by cost, exactly as ThresholdSha256Condition does.
+    subconditions.sort((c1, c2) -> (int) (c2.cost - c1.cost));
+    long largestCosts = 0;
+    for (int i = 0; i < threshold; i++) {
+      largestCosts += subconditions.get(i).cost;
+    }
+    final long cost = largestCosts + (subconditions.size() * 1024);
+
+    // Sort by encoding for the fingerprint.
+    subconditions.sort((c1, c2) -> {
+      final byte[] c1encoded = c1.encode();
+      final byte[] c2encoded = c2.encode();
+      final int minLength = Math.min(c1encoded.length, c2encoded.length);
+      for (int i = 0; i < minLength; i++) {
+        final int result = Integer.compareUnsigned(c1encoded[i], c2encoded[i]);
+        if (result != 0) {
+          return result;
+        }
+      }
+      return c1encoded.length - c2encoded.length;
+    });
+
+    int subconditionsLength = 0;
+    for (int i = 0; i < subconditions.size(); i++) {
+      subconditionsLength += subconditions.get(i).encode().length;
+    }
+    final byte[] thresholdBytes = BigInteger.valueOf(threshold).toByteArray();
+
+    final MessageDigest digest = newDigest();
+    updateHeader(digest, SEQUENCE,
+        headerLength(thresholdBytes.length) + thresholdBytes.length
+            + headerLength(subconditionsLength) + subconditionsLength);
+    updateHeader(digest, TAGGED, thresholdBytes.length);
+    digest.update(thresholdBytes);
+    updateHeader(digest, CONSTRUCTED_TAGGED + 1, subconditionsLength);
+    int subtypeMask = 0;
+    for (int i = 0; i < subconditions.size(); i++) {
+      final DerivedCondition subcondition = subconditions.get(i);
+      digest.update(subcondition.encode());
+      subtypeMask |= subcondition.type.getTypeMask() | subcondition.subtypeMask;
+    }
+    subtypeMask &= ~THRESHOLD_SHA256.getTypeMask();
+
+    return new DerivedCondition(THRESHOLD_SHA256, cost, digest.digest(), subtypeMask);
+  }
+
+  /**
+   * Reads a DER encoded condition, applying the same rules as {@link
+   * CryptoConditionReader#readCondition(byte[])}.
+   *
+   * @param in A {@link DerCursor} positioned at the start of the condition.
+   *
+   * @return The condition that was read.
+   *
+   * @throws DerEncodingException when DER encoding fails for any reason.
+   */
+  static DerivedCondition read(final DerCursor in) throws DerEncodingException {
+    final int tagOffset = in.getPosition();
+    final int tag = in.readTag() - CONSTRUCTED_TAGGED;
+    if (tag < 0) {
+      throw new DerEncodingException(tagOffset,
+          () -> "Some flags are missing resulting in a tag value of < 0.");
+    }
+    final CryptoConditionType type = CryptoConditionType.lookup(tag);
+    if (type == null) {
+      throw new VerificationFailure(VerificationResult.Status.UNKNOWN_TYPE, tagOffset,
+          () -> new IllegalArgumentException("Invalid Condition Type code."));
+    }
+    final DerCursor inner = in.slice(in.readLength());
+    final byte[] buffer = inner.getBuffer();
+
+    final int fingerprintLength = inner.readHeader(TAGGED);
+    final byte[] fingerprint = Arrays.copyOfRange(buffer, inner.getPosition(),
+        inner.getPosition() + fingerprintLength);
+    inner.skip(fingerprintLength);
+
+    final long cost = inner.readLong(inner.readHeader(TAGGED + 1));
+
+    int subtypeMask = 0;
+    if (type == PREFIX_SHA256 || type == THRESHOLD_SHA256) {
+      final int subtypesLength = inner.readHeader(TAGGED + 2);
+      // Reject the bit strings that getMaskFromBitString would, without an exception.
+      if (subtypesLength > 2 || (subtypesLength == 2 && buffer[inner.getPosition()] < 3)) {
+        throw invalidValue(inner.getPosition(), "Unknown rsa in bit string.");
+      }
+      if (subtypesLength == 1) {
+        throw invalidValue(inner.getPosition(), "Corrupt bit string.");
+      }
+      if (subtypesLength == 2) {
+        subtypeMask = CryptoConditionType.getMaskOfBits(buffer[inner.getPosition() + 1]);
+      }
+      inner.skip(subtypesLength);
+    }
+
+    // ED25519-SHA-256 conditions always have a fixed cost.
+    return new DerivedCondition(type, type == ED25519_SHA256 ? ED25519_COST : cost, fingerprint,
+        subtypeMask);
+  }
+
+  /**
+   * Encodes this condition, exactly as {@link CryptoConditionWriter#writeCondition(Condition)}
+   * would encode the equivalent {@link Condition}.
+   *
+   * @return The DER encoding of this condition, which must not be modified.
+   */
+  byte[] encode() {
+    if (encoded != null) {
+      return encoded;
+    }
+
+    final byte[] costBytes = BigInteger.valueOf(cost).toByteArray();
+    final byte[] subtypesBytes = type == PREFIX_SHA256 || type == THRESHOLD_SHA256
+        ? CryptoConditionType.getMaskAsBitString(subtypeMask) : null;
+
+    int contentLength = headerLength(fingerprint.length) + fingerprint.length
+        + headerLength(costBytes.length) + costBytes.length;
+    if (subtypesBytes != null) {
+      contentLength += headerLength(subtypesBytes.length) + subtypesBytes.length;
+    }
+
+    final byte[] result = new byte[headerLength(contentLength) + contentLength];
+    int position = writeHeader(result, 0, CONSTRUCTED_TAGGED + type.getTypeCode(), contentLength);
+    position = writeHeader(result, position, TAGGED, fingerprint.length);
+    System.arraycopy(fingerprint, 0, result, position, fingerprint.length);
+    position += fingerprint.length;
+    position = writeHeader(result, position, TAGGED + 1, costBytes.length);
+    System.arraycopy(costBytes, 0, result, position, costBytes.length);
+    position += costBytes.length;
+    if (subtypesBytes != null) {
+      position = writeHeader(result, position, TAGGED + 2, subtypesBytes.length);
+      System.arraycopy(subtypesBytes, 0, result, position, subtypesBytes.length);
+    }
+
+    encoded = result;
+    return result;
+  }
+
+  /**
+   * Creates the {@link Condition} that this derived condition describes, without deriving its
+   * fingerprint again.
+   *
+   * @return A new {@link Condition} of the appropriate type.
+   */
+  Condition toCondition() {
+    switch (type) {
+      case PREIMAGE_SHA256:
+        return new PreimageSha256Condition(cost, fingerprint);
+      case PREFIX_SHA256:
+        return new PrefixSha256Condition(cost, fingerprint, subtypeMask);
+      case THRESHOLD_SHA256:
+        return new ThresholdSha256Condition(cost, fingerprint, subtypeMask);
+      case RSA_SHA256:
+        return new RsaSha256Condition(cost, fingerprint);
+      case ED25519_SHA256:
+        return new Ed25519Sha256Condition(fingerprint);
+      default:
+        throw new IllegalStateException("Unknown condition type: " + type);
+    }
+  }
+
+  CryptoConditionType getType() {
+    return type;
+  }
+
+  long getCost() {
+    return cost;
+  }
+
+  /**
+   * Accessor for the fingerprint, which must not be modified.
+   */
+  byte[] fingerprint() {
+    return fingerprint;
+  }
+
+  int getSubtypeMask() {
+    return subtypeMask;
+  }
+
+  /**
+   * Compares this derived condition with another, using the same rules as {@link
+   * Condition#equals(Object)}.
+   */
+  @Override
+  public boolean equals(Object object) {
+    if (this == object) {
+      return true;
+    }
+    if (object == null || getClass() != object.getClass()) {
+      return false;
+    }
+
+    DerivedCondition that = (DerivedCondition) object;
+
+    return type == that.type && cost == that.cost && Arrays.equals(fingerprint, that.fingerprint)
+        && subtypeMask == that.subtypeMask;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = type.hashCode();
+    result = 31 * result + (int) (cost ^ (cost >>> 32));
+    result = 31 * result + Arrays.hashCode(fingerprint);
+    result = 31 * result + subtypeMask;
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("DerivedCondition{");
+    sb.append("type=").append(type);
+    sb.append(", cost=").append(cost);
+    sb.append(", subtypes=").append(CryptoConditionType.getTypesOfMask(subtypeMask));
+    sb.append('}');
+    return sb.toString();
+  }
+
+  /**
+   * Calculates the number of bytes taken by the tag and length of a DER object.
+   *
+   * @param length The length of the value of the object.
+   *
+   * @return The length of the tag and length indicator.
+   */
+  private static int headerLength(final int length) {
+    if (length > 127) {
+      return 2 + (4 - Integer.numberOfLeadingZeros(length) / 8);
+    }
+    return 2;
+  }
+
+  /**
+   * Writes the tag and length of a DER object into a buffer.
+   *
+   * @return The position after the header.
+   */
+  private static int writeHeader(
+      final byte[] buffer, final int offset, final int tag, final int length
+  ) {
+    int position = offset;
+    buffer[position++] = (byte) tag;
+    if (length > 127) {
+      final int lengthOfLength = 4 - Integer.numberOfLeadingZeros(length) / 8;
+      buffer[position++] = (byte) (0x80 | lengthOfLength);
+      for (int i = lengthOfLength - 1; i >= 0; i--) {
+        buffer[position++] = (byte) (length >>> (i * 8));
+      }
+    } else {
+      buffer[position++] = (byte) length;
+    }
+    return position;
+  }
+
+  /**
+   * Creates the failure for a value that is out of range. Callers that report failures with
+   * exceptions convert it into an {@link IllegalArgumentException} with {@code message}.
+   */
+  private static VerificationFailure invalidValue(final int offset, final String message) {
+    return new VerificationFailure(VerificationResult.Status.INVALID_VALUE, offset,
+        () -> new IllegalArgumentException(message));
+  }
+
+  /**
+   * Feeds the tag and length of a DER object to a digest.
+   */
+  private static void updateHeader(final MessageDigest digest, final int tag, final int length) {
+    final byte[] header = new byte[6];
+    digest.update(header, 0, writeHeader(header, 0, tag, length));
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -47,6 +47,28 @@ public class Ed25519Sha256Fulfillment extends FulfillmentBase<Ed25519Sha256Condi
     this.condition = new Ed25519Sha256Condition(publicKey);
   }
 
+  /**
+   * Constructs an instance of the fulfillment whose condition has already been derived, such as by
+   * {@link CryptoConditionReader} while decoding.
+   *
+   * @param publicKey An {@link EdDSAPublicKey} associated with this fulfillment.
+   * @param signature A byte array containing the signature associated with this fulfillment.
+   * @param condition The condition derived from {@code publicKey}.
+   */
+  Ed25519Sha256Fulfillment(
+      final EdDSAPublicKey publicKey, final byte[] signature, final Ed25519Sha256Condition condition
+  ) {
+    super(ED25519_SHA256);
+
+    Objects.requireNonNull(publicKey, "EdDSAPublicKey must not be null!");
+    Objects.requireNonNull(signature, "Signature must not be null!");
+
+    this.publicKey = publicKey;
+    this.signature = Arrays.copyOf(signature, signature.length);
+    this.signatureBase64Url = Base64.getUrlEncoder().encodeToString(signature);
+    this.condition = Objects.requireNonNull(condition);
+  }
+
   /**
    * Returns the public key used.
    *
@@ -90,6 +112,11 @@ public class Ed25519Sha256Fulfillment extends FulfillmentBase<Ed25519Sha256Condi
         "Can't verify a Ed25519Sha256Fulfillment against an null condition.");
     Objects.requireNonNull(message, "Message must not be null!");
 
+    return verify(condition, SegmentedMessage.of(message));
+  }
+
+  @Override
+  boolean verify(final Ed25519Sha256Condition condition, final SegmentedMessage message) {
     if (!getCondition().equals(condition)) {
       return false;
     }
@@ -99,13 +126,29 @@ public class Ed25519Sha256Fulfillment extends FulfillmentBase<Ed25519Sha256Condi
       final MessageDigest messageDigest = MessageDigest.getInstance("SHA-512");
       final Signature edDsaSigner = new EdDSAEngine(messageDigest);
       edDsaSigner.initVerify(publicKey);
-      edDsaSigner.update(message);
-      return edDsaSigner.verify(signature);
+      return verifySignature(edDsaSigner, message);
     } catch (InvalidKeyException | NoSuchAlgorithmException | SignatureException e) {
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * Verifies the signature of this fulfillment using a {@link Signature} engine that has already
+   * been initialized for verification with {@link #getPublicKey()}.
+   *
+   * @param verifier An initialized {@link EdDSAEngine}.
+   * @param message  A {@link SegmentedMessage} containing the signed message.
+   *
+   * @return {@code true} if the signature is valid; {@code false} otherwise.
+   *
+   * @throws SignatureException if the engine is not initialized or the signature is malformed.
+   */
+  final boolean verifySignature(final Signature verifier, final SegmentedMessage message)
+      throws SignatureException {
+    message.updateTo(verifier);
+    return verifier.verify(signature);
+  }
+
   @Override
   public boolean equals(Object object) {
     if (this == object) {
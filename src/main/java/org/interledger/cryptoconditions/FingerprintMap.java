@@ -0,0 +1,289 @@
+package org.interledger.cryptoconditions;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * <p>A map keyed by the 32-byte fingerprints of SHA-256 conditions, for tables of pending
+ * conditions that hold tens of millions of entries.</p>
+ *
+ * <p>Keys are held in an open-addressing table as four {@code long}s each, with the fingerprint's
+ * own bits as its hash, so no key object, boxed entry or Base64 string is created per entry and a
+ * lookup reads two arrays. Keys can be given as a {@link Condition}, whose fingerprint is read
+ * without copying it, or as 32 bytes at an offset within a buffer, such as the buffer that a
+ * {@link ConditionView} was read from.</p>
+ *
+ * <p>Only the fingerprint is used as the key, so conditions of different types or costs with the
+ * same fingerprint share an entry. Values must not be {@code null}. This map is not thread-safe;
+ * see {@link ConcurrentFingerprintMap}.</p>
+ *
+ * @param <V> The type of the values.
+ */
+public class FingerprintMap<V> {
+
+  private final FingerprintTable table;
+
+  /**
+   * No-args Constructor.
+   */
+  public FingerprintMap() {
+    this(0);
+  }
+
+  /**
+   * Constructor that sizes this map to hold a number of entries without resizing.
+   *
+   * @param expectedSize The number of entries expected.
+   */
+  public FingerprintMap(final int expectedSize) {
+    this.table = new FingerprintTable(expectedSize, true);
+  }
+
+  /**
+   * Accessor for the value mapped to the fingerprint of a condition.
+   *
+   * @param condition The {@link Condition} whose fingerprint is the key.
+   *
+   * @return The value, or {@code null} if there is none.
+   */
+  public V get(final Condition condition) {
+    return get(FingerprintTable.fingerprintOf(condition), 0);
+  }
+
+  /**
+   * Accessor for the value mapped to a fingerprint.
+   *
+   * @param buffer The buffer holding the fingerprint.
+   * @param offset The position of the fingerprint within {@code buffer}.
+   *
+   * @return The value, or {@code null} if there is none.
+   */
+  @SuppressWarnings("unchecked")
+  public V get(final byte[] buffer, final int offset) {
+    FingerprintTable.checkFingerprint(buffer, offset);
+    final int slot = table.find(buffer, offset);
+    return slot < 0 ? null : (V) table.valueAt(slot);
+  }
+
+  /**
+   * Whether this map holds a value for the fingerprint of a condition.
+   *
+   * @param condition The {@link Condition} whose fingerprint is the key.
+   *
+   * @return {@code true} if there is a value for the fingerprint.
+   */
+  public boolean containsKey(final Condition condition) {
+    return get(condition) != null;
+  }
+
+  /**
+   * Whether this map holds a value for a fingerprint.
+   *
+   * @param buffer The buffer holding the fingerprint.
+   * @param offset The position of the fingerprint within {@code buffer}.
+   *
+   * @return {@code true} if there is a value for the fingerprint.
+   */
+  public boolean containsKey(final byte[] buffer, final int offset) {
+    return get(buffer, offset) != null;
+  }
+
+  /**
+   * Maps the fingerprint of a condition to a value.
+   *
+   * @param condition The {@link Condition} whose fingerprint is the key.
+   * @param value     The value.
+   *
+   * @return The value previously mapped to the fingerprint, or {@code null} if there was none.
+   */
+  public V put(final Condition condition, final V value) {
+    return put(FingerprintTable.fingerprintOf(condition), 0, value);
+  }
+
+  /**
+   * Maps a fingerprint to a value.
+   *
+   * @param buffer The buffer holding the fingerprint, which is copied.
+   * @param offset The position of the fingerprint within {@code buffer}.
+   * @param value  The value.
+   *
+   * @return The value previously mapped to the fingerprint, or {@code null} if there was none.
+   */
+  @SuppressWarnings("unchecked")
+  public V put(final byte[] buffer, final int offset, final V value) {
+    FingerprintTable.checkFingerprint(buffer, offset);
+    Objects.requireNonNull(value, "Value must not be null!");
+    final int slot = table.insert(buffer, offset);
+    if (slot < 0) {
+      table.setValueAt(-slot - 1, value);
+      return null;
+    }
+    final V previous = (V) table.valueAt(slot);
+    table.setValueAt(slot, value);
+    return previous;
+  }
+
+  /**
+   * Maps the fingerprint of a condition to a value, unless it is already mapped.
+   *
+   * @param condition The {@link Condition} whose fingerprint is the key.
+   * @param value     The value.
+   *
+   * @return The value already mapped to the fingerprint, or {@code null} if {@code value} was
+   *     added.
+   */
+  public V putIfAbsent(final Condition condition, final V value) {
+    return putIfAbsent(FingerprintTable.fingerprintOf(condition), 0, value);
+  }
+
+  /**
+   * Maps a fingerprint to a value, unless it is already mapped.
+   *
+   * @param buffer The buffer holding the fingerprint, which is copied.
+   * @param offset The position of the fingerprint within {@code buffer}.
+   * @param value  The value.
+   *
+   * @return The value already mapped to the fingerprint, or {@code null} if {@code value} was
+   *     added.
+   */
+  @SuppressWarnings("unchecked")
+  public V putIfAbsent(final byte[] buffer, final int offset, final V value) {
+    FingerprintTable.checkFingerprint(buffer, offset);
+    Objects.requireNonNull(value, "Value must not be null!");
+    final int slot = table.insert(buffer, offset);
+    if (slot < 0) {
+      table.setValueAt(-slot - 1, value);
+      return null;
+    }
+    return (V) table.valueAt(slot);
+  }
+
+  /**
+   * Removes the value mapped to the fingerprint of a condition.
+   *
+   * @param condition The {@link Condition} whose fingerprint is the key.
+   *
+   * @return The value that was removed, or {@code null} if there was none.
+   */
+  public V remove(final Condition condition) {
+    return remove(FingerprintTable.fingerprintOf(condition), 0);
+  }
+
+  /**
+   * Removes the value mapped to a fingerprint.
+   *
+   * @param buffer The buffer holding the fingerprint.
+   * @param offset The position of the fingerprint within {@code buffer}.
+   *
+   * @return The value that was removed, or {@code null} if there was none.
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(final byte[] buffer, final int offset) {
+    FingerprintTable.checkFingerprint(buffer, offset);
+    final int slot = table.find(buffer, offset);
+    if (slot < 0) {
+      return null;
+    }
+    final V previous = (V) table.valueAt(slot);
+    table.removeAt(slot);
+    return previous;
+  }
+
+  /**
+   * Removes the value mapped to a fingerprint, only if it is a given value.
+   *
+   * @param buffer The buffer holding the fingerprint.
+   * @param offset The position of the fingerprint within {@code buffer}.
+   * @param value  The value expected to be mapped to the fingerprint.
+   *
+   * @return {@code true} if the value was removed.
+   */
+  public boolean remove(final byte[] buffer, final int offset, final Object value) {
+    FingerprintTable.checkFingerprint(buffer, offset);
+    final int slot = table.find(buffer, offset);
+    if (slot < 0 || !table.valueAt(slot).equals(value)) {
+      return false;
+    }
+    table.removeAt(slot);
+    return true;
+  }
+
+  /**
+   * Maps each of a run of fingerprints, held back to back in a buffer, to the value at the same
+   * index in a list, sizing this map once for all of them.
+   *
+   * @param buffer The buffer holding the fingerprints.
+   * @param offset The position of the first fingerprint within {@code buffer}.
+   * @param values The values, one for each fingerprint.
+   */
+  public void putAll(final byte[] buffer, final int offset, final List<? extends V> values) {
+    Objects.requireNonNull(values, "Values must not be null!");
+    FingerprintTable.checkFingerprint(buffer, offset);
+    if (offset + (long) values.size() * FingerprintTable.FINGERPRINT_LENGTH > buffer.length) {
+      throw new IndexOutOfBoundsException("Buffer does not hold a fingerprint for every value.");
+    }
+    table.ensureCapacity(size() + values.size());
+    for (int i = 0; i < values.size(); i++) {
+      put(buffer, offset + i * FingerprintTable.FINGERPRINT_LENGTH, values.get(i));
+    }
+  }
+
+  /**
+   * Copies every entry of another map into this map, replacing any existing values.
+   *
+   * @param other The {@link FingerprintMap} to copy.
+   */
+  public void putAll(final FingerprintMap<? extends V> other) {
+    Objects.requireNonNull(other, "Map must not be null!");
+    table.ensureCapacity(size() + other.size());
+    other.forEach((fingerprint, value) -> put(fingerprint, 0, value));
+  }
+
+  /**
+   * Calls an action for every entry of this map, in no particular order. To avoid an allocation
+   * per entry, every call is passed the same 32-byte array, which holds the fingerprint of that
+   * entry and must be copied if it is kept. This map must not be modified by the action.
+   *
+   * @param action The action to call with each fingerprint and its value.
+   */
+  @SuppressWarnings("unchecked")
+  public void forEach(final BiConsumer<byte[], ? super V> action) {
+    Objects.requireNonNull(action, "Action must not be null!");
+    final byte[] fingerprint = new byte[FingerprintTable.FINGERPRINT_LENGTH];
+    for (int slot = table.nextUsed(0); slot >= 0; slot = table.nextUsed(slot + 1)) {
+      table.copyFingerprint(slot, fingerprint, 0);
+      action.accept(fingerprint, (V) table.valueAt(slot));
+    }
+  }
+
+  /**
+   * Accessor for the number of entries in this map.
+   *
+   * @return The number of entries.
+   */
+  public int size() {
+    return table.size();
+  }
+
+  /**
+   * Whether this map has no entries.
+   *
+   * @return {@code true} if this map is empty.
+   */
+  public boolean isEmpty() {
+    return table.size() == 0;
+  }
+
+  /**
+   * Removes every entry from this map, keeping its capacity.
+   */
+  public void clear() {
+    table.clear();
+  }
+
+  @Override
+  public String toString() {
+    return "FingerprintMap{size=" + size() + "}";
+  }
+}
@@ -0,0 +1,194 @@
+package org.interledger.cryptoconditions;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * <p>A set of the 32-byte fingerprints of SHA-256 conditions, held in the same open-addressing
+ * table as a {@link FingerprintMap} but without values, so that each fingerprint costs little more
+ * than its 32 bytes.</p>
+ *
+ * <p>Fingerprints can be given as a {@link Condition}, whose fingerprint is read without copying
+ * it, or as 32 bytes at an offset within a buffer. This set is not thread-safe; see {@link
+ * ConcurrentFingerprintSet}.</p>
+ */
+public class FingerprintSet {
+
+  private final FingerprintTable table;
+
+  /**
+   * No-args Constructor.
+   */
+  public FingerprintSet() {
+    this(0);
+  }
+
+  /**
+   * Constructor that sizes this set to hold a number of fingerprints without resizing.
+   *
+   * @param expectedSize The number of fingerprints expected.
+   */
+  public FingerprintSet(final int expectedSize) {
+    this.table = new FingerprintTable(expectedSize, false);
+  }
+
+  /**
+   * Whether this set holds the fingerprint of a condition.
+   *
+   * @param condition The {@link Condition} whose fingerprint to look for.
+   *
+   * @return {@code true} if this set holds the fingerprint.
+   */
+  public boolean contains(final Condition condition) {
+    return contains(FingerprintTable.fingerprintOf(condition), 0);
+  }
+
+  /**
+   * Whether this set holds a fingerprint.
+   *
+   * @param buffer The buffer holding the fingerprint.
+   * @param offset The position of the fingerprint within {@code buffer}.
+   *
+   * @return {@code true} if this set holds the fingerprint.
+   */
+  public boolean contains(final byte[] buffer, final int offset) {
+    FingerprintTable.checkFingerprint(buffer, offset);
+    return table.find(buffer, offset) >= 0;
+  }
+
+  /**
+   * Adds the fingerprint of a condition to this set.
+   *
+   * @param condition The {@link Condition} whose fingerprint to add.
+   *
+   * @return {@code true} if the fingerprint was not already in this set.
+   */
+  public boolean add(final Condition condition) {
+    return add(FingerprintTable.fingerprintOf(condition), 0);
+  }
+
+  /**
+   * Adds a fingerprint to this set.
+   *
+   * @param buffer The buffer holding the fingerprint, which is copied.
+   * @param offset The position of the fingerprint within {@code buffer}.
+   *
+   * @return {@code true} if the fingerprint was not already in this set.
+   */
+  public boolean add(final byte[] buffer, final int offset) {
+    FingerprintTable.checkFingerprint(buffer, offset);
+    return table.insert(buffer, offset) < 0;
+  }
+
+  /**
+   * Removes the fingerprint of a condition from this set.
+   *
+   * @param condition The {@link Condition} whose fingerprint to remove.
+   *
+   * @return {@code true} if the fingerprint was in this set.
+   */
+  public boolean remove(final Condition condition) {
+    return remove(FingerprintTable.fingerprintOf(condition), 0);
+  }
+
+  /**
+   * Removes a fingerprint from this set.
+   *
+   * @param buffer The buffer holding the fingerprint.
+   * @param offset The position of the fingerprint within {@code buffer}.
+   *
+   * @return {@code true} if the fingerprint was in this set.
+   */
+  public boolean remove(final byte[] buffer, final int offset) {
+    FingerprintTable.checkFingerprint(buffer, offset);
+    final int slot = table.find(buffer, offset);
+    if (slot < 0) {
+      return false;
+    }
+    table.removeAt(slot);
+    return true;
+  }
+
+  /**
+   * Adds a run of fingerprints, held back to back in a buffer, sizing this set once for all of
+   * them.
+   *
+   * @param buffer The buffer holding the fingerprints.
+   * @param offset The position of the first fingerprint within {@code buffer}.
+   * @param count  The number of fingerprints.
+   *
+   * @return The number of fingerprints that were not already in this set.
+   */
+  public int addAll(final byte[] buffer, final int offset, final int count) {
+    Objects.requireNonNull(buffer, "Buffer must not be null!");
+    if (count < 0 || offset < 0
+        || offset + (long) count * FingerprintTable.FINGERPRINT_LENGTH > buffer.length) {
+      throw new IndexOutOfBoundsException("Buffer does not hold " + count + " fingerprints.");
+    }
+    table.ensureCapacity(size() + count);
+    int added = 0;
+    for (int i = 0; i < count; i++) {
+      if (table.insert(buffer, offset + i * FingerprintTable.FINGERPRINT_LENGTH) < 0) {
+        added++;
+      }
+    }
+    return added;
+  }
+
+  /**
+   * Adds every fingerprint of another set to this set.
+   *
+   * @param other The {@link FingerprintSet} to copy.
+   */
+  public void addAll(final FingerprintSet other) {
+    Objects.requireNonNull(other, "Set must not be null!");
+    table.ensureCapacity(size() + other.size());
+    other.forEach(fingerprint -> table.insert(fingerprint, 0));
+  }
+
+  /**
+   * Calls an action for every fingerprint in this set, in no particular order. To avoid an
+   * allocation per fingerprint, every call is passed the same 32-byte array, which must be copied
+   * if it is kept. This set must not be modified by the action.
+   *
+   * @param action The action to call with each fingerprint.
+   */
+  public void forEach(final Consumer<byte[]> action) {
+    Objects.requireNonNull(action, "Action must not be null!");
+    final byte[] fingerprint = new byte[FingerprintTable.FINGERPRINT_LENGTH];
+    for (int slot = table.nextUsed(0); slot >= 0; slot = table.nextUsed(slot + 1)) {
+      table.copyFingerprint(slot, fingerprint, 0);
+      action.accept(fingerprint);
+    }
+  }
+
+  /**
+   * Accessor for the number of fingerprints in this set.
+   *
+   * @return The number of fingerprints.
+   */
+  public int size() {
+    return table.size();
+  }
+
+  /**
+   * Whether this set has no fingerprints.
+   *
+   * @return {@code true} if this set is empty.
+   */
+  public boolean isEmpty() {
+    return table.size() == 0;
+  }
+
+  /**
+   * Removes every fingerprint from this set, keeping its capacity.
+   */
+  public void clear() {
+    table.clear();
+  }
+
+  @Override
+  public String toString() {
+    return "FingerprintSet{size=" + size() + "}";
+  }
+}
@@ -0,0 +1,280 @@
+package org.interledger.cryptoconditions;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * <p>An open-addressing hash table keyed by 32-byte SHA-256 fingerprints, shared by {@link
+ * FingerprintMap} and {@link FingerprintSet}.</p>
+ *
+ * <p>Each key is held as four {@code long}s in a single {@code long[]}, and the slots in use are
+ * marked in a bitmap, so a key costs no object of its own. Fingerprints are SHA-256 hashes, so
+ * their first eight bytes are used as the hash without mixing. Collisions are resolved by linear
+ * probing, and removals shift later entries back rather than leaving tombstones. Values, if any,
+ * are held in a parallel array.</p>
+ *
+ * <p>A table is not thread-safe.</p>
+ */
+final class FingerprintTable {
+
+  static final int FINGERPRINT_LENGTH = 32;
+
+  private static final int MIN_CAPACITY = 16;
+  private static final int MAX_CAPACITY = 1 << 28;
+
+  private final boolean hasValues;
+
+  private long[] keys;
+  private long[] used;
+  private Object[] values;
+  private int mask;
+  private int threshold;
+  private int size;
+
+  FingerprintTable(final int expectedSize, final boolean hasValues) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("Expected size must not be negative!");
+    }
+    this.hasValues = hasValues;
+    allocate(capacityFor(expectedSize));
+  }
+
+  /**
+   * The capacity that holds a number of entries without resizing, at a load factor of 3/4.
+   */
+  private static int capacityFor(final int expectedSize) {
+    final long minimum = Math.max(MIN_CAPACITY, (expectedSize * 4L + 2) / 3);
+    if (minimum > MAX_CAPACITY) {
+      throw new IllegalArgumentException("Expected size is too large!");
+    }
+    return Integer.highestOneBit((int) minimum - 1) << 1;
+  }
+
+  private void allocate(final int capacity) {
+    this.keys = new long[capacity * 4];
+    this.used = new long[(capacity + 63) >>> 6];
+    this.values = hasValues ? new Object[capacity] : null;
+    this.mask = capacity - 1;
+    this.threshold = capacity / 4 * 3;
+  }
+
+  /**
+   * Accessor for the fingerprint of a condition, without copying it if it is a {@link
+   * Sha256Condition}. The fingerprint of any other condition is decoded from {@link
+   * Condition#getFingerprintBase64Url()}.
+   */
+  static byte[] fingerprintOf(final Condition condition) {
+    Objects.requireNonNull(condition, "Condition must not be null!");
+    final byte[] fingerprint = condition instanceof Sha256Condition
+        ? ((Sha256Condition) condition).fingerprint()
+        : Base64.getUrlDecoder().decode(condition.getFingerprintBase64Url());
+    if (fingerprint.length != FINGERPRINT_LENGTH) {
+      throw new IllegalArgumentException("Fingerprint must be 32 bytes.");
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Checks that a buffer holds a fingerprint at an offset.
+   */
+  static void checkFingerprint(final byte[] buffer, final int offset) {
+    Objects.requireNonNull(buffer, "Fingerprint must not be null!");
+    if (offset < 0 || offset > buffer.length - FINGERPRINT_LENGTH) {
+      throw new IndexOutOfBoundsException("Fingerprint must be 32 bytes.");
+    }
+  }
+
+  /**
+   * Reads eight bytes of a fingerprint as a big-endian {@code long}.
+   */
+  static long readLong(final byte[] buffer, final int offset) {
+    long value = 0;
+    for (int i = 0; i < 8; i++) {
+      value = value << 8 | (buffer[offset + i] & 0xFF);
+    }
+    return value;
+  }
+
+  private static void writeLong(final long value, final byte[] buffer, final int offset) {
+    for (int i = 0; i < 8; i++) {
+      buffer[offset + i] = (byte) (value >>> (56 - 8 * i));
+    }
+  }
+
+  final int size() {
+    return size;
+  }
+
+  private boolean isUsed(final int slot) {
+    return (used[slot >>> 6] & 1L << slot) != 0;
+  }
+
+  /**
+   * Finds the slot holding a fingerprint.
+   *
+   * @return The slot, or {@code -1} if the fingerprint is not in this table.
+   */
+  final int find(final byte[] buffer, final int offset) {
+    final long k0 = readLong(buffer, offset);
+    final long k1 = readLong(buffer, offset + 8);
+    final long k2 = readLong(buffer, offset + 16);
+    final long k3 = readLong(buffer, offset + 24);
+
+    for (int slot = (int) k0 & mask; isUsed(slot); slot = (slot + 1) & mask) {
+      final int index = slot << 2;
+      if (keys[index] == k0 && keys[index + 1] == k1 && keys[index + 2] == k2
+          && keys[index + 3] == k3) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the slot holding a fingerprint, adding the fingerprint if it is not in this table.
+   *
+   * @return The slot if the fingerprint was already in this table, or {@code -(slot + 1)} if it
+   *     was added.
+   */
+  final int insert(final byte[] buffer, final int offset) {
+    if (size >= threshold) {
+      if (keys.length / 4 >= MAX_CAPACITY) {
+        throw new IllegalStateException("Table is full!");
+      }
+      resize(keys.length / 2);
+    }
+
+    final long k0 = readLong(buffer, offset);
+    final long k1 = readLong(buffer, offset + 8);
+    final long k2 = readLong(buffer, offset + 16);
+    final long k3 = readLong(buffer, offset + 24);
+
+    int slot = (int) k0 & mask;
+    for (; isUsed(slot); slot = (slot + 1) & mask) {
+      final int index = slot << 2;
+      if (keys[index] == k0 && keys[index + 1] == k1 && keys[index + 2] == k2
+          && keys[index + 3] == k3) {
+        return slot;
+      }
+    }
+
+    final int index = slot << 2;
+    keys[index] = k0;
+    keys[index + 1] = k1;
+    keys[index + 2] = k2;
+    keys[index + 3] = k3;
+    used[slot >>> 6] |= 1L << slot;
+    size++;
+    return -(slot + 1);
+  }
+
+  /**
+   * Removes the entry in a slot, shifting back any later entries of the same run that would no
+   * longer be found.
+   */
+  final void removeAt(final int slot) {
+    int hole = slot;
+    for (int next = (hole + 1) & mask; isUsed(next); next = (next + 1) & mask) {
+      final int home = (int) keys[next << 2] & mask;
+      // An entry can fill the hole if its home is not cyclically within (hole, next]
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        System.arraycopy(keys, next << 2, keys, hole << 2, 4);
+        if (hasValues) {
+          values[hole] = values[next];
+        }
+        hole = next;
+      }
+    }
+    used[hole >>> 6] &= ~(1L << hole);
+    if (hasValues) {
+      values[hole] = null;
+    }
+    size--;
+  }
+
+  final Object valueAt(final int slot) {
+    return values[slot];
+  }
+
+  final void setValueAt(final int slot, final Object value) {
+    values[slot] = value;
+  }
+
+  /**
+   * Removes every entry, keeping the current capacity.
+   */
+  final void clear() {
+    Arrays.fill(used, 0);
+    if (hasValues) {
+      Arrays.fill(values, null);
+    }
+    size = 0;
+  }
+
+  /**
+   * Grows this table, if necessary, to hold a number of entries without resizing again.
+   */
+  final void ensureCapacity(final int expectedSize) {
+    final int capacity = capacityFor(expectedSize);
+    if (capacity > keys.length / 4) {
+      resize(capacity);
+    }
+  }
+
+  private void resize(final int capacity) {
+    final long[] oldKeys = keys;
+    final long[] oldUsed = used;
+    final Object[] oldValues = values;
+    final int oldCapacity = oldKeys.length / 4;
+    allocate(capacity);
+
+    for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+      if ((oldUsed[oldSlot >>> 6] & 1L << oldSlot) == 0) {
+        continue;
+      }
+      final int oldIndex = oldSlot << 2;
+      int slot = (int) oldKeys[oldIndex] & mask;
+      while (isUsed(slot)) {
+        slot = (slot + 1) & mask;
+      }
+      System.arraycopy(oldKeys, oldIndex, keys, slot << 2, 4);
+      used[slot >>> 6] |= 1L << slot;
+      if (hasValues) {
+        values[slot] = oldValues[oldSlot];
+      }
+    }
+  }
+
+  /**
+   * Accessor for the slot of the first entry at or after a slot, for iterating over entries.
+   *
+   * @return The slot, or {@code -1} if there are no more entries.
+   */
+  final int nextUsed(final int fromSlot) {
+    int word = fromSlot >>> 6;
+    if (word >= used.length) {
+      return -1;
+    }
+    long bits = used[word] & (-1L << fromSlot);
+    while (true) {
+      if (bits != 0) {
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+      }
+      if (++word == used.length) {
+        return -1;
+      }
+      bits = used[word];
+    }
+  }
+
+  /**
+   * Copies the fingerprint in a slot into a buffer.
+   */
+  final void copyFingerprint(final int slot, final byte[] buffer, final int offset) {
+    final int index = slot << 2;
+    for (int i = 0; i < 4; i++) {
+      writeLong(keys[index + i], buffer, offset + 8 * i);
+    }
+  }
+}
@@ -1,5 +1,8 @@
 package org.interledger.cryptoconditions;
 
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
 /**
  * An implementation of a crypto-conditions Fulfillment.
  *
@@ -57,4 +60,69 @@ public interface Fulfillment<C extends Condition> {
    */
   boolean verify(C condition, byte[] message);
 
+  /**
+   * Verifies this fulfillment against a condition and the remaining bytes of a buffer, which may
+   * be a direct buffer. The position, limit and contents of the buffer are not changed.
+   *
+   * <p>The fulfillments in this library read the buffer directly, passing it through nested
+   * PREFIX-SHA-256 fulfillments and into signature engines without copying it to the heap. The
+   * default implementation copies the remaining bytes into an array and calls {@link
+   * #verify(Condition, byte[])}.</p>
+   *
+   * @param condition A {@link Condition} that this fulfillment should verify.
+   * @param message   A {@link ByteBuffer} whose remaining bytes are the message.
+   *
+   * @return {@code true} if this fulfillment validates the supplied condition and message; {@code
+   *     false} otherwise.
+   */
+  default boolean verify(C condition, ByteBuffer message) {
+    Objects.requireNonNull(message, "Message must not be null!");
+
+    final byte[] bytes = new byte[message.remaining()];
+    message.duplicate().get(bytes);
+    return verify(condition, bytes);
+  }
+
+  /**
+   * Checks a request against a {@link VerificationPolicy} and then, if it is admitted, verifies
+   * this fulfillment against a condition and a message.
+   *
+   * @param condition A {@link Condition} that this fulfillment should verify.
+   * @param message   An optionally-empty byte array that is part of validating the condition.
+   * @param policy    The {@link VerificationPolicy} to enforce before verifying.
+   *
+   * @return {@code true} if this fulfillment validates the supplied condition and message; {@code
+   *     false} otherwise.
+   *
+   * @throws VerificationPolicyException if the request breaks any limit of {@code policy}.
+   */
+  default boolean verify(C condition, byte[] message, VerificationPolicy policy) {
+    Objects.requireNonNull(message, "Message must not be null!");
+    Objects.requireNonNull(policy, "Policy must not be null!");
+
+    policy.check(this, condition, message.length);
+    return verify(condition, message);
+  }
+
+  /**
+   * Checks a request against a {@link VerificationPolicy} and then, if it is admitted, verifies
+   * this fulfillment against a condition and the remaining bytes of a buffer.
+   *
+   * @param condition A {@link Condition} that this fulfillment should verify.
+   * @param message   A {@link ByteBuffer} whose remaining bytes are the message.
+   * @param policy    The {@link VerificationPolicy} to enforce before verifying.
+   *
+   * @return {@code true} if this fulfillment validates the supplied condition and message; {@code
+   *     false} otherwise.
+   *
+   * @throws VerificationPolicyException if the request breaks any limit of {@code policy}.
+   */
+  default boolean verify(C condition, ByteBuffer message, VerificationPolicy policy) {
+    Objects.requireNonNull(message, "Message must not be null!");
+    Objects.requireNonNull(policy, "Policy must not be null!");
+
+    policy.check(this, condition, message.remaining());
+    return verify(condition, message);
+  }
+
 }
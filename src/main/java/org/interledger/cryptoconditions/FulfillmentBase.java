@@ -1,5 +1,6 @@
 package org.interledger.cryptoconditions;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 /**
@@ -23,6 +24,53 @@ public abstract class FulfillmentBase<C extends Condition> implements Fulfillmen
     return this.type;
   }
 
+  @Override
+  public boolean verify(final C condition, final ByteBuffer message) {
+    Objects.requireNonNull(condition, "Can't verify a Fulfillment against a null condition!");
+    Objects.requireNonNull(message, "Message must not be null!");
+
+    return verify(condition, SegmentedMessage.of(message));
+  }
+
+  /**
+   * Verifies this fulfillment against a message that is made up of segments, such as a message
+   * that has been passed down through one or more PREFIX-SHA-256 fulfillments.
+   *
+   * <p>By default, the segments are gathered into a single array and passed to {@link
+   * #verify(Condition, byte[])}. Fulfillments that can consume the segments directly override this
+   * method to avoid the copy.</p>
+   *
+   * @param condition A {@link Condition} that this fulfillment should verify.
+   * @param message   A {@link SegmentedMessage} that is part of verifying the supplied condition.
+   *
+   * @return {@code true} if this fulfillment validates the supplied condition and message; {@code
+   *     false} otherwise.
+   */
+  boolean verify(final C condition, final SegmentedMessage message) {
+    return verify(condition, message.toByteArray());
+  }
+
+  /**
+   * Verifies any fulfillment against a segmented message, avoiding a copy of the message where the
+   * fulfillment supports it.
+   *
+   * @param fulfillment The {@link Fulfillment} to verify.
+   * @param condition   A {@link Condition} that {@code fulfillment} should verify.
+   * @param message     A {@link SegmentedMessage} that is part of verifying the supplied condition.
+   *
+   * @return {@code true} if {@code fulfillment} validates the supplied condition and message;
+   *     {@code false} otherwise.
+   */
+  @SuppressWarnings("unchecked")
+  static boolean verifySegmented(
+      final Fulfillment fulfillment, final Condition condition, final SegmentedMessage message
+  ) {
+    if (fulfillment instanceof FulfillmentBase) {
+      return ((FulfillmentBase) fulfillment).verify(condition, message);
+    }
+    return fulfillment.verify(condition, message.toByteArray());
+  }
+
   @Override
   public boolean equals(Object object) {
     if (this == object) {
@@ -0,0 +1,1099 @@
+package org.interledger.cryptoconditions;
+
+import org.interledger.cryptoconditions.der.DerCursor;
+import org.interledger.cryptoconditions.der.DerEncodingException;
+import org.interledger.cryptoconditions.der.DerTag;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * <p>An append-only log of fulfillments, for retaining every fulfillment that is verified, in which
+ * repeated subconditions and subtrees are stored once.</p>
+ *
+ * <p>Each fulfillment is logged as its DER encoding, except that any subcondition of a
+ * THRESHOLD-SHA-256 fulfillment, and any PREFIX-SHA-256 or THRESHOLD-SHA-256 subfulfillment, that
+ * has been seen before is replaced by a reference to an entry in a dictionary. Entries are keyed by
+ * the SHA-256 fingerprint of their DER encoding, so only identical encodings are shared, and an
+ * entry is added the second time its encoding is seen, so that encodings that only ever appear
+ * once do not fill the dictionary. Entries may themselves refer to earlier entries. A reference is
+ * written with a private-class tag, which never appears in a crypto-condition, holding the number
+ * of the entry, so that a subcondition of about 40 bytes is logged in 3 or 4.</p>
+ *
+ * <p>The log is a directory holding the dictionary and a series of segments, each of which is
+ * named after the id of its first record and holds records up to a maximum size, with an index of
+ * the position of each record. Records are numbered from zero, and are read by id with one lookup
+ * in the index of their segment, or replayed in order by reading each segment sequentially. Every
+ * record and dictionary entry carries a CRC-32 checksum. When a log is opened, the end of its last
+ * segment and of its dictionary are checked, and truncated at the first record or entry that is
+ * incomplete or corrupt. Records appended since the last {@link #flush()} may be lost in a
+ * crash, but new dictionary entries are written to disk before any record that refers to them, so
+ * no record that survives a crash refers to an entry that did not. Only canonical DER encodings
+ * are logged, so that every record is read back exactly as it was appended.</p>
+ *
+ * <p>A log is thread-safe. Appends and lookups by id are serialized, while a replay only locks the
+ * log to read dictionary entries.</p>
+ */
+public class FulfillmentLog implements Closeable {
+
+  private static final long SEGMENT_MAGIC = 0x43434c4f47534731L; // "CCLOGSG1"
+  private static final long DICTIONARY_MAGIC = 0x43434c4f47444331L; // "CCLOGDC1"
+
+  private static final String DICTIONARY = "dictionary.dat";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final String INDEX_SUFFIX = ".idx";
+
+  private static final int FILE_HEADER = 8;
+  // A record is its length and checksum, then its encoding
+  private static final int RECORD_HEADER = 8;
+  // An entry is its fingerprint, kind, length and checksum, then its encoding
+  private static final int ENTRY_HEADER = FingerprintTable.FINGERPRINT_LENGTH + 9;
+
+  private static final byte CONDITION_ENTRY = 1;
+  private static final byte FULFILLMENT_ENTRY = 2;
+
+  private static final int CONSTRUCTED_TAGGED =
+      DerTag.CONSTRUCTED.getTag() + DerTag.TAGGED.getTag();
+  // The private class, which crypto-conditions never use
+  private static final int REFERENCE = DerTag.TAGGED.getTag() + DerTag.APPLICATION.getTag();
+
+  private static final int PREFIX = CryptoConditionType.PREFIX_SHA256.getTypeCode();
+  private static final int THRESHOLD = CryptoConditionType.THRESHOLD_SHA256.getTypeCode();
+
+  // What lookupEntry returns for an encoding without an entry
+  private static final int NOT_SEEN = -1;
+  private static final int SEEN_ONCE = -2;
+
+  private static final int MAX_SEEN = 1 << 20;
+  private static final int REPLAY_BUFFER = 1 << 20;
+
+  static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+
+  private final Path directory;
+  private final long segmentSize;
+  private final MessageDigest sha256;
+
+  private final FileChannel dictionary;
+  private long dictionaryEnd;
+  private long[] entryOffsets = new long[64];
+  private final List<byte[]> expandedEntries = new ArrayList<>();
+  private final FingerprintMap<Integer> entryIds = new FingerprintMap<>();
+  private final FingerprintSet seen = new FingerprintSet();
+
+  private final List<Segment> segments = new CopyOnWriteArrayList<>();
+  private long nextId;
+  private long uncompressedBytes;
+  private long compressedBytes;
+  private boolean closed;
+
+  /**
+   * Opens the log held in a directory, creating it if it does not exist.
+   *
+   * @param directory The directory holding the log.
+   *
+   * @return The {@link FulfillmentLog}.
+   *
+   * @throws IOException if the log cannot be opened, or is missing any records.
+   */
+  public static FulfillmentLog open(final Path directory) throws IOException {
+    return new FulfillmentLog(directory, DEFAULT_SEGMENT_SIZE);
+  }
+
+  FulfillmentLog(final Path directory, final long segmentSize) throws IOException {
+    this.directory = Objects.requireNonNull(directory, "Directory must not be null!");
+    this.segmentSize = segmentSize;
+    try {
+      this.sha256 = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+
+    Files.createDirectories(directory);
+    this.dictionary = openFile(directory.resolve(DICTIONARY), DICTIONARY_MAGIC);
+    try {
+      openDictionary();
+      openSegments();
+    } catch (IOException | RuntimeException e) {
+      closeAll();
+      throw e;
+    }
+  }
+
+  private static FileChannel openFile(final Path path, final long magic) throws IOException {
+    final FileChannel channel = FileChannel.open(path,
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+    if (channel.size() == 0) {
+      header.putLong(0, magic);
+      channel.write(header, 0);
+    } else if (channel.read(header, 0) != FILE_HEADER || header.getLong(0) != magic) {
+      channel.close();
+      throw new IOException("Not part of a fulfillment log: " + path);
+    }
+    return channel;
+  }
+
+  /**
+   * Reads the fingerprint and position of every entry of the dictionary, truncating it at the
+   * first entry that is incomplete or corrupt.
+   */
+  private void openDictionary() throws IOException {
+    final long size = dictionary.size();
+    final byte[] fingerprint = new byte[FingerprintTable.FINGERPRINT_LENGTH];
+    long position = FILE_HEADER;
+    try (DataInputStream in = openStream(dictionary, position)) {
+      while (position + ENTRY_HEADER <= size) {
+        in.readFully(fingerprint);
+        final byte kind = in.readByte();
+        final int length = in.readInt();
+        final int checksum = in.readInt();
+        if ((kind != CONDITION_ENTRY && kind != FULFILLMENT_ENTRY)
+            || length <= 0 || length > size - position - ENTRY_HEADER) {
+          break;
+        }
+        final byte[] encoding = new byte[length];
+        in.readFully(encoding);
+        if (checksum(encoding) != checksum) {
+          break;
+        }
+        addEntry(fingerprint, position);
+        position += ENTRY_HEADER + length;
+      }
+    }
+    dictionary.truncate(position);
+    dictionaryEnd = position;
+  }
+
+  private void addEntry(final byte[] fingerprint, final long position) {
+    final int id = expandedEntries.size();
+    if (id == entryOffsets.length) {
+      entryOffsets = Arrays.copyOf(entryOffsets, id * 2);
+    }
+    entryOffsets[id] = position;
+    expandedEntries.add(null);
+    entryIds.put(fingerprint, 0, id);
+  }
+
+  private void openSegments() throws IOException {
+    final List<Long> firstIds = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+      for (Path file : files) {
+        final String name = file.getFileName().toString();
+        final String id = name.substring(0, name.length() - SEGMENT_SUFFIX.length());
+        if (id.matches("[0-9]{20}")) {
+          firstIds.add(Long.parseLong(id));
+        }
+      }
+    }
+    firstIds.sort(null);
+    if (firstIds.isEmpty()) {
+      firstIds.add(0L);
+    }
+
+    for (int i = 0; i < firstIds.size(); i++) {
+      final long firstId = firstIds.get(i);
+      if (firstId != nextId) {
+        throw new IOException("Fulfillment log is missing records " + nextId + " to "
+            + (firstId - 1) + ".");
+      }
+      final Segment segment = new Segment(directory, firstId);
+      segments.add(segment);
+      if (i < firstIds.size() - 1) {
+        segment.records = segment.index.size() / 8;
+        segment.end = segment.data.size();
+      } else {
+        recover(segment);
+      }
+      nextId = firstId + segment.records;
+    }
+  }
+
+  /**
+   * Finds the end of the valid records of the last segment, whose references must all be to
+   * entries that survived, and rewrites its index.
+   */
+  private void recover(final Segment segment) throws IOException {
+    final long size = segment.data.size();
+    final List<Long> offsets = new ArrayList<>();
+    long position = FILE_HEADER;
+    try (DataInputStream in = openStream(segment.data, position)) {
+      while (position + RECORD_HEADER <= size) {
+        final int length = in.readInt();
+        final int checksum = in.readInt();
+        if (length <= 0 || length > size - position - RECORD_HEADER) {
+          break;
+        }
+        final byte[] encoding = new byte[length];
+        in.readFully(encoding);
+        if (checksum(encoding) != checksum || !expandsCompletely(encoding)) {
+          break;
+        }
+        offsets.add(position);
+        position += RECORD_HEADER + length;
+      }
+    }
+    segment.data.truncate(position);
+    segment.end = position;
+
+    final ByteBuffer index = ByteBuffer.allocate(offsets.size() * 8);
+    for (long offset : offsets) {
+      index.putLong(offset);
+    }
+    ((Buffer) index).flip();
+    segment.index.truncate(0);
+    writeFully(segment.index, index, 0);
+    segment.records = offsets.size();
+  }
+
+  private boolean expandsCompletely(final byte[] encoding) throws IOException {
+    try {
+      expand(encoding);
+      return true;
+    } catch (DerEncodingException | IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Appends a fulfillment to this log.
+   *
+   * @param fulfillment The {@link Fulfillment} to log.
+   *
+   * @return The id of the record.
+   *
+   * @throws DerEncodingException if the fulfillment cannot be encoded.
+   * @throws IOException          if the log cannot be written.
+   */
+  public long append(final Fulfillment fulfillment) throws DerEncodingException, IOException {
+    Objects.requireNonNull(fulfillment, "Fulfillment must not be null!");
+    return appendEncoded(CryptoConditionWriter.writeFulfillment(fulfillment));
+  }
+
+  /**
+   * Appends the DER encoding of a fulfillment to this log.
+   *
+   * @param fulfillment The DER encoded fulfillment, as written by {@link CryptoConditionWriter}.
+   *
+   * @return The id of the record.
+   *
+   * @throws DerEncodingException if the encoding is malformed or not canonical.
+   * @throws IOException          if the log cannot be written.
+   */
+  public synchronized long appendEncoded(final byte[] fulfillment)
+      throws DerEncodingException, IOException {
+    Objects.requireNonNull(fulfillment, "Fulfillment must not be null!");
+    checkOpen();
+
+    // Expansion writes canonical lengths, so only canonical encodings are read back as appended
+    CryptoConditionScanner.validateFulfillment(fulfillment);
+
+    final long entriesEnd = dictionaryEnd;
+    final DerCursor in = new DerCursor(fulfillment);
+    final ByteArrayOutputStream encoding = new ByteArrayOutputStream(fulfillment.length);
+    try {
+      encodeFulfillment(in, encoding);
+      if (in.hasRemaining()) {
+        throw new DerEncodingException(in.getPosition(),
+            () -> "Unexpected bytes after fulfillment.");
+      }
+    } catch (DerEncodingException e) {
+      throw e.withStackTrace();
+    }
+    final byte[] record = encoding.toByteArray();
+
+    // A record must never be durable without the entries that it refers to
+    if (dictionaryEnd != entriesEnd) {
+      dictionary.force(false);
+    }
+
+    Segment segment = segments.get(segments.size() - 1);
+    if (segment.records > 0 && segment.end + RECORD_HEADER + record.length > segmentSize) {
+      // Earlier segments are never recovered, so must be durable
+      segment.force();
+      segment = new Segment(directory, nextId);
+      segments.add(segment);
+      segment.end = FILE_HEADER;
+    }
+
+    final ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER + record.length);
+    buffer.putInt(record.length).putInt(checksum(record)).put(record);
+    ((Buffer) buffer).flip();
+    writeFully(segment.data, buffer, segment.end);
+
+    final ByteBuffer offset = ByteBuffer.allocate(8);
+    offset.putLong(0, segment.end);
+    writeFully(segment.index, offset, segment.records * 8);
+
+    segment.end += RECORD_HEADER + record.length;
+    segment.records++;
+    uncompressedBytes += fulfillment.length;
+    compressedBytes += RECORD_HEADER + record.length;
+    return nextId++;
+  }
+
+  /**
+   * Writes the encoding of the fulfillment in {@code in}, replacing the subconditions and subtrees
+   * within it that have entries with references. Subtrees are encoded with an explicit stack, so
+   * that deeply nested fulfillments cannot overflow the thread stack.
+   */
+  private void encodeFulfillment(final DerCursor in, final ByteArrayOutputStream out)
+      throws DerEncodingException, IOException {
+    final Deque<PendingSubtree> stack = new ArrayDeque<>();
+    push(stack, openEncoding(in, out, false));
+    while (!stack.isEmpty()) {
+      final PendingSubtree subtree = stack.peek();
+      if (subtree.hasNextSubfulfillment()) {
+        push(stack, openEncoding(subtree.nextSubfulfillment(), subtree.subfulfillmentsOut, true));
+      } else {
+        stack.pop();
+        finishEncoding(subtree);
+      }
+    }
+  }
+
+  /**
+   * Reads the tag and length of the fulfillment in {@code in}, and writes it at once if it is not
+   * a PREFIX-SHA-256 or THRESHOLD-SHA-256 fulfillment or can be replaced by a reference.
+   *
+   * @param lookup Whether the fulfillment itself may be replaced.
+   *
+   * @return The subtree whose subfulfillments must be encoded next, or {@code null} if the
+   *     fulfillment has been written.
+   */
+  private PendingSubtree openEncoding(
+      final DerCursor in, final ByteArrayOutputStream out, final boolean lookup
+  ) throws DerEncodingException, IOException {
+    final int start = in.getPosition();
+    final int tag = in.readTag();
+    final int type = tag - CONSTRUCTED_TAGGED;
+    if (CryptoConditionType.lookup(type) == null) {
+      throw new DerEncodingException(start, () -> "Invalid Fulfillment Type code.");
+    }
+    final DerCursor value = in.slice(in.readLength());
+    final int end = in.getPosition();
+
+    if (type != PREFIX && type != THRESHOLD) {
+      out.write(in.getBuffer(), start, end - start);
+      return null;
+    }
+
+    // A subtree seen once before is encoded into a new entry, which it is then replaced by
+    byte[] fingerprint = null;
+    if (lookup) {
+      fingerprint = fingerprint(in.getBuffer(), start, end);
+      final int id = lookupEntry(fingerprint);
+      if (id >= 0) {
+        writeReference(out, id);
+        return null;
+      } else if (id == NOT_SEEN) {
+        fingerprint = null;
+      }
+    }
+    return PendingSubtree.open(tag, value, out, fingerprint, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Writes a subtree whose subfulfillments have been encoded, replacing its subconditions that
+   * have entries, and adds it to the dictionary if it was seen before.
+   */
+  private void finishEncoding(final PendingSubtree subtree)
+      throws DerEncodingException, IOException {
+    subtree.checkSubfulfillments();
+    final ByteArrayOutputStream body = subtree.body;
+    if (subtree.tag - CONSTRUCTED_TAGGED == PREFIX) {
+      writeElement(body, CONSTRUCTED_TAGGED + 2, subtree.subfulfillmentsOut);
+    } else {
+      writeElement(body, CONSTRUCTED_TAGGED, subtree.subfulfillmentsOut);
+
+      final DerCursor value = subtree.value;
+      final DerCursor subconditions = value.slice(value.readHeader(CONSTRUCTED_TAGGED + 1));
+      final ByteArrayOutputStream conditions = new ByteArrayOutputStream();
+      while (subconditions.hasRemaining()) {
+        final int conditionStart = subconditions.getPosition();
+        subconditions.readTag();
+        subconditions.skip(subconditions.readLength());
+        encodeCondition(subconditions.getBuffer(), conditionStart, subconditions.getPosition(),
+            conditions);
+      }
+      writeElement(body, CONSTRUCTED_TAGGED + 1, conditions);
+    }
+    if (subtree.value.hasRemaining()) {
+      throw new DerEncodingException(subtree.value.getPosition(),
+          () -> "Unexpected bytes in fulfillment.");
+    }
+
+    if (subtree.fingerprint == null) {
+      writeElement(subtree.out, subtree.tag, body);
+    } else {
+      final ByteArrayOutputStream entry = new ByteArrayOutputStream();
+      writeElement(entry, subtree.tag, body);
+      writeReference(subtree.out,
+          writeEntry(subtree.fingerprint, FULFILLMENT_ENTRY, entry.toByteArray()));
+    }
+  }
+
+  /**
+   * Writes a subcondition, or a reference to its entry, adding the entry if the subcondition has
+   * been seen before.
+   */
+  private void encodeCondition(
+      final byte[] buffer, final int start, final int end, final ByteArrayOutputStream out
+  ) throws IOException {
+    final byte[] fingerprint = fingerprint(buffer, start, end);
+    int id = lookupEntry(fingerprint);
+    if (id == NOT_SEEN) {
+      out.write(buffer, start, end - start);
+      return;
+    }
+    if (id == SEEN_ONCE) {
+      id = writeEntry(fingerprint, CONDITION_ENTRY, Arrays.copyOfRange(buffer, start, end));
+    }
+    writeReference(out, id);
+  }
+
+  private byte[] fingerprint(final byte[] buffer, final int start, final int end) {
+    sha256.update(buffer, start, end - start);
+    return sha256.digest();
+  }
+
+  /**
+   * Looks up the entry for an encoding, and records that the encoding has been seen if it has
+   * none.
+   *
+   * @return The id of the entry, {@link #NOT_SEEN} if the encoding has not been seen before, or
+   *     {@link #SEEN_ONCE} if it has been seen once before, and an entry must now be added for it.
+   */
+  private int lookupEntry(final byte[] fingerprint) {
+    final Integer id = entryIds.get(fingerprint, 0);
+    if (id != null) {
+      return id;
+    }
+    if (seen.contains(fingerprint, 0)) {
+      seen.remove(fingerprint, 0);
+      return SEEN_ONCE;
+    }
+    if (seen.size() >= MAX_SEEN) {
+      seen.clear();
+    }
+    seen.add(fingerprint, 0);
+    return NOT_SEEN;
+  }
+
+  private static void writeReference(final ByteArrayOutputStream out, final int id) {
+    out.write(REFERENCE);
+    final int length = 4 - Integer.numberOfLeadingZeros(id | 1) / 8;
+    out.write(length);
+    for (int i = length - 1; i >= 0; i--) {
+      out.write(id >>> (8 * i));
+    }
+  }
+
+  private int writeEntry(final byte[] fingerprint, final byte kind, final byte[] encoding)
+      throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(ENTRY_HEADER + encoding.length);
+    buffer.put(fingerprint).put(kind).putInt(encoding.length).putInt(checksum(encoding))
+        .put(encoding);
+    ((Buffer) buffer).flip();
+    writeFully(dictionary, buffer, dictionaryEnd);
+    addEntry(fingerprint, dictionaryEnd);
+    dictionaryEnd += ENTRY_HEADER + encoding.length;
+    compressedBytes += ENTRY_HEADER + encoding.length;
+    return expandedEntries.size() - 1;
+  }
+
+  private static void copyElement(final DerCursor in, final ByteArrayOutputStream out)
+      throws DerEncodingException {
+    final int start = in.getPosition();
+    in.readTag();
+    in.skip(in.readLength());
+    out.write(in.getBuffer(), start, in.getPosition() - start);
+  }
+
+  private static void writeElement(
+      final ByteArrayOutputStream out, final int tag, final ByteArrayOutputStream value
+  ) {
+    out.write(tag);
+    final int length = value.size();
+    if (length > 127) {
+      final int lengthOfLength = 4 - Integer.numberOfLeadingZeros(length) / 8;
+      out.write(0x80 | lengthOfLength);
+      for (int i = lengthOfLength - 1; i >= 0; i--) {
+        out.write(length >>> (8 * i));
+      }
+    } else {
+      out.write(length);
+    }
+    out.write(value.toByteArray(), 0, length);
+  }
+
+  /**
+   * Expands a logged encoding, replacing every reference with the DER encoding of its entry.
+   */
+  private byte[] expand(final byte[] encoding) throws DerEncodingException, IOException {
+    final DerCursor in = new DerCursor(encoding);
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(encoding.length * 2);
+    expandFulfillment(in, out);
+    if (in.hasRemaining()) {
+      throw new DerEncodingException(in.getPosition(), () -> "Unexpected bytes after fulfillment.");
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Writes the DER encoding of the logged fulfillment in {@code in}. Subtrees, and entries that
+   * have not been expanded yet, are expanded with an explicit stack, so that neither deeply nested
+   * fulfillments nor long chains of entries can overflow the thread stack.
+   */
+  private void expandFulfillment(final DerCursor in, final ByteArrayOutputStream out)
+      throws DerEncodingException, IOException {
+    final Deque<PendingSubtree> stack = new ArrayDeque<>();
+    push(stack, openExpansion(in, out, Integer.MAX_VALUE));
+    while (!stack.isEmpty()) {
+      final PendingSubtree subtree = stack.peek();
+      if (subtree.hasNextSubfulfillment()) {
+        push(stack, openExpansion(subtree.nextSubfulfillment(), subtree.subfulfillmentsOut,
+            subtree.entryLimit));
+      } else {
+        stack.pop();
+        finishExpansion(subtree);
+      }
+    }
+  }
+
+  /**
+   * Reads the tag of the logged fulfillment in {@code in}, and writes it at once if it is not a
+   * PREFIX-SHA-256 or THRESHOLD-SHA-256 fulfillment or a reference to an entry that has already
+   * been expanded.
+   *
+   * @param entryLimit The id above the last entry that the fulfillment may refer to.
+   *
+   * @return The subtree or entry that must be expanded next, or {@code null} if the fulfillment
+   *     has been written.
+   */
+  private PendingSubtree openExpansion(
+      final DerCursor in, final ByteArrayOutputStream out, final int entryLimit
+  ) throws DerEncodingException, IOException {
+    final int start = in.getPosition();
+    final int tag = in.readTag();
+    if (tag == REFERENCE) {
+      final int id = readReference(in, entryLimit);
+      final byte[] expanded = expandedEntry(id);
+      if (expanded != null) {
+        out.write(expanded, 0, expanded.length);
+        return null;
+      }
+      return PendingSubtree.entry(id, new DerCursor(readEntry(id, FULFILLMENT_ENTRY)), out);
+    }
+    final DerCursor value = in.slice(in.readLength());
+    final int type = tag - CONSTRUCTED_TAGGED;
+    if (type != PREFIX && type != THRESHOLD) {
+      out.write(in.getBuffer(), start, in.getPosition() - start);
+      return null;
+    }
+    return PendingSubtree.open(tag, value, out, null, entryLimit);
+  }
+
+  /**
+   * Writes a subtree or entry whose subfulfillments have been expanded, expanding the references
+   * to its subconditions.
+   */
+  private void finishExpansion(final PendingSubtree subtree)
+      throws DerEncodingException, IOException {
+    subtree.checkSubfulfillments();
+    if (subtree.entry >= 0) {
+      final byte[] expanded = subtree.subfulfillmentsOut.toByteArray();
+      cacheEntry(subtree.entry, expanded);
+      subtree.out.write(expanded, 0, expanded.length);
+      return;
+    }
+
+    final ByteArrayOutputStream body = subtree.body;
+    if (subtree.tag - CONSTRUCTED_TAGGED == PREFIX) {
+      writeElement(body, CONSTRUCTED_TAGGED + 2, subtree.subfulfillmentsOut);
+    } else {
+      writeElement(body, CONSTRUCTED_TAGGED, subtree.subfulfillmentsOut);
+
+      final DerCursor value = subtree.value;
+      final DerCursor subconditions = value.slice(value.readHeader(CONSTRUCTED_TAGGED + 1));
+      final ByteArrayOutputStream conditions = new ByteArrayOutputStream();
+      while (subconditions.hasRemaining()) {
+        final int conditionStart = subconditions.getPosition();
+        if (subconditions.readTag() == REFERENCE) {
+          final byte[] entry = conditionEntry(readReference(subconditions, subtree.entryLimit));
+          conditions.write(entry, 0, entry.length);
+        } else {
+          subconditions.skip(subconditions.readLength());
+          conditions.write(subconditions.getBuffer(), conditionStart,
+              subconditions.getPosition() - conditionStart);
+        }
+      }
+      writeElement(body, CONSTRUCTED_TAGGED + 1, conditions);
+    }
+    writeElement(subtree.out, subtree.tag, body);
+  }
+
+  private static void push(final Deque<PendingSubtree> stack, final PendingSubtree subtree) {
+    if (subtree != null) {
+      stack.push(subtree);
+    }
+  }
+
+  /**
+   * Reads the id of the entry whose reference follows the tag just read from {@code in}. Entries
+   * only refer to earlier entries, so a reference at or above {@code entryLimit} is corrupt.
+   */
+  private static int readReference(final DerCursor in, final int entryLimit)
+      throws DerEncodingException {
+    final int length = in.readLength();
+    if (length == 0 || length > 4) {
+      throw new DerEncodingException(in.getPosition(), () -> "Invalid reference.");
+    }
+    int id = 0;
+    for (int i = 0; i < length; i++) {
+      id = id << 8 | (in.getBuffer()[in.getPosition()] & 0xFF);
+      in.skip(1);
+    }
+    if (id >= entryLimit) {
+      throw new DerEncodingException(in.getPosition(), () -> "Invalid reference.");
+    }
+    return id;
+  }
+
+  /**
+   * The expanded DER encoding of an entry, or {@code null} if it has not been expanded yet.
+   */
+  private synchronized byte[] expandedEntry(final int id) {
+    if (id < 0 || id >= expandedEntries.size()) {
+      throw new IllegalArgumentException("No dictionary entry " + id + ".");
+    }
+    return expandedEntries.get(id);
+  }
+
+  private synchronized void cacheEntry(final int id, final byte[] expanded) {
+    expandedEntries.set(id, expanded);
+  }
+
+  /**
+   * The DER encoding of a condition entry, which is read the first time it is needed.
+   */
+  private synchronized byte[] conditionEntry(final int id) throws IOException {
+    byte[] entry = expandedEntry(id);
+    if (entry == null) {
+      entry = readEntry(id, CONDITION_ENTRY);
+      expandedEntries.set(id, entry);
+    }
+    return entry;
+  }
+
+  /**
+   * Reads the encoding of an entry from the dictionary, as it was logged.
+   */
+  private synchronized byte[] readEntry(final int id, final byte kind) throws IOException {
+    final long position = entryOffsets[id];
+    final ByteBuffer header = ByteBuffer.allocate(ENTRY_HEADER);
+    readFully(dictionary, header, position);
+    if (header.get(FingerprintTable.FINGERPRINT_LENGTH) != kind) {
+      throw new IllegalArgumentException("Dictionary entry " + id + " is of the wrong kind.");
+    }
+    final ByteBuffer encoding =
+        ByteBuffer.allocate(header.getInt(FingerprintTable.FINGERPRINT_LENGTH + 1));
+    readFully(dictionary, encoding, position + ENTRY_HEADER);
+    return encoding.array();
+  }
+
+  /**
+   * Reads the DER encoding of a logged fulfillment.
+   *
+   * @param id The id of the record.
+   *
+   * @return The DER encoding of the fulfillment.
+   *
+   * @throws IllegalArgumentException if there is no record with the id.
+   * @throws IOException              if the log cannot be read, or the record is corrupt.
+   */
+  public synchronized byte[] readEncoded(final long id) throws IOException {
+    checkOpen();
+    if (id < 0 || id >= nextId) {
+      throw new IllegalArgumentException("No record with id " + id + ".");
+    }
+    final Segment segment = segmentOf(id);
+    final ByteBuffer offset = ByteBuffer.allocate(8);
+    readFully(segment.index, offset, (id - segment.firstId) * 8);
+    final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+    readFully(segment.data, header, offset.getLong(0));
+    final ByteBuffer encoding = ByteBuffer.allocate(header.getInt(0));
+    readFully(segment.data, encoding, offset.getLong(0) + RECORD_HEADER);
+    return verifyAndExpand(id, encoding.array(), header.getInt(4));
+  }
+
+  /**
+   * Reads a logged fulfillment.
+   *
+   * @param id The id of the record.
+   *
+   * @return The {@link Fulfillment}.
+   *
+   * @throws IllegalArgumentException if there is no record with the id.
+   * @throws DerEncodingException     if the logged fulfillment cannot be decoded.
+   * @throws IOException              if the log cannot be read, or the record is corrupt.
+   */
+  public Fulfillment read(final long id) throws DerEncodingException, IOException {
+    return CryptoConditionReader.readFulfillment(readEncoded(id));
+  }
+
+  /**
+   * Passes the DER encoding of every record from an id onwards, in order, to a consumer. Each
+   * segment is read sequentially through a large buffer. Records appended while the log is being
+   * replayed may or may not be included.
+   *
+   * @param fromId   The id of the first record to replay.
+   * @param consumer The consumer of each DER encoded fulfillment and the id of its record.
+   *
+   * @throws IOException if the log cannot be read, or a record is corrupt.
+   */
+  public void replay(final long fromId, final ObjLongConsumer<byte[]> consumer) throws IOException {
+    Objects.requireNonNull(consumer, "Consumer must not be null!");
+    if (fromId < 0) {
+      throw new IllegalArgumentException("Id must not be negative!");
+    }
+    checkOpen();
+
+    long id = fromId;
+    for (Segment segment : segments) {
+      final long records = segment.records;
+      if (id >= segment.firstId + records) {
+        continue;
+      }
+      long position = FILE_HEADER;
+      if (id > segment.firstId) {
+        final ByteBuffer offset = ByteBuffer.allocate(8);
+        readFully(segment.index, offset, (id - segment.firstId) * 8);
+        position = offset.getLong(0);
+      }
+      try (DataInputStream in = openStream(segment.data, position)) {
+        for (; id < segment.firstId + records; id++) {
+          final int length = in.readInt();
+          final int checksum = in.readInt();
+          if (length <= 0) {
+            throw new IOException("Record " + id + " is corrupt.");
+          }
+          final byte[] encoding = new byte[length];
+          in.readFully(encoding);
+          consumer.accept(verifyAndExpand(id, encoding, checksum), id);
+        }
+      }
+    }
+  }
+
+  private byte[] verifyAndExpand(final long id, final byte[] encoding, final int checksum)
+      throws IOException {
+    if (checksum(encoding) != checksum) {
+      throw new IOException("Record " + id + " is corrupt.");
+    }
+    try {
+      return expand(encoding);
+    } catch (DerEncodingException | IllegalArgumentException e) {
+      throw new IOException("Record " + id + " is corrupt.", e);
+    }
+  }
+
+  private Segment segmentOf(final long id) {
+    int low = 0;
+    int high = segments.size() - 1;
+    while (low < high) {
+      final int middle = (low + high + 1) >>> 1;
+      if (segments.get(middle).firstId <= id) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return segments.get(low);
+  }
+
+  /**
+   * Accessor for the number of records in this log, which is also the id of the next record.
+   *
+   * @return The number of records.
+   */
+  public synchronized long size() {
+    return nextId;
+  }
+
+  /**
+   * Accessor for the number of entries in the dictionary.
+   *
+   * @return The number of distinct subconditions and subtrees that are shared between records.
+   */
+  public synchronized int getDictionarySize() {
+    return expandedEntries.size();
+  }
+
+  /**
+   * Accessor for the total size of the DER encodings appended since this log was opened.
+   *
+   * @return The number of bytes.
+   */
+  public synchronized long getUncompressedBytes() {
+    return uncompressedBytes;
+  }
+
+  /**
+   * Accessor for the number of bytes written for the records and dictionary entries appended since
+   * this log was opened.
+   *
+   * @return The number of bytes.
+   */
+  public synchronized long getCompressedBytes() {
+    return compressedBytes;
+  }
+
+  /**
+   * Writes every appended record and dictionary entry to disk.
+   *
+   * @throws IOException if the log cannot be written.
+   */
+  public synchronized void flush() throws IOException {
+    checkOpen();
+    dictionary.force(false);
+    segments.get(segments.size() - 1).force();
+  }
+
+  /**
+   * Flushes and closes this log.
+   *
+   * @throws IOException if the log cannot be written or closed.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    try {
+      flush();
+    } finally {
+      closed = true;
+      closeAll();
+    }
+  }
+
+  private void closeAll() throws IOException {
+    IOException failure = null;
+    final List<Closeable> channels = new ArrayList<>();
+    channels.add(dictionary);
+    for (Segment segment : segments) {
+      channels.add(segment.data);
+      channels.add(segment.index);
+    }
+    for (Closeable channel : channels) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        failure = failure == null ? e : failure;
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private void checkOpen() {
+    if (closed) {
+      throw new IllegalStateException("Log is closed!");
+    }
+  }
+
+  private static int checksum(final byte[] bytes) {
+    final CRC32 crc = new CRC32();
+    crc.update(bytes, 0, bytes.length);
+    return (int) crc.getValue();
+  }
+
+  private static DataInputStream openStream(final FileChannel channel, final long position) {
+    return new DataInputStream(new BufferedInputStream(new InputStream() {
+      private long next = position;
+
+      @Override
+      public int read() throws IOException {
+        final byte[] one = new byte[1];
+        return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+      }
+
+      @Override
+      public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+        final int count = channel.read(ByteBuffer.wrap(bytes, offset, length), next);
+        if (count > 0) {
+          next += count;
+        }
+        return count;
+      }
+    }, REPLAY_BUFFER));
+  }
+
+  private static void readFully(final FileChannel channel, final ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      final int count = channel.read(buffer, position);
+      if (count < 0) {
+        throw new EOFException("Unexpected end of fulfillment log.");
+      }
+      position += count;
+    }
+  }
+
+  private static void writeFully(final FileChannel channel, final ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "FulfillmentLog{directory=" + directory + ", size=" + size() + "}";
+  }
+
+  /**
+   * A PREFIX-SHA-256 or THRESHOLD-SHA-256 fulfillment whose subfulfillments are being encoded or
+   * expanded, or a dictionary entry that is being expanded.
+   */
+  private static final class PendingSubtree {
+
+    private final int tag;
+    private final DerCursor value;
+    private final DerCursor subfulfillments;
+    private final int maxSubfulfillments;
+    private final ByteArrayOutputStream body;
+    private final ByteArrayOutputStream subfulfillmentsOut = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream out;
+    // The fingerprint of a subtree being encoded into a new entry, or null
+    private final byte[] fingerprint;
+    // The id of an entry being expanded, or -1
+    private final int entry;
+    private final int entryLimit;
+    private int count;
+
+    private PendingSubtree(
+        final int tag, final DerCursor value, final DerCursor subfulfillments,
+        final int maxSubfulfillments, final ByteArrayOutputStream body,
+        final ByteArrayOutputStream out, final byte[] fingerprint, final int entry,
+        final int entryLimit
+    ) {
+      this.tag = tag;
+      this.value = value;
+      this.subfulfillments = subfulfillments;
+      this.maxSubfulfillments = maxSubfulfillments;
+      this.body = body;
+      this.out = out;
+      this.fingerprint = fingerprint;
+      this.entry = entry;
+      this.entryLimit = entryLimit;
+    }
+
+    /**
+     * Copies the fields of a PREFIX-SHA-256 or THRESHOLD-SHA-256 fulfillment that precede its
+     * subfulfillments.
+     */
+    private static PendingSubtree open(
+        final int tag, final DerCursor value, final ByteArrayOutputStream out,
+        final byte[] fingerprint, final int entryLimit
+    ) throws DerEncodingException {
+      final ByteArrayOutputStream body = new ByteArrayOutputStream();
+      if (tag - CONSTRUCTED_TAGGED == PREFIX) {
+        copyElement(value, body);
+        copyElement(value, body);
+        return new PendingSubtree(tag, value,
+            value.slice(value.readHeader(CONSTRUCTED_TAGGED + 2)), 1, body, out, fingerprint, -1,
+            entryLimit);
+      }
+      return new PendingSubtree(tag, value, value.slice(value.readHeader(CONSTRUCTED_TAGGED)),
+          Integer.MAX_VALUE, body, out, fingerprint, -1, entryLimit);
+    }
+
+    /**
+     * An entry, whose logged encoding is a single fulfillment that may only refer to earlier
+     * entries.
+     */
+    private static PendingSubtree entry(
+        final int id, final DerCursor encoding, final ByteArrayOutputStream out
+    ) {
+      return new PendingSubtree(REFERENCE, null, encoding, 1, null, out, null, id, id);
+    }
+
+    private boolean hasNextSubfulfillment() {
+      return count < maxSubfulfillments && subfulfillments.hasRemaining();
+    }
+
+    private DerCursor nextSubfulfillment() {
+      count++;
+      return subfulfillments;
+    }
+
+    /**
+     * Checks that a PREFIX-SHA-256 fulfillment or entry held exactly one fulfillment.
+     */
+    private void checkSubfulfillments() throws DerEncodingException {
+      if (maxSubfulfillments == 1 && count == 0) {
+        throw new DerEncodingException(subfulfillments.getPosition(),
+            () -> "Expected a subfulfillment.");
+      }
+      if (subfulfillments.hasRemaining()) {
+        throw new DerEncodingException(subfulfillments.getPosition(),
+            () -> "Unexpected bytes after fulfillment.");
+      }
+    }
+  }
+
+  /**
+   * The data and index files of a segment. Its record count and end are only changed by appends.
+   */
+  private static final class Segment {
+
+    private final long firstId;
+    private final FileChannel data;
+    private final FileChannel index;
+    private volatile long records;
+    private long end;
+
+    private Segment(final Path directory, final long firstId) throws IOException {
+      final String name = String.format("%020d", firstId);
+      this.firstId = firstId;
+      this.data = openFile(directory.resolve(name + SEGMENT_SUFFIX), SEGMENT_MAGIC);
+      try {
+        this.index = FileChannel.open(directory.resolve(name + INDEX_SUFFIX),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      } catch (IOException e) {
+        data.close();
+        throw e;
+      }
+    }
+
+    private void force() throws IOException {
+      data.force(false);
+      index.force(false);
+    }
+  }
+}
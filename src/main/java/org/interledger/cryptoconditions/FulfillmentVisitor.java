@@ -0,0 +1,93 @@
+package org.interledger.cryptoconditions;
+
+/**
+ * <p>Receives the structure and fields of a DER encoded fulfillment as it is scanned by {@link
+ * CryptoConditionScanner}, without any {@link Fulfillment} being constructed.</p>
+ *
+ * <p>Each fulfillment is reported by a call to {@link #enterFulfillment}, followed by calls for its
+ * fields and subfulfillments in the order in which they are encoded, and then by a call to {@link
+ * #exitFulfillment}. Returning {@code false} from {@link #enterFulfillment} skips the rest of that
+ * fulfillment, including its exit. The unfulfilled subconditions of a THRESHOLD-SHA-256
+ * fulfillment are reported to {@link #visitCondition}, after its subfulfillments.</p>
+ *
+ * <p>Values are passed as positions within the encoded buffer, which is not copied and must not be
+ * modified or retained beyond the call. Every method does nothing by default, so implementations
+ * only need to override the events they use.</p>
+ */
+public interface FulfillmentVisitor extends ConditionVisitor {
+
+  /**
+   * Visits the start of a fulfillment.
+   *
+   * @param type   The type of the fulfillment.
+   * @param depth  The depth of the fulfillment, where the root is at depth 1.
+   * @param offset The position within the encoded buffer of the start of the fulfillment.
+   * @param length The length of the fulfillment, including its tag and length.
+   *
+   * @return {@code true} to visit the contents of the fulfillment, or {@code false} to skip them.
+   */
+  default boolean enterFulfillment(
+      CryptoConditionType type, int depth, int offset, int length
+  ) {
+    return true;
+  }
+
+  /**
+   * Visits the preimage of a PREIMAGE-SHA-256 fulfillment.
+   *
+   * @param buffer The encoded buffer.
+   * @param offset The position of the preimage within {@code buffer}.
+   * @param length The length of the preimage.
+   */
+  default void visitPreimage(byte[] buffer, int offset, int length) {
+  }
+
+  /**
+   * Visits the prefix and maximum message length of a PREFIX-SHA-256 fulfillment, before its
+   * subfulfillment.
+   *
+   * @param buffer           The encoded buffer.
+   * @param offset           The position of the prefix within {@code buffer}.
+   * @param length           The length of the prefix.
+   * @param maxMessageLength The maximum message length.
+   */
+  default void visitPrefix(byte[] buffer, int offset, int length, long maxMessageLength) {
+  }
+
+  /**
+   * Visits the public key of an RSA-SHA-256 or ED25519-SHA-256 fulfillment.
+   *
+   * @param type   The type of the fulfillment.
+   * @param buffer The encoded buffer.
+   * @param offset The position of the key (the modulus, for RSA) within {@code buffer}.
+   * @param length The length of the key.
+   */
+  default void visitPublicKey(CryptoConditionType type, byte[] buffer, int offset, int length) {
+  }
+
+  /**
+   * Visits the signature of an RSA-SHA-256 or ED25519-SHA-256 fulfillment.
+   *
+   * @param type   The type of the fulfillment.
+   * @param buffer The encoded buffer.
+   * @param offset The position of the signature within {@code buffer}.
+   * @param length The length of the signature.
+   */
+  default void visitSignature(CryptoConditionType type, byte[] buffer, int offset, int length) {
+  }
+
+  @Override
+  default void visitCondition(
+      CryptoConditionType type, long cost, byte[] buffer, int fingerprintOffset, int subtypes
+  ) {
+  }
+
+  /**
+   * Visits the end of a fulfillment that was entered.
+   *
+   * @param type  The type of the fulfillment.
+   * @param depth The depth of the fulfillment.
+   */
+  default void exitFulfillment(CryptoConditionType type, int depth) {
+  }
+}
@@ -0,0 +1,146 @@
+package org.interledger.cryptoconditions;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A single, message-dependent check found at the edge of a fulfillment tree, together with the
+ * message (including any prefixes added by enclosing PREFIX-SHA-256 fulfillments) that the check
+ * must be performed against.
+ *
+ * <p>Flattening a tree into its leaves allows compound fulfillments to be verified without
+ * blocking on nested work, which is what makes fanning the leaves out to an executor safe.</p>
+ */
+final class LeafVerification {
+
+  private final Fulfillment fulfillment;
+  private final SegmentedMessage message;
+
+  private LeafVerification(final Fulfillment fulfillment, final SegmentedMessage message) {
+    this.fulfillment = fulfillment;
+    this.message = message;
+  }
+
+  /**
+   * Walks the supplied fulfillment and collects every leaf that must be verified for the
+   * fulfillment to be valid. Structural checks, such as the maximum message length of each
+   * PREFIX-SHA-256 fulfillment, are performed during the walk.
+   *
+   * @param fulfillment The {@link Fulfillment} to flatten.
+   * @param message     The message that {@code fulfillment} is being verified against.
+   *
+   * @return A {@link List} of leaves, in the order that they appear in the tree.
+   *
+   * @throws IllegalArgumentException if a message exceeds the maximum message length of any
+   *                                  PREFIX-SHA-256 fulfillment in the tree.
+   */
+  static List<LeafVerification> collect(final Fulfillment fulfillment, final byte[] message) {
+    return collect(fulfillment, SegmentedMessage.of(message));
+  }
+
+  /**
+   * Walks the supplied fulfillment and collects every leaf that must be verified for the
+   * fulfillment to be valid, without copying the message.
+   *
+   * @param fulfillment The {@link Fulfillment} to flatten.
+   * @param message     The {@link SegmentedMessage} that {@code fulfillment} is being verified
+   *                    against.
+   *
+   * @return A {@link List} of leaves, in the order that they appear in the tree.
+   *
+   * @throws IllegalArgumentException if a message exceeds the maximum message length of any
+   *                                  PREFIX-SHA-256 fulfillment in the tree.
+   */
+  static List<LeafVerification> collect(
+      final Fulfillment fulfillment, final SegmentedMessage message
+  ) {
+    Objects.requireNonNull(fulfillment);
+    Objects.requireNonNull(message);
+
+    final List<LeafVerification> leaves = new ArrayList<>();
+    collect(fulfillment, message, leaves);
+    return leaves;
+  }
+
+  private static void collect(
+      final Fulfillment fulfillment, final SegmentedMessage message,
+      final List<LeafVerification> leaves
+  ) {
+    if (fulfillment instanceof PrefixSha256Fulfillment) {
+      final PrefixSha256Fulfillment prefixFulfillment = (PrefixSha256Fulfillment) fulfillment;
+      collect(prefixFulfillment.getSubfulfillment(), prefixFulfillment.prefixMessage(message),
+          leaves);
+    } else if (fulfillment instanceof ThresholdSha256Fulfillment) {
+      final List<Fulfillment> subfulfillments =
+          ((ThresholdSha256Fulfillment) fulfillment).getSubfulfillments();
+      for (int i = 0; i < subfulfillments.size(); i++) {
+        collect(subfulfillments.get(i), message, leaves);
+      }
+    } else {
+      leaves.add(new LeafVerification(fulfillment, message));
+    }
+  }
+
+  /**
+   * Accessor for the fulfillment at this leaf.
+   *
+   * @return The {@link Fulfillment} at this leaf.
+   */
+  Fulfillment getFulfillment() {
+    return fulfillment;
+  }
+
+  /**
+   * Accessor for the message that this leaf must be verified against.
+   *
+   * @return A {@link SegmentedMessage} containing the (possibly prefixed) message.
+   */
+  SegmentedMessage getMessage() {
+    return message;
+  }
+
+  /**
+   * Accessor for the cost of this leaf, as defined by the condition that it derives.
+   *
+   * @return The cost of verifying this leaf.
+   */
+  long getCost() {
+    return fulfillment.getCondition().getCost();
+  }
+
+  /**
+   * Verifies this leaf against the condition it derives and its (possibly prefixed) message.
+   *
+   * @return {@code true} if the leaf is valid; {@code false} otherwise.
+   */
+  boolean verify() {
+    return FulfillmentBase.verifySegmented(fulfillment, fulfillment.getCondition(), message);
+  }
+
+  /**
+   * Sorts {@code leaves} so that the cheapest leaf comes first. Leaves of equal cost keep their
+   * relative order.
+   *
+   * @param leaves A mutable {@link List} of leaves.
+   */
+  static void sortByCost(final List<LeafVerification> leaves) {
+    leaves.sort(Comparator.comparingLong(LeafVerification::getCost));
+  }
+
+  /**
+   * Sums the cost of every leaf in {@code leaves}.
+   *
+   * @param leaves A {@link List} of leaves.
+   *
+   * @return The total cost of verifying all of {@code leaves}.
+   */
+  static long totalCost(final List<LeafVerification> leaves) {
+    long cost = 0;
+    for (int i = 0; i < leaves.size(); i++) {
+      cost += leaves.get(i).getCost();
+    }
+    return cost;
+  }
+}
@@ -0,0 +1,190 @@
+package org.interledger.cryptoconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Verifies fulfillments by fanning the signature checks of compound fulfillments out to an
+ * {@link Executor}, such as a {@link ForkJoinPool}.</p>
+ *
+ * <p>The fulfillment tree is first flattened, descending into nested THRESHOLD-SHA-256 and
+ * PREFIX-SHA-256 fulfillments, so that every leaf can be verified independently and no task ever
+ * blocks waiting on another. As soon as any leaf fails, the fulfillment is known to be invalid and
+ * all outstanding leaves that have not yet started are cancelled. Leaves are submitted in ascending
+ * order of cost, so cheap leaves get the first chance to reject the fulfillment.</p>
+ *
+ * <p>Fanning out is only worthwhile when there is enough work to amortize the hand-off between
+ * threads, so trees whose total leaf cost is below a configurable threshold are verified inline on
+ * the calling thread.</p>
+ *
+ * <p>The result of {@link #verify(Fulfillment, Condition, byte[])} is always the same as the
+ * result of {@link Fulfillment#verify(Condition, byte[])}.</p>
+ */
+public class ParallelVerifier {
+
+  /**
+   * The default minimum total cost for which verification is fanned out, roughly equal to that of
+   * two ED25519-SHA-256 signatures or a single RSA-SHA-256 signature using a 4096-bit key.
+   */
+  public static final long DEFAULT_PARALLEL_COST_THRESHOLD = 262144L;
+
+  private final Executor executor;
+  private final long parallelCostThreshold;
+
+  /**
+   * Constructs a verifier that uses the {@link ForkJoinPool#commonPool()} and the {@link
+   * #DEFAULT_PARALLEL_COST_THRESHOLD}.
+   */
+  public ParallelVerifier() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructs a verifier that uses the supplied executor and the {@link
+   * #DEFAULT_PARALLEL_COST_THRESHOLD}.
+   *
+   * @param executor The {@link Executor} that leaf verifications are submitted to.
+   */
+  public ParallelVerifier(final Executor executor) {
+    this(executor, DEFAULT_PARALLEL_COST_THRESHOLD);
+  }
+
+  /**
+   * Required-args Constructor.
+   *
+   * @param executor              The {@link Executor} that leaf verifications are submitted to.
+   * @param parallelCostThreshold The minimum total cost of all leaves in a fulfillment for
+   *                              verification to be fanned out to {@code executor}. Fulfillments
+   *                              with a lower cost are verified on the calling thread.
+   */
+  public ParallelVerifier(final Executor executor, final long parallelCostThreshold) {
+    this.executor = Objects.requireNonNull(executor, "Executor must not be null!");
+    if (parallelCostThreshold < 0) {
+      throw new IllegalArgumentException("Parallel cost threshold must not be negative!");
+    }
+    this.parallelCostThreshold = parallelCostThreshold;
+  }
+
+  /**
+   * Verifies a fulfillment against a condition and a message, fanning the work out if the
+   * fulfillment is expensive enough.
+   *
+   * @param fulfillment The {@link Fulfillment} to verify.
+   * @param condition   A {@link Condition} that {@code fulfillment} should verify.
+   * @param message     A byte array that is part of verifying the supplied condition.
+   *
+   * @return {@code true} if {@code fulfillment} validates the supplied condition and message;
+   *     {@code false} otherwise.
+   */
+  public boolean verify(
+      final Fulfillment fulfillment, final Condition condition, final byte[] message
+  ) {
+    Objects.requireNonNull(fulfillment, "Fulfillment must not be null!");
+    Objects.requireNonNull(condition, "Can't verify a Fulfillment against a null condition!");
+    Objects.requireNonNull(message, "Message must not be null!");
+
+    if (!fulfillment.getCondition().equals(condition)) {
+      return false;
+    }
+
+    // Cheap leaves go first, so that they are the most likely to cancel expensive ones.
+    final List<LeafVerification> leaves = LeafVerification.collect(fulfillment, message);
+    LeafVerification.sortByCost(leaves);
+    if (!isWorthFanningOut(leaves, parallelCostThreshold)) {
+      for (int i = 0; i < leaves.size(); i++) {
+        if (!leaves.get(i).verify()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    try {
+      return submit(leaves, executor).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Determines whether the supplied leaves are expensive enough to be verified on several threads.
+   *
+   * @param leaves                The leaves to verify.
+   * @param parallelCostThreshold The minimum total cost for fanning out.
+   *
+   * @return {@code true} if there is more than one leaf and their total cost is at least {@code
+   *     parallelCostThreshold}.
+   */
+  static boolean isWorthFanningOut(
+      final List<LeafVerification> leaves, final long parallelCostThreshold
+  ) {
+    return leaves.size() > 1 && LeafVerification.totalCost(leaves) >= parallelCostThreshold;
+  }
+
+  /**
+   * <p>Submits every leaf to {@code executor}, returning a future that completes with {@code
+   * false} as soon as any leaf fails, or with {@code true} once every leaf has succeeded.</p>
+   *
+   * <p>Once the returned future completes, for whatever reason (including being completed or
+   * cancelled by the caller), leaves that have not yet started are cancelled. Leaves that are
+   * already running are allowed to finish, since signature verification does not respond to
+   * interruption.</p>
+   *
+   * @param leaves   The leaves to verify.
+   * @param executor The {@link Executor} to verify the leaves on.
+   *
+   * @return A {@link CompletableFuture} holding the combined result of all leaves.
+   */
+  static CompletableFuture<Boolean> submit(
+      final List<LeafVerification> leaves, final Executor executor
+  ) {
+    final CompletableFuture<Boolean> result = new CompletableFuture<>();
+    if (leaves.isEmpty()) {
+      result.complete(true);
+      return result;
+    }
+
+    final AtomicInteger remaining = new AtomicInteger(leaves.size());
+    final List<FutureTask<Void>> tasks = new ArrayList<>(leaves.size());
+    for (int i = 0; i < leaves.size(); i++) {
+      final LeafVerification leaf = leaves.get(i);
+      tasks.add(new FutureTask<>(() -> {
+        if (result.isDone()) {
+          return;
+        }
+        try {
+          if (!leaf.verify()) {
+            result.complete(false);
+          } else if (remaining.decrementAndGet() == 0) {
+            result.complete(true);
+          }
+        } catch (RuntimeException e) {
+          result.completeExceptionally(e);
+        }
+      }, null));
+    }
+
+    result.whenComplete((valid, error) -> tasks.forEach(task -> task.cancel(false)));
+
+    for (int i = 0; i < tasks.size() && !result.isDone(); i++) {
+      try {
+        executor.execute(tasks.get(i));
+      } catch (RejectedExecutionException e) {
+        // A saturated executor should slow verification down, not fail it.
+        tasks.get(i).run();
+      }
+    }
+    return result;
+  }
+}
@@ -36,7 +36,7 @@ public final class PrefixSha256Condition extends CompoundSha256Condition
         hashFingerprintContents(
             constructFingerprintContents(prefix, maxMessageLength, subcondition)
         ),
-        calculateSubtypes(subcondition)
+        calculateSubtypeMask(subcondition)
     );
   }
 
@@ -58,6 +58,18 @@ public final class PrefixSha256Condition extends CompoundSha256Condition
     super(PREFIX_SHA256, cost, fingerprint, subtypes);
   }
 
+  /**
+   * Constructs an instance of the condition from a type mask of its subtypes, as read by codecs.
+   *
+   * @param cost        The cost of this condition.
+   * @param fingerprint The calculated fingerprint.
+   * @param subtypeMask A type mask of the condition types that this one depends on, with the bit
+   *                    {@link CryptoConditionType#getTypeMask()} set for each type.
+   */
+  public PrefixSha256Condition(final long cost, final byte[] fingerprint, final int subtypeMask) {
+    super(PREFIX_SHA256, cost, fingerprint, subtypeMask);
+  }
+
   /**
    * <p>Constructs the fingerprint for this condition.</p>
    *
@@ -115,20 +127,16 @@ public final class PrefixSha256Condition extends CompoundSha256Condition
    *
    * @param subcondition The sub condition that this condition depends on.
    *
-   * @return The set of condition rsa related to the sub condition.
+   * @return A type mask of the condition rsa related to the sub condition.
    */
-  private static EnumSet<CryptoConditionType> calculateSubtypes(Condition subcondition) {
-    EnumSet<CryptoConditionType> subtypes = EnumSet.of(subcondition.getType());
+  private static int calculateSubtypeMask(Condition subcondition) {
+    int subtypeMask = subcondition.getType().getTypeMask();
     if (subcondition instanceof CompoundCondition) {
-      subtypes.addAll(((CompoundCondition) subcondition).getSubtypes());
+      subtypeMask |= ((CompoundCondition) subcondition).getSubtypeMask();
     }
 
     // Remove our own type
-    if (subtypes.contains(PREFIX_SHA256)) {
-      subtypes.remove(PREFIX_SHA256);
-    }
-
-    return subtypes;
+    return subtypeMask & ~PREFIX_SHA256.getTypeMask();
   }
 
 }
@@ -42,6 +42,30 @@ public class PrefixSha256Fulfillment extends FulfillmentBase<PrefixSha256Conditi
         subfulfillment.getCondition());
   }
 
+  /**
+   * Constructs an instance of the fulfillment whose condition has already been derived, such as by
+   * {@link CryptoConditionReader} while decoding.
+   *
+   * @param prefix           The prefix associated with the condition and fulfillment
+   * @param maxMessageLength The maximum length of a message.
+   * @param subfulfillment   The subfulfillments that this fulfillment depends on.
+   * @param condition        The condition derived from the other arguments.
+   */
+  PrefixSha256Fulfillment(
+      final byte[] prefix, final long maxMessageLength, final Fulfillment subfulfillment,
+      final PrefixSha256Condition condition
+  ) {
+    super(PREFIX_SHA256);
+    Objects.requireNonNull(prefix, "Prefix must not be null!");
+    Objects.requireNonNull(subfulfillment, "Subfulfillment must not be null!");
+
+    this.prefix = Arrays.copyOf(prefix, prefix.length);
+    this.prefixBase64Url = Base64.getUrlEncoder().encodeToString(prefix);
+    this.maxMessageLength = maxMessageLength;
+    this.subfulfillment = subfulfillment;
+    this.condition = Objects.requireNonNull(condition);
+  }
+
   @Override
   public final PrefixSha256Condition getCondition() {
     return this.condition;
@@ -84,22 +108,55 @@ public class PrefixSha256Fulfillment extends FulfillmentBase<PrefixSha256Conditi
         "Can't verify a PrefixSha256Fulfillment against a null condition!");
     Objects.requireNonNull(message, "Message must not be null!");
 
-    if (message.length > maxMessageLength) {
-      throw new IllegalArgumentException(
-          String
-              .format("Message length (%s) exceeds maximum message length of (%s).", message.length,
-                  maxMessageLength));
-    }
+    return verify(condition, SegmentedMessage.of(message));
+  }
+
+  /**
+   * Verifies this fulfillment without copying the message. The prefix is prepended as a separate
+   * segment, so a chain of nested PREFIX-SHA-256 fulfillments never copies the message.
+   */
+  @Override
+  boolean verify(final PrefixSha256Condition condition, final SegmentedMessage message) {
+    checkMessageLength(message.length());
 
     if (!getCondition().equals(condition)) {
       return false;
     }
 
     final Condition subcondition = subfulfillment.getCondition();
-    final byte[] prefixedMessage = Arrays.copyOf(prefix, prefix.length + message.length);
-    System.arraycopy(message, 0, prefixedMessage, prefix.length, message.length);
+    return FulfillmentBase.verifySegmented(subfulfillment, subcondition, prefixMessage(message));
+  }
 
-    return subfulfillment.verify(subcondition, prefixedMessage);
+  /**
+   * Checks the supplied message against the maximum message length of this fulfillment, and then
+   * prepends the prefix to it, producing the message that the subfulfillment must be verified
+   * against.
+   *
+   * @param message A {@link SegmentedMessage} containing the message given to this fulfillment.
+   *
+   * @return A {@link SegmentedMessage} containing the prefix followed by {@code message}.
+   *
+   * @throws IllegalArgumentException if {@code message} exceeds the maximum message length.
+   */
+  final SegmentedMessage prefixMessage(final SegmentedMessage message) {
+    checkMessageLength(message.length());
+    return message.prepend(prefix);
+  }
+
+  /**
+   * Checks a message length against the maximum message length of this fulfillment.
+   *
+   * @param messageLength The length of the message given to this fulfillment.
+   *
+   * @throws IllegalArgumentException if {@code messageLength} exceeds the maximum message length.
+   */
+  final void checkMessageLength(final long messageLength) {
+    if (messageLength > maxMessageLength) {
+      throw new IllegalArgumentException(
+          String
+              .format("Message length (%s) exceeds maximum message length of (%s).", messageLength,
+                  maxMessageLength));
+    }
   }
 
   @Override
@@ -28,6 +28,21 @@ public class PreimageSha256Fulfillment extends FulfillmentBase<PreimageSha256Con
     this.preimage = Base64.getUrlEncoder().encodeToString(preimage);
   }
 
+  /**
+   * Constructs an instance of the fulfillment whose condition has already been derived, such as by
+   * {@link CryptoConditionReader} while decoding.
+   *
+   * @param preimage  The preimage associated with the fulfillment.
+   * @param condition The condition derived from {@code preimage}.
+   */
+  PreimageSha256Fulfillment(final byte[] preimage, final PreimageSha256Condition condition) {
+    super(CryptoConditionType.PREIMAGE_SHA256);
+
+    Objects.requireNonNull(preimage);
+    this.condition = Objects.requireNonNull(condition);
+    this.preimage = Base64.getUrlEncoder().encodeToString(preimage);
+  }
+
   @Override
   public final PreimageSha256Condition getCondition() {
     return this.condition;
@@ -46,6 +61,11 @@ public class PreimageSha256Fulfillment extends FulfillmentBase<PreimageSha256Con
     return getCondition().equals(condition);
   }
 
+  @Override
+  boolean verify(final PreimageSha256Condition condition, final SegmentedMessage message) {
+    return getCondition().equals(condition);
+  }
+
   @Override
   public boolean equals(Object object) {
     if (this == object) {
@@ -47,6 +47,28 @@ public class RsaSha256Fulfillment extends FulfillmentBase<RsaSha256Condition>
     this.condition = new RsaSha256Condition(publicKey);
   }
 
+  /**
+   * Constructs an instance of the fulfillment whose condition has already been derived, such as by
+   * {@link CryptoConditionReader} while decoding.
+   *
+   * @param publicKey An {@link RSAPublicKey} to be used with this fulfillment.
+   * @param signature A byte array that contains a binary representation of the signature associated
+   *                  with this fulfillment.
+   * @param condition The condition derived from {@code publicKey}.
+   */
+  RsaSha256Fulfillment(
+      final RSAPublicKey publicKey, final byte[] signature, final RsaSha256Condition condition
+  ) {
+    super(RSA_SHA256);
+    Objects.requireNonNull(publicKey, "PublicKey must not be null!");
+    Objects.requireNonNull(signature, "Signature must not be null!");
+
+    this.publicKey = publicKey;
+    this.signature = Arrays.copyOf(signature, signature.length);
+    this.signatureBase64Url = Base64.getUrlEncoder().encodeToString(signature);
+    this.condition = Objects.requireNonNull(condition);
+  }
+
   /**
    * Returns the public key used in this fulfillment.
    *
@@ -90,6 +112,11 @@ public class RsaSha256Fulfillment extends FulfillmentBase<RsaSha256Condition>
         "Can't verify a RsaSha256Fulfillment against an null condition.");
     Objects.requireNonNull(message, "Message must not be null!");
 
+    return verify(condition, SegmentedMessage.of(message));
+  }
+
+  @Override
+  boolean verify(final RsaSha256Condition condition, final SegmentedMessage message) {
     if (!getCondition().equals(condition)) {
       return false;
     }
@@ -97,13 +124,30 @@ public class RsaSha256Fulfillment extends FulfillmentBase<RsaSha256Condition>
     try {
       Signature rsaSigner = Signature.getInstance(SHA_256_WITH_RSA_PSS);
       rsaSigner.initVerify(publicKey);
-      rsaSigner.update(message);
-      return rsaSigner.verify(signature);
+      return verifySignature(rsaSigner, message);
     } catch (InvalidKeyException | NoSuchAlgorithmException | SignatureException e) {
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * Verifies the signature of this fulfillment using a {@link Signature} engine that has already
+   * been initialized for verification with {@link #getPublicKey()}. Once this method returns, the
+   * engine may be reused to verify other signatures made with the same key.
+   *
+   * @param verifier An initialized {@link Signature} engine for {@link #SHA_256_WITH_RSA_PSS}.
+   * @param message  A {@link SegmentedMessage} containing the signed message.
+   *
+   * @return {@code true} if the signature is valid; {@code false} otherwise.
+   *
+   * @throws SignatureException if the engine is not initialized or the signature is malformed.
+   */
+  final boolean verifySignature(final Signature verifier, final SegmentedMessage message)
+      throws SignatureException {
+    message.updateTo(verifier);
+    return verifier.verify(signature);
+  }
+
   @Override
   public boolean equals(Object object) {
     if (this == object) {
@@ -0,0 +1,133 @@
+package org.interledger.cryptoconditions;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.Objects;
+
+/**
+ * <p>An immutable message made up of a chain of segments, used to pass a message down through
+ * nested PREFIX-SHA-256 fulfillments without copying it.</p>
+ *
+ * <p>Prepending a prefix creates a new segment that points at the existing chain, so a chain of
+ * {@code k} prefixes over a message costs {@code O(k)} rather than {@code O(k * message.length)}.
+ * Signature engines and digests consume the segments with incremental {@code update} calls, and the
+ * message is only ever gathered into a single array for fulfillments that need one.</p>
+ */
+final class SegmentedMessage {
+
+  static final SegmentedMessage EMPTY = of(new byte[0]);
+
+  private final ByteBuffer head;
+  private final SegmentedMessage tail;
+  private final long length;
+
+  private SegmentedMessage(final ByteBuffer head, final SegmentedMessage tail) {
+    this.head = head;
+    this.tail = tail;
+    this.length = head.remaining() + (tail == null ? 0 : tail.length);
+  }
+
+  /**
+   * Creates a message consisting of a single segment. The array is not copied, so it must not be
+   * modified while the message is in use.
+   *
+   * @param message A byte array containing the message.
+   *
+   * @return A {@link SegmentedMessage} backed by {@code message}.
+   */
+  static SegmentedMessage of(final byte[] message) {
+    return of(ByteBuffer.wrap(Objects.requireNonNull(message)));
+  }
+
+  /**
+   * Creates a message consisting of the remaining bytes of a single buffer. Neither the buffer nor
+   * its contents are copied, so they must not be modified while the message is in use.
+   *
+   * @param message A {@link ByteBuffer} whose remaining bytes are the message.
+   *
+   * @return A {@link SegmentedMessage} backed by {@code message}.
+   */
+  static SegmentedMessage of(final ByteBuffer message) {
+    return new SegmentedMessage(Objects.requireNonNull(message).slice(), null);
+  }
+
+  /**
+   * Creates a message consisting of {@code prefix} followed by this message.
+   *
+   * @param prefix A byte array containing the prefix, which is not copied.
+   *
+   * @return A new {@link SegmentedMessage} that shares every segment of this one.
+   */
+  SegmentedMessage prepend(final byte[] prefix) {
+    return prepend(ByteBuffer.wrap(Objects.requireNonNull(prefix)));
+  }
+
+  /**
+   * Creates a message consisting of the remaining bytes of {@code prefix} followed by this
+   * message.
+   *
+   * @param prefix A {@link ByteBuffer} whose remaining bytes are the prefix, which is not copied.
+   *
+   * @return A new {@link SegmentedMessage} that shares every segment of this one.
+   */
+  SegmentedMessage prepend(final ByteBuffer prefix) {
+    return new SegmentedMessage(Objects.requireNonNull(prefix).slice(), this);
+  }
+
+  /**
+   * Accessor for the total number of bytes in this message.
+   *
+   * @return The length of this message.
+   */
+  long length() {
+    return length;
+  }
+
+  /**
+   * Feeds every segment of this message, in order, to a signature engine.
+   *
+   * @param signature A {@link Signature} that has been initialized for signing or verification.
+   *
+   * @throws SignatureException if {@code signature} is not initialized.
+   */
+  void updateTo(final Signature signature) throws SignatureException {
+    for (SegmentedMessage segment = this; segment != null; segment = segment.tail) {
+      signature.update(segment.head.duplicate());
+    }
+  }
+
+  /**
+   * Feeds every segment of this message, in order, to a digest.
+   *
+   * @param messageDigest A {@link MessageDigest}.
+   */
+  void updateTo(final MessageDigest messageDigest) {
+    for (SegmentedMessage segment = this; segment != null; segment = segment.tail) {
+      messageDigest.update(segment.head.duplicate());
+    }
+  }
+
+  /**
+   * Gathers every segment of this message into a single array.
+   *
+   * @return A new byte array containing the whole message.
+   *
+   * @throws IllegalStateException if the message is too long to fit in a byte array.
+   */
+  byte[] toByteArray() {
+    if (length > Integer.MAX_VALUE) {
+      throw new IllegalStateException(
+          String.format("Message length (%s) is too long for a byte array.", length));
+    }
+    final byte[] bytes = new byte[(int) length];
+    int offset = 0;
+    for (SegmentedMessage segment = this; segment != null; segment = segment.tail) {
+      final int segmentLength = segment.head.remaining();
+      segment.head.duplicate().get(bytes, offset, segmentLength);
+      offset += segmentLength;
+    }
+    return bytes;
+  }
+}
@@ -43,6 +43,14 @@ public abstract class Sha256Condition extends ConditionBase {
     return Arrays.copyOf(fingerprint, 32);
   }
 
+  /**
+   * Accessor for the fingerprint of this condition, without copying it. Callers must not modify
+   * the returned array.
+   */
+  final byte[] fingerprint() {
+    return fingerprint;
+  }
+
   @Override
   public final String getFingerprintBase64Url() {
     return this.fingerprintBase64Url;
@@ -0,0 +1,321 @@
+package org.interledger.cryptoconditions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <p>Provides utility methods to verify a fulfillment against a message that is too large to hold
+ * in a byte array, such as a message read from an {@link InputStream}, a {@link
+ * ReadableByteChannel} or a memory-mapped file.</p>
+ *
+ * <p>Streamed messages are read in a single pass. The fulfillment tree is first flattened, and a
+ * signature engine is prepared for each RSA-SHA-256 leaf and fed every prefix added by enclosing
+ * PREFIX-SHA-256 fulfillments. Each chunk of the message is then fed to every engine as it is
+ * read, so RSA-SHA-256 leaves never hold the message in memory. The maximum message length of every
+ * PREFIX-SHA-256 fulfillment is checked as the message is read, so an oversized message is rejected
+ * as soon as it exceeds the smallest limit.</p>
+ *
+ * <p>The ED25519-SHA-256 engine used by this library must see the whole message before it can
+ * begin verifying, so if the tree contains ED25519-SHA-256 leaves (or fulfillments of types that
+ * this class does not know about) the message is also buffered in memory while it is read, and
+ * those leaves are verified from the buffer once the message ends. The buffer is shared by all
+ * such leaves.</p>
+ */
+public class StreamingVerifier {
+
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  /**
+   * Verifies a fulfillment against a message read from an {@link InputStream}. The stream is read
+   * to its end, but is not closed.
+   *
+   * @param fulfillment The {@link Fulfillment} to verify.
+   * @param condition   A {@link Condition} that {@code fulfillment} should verify.
+   * @param message     An {@link InputStream} containing the message.
+   *
+   * @return {@code true} if {@code fulfillment} validates the supplied condition and message;
+   *     {@code false} otherwise.
+   *
+   * @throws IOException              if the message cannot be read.
+   * @throws IllegalArgumentException if the message exceeds the maximum message length of any
+   *                                  PREFIX-SHA-256 fulfillment in the tree.
+   */
+  public static boolean verify(
+      final Fulfillment fulfillment, final Condition condition, final InputStream message
+  ) throws IOException {
+    Objects.requireNonNull(message, "Message must not be null!");
+    return verify(fulfillment, condition, Channels.newChannel(message));
+  }
+
+  /**
+   * Verifies a fulfillment against a message read from a blocking {@link ReadableByteChannel}. The
+   * channel is read to its end, but is not closed.
+   *
+   * @param fulfillment The {@link Fulfillment} to verify.
+   * @param condition   A {@link Condition} that {@code fulfillment} should verify.
+   * @param message     A {@link ReadableByteChannel} containing the message.
+   *
+   * @return {@code true} if {@code fulfillment} validates the supplied condition and message;
+   *     {@code false} otherwise.
+   *
+   * @throws IOException              if the message cannot be read.
+   * @throws IllegalArgumentException if the message exceeds the maximum message length of any
+   *                                  PREFIX-SHA-256 fulfillment in the tree.
+   */
+  public static boolean verify(
+      final Fulfillment fulfillment, final Condition condition, final ReadableByteChannel message
+  ) throws IOException {
+    Objects.requireNonNull(fulfillment, "Fulfillment must not be null!");
+    Objects.requireNonNull(condition, "Can't verify a Fulfillment against a null condition!");
+    Objects.requireNonNull(message, "Message must not be null!");
+
+    if (!fulfillment.getCondition().equals(condition)) {
+      return false;
+    }
+
+    final List<StreamedLeaf> leaves = new ArrayList<>();
+    final List<PrefixLimit> limits = new ArrayList<>();
+    collect(fulfillment, new ArrayList<>(), SegmentedMessage.EMPTY, leaves, limits);
+
+    long maxLength = Long.MAX_VALUE;
+    boolean buffered = false;
+    for (int i = 0; i < limits.size(); i++) {
+      maxLength = Math.min(maxLength, limits.get(i).maxLength());
+    }
+    for (int i = 0; i < leaves.size(); i++) {
+      buffered |= leaves.get(i).isBuffered();
+    }
+
+    final MessageBuffer buffer = buffered ? new MessageBuffer() : null;
+    final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+    long length = 0;
+    try {
+      int read;
+      while ((read = message.read(chunk)) != -1) {
+        length += read;
+        if (length > maxLength) {
+          checkLimits(limits, length);
+        }
+        for (int i = 0; i < leaves.size(); i++) {
+          leaves.get(i).update(chunk.array(), read);
+        }
+        if (buffer != null) {
+          buffer.write(chunk.array(), 0, read);
+        }
+        // Cast so that code compiled by newer JDKs still links against Java 8's Buffer.clear().
+        ((Buffer) chunk).clear();
+      }
+
+      final SegmentedMessage body =
+          buffer == null ? SegmentedMessage.EMPTY : SegmentedMessage.of(buffer.view());
+      leaves.sort(Comparator.comparingLong(StreamedLeaf::getCost));
+      for (int i = 0; i < leaves.size(); i++) {
+        if (!leaves.get(i).verify(body)) {
+          return false;
+        }
+      }
+      return true;
+    } catch (SignatureException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * <p>Verifies a fulfillment against the contents of a file, which is memory-mapped rather than
+   * read into the heap.</p>
+   *
+   * <p>The mapped file is passed through nested PREFIX-SHA-256 fulfillments without being copied,
+   * and RSA-SHA-256 leaves read it directly. ED25519-SHA-256 leaves buffer it, as described
+   * above.</p>
+   *
+   * @param fulfillment The {@link Fulfillment} to verify.
+   * @param condition   A {@link Condition} that {@code fulfillment} should verify.
+   * @param message     The {@link Path} of a file containing the message.
+   *
+   * @return {@code true} if {@code fulfillment} validates the supplied condition and message;
+   *     {@code false} otherwise.
+   *
+   * @throws IOException              if the file cannot be mapped.
+   * @throws IllegalArgumentException if the message exceeds the maximum message length of any
+   *                                  PREFIX-SHA-256 fulfillment in the tree.
+   */
+  public static boolean verify(
+      final Fulfillment fulfillment, final Condition condition, final Path message
+  ) throws IOException {
+    Objects.requireNonNull(fulfillment, "Fulfillment must not be null!");
+    Objects.requireNonNull(condition, "Can't verify a Fulfillment against a null condition!");
+    Objects.requireNonNull(message, "Message must not be null!");
+
+    if (!fulfillment.getCondition().equals(condition)) {
+      return false;
+    }
+
+    try (FileChannel channel = FileChannel.open(message, StandardOpenOption.READ)) {
+      final long size = channel.size();
+      // A single mapping is limited to Integer.MAX_VALUE bytes, so map larger files in pieces,
+      // starting from the end so that each earlier piece can be prepended.
+      SegmentedMessage mapped = null;
+      long end = size;
+      do {
+        final long start = Math.max(0, end - Integer.MAX_VALUE);
+        final ByteBuffer segment = channel.map(MapMode.READ_ONLY, start, end - start);
+        mapped = mapped == null ? SegmentedMessage.of(segment) : mapped.prepend(segment);
+        end = start;
+      } while (end > 0);
+
+      return FulfillmentBase.verifySegmented(fulfillment, condition, mapped);
+    }
+  }
+
+  private static void collect(
+      final Fulfillment fulfillment, final List<PrefixSha256Fulfillment> enclosing,
+      final SegmentedMessage prefixes, final List<StreamedLeaf> leaves,
+      final List<PrefixLimit> limits
+  ) {
+    if (fulfillment instanceof PrefixSha256Fulfillment) {
+      final PrefixSha256Fulfillment prefixFulfillment = (PrefixSha256Fulfillment) fulfillment;
+      limits.add(new PrefixLimit(prefixFulfillment, prefixes.length()));
+
+      final List<PrefixSha256Fulfillment> innerEnclosing = new ArrayList<>(enclosing);
+      innerEnclosing.add(prefixFulfillment);
+      collect(prefixFulfillment.getSubfulfillment(), innerEnclosing,
+          prefixFulfillment.prefixMessage(prefixes), leaves, limits);
+    } else if (fulfillment instanceof ThresholdSha256Fulfillment) {
+      final List<Fulfillment> subfulfillments =
+          ((ThresholdSha256Fulfillment) fulfillment).getSubfulfillments();
+      for (int i = 0; i < subfulfillments.size(); i++) {
+        collect(subfulfillments.get(i), enclosing, prefixes, leaves, limits);
+      }
+    } else {
+      leaves.add(new StreamedLeaf(fulfillment, enclosing, prefixes));
+    }
+  }
+
+  private static void checkLimits(final List<PrefixLimit> limits, final long length) {
+    for (int i = 0; i < limits.size(); i++) {
+      limits.get(i).check(length);
+    }
+  }
+
+  /**
+   * The maximum message length of a PREFIX-SHA-256 fulfillment, together with the length of the
+   * prefixes that enclosing fulfillments add before the streamed message reaches it.
+   */
+  private static final class PrefixLimit {
+
+    private final PrefixSha256Fulfillment fulfillment;
+    private final long outerPrefixesLength;
+
+    private PrefixLimit(
+        final PrefixSha256Fulfillment fulfillment, final long outerPrefixesLength
+    ) {
+      this.fulfillment = fulfillment;
+      this.outerPrefixesLength = outerPrefixesLength;
+    }
+
+    private long maxLength() {
+      return fulfillment.getMaxMessageLength() - outerPrefixesLength;
+    }
+
+    private void check(final long streamedLength) {
+      fulfillment.checkMessageLength(outerPrefixesLength + streamedLength);
+    }
+  }
+
+  /**
+   * A leaf of the fulfillment tree, together with the PREFIX-SHA-256 fulfillments (outermost
+   * first) that enclose it, and the prefixes that they add to the streamed message.
+   */
+  private static final class StreamedLeaf {
+
+    private final Fulfillment fulfillment;
+    private final List<PrefixSha256Fulfillment> enclosing;
+    private final Signature verifier;
+
+    private StreamedLeaf(
+        final Fulfillment fulfillment, final List<PrefixSha256Fulfillment> enclosing,
+        final SegmentedMessage prefixes
+    ) {
+      this.fulfillment = fulfillment;
+      this.enclosing = enclosing;
+      this.verifier = fulfillment instanceof RsaSha256Fulfillment
+          ? initVerifier((RsaSha256Fulfillment) fulfillment, prefixes) : null;
+    }
+
+    private static Signature initVerifier(
+        final RsaSha256Fulfillment fulfillment, final SegmentedMessage prefixes
+    ) {
+      try {
+        final Signature rsaSigner =
+            Signature.getInstance(RsaSha256Fulfillment.SHA_256_WITH_RSA_PSS);
+        rsaSigner.initVerify(fulfillment.getPublicKey());
+        prefixes.updateTo(rsaSigner);
+        return rsaSigner;
+      } catch (InvalidKeyException | NoSuchAlgorithmException | SignatureException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    private long getCost() {
+      return fulfillment.getCondition().getCost();
+    }
+
+    /**
+     * Whether this leaf needs the message to be buffered. PREIMAGE-SHA-256 leaves ignore the
+     * message and RSA-SHA-256 leaves consume it as it is streamed.
+     */
+    private boolean isBuffered() {
+      return verifier == null && !(fulfillment instanceof PreimageSha256Fulfillment);
+    }
+
+    private void update(final byte[] chunk, final int length) throws SignatureException {
+      if (verifier != null) {
+        verifier.update(chunk, 0, length);
+      }
+    }
+
+    private boolean verify(final SegmentedMessage body) throws SignatureException {
+      if (verifier != null) {
+        return ((RsaSha256Fulfillment) fulfillment)
+            .verifySignature(verifier, SegmentedMessage.EMPTY);
+      }
+
+      SegmentedMessage message = body;
+      for (int i = 0; i < enclosing.size(); i++) {
+        message = enclosing.get(i).prefixMessage(message);
+      }
+      return FulfillmentBase.verifySegmented(fulfillment, fulfillment.getCondition(), message);
+    }
+  }
+
+  /**
+   * A {@link ByteArrayOutputStream} whose contents can be viewed without copying them.
+   */
+  private static final class MessageBuffer extends ByteArrayOutputStream {
+
+    private MessageBuffer() {
+      super(CHUNK_SIZE);
+    }
+
+    private ByteBuffer view() {
+      return ByteBuffer.wrap(buf, 0, count);
+    }
+  }
+}
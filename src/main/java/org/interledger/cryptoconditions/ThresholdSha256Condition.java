@@ -37,7 +37,7 @@ public final class ThresholdSha256Condition extends CompoundSha256Condition
         hashFingerprintContents(
             constructFingerprintContents(threshold, subconditions)
         ),
-        calculateSubtypes(subconditions)
+        calculateSubtypeMask(subconditions)
     );
   }
 
@@ -57,6 +57,20 @@ public final class ThresholdSha256Condition extends CompoundSha256Condition
     super(THRESHOLD_SHA256, cost, fingerprint, subtypes);
   }
 
+  /**
+   * Constructs an instance of the condition from a type mask of its subtypes, as read by codecs.
+   *
+   * @param cost        The cost of this condition.
+   * @param fingerprint The calculated fingerprint.
+   * @param subtypeMask A type mask of the condition types that this one depends on, with the bit
+   *                    {@link CryptoConditionType#getTypeMask()} set for each type.
+   */
+  public ThresholdSha256Condition(
+      final long cost, final byte[] fingerprint, final int subtypeMask
+  ) {
+    super(THRESHOLD_SHA256, cost, fingerprint, subtypeMask);
+  }
+
   /**
    * <p>Constructs the fingerprint for this condition.</p>
    *
@@ -165,27 +179,21 @@ public final class ThresholdSha256Condition extends CompoundSha256Condition
    *
    * @param subconditions The sub conditions that this condition depends on.
    *
-   * @return The set of condition rsa related to the sub condition.
+   * @return A type mask of the condition rsa related to the sub conditions.
    */
-  private static final EnumSet<CryptoConditionType> calculateSubtypes(
-      final List<Condition> subconditions
-  ) {
+  private static int calculateSubtypeMask(final List<Condition> subconditions) {
     Objects.requireNonNull(subconditions);
 
-    final EnumSet<CryptoConditionType> subtypes = EnumSet.noneOf(CryptoConditionType.class);
+    int subtypeMask = 0;
     for (int i = 0; i < subconditions.size(); i++) {
-      subtypes.add(subconditions.get(i).getType());
+      subtypeMask |= subconditions.get(i).getType().getTypeMask();
       if (subconditions.get(i) instanceof CompoundCondition) {
-        subtypes.addAll(((CompoundCondition) subconditions.get(i)).getSubtypes());
+        subtypeMask |= ((CompoundCondition) subconditions.get(i)).getSubtypeMask();
       }
     }
 
     // Remove our own type
-    if (subtypes.contains(THRESHOLD_SHA256)) {
-      subtypes.remove(THRESHOLD_SHA256);
-    }
-
-    return subtypes;
+    return subtypeMask & ~THRESHOLD_SHA256.getTypeMask();
   }
 
 }
@@ -51,6 +51,24 @@ public class ThresholdSha256Fulfillment extends FulfillmentBase<ThresholdSha256C
     this.condition = this.constructCondition();
   }
 
+  /**
+   * Constructs an instance of the fulfillment whose condition has already been derived, such as by
+   * {@link CryptoConditionReader} while decoding.
+   *
+   * @param subconditions   An ordered {@link List} of unfulfilled sub-conditions.
+   * @param subfulfillments An ordered {@link List} of fulfillments.
+   * @param condition       The condition derived from the other arguments.
+   */
+  ThresholdSha256Fulfillment(
+      final List<Condition> subconditions, final List<Fulfillment> subfulfillments,
+      final ThresholdSha256Condition condition
+  ) {
+    super(THRESHOLD_SHA256);
+    this.subconditions = Collections.unmodifiableList(new ArrayList<>(subconditions));
+    this.subfulfillments = Collections.unmodifiableList(new ArrayList<>(subfulfillments));
+    this.condition = Objects.requireNonNull(condition);
+  }
+
   private ThresholdSha256Condition constructCondition() {
     final List<Condition> allConditions = new ArrayList<>();
 
@@ -102,6 +120,14 @@ public class ThresholdSha256Fulfillment extends FulfillmentBase<ThresholdSha256C
    * <p>For more general details about Fulfillment validation, see the Javadoc in {@link
    * Fulfillment#verify(Condition, byte[])}.</p>
    *
+   * <p>The derived condition (D) covers the fingerprint of every subfulfillment in the tree, so
+   * it is compared first. Next, the whole tree is walked to check structural constraints, such as
+   * the maximum message length of nested PREFIX-SHA-256 fulfillments. Only then are the leaves of
+   * the tree verified, in ascending order of cost, stopping at the first one that fails.</p>
+   *
+   * <p>Subfulfillments are verified on the calling thread. To spread the verification of large
+   * thresholds across several threads, use a {@link ParallelVerifier}.</p>
+   *
    * @param condition A {@link Condition} that this fulfillment should verify.
    * @param message   A byte array that is part of verifying the supplied condition.
    *
@@ -113,13 +139,22 @@ public class ThresholdSha256Fulfillment extends FulfillmentBase<ThresholdSha256C
         "Can't verify a ThresholdSha256Fulfillment against an null condition.");
     Objects.requireNonNull(message, "Message must not be null!");
 
+    return verify(condition, SegmentedMessage.of(message));
+  }
+
+  @Override
+  boolean verify(final ThresholdSha256Condition condition, final SegmentedMessage message) {
     if (!getCondition().equals(condition)) {
       return false;
     }
 
-    for (int i = 0; i < subfulfillments.size(); i++) {
-      Condition subcondition = subfulfillments.get(i).getCondition();
-      if (!subfulfillments.get(i).verify(subcondition, message)) {
+    // Walk the entire tree before doing any signature work, so that structural problems anywhere
+    // in it are found first, and then verify the cheapest leaves first so that an invalid
+    // fulfillment is rejected in time proportional to its cheapest failing leaf.
+    final List<LeafVerification> leaves = LeafVerification.collect(this, message);
+    LeafVerification.sortByCost(leaves);
+    for (int i = 0; i < leaves.size(); i++) {
+      if (!leaves.get(i).verify()) {
         return false;
       }
     }
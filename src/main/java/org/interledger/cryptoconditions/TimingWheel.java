@@ -0,0 +1,162 @@
+package org.interledger.cryptoconditions;
+
+import java.util.List;
+
+/**
+ * <p>A hierarchical timing wheel holding the pending registrations of a {@link ConditionRegistry}
+ * by the tick at which they expire.</p>
+ *
+ * <p>Ticks are split into 6-bit digits, and each level of the wheel has one bucket for every value
+ * of its digit. A registration is held at the lowest level above which its tick and the current
+ * tick have the same digits, so that its bucket is reached before it expires. Whenever the current
+ * tick reaches the start of a bucket of a higher level, that bucket is cascaded into the levels
+ * below it, and every bucket of the lowest level expires its registrations when its tick is
+ * reached. Adding a registration and expiring it are therefore constant time, however many
+ * registrations are held and however far in the future they expire.</p>
+ *
+ * <p>Registrations that are matched or cancelled stay in their buckets until they are reached, and
+ * are then dropped, whether their bucket is cascaded or expired, so that settling a registration
+ * never touches the wheel. A wheel is not thread-safe.</p>
+ */
+final class TimingWheel {
+
+  private static final int BITS = 6;
+  private static final int BUCKETS = 1 << BITS;
+  private static final int LEVELS = (Long.SIZE + BITS - 1) / BITS;
+
+  private final ConditionRegistry.Registration<?>[][] buckets =
+      new ConditionRegistry.Registration<?>[LEVELS][BUCKETS];
+  private final long[] occupied = new long[LEVELS];
+
+  private ConditionRegistry.Registration<?> overdue;
+  private long currentTick;
+
+  /**
+   * Required-args Constructor.
+   *
+   * @param startTick The tick that the wheel starts at, which is treated as already processed.
+   */
+  TimingWheel(final long startTick) {
+    this.currentTick = startTick;
+  }
+
+  long getCurrentTick() {
+    return currentTick;
+  }
+
+  /**
+   * Adds a registration, which expires on the next call to {@link #advance(long, List)} if its
+   * tick has already been processed.
+   */
+  void add(final ConditionRegistry.Registration<?> registration) {
+    final long tick = registration.expiryTick;
+    if (tick <= currentTick) {
+      registration.wheelNext = overdue;
+      overdue = registration;
+    } else {
+      place(registration);
+    }
+  }
+
+  /**
+   * Puts a registration that expires at or after the current tick into its bucket.
+   */
+  private void place(final ConditionRegistry.Registration<?> registration) {
+    final long tick = registration.expiryTick;
+    // The lowest level above which the tick and the current tick share every digit
+    final long difference = tick ^ currentTick;
+    final int level = difference == 0 ? 0
+        : (Long.SIZE - 1 - Long.numberOfLeadingZeros(difference)) / BITS;
+    final int bucket = (int) (tick >>> (level * BITS)) & (BUCKETS - 1);
+    registration.wheelNext = buckets[level][bucket];
+    buckets[level][bucket] = registration;
+    occupied[level] |= 1L << bucket;
+  }
+
+  /**
+   * Processes every tick up to and including a target tick, collecting the registrations that
+   * expire.
+   *
+   * @param targetTick The tick to advance to.
+   * @param expired    The list to add each expired registration to, if it is still pending.
+   */
+  void advance(final long targetTick, final List<ConditionRegistry.Registration<?>> expired) {
+    for (ConditionRegistry.Registration<?> r = overdue; r != null; ) {
+      final ConditionRegistry.Registration<?> next = r.wheelNext;
+      r.wheelNext = null;
+      if (r.isPending()) {
+        expired.add(r);
+      }
+      r = next;
+    }
+    overdue = null;
+
+    while (currentTick < targetTick) {
+      final long tick = nextOccupiedTick();
+      if (tick > targetTick) {
+        currentTick = targetTick;
+        break;
+      }
+      currentTick = tick;
+
+      // Cascade every higher-level bucket that starts at this tick, highest first, so that its
+      // registrations reach the lowest level before its bucket for this tick is expired.
+      int level = 1;
+      while (level < LEVELS && (tick & ((1L << (level * BITS)) - 1)) == 0) {
+        level++;
+      }
+      for (int cascade = level - 1; cascade >= 1; cascade--) {
+        final int bucket = (int) (tick >>> (cascade * BITS)) & (BUCKETS - 1);
+        ConditionRegistry.Registration<?> r = take(cascade, bucket);
+        while (r != null) {
+          final ConditionRegistry.Registration<?> next = r.wheelNext;
+          if (r.isPending()) {
+            place(r);
+          } else {
+            r.wheelNext = null;
+          }
+          r = next;
+        }
+      }
+
+      ConditionRegistry.Registration<?> r = take(0, (int) tick & (BUCKETS - 1));
+      while (r != null) {
+        final ConditionRegistry.Registration<?> next = r.wheelNext;
+        r.wheelNext = null;
+        if (r.isPending()) {
+          expired.add(r);
+        }
+        r = next;
+      }
+    }
+  }
+
+  /**
+   * The first tick after the current tick at which an occupied bucket is reached, or {@link
+   * Long#MAX_VALUE} if the wheel is empty. Every occupied bucket of a level is after the current
+   * tick's digit for that level, so the lowest level with one holds the nearest, and empty spans of
+   * any length are skipped at once.
+   */
+  private long nextOccupiedTick() {
+    for (int level = 0; level < LEVELS; level++) {
+      final int shift = level * BITS;
+      final int digit = (int) (currentTick >>> shift) & (BUCKETS - 1);
+      if (digit == BUCKETS - 1) {
+        continue;
+      }
+      final long bits = occupied[level] & (-1L << (digit + 1));
+      if (bits != 0) {
+        final long above = shift + BITS < Long.SIZE ? currentTick & (-1L << (shift + BITS)) : 0;
+        return above | (long) Long.numberOfTrailingZeros(bits) << shift;
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  private ConditionRegistry.Registration<?> take(final int level, final int bucket) {
+    final ConditionRegistry.Registration<?> head = buckets[level][bucket];
+    buckets[level][bucket] = null;
+    occupied[level] &= ~(1L << bucket);
+    return head;
+  }
+}
@@ -0,0 +1,340 @@
+package org.interledger.cryptoconditions;
+
+import org.interledger.cryptoconditions.der.DerEncodingException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * <p>A bounded cache of verification results, for nodes that verify the same fulfillment against
+ * the same condition and message many times (for example, because of retries or multi-hop
+ * forwarding).</p>
+ *
+ * <p>Results are keyed by the fingerprint of the condition, a SHA-256 hash of the DER encoding of
+ * the fulfillment, and a SHA-256 hash of the message, so computing a key is much cheaper than
+ * verifying a signature, though not cheaper than verifying a PREIMAGE-SHA-256 fulfillment. The
+ * condition itself is always compared against the derived condition of the fulfillment, and is
+ * never cached.</p>
+ *
+ * <p>The cache is split into independently locked stripes, each of which evicts its least recently
+ * used entry once it is full. Entries also expire once they are older than the time-to-live. By
+ * default, both valid and invalid results are cached; a cache that only holds valid results can be
+ * constructed for callers that would rather re-verify an invalid fulfillment than trust a cached
+ * rejection.</p>
+ *
+ * <p>Concurrent misses for the same key are not coalesced, so each of them verifies the
+ * fulfillment. Verifications that throw are never cached.</p>
+ */
+public class VerificationCache {
+
+  private static final int MAX_STRIPES = 16;
+
+  private final Stripe[] stripes;
+  private final long timeToLiveNanos;
+  private final boolean onlyCacheValid;
+  private final LongSupplier ticker;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Required-args Constructor.
+   *
+   * @param maximumSize    The maximum number of results to hold.
+   * @param timeToLive     How long a result may be held before it is verified again.
+   * @param onlyCacheValid {@code true} if only valid results should be cached; {@code false} if
+   *                       invalid results should be cached too.
+   */
+  public VerificationCache(
+      final int maximumSize, final Duration timeToLive, final boolean onlyCacheValid
+  ) {
+    this(maximumSize, timeToLive, onlyCacheValid, System::nanoTime);
+  }
+
+  VerificationCache(
+      final int maximumSize, final Duration timeToLive, final boolean onlyCacheValid,
+      final LongSupplier ticker
+  ) {
+    if (maximumSize < 1) {
+      throw new IllegalArgumentException("Maximum size must be positive!");
+    }
+    Objects.requireNonNull(timeToLive, "Time to live must not be null!");
+    if (timeToLive.isNegative() || timeToLive.isZero()) {
+      throw new IllegalArgumentException("Time to live must be positive!");
+    }
+
+    final int stripeCount = Integer.highestOneBit(Math.min(MAX_STRIPES, maximumSize));
+    this.stripes = new Stripe[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      // Spread the remainder over the first stripes, so that the total is exactly maximumSize.
+      final int capacity = maximumSize / stripeCount + (i < maximumSize % stripeCount ? 1 : 0);
+      this.stripes[i] = new Stripe(capacity);
+    }
+    this.timeToLiveNanos = timeToLive.toNanos();
+    this.onlyCacheValid = onlyCacheValid;
+    this.ticker = Objects.requireNonNull(ticker);
+  }
+
+  /**
+   * Verifies a fulfillment against a condition and a message, returning a cached result if the
+   * same fulfillment has recently been verified against the same condition and message.
+   *
+   * <p>Fulfillments of types that this library cannot encode are verified without caching.</p>
+   *
+   * @param fulfillment The {@link Fulfillment} to verify.
+   * @param condition   A {@link Condition} that {@code fulfillment} should verify.
+   * @param message     A byte array that is part of verifying the supplied condition.
+   *
+   * @return {@code true} if {@code fulfillment} validates the supplied condition and message;
+   *     {@code false} otherwise.
+   */
+  @SuppressWarnings("unchecked")
+  public boolean verify(
+      final Fulfillment fulfillment, final Condition condition, final byte[] message
+  ) {
+    Objects.requireNonNull(fulfillment, "Fulfillment must not be null!");
+    Objects.requireNonNull(condition, "Can't verify a Fulfillment against a null condition!");
+    Objects.requireNonNull(message, "Message must not be null!");
+
+    if (!fulfillment.getCondition().equals(condition)) {
+      return false;
+    }
+
+    final Key key;
+    try {
+      key = Key.of(condition, CryptoConditionWriter.writeFulfillment(fulfillment), message);
+    } catch (DerEncodingException | IllegalArgumentException e) {
+      return fulfillment.verify(condition, message);
+    }
+
+    final int hash = key.hashCode();
+    final Stripe stripe = stripes[(hash ^ hash >>> 16) & (stripes.length - 1)];
+    final Boolean cached = stripe.get(key, ticker.getAsLong());
+    if (cached != null) {
+      hits.increment();
+      return cached;
+    }
+
+    misses.increment();
+    final boolean valid = fulfillment.verify(condition, message);
+    if (valid || !onlyCacheValid) {
+      stripe.put(key, valid, ticker.getAsLong());
+    }
+    return valid;
+  }
+
+  /**
+   * Removes every result from this cache. Metrics are not reset.
+   */
+  public void invalidateAll() {
+    for (Stripe stripe : stripes) {
+      stripe.clear();
+    }
+  }
+
+  /**
+   * Accessor for the number of results currently held, which may include expired results that
+   * have not yet been evicted.
+   *
+   * @return The number of results held.
+   */
+  public long size() {
+    long size = 0;
+    for (Stripe stripe : stripes) {
+      size += stripe.size();
+    }
+    return size;
+  }
+
+  /**
+   * Accessor for the number of verifications that were answered from this cache.
+   *
+   * @return The number of hits.
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Accessor for the number of verifications that could have been, but were not, answered from
+   * this cache.
+   *
+   * @return The number of misses.
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * Accessor for the number of results that were removed because this cache was full or because
+   * they had expired.
+   *
+   * @return The number of evictions.
+   */
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  /**
+   * Accessor for the proportion of cacheable verifications that were answered from this cache.
+   *
+   * @return A value between 0 and 1, or 0 if nothing has been verified yet.
+   */
+  public double getHitRate() {
+    final long hitCount = hits.sum();
+    final long total = hitCount + misses.sum();
+    return total == 0 ? 0 : (double) hitCount / total;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("VerificationCache{");
+    sb.append("\nsize=").append(size());
+    sb.append(", \n\thits=").append(getHitCount());
+    sb.append(", \n\tmisses=").append(getMissCount());
+    sb.append(", \n\tevictions=").append(getEvictionCount());
+    sb.append(", \n\tonlyCacheValid=").append(onlyCacheValid);
+    sb.append("\n}");
+    return sb.toString();
+  }
+
+  /**
+   * A least-recently-used map guarded by its own lock.
+   */
+  private final class Stripe {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Key, Entry> entries;
+
+    private Stripe(final int capacity) {
+      this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(
+            final Map.Entry<Key, VerificationCache.Entry> eldest
+        ) {
+          if (size() > capacity) {
+            evictions.increment();
+            return true;
+          }
+          return false;
+        }
+      };
+    }
+
+    private Boolean get(final Key key, final long now) {
+      lock.lock();
+      try {
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+          return null;
+        }
+        if (now - entry.insertedAt >= timeToLiveNanos) {
+          entries.remove(key);
+          evictions.increment();
+          return null;
+        }
+        return entry.valid;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void put(final Key key, final boolean valid, final long now) {
+      lock.lock();
+      try {
+        entries.put(key, new Entry(valid, now));
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void clear() {
+      lock.lock();
+      try {
+        entries.clear();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private int size() {
+      lock.lock();
+      try {
+        return entries.size();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * A cached result and the time at which it was cached.
+   */
+  private static final class Entry {
+
+    private final boolean valid;
+    private final long insertedAt;
+
+    private Entry(final boolean valid, final long insertedAt) {
+      this.valid = valid;
+      this.insertedAt = insertedAt;
+    }
+  }
+
+  /**
+   * The type and fingerprint of a condition, followed by hashes of a fulfillment encoding and a
+   * message.
+   */
+  private static final class Key {
+
+    private final byte[] bytes;
+    private final int hashCode;
+
+    private Key(final byte[] bytes) {
+      this.bytes = bytes;
+      this.hashCode = Arrays.hashCode(bytes);
+    }
+
+    private static Key of(
+        final Condition condition, final byte[] encodedFulfillment, final byte[] message
+    ) {
+      final MessageDigest messageDigest;
+      try {
+        messageDigest = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new RuntimeException(e);
+      }
+
+      final byte[] fingerprint = FingerprintTable.fingerprintOf(condition);
+      final byte[] bytes = new byte[1 + fingerprint.length + 64];
+      bytes[0] = (byte) condition.getType().getTypeCode();
+      System.arraycopy(fingerprint, 0, bytes, 1, fingerprint.length);
+      System.arraycopy(messageDigest.digest(encodedFulfillment), 0, bytes,
+          1 + fingerprint.length, 32);
+      System.arraycopy(messageDigest.digest(message), 0, bytes, 1 + fingerprint.length + 32, 32);
+      return new Key(bytes);
+    }
+
+    @Override
+    public boolean equals(final Object object) {
+      return this == object
+          || object instanceof Key && Arrays.equals(bytes, ((Key) object).bytes);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
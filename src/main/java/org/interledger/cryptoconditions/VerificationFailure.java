@@ -0,0 +1,58 @@
+package org.interledger.cryptoconditions;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * <p>A lightweight, internal signal that verifying or decoding an encoded fulfillment has failed,
+ * carrying the {@link VerificationResult.Status} and offset of the failure.</p>
+ *
+ * <p>Creating one costs no more than an allocation: it has no stack trace, and the exception that
+ * the throwing APIs report for it (with its message and stack trace) is only built when {@link
+ * #toException()} is called at the boundary of one of those APIs.</p>
+ */
+final class VerificationFailure extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final VerificationResult.Status status;
+  private final int offset;
+  private final transient Supplier<? extends RuntimeException> exceptionSupplier;
+
+  /**
+   * Required-args Constructor.
+   *
+   * @param status            The {@link VerificationResult.Status} of the failure.
+   * @param offset            The offset at which the failure was found, or -1 if it is not known.
+   * @param exceptionSupplier Builds the exception that the throwing APIs report for the failure.
+   */
+  VerificationFailure(
+      final VerificationResult.Status status, final int offset,
+      final Supplier<? extends RuntimeException> exceptionSupplier
+  ) {
+    super(null, null, false, false);
+    this.status = Objects.requireNonNull(status);
+    this.offset = offset;
+    this.exceptionSupplier = Objects.requireNonNull(exceptionSupplier);
+  }
+
+  int getOffset() {
+    return offset;
+  }
+
+  /**
+   * Creates a copy of this failure at the supplied offset, for failures that were raised without
+   * one.
+   */
+  VerificationFailure at(final int offset) {
+    return new VerificationFailure(status, offset, exceptionSupplier);
+  }
+
+  VerificationResult toResult() {
+    return new VerificationResult(status, offset);
+  }
+
+  RuntimeException toException() {
+    return exceptionSupplier.get();
+  }
+}
@@ -0,0 +1,306 @@
+package org.interledger.cryptoconditions;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <p>Admission limits for decoding and verifying fulfillments, so that oversized or disallowed
+ * work can be rejected before any of it is done.</p>
+ *
+ * <p>A policy limits the cost of the condition being verified, the nesting depth of the
+ * fulfillment, the length of the message and the types of condition that may appear anywhere in
+ * the fulfillment. All of these checks are cheap: none of them hashes anything or verifies a
+ * signature. A request that breaks a limit is rejected with a {@link VerificationPolicyException}
+ * whose {@link Reason} identifies the limit.</p>
+ *
+ * <p>The depth of a fulfillment is the number of fulfillments on the longest path from the root to
+ * a leaf, so a lone PREIMAGE-SHA-256 fulfillment has a depth of 1.</p>
+ *
+ * <p>Decoding and verifying without a policy enforces {@link #DEFAULT}, which only limits the
+ * depth, to {@link #DEFAULT_MAX_DEPTH}. Fulfillments are read with an explicit stack, but
+ * verifying, encoding and comparing {@link Fulfillment} objects recurse once per level, so a
+ * fulfillment nested much more deeply than that would overflow the thread stack after it had been
+ * read. Only read with {@link #UNRESTRICTED} when the fulfillment will not be used in those
+ * ways.</p>
+ */
+public final class VerificationPolicy {
+
+  /**
+   * The maximum depth of {@link #DEFAULT}, which every recursive operation on fulfillments handles
+   * well within the default size of a thread stack.
+   */
+  public static final int DEFAULT_MAX_DEPTH = 256;
+
+  /**
+   * A policy that allows everything.
+   */
+  public static final VerificationPolicy UNRESTRICTED = new VerificationPolicy(
+      Long.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, EnumSet.allOf(CryptoConditionType.class));
+
+  /**
+   * A policy that allows everything but fulfillments nested more deeply than {@link
+   * #DEFAULT_MAX_DEPTH}, which is enforced when no other policy is given.
+   */
+  public static final VerificationPolicy DEFAULT = new VerificationPolicy(
+      Long.MAX_VALUE, DEFAULT_MAX_DEPTH, Long.MAX_VALUE, EnumSet.allOf(CryptoConditionType.class));
+
+  /**
+   * The limits that a {@link VerificationPolicy} enforces.
+   */
+  public enum Reason {
+    /**
+     * The cost of the condition is greater than the maximum cost.
+     */
+    COST_EXCEEDED,
+
+    /**
+     * The fulfillment is nested more deeply than the maximum depth.
+     */
+    DEPTH_EXCEEDED,
+
+    /**
+     * The message is longer than the maximum message length.
+     */
+    MESSAGE_TOO_LONG,
+
+    /**
+     * The condition or fulfillment contains a type that is not allowed.
+     */
+    TYPE_NOT_ALLOWED
+  }
+
+  private final long maxCost;
+  private final int maxDepth;
+  private final long maxMessageLength;
+  private final int allowedTypeMask;
+
+  /**
+   * Required-args Constructor.
+   *
+   * @param maxCost          The maximum cost of a condition.
+   * @param maxDepth         The maximum nesting depth of a fulfillment.
+   * @param maxMessageLength The maximum length of a message.
+   * @param allowedTypes     The types of condition that may appear in a condition or fulfillment.
+   */
+  public VerificationPolicy(
+      final long maxCost, final int maxDepth, final long maxMessageLength,
+      final EnumSet<CryptoConditionType> allowedTypes
+  ) {
+    if (maxCost < 0) {
+      throw new IllegalArgumentException("Maximum cost must not be negative!");
+    }
+    if (maxDepth < 1) {
+      throw new IllegalArgumentException("Maximum depth must be positive!");
+    }
+    if (maxMessageLength < 0) {
+      throw new IllegalArgumentException("Maximum message length must not be negative!");
+    }
+    Objects.requireNonNull(allowedTypes, "Allowed types must not be null!");
+
+    this.maxCost = maxCost;
+    this.maxDepth = maxDepth;
+    this.maxMessageLength = maxMessageLength;
+    this.allowedTypeMask = CryptoConditionType.getMaskOfTypes(allowedTypes);
+  }
+
+  public long getMaxCost() {
+    return maxCost;
+  }
+
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  public long getMaxMessageLength() {
+    return maxMessageLength;
+  }
+
+  public EnumSet<CryptoConditionType> getAllowedTypes() {
+    return CryptoConditionType.getTypesOfMask(allowedTypeMask);
+  }
+
+  /**
+   * Checks a request to verify a fulfillment against a condition and a message. The message length
+   * and the condition are checked first, followed by a walk of the fulfillment.
+   *
+   * @param fulfillment   The {@link Fulfillment} to be verified.
+   * @param condition     The {@link Condition} it is to be verified against.
+   * @param messageLength The length of the message.
+   *
+   * @throws VerificationPolicyException if the request breaks any limit of this policy.
+   */
+  public void check(
+      final Fulfillment<?> fulfillment, final Condition condition, final long messageLength
+  ) {
+    Objects.requireNonNull(fulfillment, "Fulfillment must not be null!");
+    Objects.requireNonNull(condition, "Condition must not be null!");
+
+    checkMessageLength(messageLength);
+    checkCondition(condition);
+    checkFulfillment(fulfillment, 1);
+  }
+
+  /**
+   * Checks the type, subtypes and cost of a condition.
+   *
+   * @param condition A {@link Condition}.
+   *
+   * @throws VerificationPolicyException if the condition breaks any limit of this policy.
+   */
+  public void checkCondition(final Condition condition) {
+    Objects.requireNonNull(condition, "Condition must not be null!");
+
+    checkType(condition.getType());
+    if (condition instanceof CompoundCondition) {
+      checkTypes(((CompoundCondition) condition).getSubtypeMask());
+    }
+    checkCost(condition.getCost());
+  }
+
+  /**
+   * Checks the type, subtypes and cost of a derived condition.
+   */
+  void checkCondition(final DerivedCondition condition) {
+    checkType(condition.getType());
+    checkTypes(condition.getSubtypeMask());
+    checkCost(condition.getCost());
+  }
+
+  /**
+   * Checks the length of a message.
+   *
+   * @param messageLength The length of the message.
+   *
+   * @throws VerificationPolicyException if the message is longer than the maximum message length.
+   */
+  public void checkMessageLength(final long messageLength) {
+    if (!allowsMessageLength(messageLength)) {
+      throw violation(Reason.MESSAGE_TOO_LONG, messageLength);
+    }
+  }
+
+  /**
+   * Checks the type of a single condition or fulfillment.
+   */
+  void checkType(final CryptoConditionType type) {
+    if (!allowsType(type)) {
+      throw violation(Reason.TYPE_NOT_ALLOWED, type);
+    }
+  }
+
+  /**
+   * Checks a type mask of subtypes.
+   */
+  void checkTypes(final int typeMask) {
+    final CryptoConditionType type = firstDisallowedType(typeMask);
+    if (type != null) {
+      throw violation(Reason.TYPE_NOT_ALLOWED, type);
+    }
+  }
+
+  /**
+   * Checks the cost of a condition.
+   */
+  void checkCost(final long cost) {
+    if (!allowsCost(cost)) {
+      throw violation(Reason.COST_EXCEEDED, cost);
+    }
+  }
+
+  /**
+   * Checks the depth of a fulfillment that is about to be decoded or walked.
+   */
+  void checkDepth(final int depth) {
+    if (!allowsDepth(depth)) {
+      throw violation(Reason.DEPTH_EXCEEDED, depth);
+    }
+  }
+
+  boolean allowsMessageLength(final long messageLength) {
+    return messageLength <= maxMessageLength;
+  }
+
+  boolean allowsType(final CryptoConditionType type) {
+    return (allowedTypeMask & type.getTypeMask()) != 0;
+  }
+
+  /**
+   * Finds the first of a type mask of subtypes that is not allowed.
+   *
+   * @return The type with the lowest type code that is not allowed, or {@code null} if they are all
+   *     allowed.
+   */
+  CryptoConditionType firstDisallowedType(final int typeMask) {
+    final int disallowed = typeMask & ~allowedTypeMask;
+    return disallowed == 0 ? null
+        : CryptoConditionType.lookup(Integer.numberOfTrailingZeros(disallowed));
+  }
+
+  boolean allowsCost(final long cost) {
+    return cost <= maxCost;
+  }
+
+  boolean allowsDepth(final int depth) {
+    return depth <= maxDepth;
+  }
+
+  /**
+   * Builds the exception that reports a value breaking one of the limits of this policy. The checks
+   * above throw it directly; callers that reject input without throwing only build it if asked
+   * for.
+   *
+   * @param reason The {@link Reason} identifying the limit.
+   * @param value  The message length, type, cost or depth that breaks the limit.
+   */
+  VerificationPolicyException violation(final Reason reason, final Object value) {
+    switch (reason) {
+      case MESSAGE_TOO_LONG:
+        return new VerificationPolicyException(reason, String.format(
+            "Message length (%s) exceeds maximum message length of (%s).", value,
+            maxMessageLength));
+      case TYPE_NOT_ALLOWED:
+        return new VerificationPolicyException(reason, "Type " + value + " is not allowed.");
+      case COST_EXCEEDED:
+        return new VerificationPolicyException(reason,
+            "Cost (" + value + ") exceeds maximum cost of (" + maxCost + ").");
+      default:
+        return new VerificationPolicyException(reason,
+            "Depth (" + value + ") exceeds maximum depth of (" + maxDepth + ").");
+    }
+  }
+
+  /**
+   * Walks a fulfillment, checking the type and depth of every node. The walk stops as soon as the
+   * maximum depth is exceeded, so it is bounded by the policy rather than by the fulfillment.
+   */
+  private void checkFulfillment(final Fulfillment<?> fulfillment, final int depth) {
+    checkDepth(depth);
+    checkType(fulfillment.getType());
+
+    if (fulfillment instanceof PrefixSha256Fulfillment) {
+      checkFulfillment(((PrefixSha256Fulfillment) fulfillment).getSubfulfillment(), depth + 1);
+    } else if (fulfillment instanceof ThresholdSha256Fulfillment) {
+      final ThresholdSha256Fulfillment threshold = (ThresholdSha256Fulfillment) fulfillment;
+      final List<Condition> subconditions = threshold.getSubconditions();
+      for (int i = 0; i < subconditions.size(); i++) {
+        checkCondition(subconditions.get(i));
+      }
+      final List<Fulfillment> subfulfillments = threshold.getSubfulfillments();
+      for (int i = 0; i < subfulfillments.size(); i++) {
+        checkFulfillment(subfulfillments.get(i), depth + 1);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("VerificationPolicy{");
+    sb.append("maxCost=").append(maxCost);
+    sb.append(", maxDepth=").append(maxDepth);
+    sb.append(", maxMessageLength=").append(maxMessageLength);
+    sb.append(", allowedTypes=").append(getAllowedTypes());
+    sb.append('}');
+    return sb.toString();
+  }
+}
@@ -0,0 +1,34 @@
+package org.interledger.cryptoconditions;
+
+import java.util.Objects;
+
+/**
+ * Thrown when a request to decode or verify a fulfillment breaks a limit of a {@link
+ * VerificationPolicy}.
+ */
+public class VerificationPolicyException extends IllegalArgumentException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final VerificationPolicy.Reason reason;
+
+  /**
+   * Required-args Constructor.
+   *
+   * @param reason  The {@link VerificationPolicy.Reason} identifying the limit that was broken.
+   * @param message A description of the violation.
+   */
+  public VerificationPolicyException(final VerificationPolicy.Reason reason, final String message) {
+    super(message);
+    this.reason = Objects.requireNonNull(reason);
+  }
+
+  /**
+   * Accessor for the limit that was broken.
+   *
+   * @return A {@link VerificationPolicy.Reason}.
+   */
+  public VerificationPolicy.Reason getReason() {
+    return reason;
+  }
+}
@@ -0,0 +1,155 @@
+package org.interledger.cryptoconditions;
+
+import java.util.Objects;
+
+/**
+ * <p>The outcome of verifying an encoded fulfillment, as returned by {@link
+ * CryptoConditionVerifier#tryVerify(byte[], byte[], java.nio.ByteBuffer)}.</p>
+ *
+ * <p>Results are returned rather than thrown so that rejecting malformed or hostile input costs no
+ * more than a comparison. A failed result carries a {@link Status} and, where it is known, the
+ * offset within the encoded fulfillment at which the problem was found, but no message.</p>
+ */
+public final class VerificationResult {
+
+  /**
+   * The outcome of a verification.
+   */
+  public enum Status {
+    /**
+     * The fulfillment is valid for the condition and message.
+     */
+    VALID,
+
+    /**
+     * The fulfillment is well-formed, but does not fulfill the condition for the message.
+     */
+    INVALID,
+
+    /**
+     * The condition to verify against is not valid DER, or does not have the expected structure.
+     * The offset is within the encoded condition.
+     */
+    MALFORMED_CONDITION,
+
+    /**
+     * The fulfillment is not valid DER, or does not have the expected structure.
+     */
+    MALFORMED_ENCODING,
+
+    /**
+     * The condition or fulfillment contains an unknown type.
+     */
+    UNKNOWN_TYPE,
+
+    /**
+     * A value in the condition or fulfillment is out of range, such as an RSA modulus of the wrong
+     * size or a corrupt set of subtypes.
+     */
+    INVALID_VALUE,
+
+    /**
+     * The message is too long for a PREFIX-SHA-256 fulfillment.
+     */
+    MESSAGE_TOO_LONG,
+
+    /**
+     * See {@link VerificationPolicy.Reason#COST_EXCEEDED}.
+     */
+    COST_EXCEEDED,
+
+    /**
+     * See {@link VerificationPolicy.Reason#DEPTH_EXCEEDED}.
+     */
+    DEPTH_EXCEEDED,
+
+    /**
+     * See {@link VerificationPolicy.Reason#MESSAGE_TOO_LONG}.
+     */
+    MESSAGE_EXCEEDS_POLICY,
+
+    /**
+     * See {@link VerificationPolicy.Reason#TYPE_NOT_ALLOWED}.
+     */
+    TYPE_NOT_ALLOWED
+  }
+
+  public static final VerificationResult VALID = new VerificationResult(Status.VALID, -1);
+  public static final VerificationResult INVALID = new VerificationResult(Status.INVALID, -1);
+
+  private final Status status;
+  private final int offset;
+
+  /**
+   * Required-args Constructor.
+   *
+   * @param status The {@link Status} of the result.
+   * @param offset The offset at which a problem was found, or -1 if it is not known.
+   */
+  VerificationResult(final Status status, final int offset) {
+    this.status = Objects.requireNonNull(status);
+    this.offset = offset;
+  }
+
+  /**
+   * Maps a policy violation to the corresponding status.
+   */
+  static Status statusOf(final VerificationPolicy.Reason reason) {
+    switch (reason) {
+      case COST_EXCEEDED:
+        return Status.COST_EXCEEDED;
+      case DEPTH_EXCEEDED:
+        return Status.DEPTH_EXCEEDED;
+      case MESSAGE_TOO_LONG:
+        return Status.MESSAGE_EXCEEDS_POLICY;
+      default:
+        return Status.TYPE_NOT_ALLOWED;
+    }
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  /**
+   * Accessor for the offset at which a problem was found.
+   *
+   * @return An offset within the encoded condition or fulfillment, or -1 if the result is not
+   *     associated with an offset.
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  public boolean isValid() {
+    return status == Status.VALID;
+  }
+
+  @Override
+  public boolean equals(Object object) {
+    if (this == object) {
+      return true;
+    }
+    if (object == null || getClass() != object.getClass()) {
+      return false;
+    }
+
+    VerificationResult that = (VerificationResult) object;
+
+    return offset == that.offset && status == that.status;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * status.hashCode() + offset;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("VerificationResult{");
+    sb.append("status=").append(status);
+    sb.append(", offset=").append(offset);
+    sb.append('}');
+    return sb.toString();
+  }
+}
@@ -0,0 +1,227 @@
+package org.interledger.cryptoconditions.der;
+
+import java.util.Objects;
+
+/**
+ * <p>A cursor for reading DER encoded data directly from a byte array.</p>
+ *
+ * <p>Unlike {@link DerInputStream}, values are not copied out of the array. Instead, reading a
+ * header leaves the cursor positioned at the start of the value, so that callers can read the value
+ * in place (using {@link #getBuffer()} and {@link #getPosition()}) before skipping over it.</p>
+ *
+ * <p>Malformed input is reported with lightweight {@link DerEncodingException}s that carry the
+ * offset of the problem, but no stack trace, and that only build their message if it is asked
+ * for.</p>
+ */
+public class DerCursor {
+
+  private final byte[] buffer;
+  private final int limit;
+  private int position;
+
+  /**
+   * Constructs a cursor over an entire array.
+   *
+   * @param buffer A byte array containing DER encoded data.
+   */
+  public DerCursor(final byte[] buffer) {
+    this(buffer, 0, Objects.requireNonNull(buffer).length);
+  }
+
+  /**
+   * Constructs a cursor over part of an array.
+   *
+   * @param buffer A byte array containing DER encoded data.
+   * @param offset The position within the buffer to begin reading.
+   * @param length The number of bytes that may be read.
+   */
+  public DerCursor(final byte[] buffer, final int offset, final int length) {
+    this.buffer = Objects.requireNonNull(buffer);
+    if (offset < 0 || length < 0 || offset > buffer.length - length) {
+      throw new IndexOutOfBoundsException(
+          "Offset [" + offset + "] and length [" + length + "] do not fit the buffer.");
+    }
+    this.position = offset;
+    this.limit = offset + length;
+  }
+
+  /**
+   * Accessor for the array that this cursor reads from.
+   *
+   * @return The underlying byte array, which is not copied.
+   */
+  public byte[] getBuffer() {
+    return buffer;
+  }
+
+  /**
+   * Accessor for the position of the next byte to be read.
+   *
+   * @return An index into {@link #getBuffer()}.
+   */
+  public int getPosition() {
+    return position;
+  }
+
+  /**
+   * Accessor for the position after the last byte that may be read.
+   *
+   * @return An index into {@link #getBuffer()}.
+   */
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Whether any bytes remain to be read.
+   *
+   * @return {@code true} if the position is before the limit.
+   */
+  public boolean hasRemaining() {
+    return position < limit;
+  }
+
+  /**
+   * Reads a DER tag.
+   *
+   * @return The tag, including any class and constructed flags, as an unsigned value.
+   *
+   * @throws DerEncodingException if no bytes remain.
+   */
+  public int readTag() throws DerEncodingException {
+    if (position >= limit) {
+      throw new DerEncodingException(position, () -> "Expected tag, got end of stream.");
+    }
+    return buffer[position++] & 0xFF;
+  }
+
+  /**
+   * Reads a DER tag, and checks that it is the expected one.
+   *
+   * @param expectedTag The expected tag, including any class and constructed flags.
+   *
+   * @return The tag.
+   *
+   * @throws DerEncodingException if the tag is not {@code expectedTag}.
+   */
+  public int readTag(final int expectedTag) throws DerEncodingException {
+    final int tag = readTag();
+    if (tag != expectedTag) {
+      throw new DerEncodingException(position - 1, () -> "Expected tag: "
+          + Integer.toHexString(expectedTag) + ", got: " + Integer.toHexString(tag));
+    }
+    return tag;
+  }
+
+  /**
+   * Reads a DER length indicator, and checks that a value of that length fits before the limit.
+   *
+   * @return The length of the value that follows.
+   *
+   * @throws DerEncodingException if the length is malformed or the value does not fit.
+   */
+  public int readLength() throws DerEncodingException {
+    final int start = position;
+    if (position >= limit) {
+      throw new DerEncodingException(start, () -> "End of stream found reading length.");
+    }
+
+    int length = buffer[position++] & 0xFF;
+    if (length > 127) {
+      final int lengthOfLength = length & 0x7f;
+      if (lengthOfLength > 4) {
+        throw new DerEncodingException(start,
+            () -> "DER length more than 4 bytes: " + lengthOfLength);
+      }
+      if (lengthOfLength > limit - position) {
+        throw new DerEncodingException(start, () -> "End of stream found reading length.");
+      }
+      length = 0;
+      for (int i = 0; i < lengthOfLength; i++) {
+        length = (length << 8) + (buffer[position++] & 0xFF);
+      }
+      if (length < 0) {
+        final int negativeLength = length;
+        throw new DerEncodingException(start, () -> "Negative length found: " + negativeLength);
+      }
+    }
+
+    if (length > limit - position) {
+      final int tooLong = length;
+      throw new DerEncodingException(start,
+          () -> "Object length [" + tooLong + "] is larger than allowed.");
+    }
+    return length;
+  }
+
+  /**
+   * Reads the tag and length of a DER object, leaving the cursor at the start of its value.
+   *
+   * @param expectedTag The expected tag, including any class and constructed flags.
+   *
+   * @return The length of the value.
+   *
+   * @throws DerEncodingException if the tag is not {@code expectedTag}, or the length is malformed.
+   */
+  public int readHeader(final int expectedTag) throws DerEncodingException {
+    readTag(expectedTag);
+    return readLength();
+  }
+
+  /**
+   * Reads a big-endian, two's complement integer value of the supplied length, which must be a
+   * non-negative value that fits in a {@code long}. Leading zero bytes are allowed.
+   *
+   * @param length The length of the value.
+   *
+   * @return The value as a {@code long}.
+   *
+   * @throws DerEncodingException if {@code length} is zero, or the value is negative or does not
+   *                              fit in a {@code long}.
+   */
+  public long readLong(final int length) throws DerEncodingException {
+    if (length == 0) {
+      throw new DerEncodingException(position, () -> "Encountered an empty integer.");
+    }
+    final int offset = position;
+    final int end = position + length;
+    int start = position;
+    while (start < end - 1 && buffer[start] == 0) {
+      start++;
+    }
+    if (end - start > 8 || buffer[start] < 0) {
+      throw new DerEncodingException(offset, () -> "Integer must be a non-negative 64-bit value.");
+    }
+    long value = 0;
+    for (int i = start; i < end; i++) {
+      value = (value << 8) | (buffer[i] & 0xFF);
+    }
+    position = end;
+    return value;
+  }
+
+  /**
+   * Creates a cursor over the next {@code length} bytes, and skips this cursor past them.
+   *
+   * @param length The number of bytes to include.
+   *
+   * @return A new {@link DerCursor} over the same array.
+   */
+  public DerCursor slice(final int length) {
+    final DerCursor slice = new DerCursor(buffer, position, length);
+    skip(length);
+    return slice;
+  }
+
+  /**
+   * Skips over the supplied number of bytes.
+   *
+   * @param length The number of bytes to skip.
+   */
+  public void skip(final int length) {
+    if (length < 0 || length > limit - position) {
+      throw new IndexOutOfBoundsException("Cannot skip [" + length + "] bytes.");
+    }
+    position += length;
+  }
+}
@@ -1,9 +1,71 @@
 package org.interledger.cryptoconditions.der;
 
+import java.util.Objects;
+import java.util.function.Supplier;
+
 public class DerEncodingException extends Exception {
 
+  private final int offset;
+  private final transient Supplier<String> messageSupplier;
+
+  /**
+   * Constructs an exception with a message and a stack trace, at an unknown offset.
+   *
+   * @param message A description of the problem.
+   */
   public DerEncodingException(String message) {
     super(message);
+    this.offset = -1;
+    this.messageSupplier = null;
+  }
+
+  /**
+   * Constructs a lightweight exception for malformed input found at a known offset. Neither a stack
+   * trace nor the message is built when the exception is created, so that rejecting malformed
+   * input is cheap; the message is only built if it is asked for.
+   *
+   * @param offset          The offset within the encoded buffer at which the problem was found.
+   * @param messageSupplier Builds a description of the problem.
+   */
+  public DerEncodingException(int offset, Supplier<String> messageSupplier) {
+    super(null, null, false, false);
+    this.offset = offset;
+    this.messageSupplier = Objects.requireNonNull(messageSupplier);
+  }
+
+  private DerEncodingException(int offset, String message) {
+    super(message);
+    this.offset = offset;
+    this.messageSupplier = null;
+  }
+
+  /**
+   * Converts a lightweight exception into one with a message and a stack trace, for reporting it
+   * from an API that throws. Lightweight exceptions should not escape such APIs, since a caller
+   * cannot tell where they were thrown.
+   *
+   * @return This exception if it already has a stack trace, and otherwise an equivalent exception
+   *     at the same offset whose stack trace is filled in now.
+   */
+  public DerEncodingException withStackTrace() {
+    return messageSupplier == null ? this : new DerEncodingException(offset, getMessage());
+  }
+
+  /**
+   * Accessor for the offset at which the problem was found.
+   *
+   * @return An offset within the encoded buffer, or -1 if it is not known.
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  @Override
+  public String getMessage() {
+    if (messageSupplier != null) {
+      return messageSupplier.get() + " (at offset " + offset + ")";
+    }
+    return super.getMessage();
   }
 
   private static final long serialVersionUID = 5866239327628238122L;
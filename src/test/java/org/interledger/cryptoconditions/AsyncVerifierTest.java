@@ -0,0 +1,162 @@
+package org.interledger.cryptoconditions;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import com.google.common.collect.Lists;
+
+import org.interledger.cryptoconditions.helpers.StubFulfillment;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link AsyncVerifier}.
+ */
+public class AsyncVerifierTest extends AbstractCryptoConditionTest {
+
+  private static final byte[] MESSAGE = MESSAGE_PREIMAGE.getBytes();
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testVerify() throws Exception {
+    final ThresholdSha256Fulfillment fulfillment = new ThresholdSha256Fulfillment(
+        Collections.emptyList(),
+        Lists.newArrayList(
+            new PreimageSha256Fulfillment(AUTHOR.getBytes()),
+            new PrefixSha256Fulfillment("prefix".getBytes(), MESSAGE.length,
+                new PreimageSha256Fulfillment("one".getBytes()))
+        )
+    );
+
+    final AsyncVerifier verifier = new AsyncVerifier(executor);
+    assertThat(verifier.verify(fulfillment, fulfillment.getCondition(), MESSAGE).get(), is(true));
+    assertThat(verifier.verify(fulfillment,
+        new PreimageSha256Fulfillment(AUTHOR.getBytes()).getCondition(), MESSAGE).get(),
+        is(false));
+  }
+
+  @Test
+  public void testVerifyExpensiveLeavesFannedOut() throws Exception {
+    final StubFulfillment first = new StubFulfillment("first", 200000L, true);
+    final StubFulfillment second = new StubFulfillment("second", 200000L, false);
+    final ThresholdSha256Fulfillment fulfillment = new ThresholdSha256Fulfillment(
+        Collections.emptyList(), Lists.newArrayList(first, second)
+    );
+
+    assertThat(new AsyncVerifier(executor)
+        .verify(fulfillment, fulfillment.getCondition(), MESSAGE, Duration.ofSeconds(10)).get(),
+        is(false));
+  }
+
+  @Test
+  public void testCheapLeavesFannedOutBelowConfiguredThreshold() throws Exception {
+    final StubFulfillment first = new StubFulfillment("first", 10L, true);
+    final StubFulfillment second = new StubFulfillment("second", 10L, true);
+    final ThresholdSha256Fulfillment fulfillment = new ThresholdSha256Fulfillment(
+        Collections.emptyList(), Lists.newArrayList(first, second)
+    );
+    final AtomicInteger submitted = new AtomicInteger();
+    final Executor counting = task -> {
+      submitted.incrementAndGet();
+      executor.execute(task);
+    };
+    final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    try {
+      // By default, leaves this cheap are verified by the task that checks the condition
+      assertThat(new AsyncVerifier(counting, scheduler)
+          .verify(fulfillment, fulfillment.getCondition(), MESSAGE).get(), is(true));
+      assertThat(submitted.getAndSet(0), is(1));
+
+      // With no threshold, each leaf is submitted as a task of its own
+      assertThat(new AsyncVerifier(counting, scheduler, 0L)
+          .verify(fulfillment, fulfillment.getCondition(), MESSAGE).get(), is(true));
+      assertThat(submitted.get(), is(3));
+      assertThat(first.getVerifications(), is(2));
+      assertThat(second.getVerifications(), is(2));
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParallelCostThresholdMustNotBeNegative() {
+    final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    try {
+      new AsyncVerifier(executor, scheduler, -1L);
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testDeadlineCancelsOutstandingLeaves() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final StubFulfillment blocking = new StubFulfillment("blocking", 200000L, true) {
+      @Override
+      public boolean verify(final PreimageSha256Condition condition, final byte[] message) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return super.verify(condition, message);
+      }
+    };
+    final StubFulfillment outstanding = new StubFulfillment("outstanding", 300000L, true);
+    final ThresholdSha256Fulfillment fulfillment = new ThresholdSha256Fulfillment(
+        Collections.emptyList(), Lists.newArrayList(blocking, outstanding)
+    );
+
+    try {
+      new AsyncVerifier(executor)
+          .verify(fulfillment, fulfillment.getCondition(), MESSAGE, Duration.ofMillis(50)).get();
+      throw new AssertionError("Expected the deadline to pass.");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(TimeoutException.class));
+    }
+
+    release.countDown();
+    executor.shutdown();
+    assertThat(executor.awaitTermination(10, TimeUnit.SECONDS), is(true));
+    assertThat(blocking.getVerifications(), is(1));
+    assertThat(outstanding.getVerifications(), is(0));
+  }
+
+  @Test
+  public void testVirtualThreadExecutorMatchesRuntime() {
+    boolean supported;
+    try {
+      Thread.class.getMethod("ofVirtual");
+      supported = true;
+    } catch (NoSuchMethodException e) {
+      supported = false;
+    }
+    assertThat(AsyncVerifier.newVirtualThreadPerTaskExecutor().isPresent(), is(supported));
+  }
+}
@@ -0,0 +1,209 @@
+package org.interledger.cryptoconditions;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import com.google.common.collect.Lists;
+import net.i2p.crypto.eddsa.EdDSAEngine;
+import net.i2p.crypto.eddsa.EdDSAPublicKey;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.interledger.cryptoconditions.helpers.StubFulfillment;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.Security;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Unit tests for {@link BatchVerifier}.
+ */
+public class BatchVerifierTest extends AbstractCryptoConditionTest {
+
+  private static final byte[] MESSAGE = MESSAGE_PREIMAGE.getBytes();
+  private static final byte[] PREFIX = "prefix".getBytes();
+
+  private static KeyPair rsaKeyPair;
+  private static KeyPair edDsaKeyPair;
+
+  private ExecutorService executor;
+
+  @BeforeClass
+  public static void setUpKeys() throws Exception {
+    Security.addProvider(new BouncyCastleProvider());
+
+    final KeyPairGenerator rsaKpg = KeyPairGenerator.getInstance("RSA");
+    rsaKpg.initialize(new RSAKeyGenParameterSpec(2048, new BigInteger("65537")));
+    rsaKeyPair = rsaKpg.generateKeyPair();
+    edDsaKeyPair = new net.i2p.crypto.eddsa.KeyPairGenerator().generateKeyPair();
+  }
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testVerifyAllMixedBatch() throws Exception {
+    final List<Fulfillment> fulfillments = new ArrayList<>();
+    final List<Condition> conditions = new ArrayList<>();
+    final List<byte[]> messages = new ArrayList<>();
+
+    // 0: A valid RSA signature.
+    add(fulfillments, conditions, messages, rsaFulfillment(MESSAGE), MESSAGE);
+    // 1: A valid RSA signature from the same key over a different message.
+    add(fulfillments, conditions, messages, rsaFulfillment(PREFIX), PREFIX);
+    // 2: An RSA signature over a different message.
+    add(fulfillments, conditions, messages, rsaFulfillment(PREFIX), MESSAGE);
+    // 3: A valid Ed25519 signature over a prefixed message, alongside a preimage.
+    final Fulfillment threshold = new ThresholdSha256Fulfillment(Collections.emptyList(),
+        Lists.newArrayList(
+            new PreimageSha256Fulfillment(AUTHOR.getBytes()),
+            new PrefixSha256Fulfillment(PREFIX, MESSAGE.length, ed25519Fulfillment(prefixed()))
+        ));
+    add(fulfillments, conditions, messages, threshold, MESSAGE);
+    // 4: The same threshold, but with a message that is too long for its prefix.
+    add(fulfillments, conditions, messages, threshold, prefixed());
+    // 5: A preimage verified against the wrong condition.
+    fulfillments.add(new PreimageSha256Fulfillment(AUTHOR.getBytes()));
+    conditions.add(new PreimageSha256Fulfillment(PREFIX).getCondition());
+    messages.add(MESSAGE);
+    // 6: An Ed25519 signature over a different message.
+    add(fulfillments, conditions, messages, ed25519Fulfillment(PREFIX), MESSAGE);
+
+    final BatchVerifier.Timings timings = new BatchVerifier.Timings();
+    final BitSet valid =
+        new BatchVerifier(executor, 2).verifyAll(fulfillments, conditions, messages, timings);
+
+    final BitSet expected = new BitSet();
+    expected.set(0, 2);
+    expected.set(3);
+    assertThat(valid, is(expected));
+
+    for (int i = 0; i < fulfillments.size(); i++) {
+      boolean individuallyValid;
+      try {
+        individuallyValid = fulfillments.get(i).verify(conditions.get(i), messages.get(i));
+      } catch (IllegalArgumentException e) {
+        individuallyValid = false;
+      }
+      assertThat(valid.get(i), is(individuallyValid));
+    }
+
+    assertThat(timings.getLeaves(CryptoConditionType.RSA_SHA256), is(3L));
+    assertThat(timings.getLeaves(CryptoConditionType.ED25519_SHA256), is(2L));
+    assertThat(timings.getLeaves(CryptoConditionType.PREIMAGE_SHA256), is(1L));
+    assertThat(timings.getLeaves(CryptoConditionType.THRESHOLD_SHA256), is(0L));
+  }
+
+  @Test
+  public void testVerifyAllLargeBatchIsChunked() throws Exception {
+    final List<Fulfillment> fulfillments = new ArrayList<>();
+    final List<Condition> conditions = new ArrayList<>();
+    final List<byte[]> messages = new ArrayList<>();
+
+    final Fulfillment valid = ed25519Fulfillment(MESSAGE);
+    final Fulfillment invalid = ed25519Fulfillment(PREFIX);
+    for (int i = 0; i < 100; i++) {
+      add(fulfillments, conditions, messages, i % 10 == 0 ? invalid : valid, MESSAGE);
+    }
+
+    final BitSet result = new BatchVerifier(executor, 4)
+        .verifyAll(fulfillments, conditions, messages);
+
+    assertThat(result.cardinality(), is(90));
+    for (int i = 0; i < 100; i++) {
+      assertThat(result.get(i), is(i % 10 != 0));
+    }
+  }
+
+  @Test
+  public void testVerifyAllFallsBackForOtherImplementations() {
+    final RsaSha256Condition rsaCondition = new RsaSha256Condition(65536, new byte[32]);
+    final Fulfillment<RsaSha256Condition> customRsa =
+        new FulfillmentBase<RsaSha256Condition>(CryptoConditionType.RSA_SHA256) {
+          @Override
+          public RsaSha256Condition getCondition() {
+            return rsaCondition;
+          }
+
+          @Override
+          public boolean verify(final RsaSha256Condition condition, final byte[] message) {
+            return true;
+          }
+        };
+    final StubFulfillment invalidPreimage = new StubFulfillment("invalid", false);
+
+    final List<Fulfillment> fulfillments = new ArrayList<>();
+    final List<Condition> conditions = new ArrayList<>();
+    final List<byte[]> messages = new ArrayList<>();
+    add(fulfillments, conditions, messages, customRsa, MESSAGE);
+    add(fulfillments, conditions, messages, invalidPreimage, MESSAGE);
+
+    final BitSet valid = new BatchVerifier(executor, 2)
+        .verifyAll(fulfillments, conditions, messages);
+
+    assertThat(valid.get(0), is(true));
+    assertThat(valid.get(1), is(false));
+    assertThat(invalidPreimage.getVerifications(), is(1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testVerifyAllMismatchedSizes() {
+    new BatchVerifier(executor, 2).verifyAll(
+        Lists.newArrayList(new PreimageSha256Fulfillment(AUTHOR.getBytes())),
+        Collections.emptyList(),
+        Collections.emptyList()
+    );
+  }
+
+  private static void add(
+      final List<Fulfillment> fulfillments, final List<Condition> conditions,
+      final List<byte[]> messages, final Fulfillment fulfillment, final byte[] message
+  ) {
+    fulfillments.add(fulfillment);
+    conditions.add(fulfillment.getCondition());
+    messages.add(message);
+  }
+
+  private static byte[] prefixed() {
+    final byte[] prefixed = new byte[PREFIX.length + MESSAGE.length];
+    System.arraycopy(PREFIX, 0, prefixed, 0, PREFIX.length);
+    System.arraycopy(MESSAGE, 0, prefixed, PREFIX.length, MESSAGE.length);
+    return prefixed;
+  }
+
+  private static RsaSha256Fulfillment rsaFulfillment(final byte[] message) throws Exception {
+    final Signature rsaSigner = Signature.getInstance(RsaSha256Fulfillment.SHA_256_WITH_RSA_PSS);
+    rsaSigner.initSign(rsaKeyPair.getPrivate());
+    rsaSigner.update(message);
+    return new RsaSha256Fulfillment((RSAPublicKey) rsaKeyPair.getPublic(), rsaSigner.sign());
+  }
+
+  private static Ed25519Sha256Fulfillment ed25519Fulfillment(final byte[] message)
+      throws Exception {
+    final Signature edDsaSigner = new EdDSAEngine(MessageDigest.getInstance("SHA-512"));
+    edDsaSigner.initSign(edDsaKeyPair.getPrivate());
+    edDsaSigner.update(message);
+    return new Ed25519Sha256Fulfillment(
+        (EdDSAPublicKey) edDsaKeyPair.getPublic(), edDsaSigner.sign());
+  }
+}
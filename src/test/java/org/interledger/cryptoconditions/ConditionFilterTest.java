@@ -0,0 +1,101 @@
+package org.interledger.cryptoconditions;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Unit tests for {@link ConditionFilter}.
+ */
+public class ConditionFilterTest extends AbstractCryptoConditionTest {
+
+  @Test
+  public void testAddedFingerprintsAreAlwaysFound() {
+    final ConditionFilter filter = new ConditionFilter(10_000, 0.01);
+    final Random random = new Random(42);
+    final byte[] fingerprints = new byte[10_000 * 32];
+    random.nextBytes(fingerprints);
+
+    for (int i = 0; i < 10_000; i++) {
+      filter.add(fingerprints, i * 32);
+    }
+    for (int i = 0; i < 10_000; i++) {
+      assertThat(filter.mightContain(fingerprints, i * 32), is(true));
+    }
+  }
+
+  @Test
+  public void testFalsePositiveRateIsWithinConfiguredRate() {
+    final ConditionFilter filter = new ConditionFilter(100_000, 0.01);
+    final Random random = new Random(42);
+    final byte[] fingerprint = new byte[32];
+    for (int i = 0; i < 100_000; i++) {
+      random.nextBytes(fingerprint);
+      filter.add(fingerprint, 0);
+    }
+    assertThat(filter.getFalsePositiveRate() <= 0.01, is(true));
+
+    int falsePositives = 0;
+    for (int i = 0; i < 100_000; i++) {
+      random.nextBytes(fingerprint);
+      if (filter.mightContain(fingerprint, 0)) {
+        falsePositives++;
+      }
+    }
+    assertThat(falsePositives < 1_000, is(true));
+  }
+
+  @Test
+  public void testEncodedFulfillmentMatchesOnlyKnownConditions() throws Exception {
+    final Fulfillment fulfillment = new ThresholdSha256Fulfillment(
+        Collections.singletonList(
+            new PreimageSha256Fulfillment("unfulfilled".getBytes()).getCondition()),
+        Arrays.asList(new PreimageSha256Fulfillment(AUTHOR.getBytes()),
+            new PrefixSha256Fulfillment("prefix".getBytes(), 100,
+                new PreimageSha256Fulfillment(MESSAGE_PREIMAGE.getBytes()))));
+    final byte[] fulfillmentDer = CryptoConditionWriter.writeFulfillment(fulfillment);
+
+    final ConditionFilter filter = new ConditionFilter(1000, 0.001);
+    assertThat(filter.mightMatch(fulfillmentDer), is(false));
+    assertThat(filter.add(fulfillment.getCondition()), is(true));
+    assertThat(filter.add(fulfillment.getCondition()), is(false));
+    assertThat(filter.mightMatch(fulfillmentDer), is(true));
+
+    assertThat(filter.mightMatch(CryptoConditionWriter.writeFulfillment(
+        new PreimageSha256Fulfillment(AUTHOR.getBytes()))), is(false));
+    assertThat(filter.mightMatch(Arrays.copyOf(fulfillmentDer, fulfillmentDer.length - 1)),
+        is(false));
+    assertThat(filter.mightMatch(new byte[] {(byte) 0xA7, 0}), is(false));
+  }
+
+  @Test
+  public void testTooDeeplyNestedFulfillmentDoesNotMatch() throws Exception {
+    // Deep enough to overflow the thread stack if deriving its condition were not stopped.
+    final byte[] fulfillmentDer = CryptoConditionReaderWriterTest.prefixChain(10000);
+    final ConditionFilter filter = new ConditionFilter(1000, 0.001);
+    filter.add(CryptoConditionReader.readFulfillment(fulfillmentDer,
+        VerificationPolicy.UNRESTRICTED).getCondition());
+
+    assertThat(filter.mightMatch(fulfillmentDer), is(false));
+  }
+
+  @Test
+  public void testClearedFilterIsEmpty() {
+    final ConditionFilter filter = new ConditionFilter(1000, 0.01);
+    final Condition condition = new PreimageSha256Fulfillment(AUTHOR.getBytes()).getCondition();
+    filter.add(condition);
+    filter.clear();
+    assertThat(filter.mightContain(condition), is(false));
+    assertThat(filter.getFalsePositiveRate(), is(0.0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFalsePositiveRateMustBeLessThanOne() {
+    new ConditionFilter(1000, 1.0);
+  }
+}
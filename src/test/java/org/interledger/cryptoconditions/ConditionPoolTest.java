@@ -0,0 +1,106 @@
+package org.interledger.cryptoconditions;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Unit tests for {@link ConditionPool}.
+ */
+public class ConditionPoolTest extends AbstractCryptoConditionTest {
+
+  @Test
+  public void testEqualConditionsAreInterned() {
+    final ConditionPool pool = new ConditionPool();
+    final PreimageSha256Condition condition =
+        new PreimageSha256Fulfillment(AUTHOR.getBytes()).getCondition();
+    final PreimageSha256Condition copy =
+        new PreimageSha256Condition(condition.getCost(), condition.getFingerprint());
+
+    assertThat(pool.internCondition(condition), is(sameInstance(condition)));
+    assertThat(pool.internCondition(copy), is(sameInstance(condition)));
+
+    assertThat(pool.getHitCount(), is(1L));
+    assertThat(pool.getMissCount(), is(1L));
+    assertThat(pool.getDedupRatio(), is(0.5));
+    assertThat(pool.getEstimatedBytesSaved() > 0, is(true));
+    assertThat(pool.size(), is(1L));
+  }
+
+  @Test
+  public void testConditionsWithDifferentCostsAreNotInterned() {
+    final ConditionPool pool = new ConditionPool();
+    final PreimageSha256Condition condition =
+        new PreimageSha256Fulfillment(AUTHOR.getBytes()).getCondition();
+    final PreimageSha256Condition otherCost =
+        new PreimageSha256Condition(1000, condition.getFingerprint());
+
+    pool.internCondition(condition);
+    assertThat(pool.internCondition(otherCost), is(sameInstance(otherCost)));
+    assertThat(pool.getHitCount(), is(0L));
+  }
+
+  @Test
+  public void testReaderSharesIdenticalSubtrees() throws Exception {
+    final ConditionPool pool = new ConditionPool();
+    final PreimageSha256Fulfillment leaf = new PreimageSha256Fulfillment(AUTHOR.getBytes());
+    final ThresholdSha256Fulfillment threshold = new ThresholdSha256Fulfillment(
+        Collections.singletonList(new PreimageSha256Fulfillment(new byte[] {1}).getCondition()),
+        Arrays.asList(new PrefixSha256Fulfillment(new byte[] {2}, 100, leaf))
+    );
+    final PrefixSha256Fulfillment other = new PrefixSha256Fulfillment(new byte[] {3}, 100, leaf);
+
+    final ThresholdSha256Fulfillment first = (ThresholdSha256Fulfillment) CryptoConditionReader
+        .readFulfillment(CryptoConditionWriter.writeFulfillment(threshold), pool);
+    final PrefixSha256Fulfillment second = (PrefixSha256Fulfillment) CryptoConditionReader
+        .readFulfillment(CryptoConditionWriter.writeFulfillment(other), pool);
+    final Fulfillment third = CryptoConditionReader
+        .readFulfillment(CryptoConditionWriter.writeFulfillment(threshold), pool);
+
+    assertThat(first, is(threshold));
+    assertThat(third, is(sameInstance(first)));
+    assertThat(second.getSubfulfillment(), is(sameInstance(
+        ((PrefixSha256Fulfillment) first.getSubfulfillments().get(0)).getSubfulfillment())));
+    assertThat(second, is(not(sameInstance(first.getSubfulfillments().get(0)))));
+    assertThat(CryptoConditionReader.readCondition(
+        CryptoConditionWriter.writeCondition(threshold.getCondition()), pool),
+        is(sameInstance(first.getCondition())));
+  }
+
+  @Test
+  public void testInternDeeplyNestedFulfillment() throws Exception {
+    // Deep enough to overflow the thread stack if interning hashed or compared subtrees in depth.
+    final int depth = 50000;
+    final ConditionPool pool = new ConditionPool();
+    final byte[] encoded = CryptoConditionReaderWriterTest.prefixChain(depth);
+
+    final Fulfillment first =
+        CryptoConditionReader.readFulfillment(encoded, VerificationPolicy.UNRESTRICTED, pool);
+    final Fulfillment second =
+        CryptoConditionReader.readFulfillment(encoded, VerificationPolicy.UNRESTRICTED, pool);
+
+    assertThat(second, is(sameInstance(first)));
+    assertThat(pool.getHitCount(), is(2L * (depth + 1)));
+  }
+
+  @Test
+  public void testFulfillmentsWithDistinctChildrenAreNotInterned() {
+    final ConditionPool pool = new ConditionPool();
+    final PrefixSha256Fulfillment fulfillment = new PrefixSha256Fulfillment(new byte[] {1}, 100,
+        new PreimageSha256Fulfillment(AUTHOR.getBytes()));
+    final PrefixSha256Fulfillment copy = new PrefixSha256Fulfillment(new byte[] {1}, 100,
+        new PreimageSha256Fulfillment(AUTHOR.getBytes()));
+    final PrefixSha256Fulfillment sameChild = new PrefixSha256Fulfillment(new byte[] {1}, 100,
+        fulfillment.getSubfulfillment());
+
+    assertThat(pool.internFulfillment(fulfillment), is(sameInstance(fulfillment)));
+    assertThat(pool.internFulfillment(copy), is(sameInstance(copy)));
+    assertThat(pool.internFulfillment(sameChild), is(sameInstance(fulfillment)));
+  }
+}
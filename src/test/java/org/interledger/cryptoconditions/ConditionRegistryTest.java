@@ -0,0 +1,204 @@
+package org.interledger.cryptoconditions;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit tests for {@link ConditionRegistry}.
+ */
+public class ConditionRegistryTest extends AbstractCryptoConditionTest {
+
+  private static final byte[] MESSAGE = MESSAGE_PREIMAGE.getBytes();
+  private static final Duration TICK = Duration.ofMillis(10);
+
+  private final AtomicLong now = new AtomicLong(Long.MAX_VALUE - 1000);
+  private final List<String> matched = new ArrayList<>();
+  private final List<String> expired = new ArrayList<>();
+
+  @Test
+  public void testFulfillmentMatchesItsCondition() {
+    final ConditionRegistry<String> registry = newRegistry();
+    final PreimageSha256Fulfillment fulfillment = new PreimageSha256Fulfillment(AUTHOR.getBytes());
+    final ConditionRegistry.Registration<String> registration =
+        registry.register(fulfillment.getCondition(), "transfer", Duration.ofSeconds(1));
+
+    assertThat(registry.get(fulfillment.getCondition()), is(sameInstance(registration)));
+    assertThat(registry.match(fulfillment, MESSAGE), is(sameInstance(registration)));
+    assertThat(registration.isMatched(), is(true));
+    assertThat(matched.size(), is(1));
+    assertThat(registry.size(), is(0L));
+
+    // A registration is only settled once
+    assertThat(registry.match(fulfillment, MESSAGE), is(nullValue()));
+    assertThat(registry.cancel(registration), is(false));
+    now.addAndGet(Duration.ofSeconds(2).toNanos());
+    assertThat(registry.expire(), is(0));
+    assertThat(matched.size(), is(1));
+    assertThat(expired.isEmpty(), is(true));
+  }
+
+  @Test
+  public void testFulfillmentOfAnotherConditionDoesNotMatch() {
+    final ConditionRegistry<String> registry = newRegistry();
+    final PreimageSha256Fulfillment fulfillment = new PreimageSha256Fulfillment(AUTHOR.getBytes());
+    final PreimageSha256Condition wrongCost =
+        new PreimageSha256Condition(1000, fulfillment.getCondition().getFingerprint());
+    registry.register(wrongCost, "transfer", Duration.ofSeconds(1));
+
+    assertThat(registry.match(fulfillment, MESSAGE), is(nullValue()));
+    assertThat(registry.match(new PreimageSha256Fulfillment("other".getBytes()), MESSAGE),
+        is(nullValue()));
+    assertThat(registry.size(), is(1L));
+    assertThat(matched.isEmpty(), is(true));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testConditionCannotBeRegisteredTwice() {
+    final ConditionRegistry<String> registry = newRegistry();
+    final Condition condition = new PreimageSha256Fulfillment(AUTHOR.getBytes()).getCondition();
+    registry.register(condition, "first", Duration.ofSeconds(1));
+    registry.register(condition, "second", Duration.ofSeconds(1));
+  }
+
+  @Test
+  public void testRegistrationExpiresAfterItsTimeToLive() {
+    final ConditionRegistry<String> registry = newRegistry();
+    final PreimageSha256Fulfillment fulfillment = new PreimageSha256Fulfillment(AUTHOR.getBytes());
+    final ConditionRegistry.Registration<String> registration =
+        registry.register(fulfillment.getCondition(), "transfer", Duration.ofMillis(25));
+
+    now.addAndGet(Duration.ofMillis(29).toNanos());
+    assertThat(registry.expire(), is(0));
+    assertThat(registration.isPending(), is(true));
+
+    now.addAndGet(Duration.ofMillis(1).toNanos());
+    assertThat(registry.expire(), is(1));
+    assertThat(registration.isExpired(), is(true));
+    assertThat(expired.size(), is(1));
+    assertThat(registry.match(fulfillment, MESSAGE), is(nullValue()));
+
+    // The fingerprint can be registered again once the registration has expired
+    registry.register(fulfillment.getCondition(), "retry", Duration.ofSeconds(1));
+    assertThat(registry.match(fulfillment, MESSAGE).getAttachment(), is("retry"));
+  }
+
+  @Test
+  public void testCancelledRegistrationNeverExpires() {
+    final ConditionRegistry<String> registry = newRegistry();
+    final Condition condition = new PreimageSha256Fulfillment(AUTHOR.getBytes()).getCondition();
+    final ConditionRegistry.Registration<String> registration =
+        registry.register(condition, "transfer", Duration.ofMillis(10));
+    registry.expire();
+
+    assertThat(registry.cancel(registration), is(true));
+    assertThat(registry.get(condition), is(nullValue()));
+    now.addAndGet(Duration.ofSeconds(1).toNanos());
+    assertThat(registry.expire(), is(0));
+    assertThat(registration.isCancelled(), is(true));
+    assertThat(expired.isEmpty(), is(true));
+  }
+
+  @Test
+  public void testSettledRegistrationsAreDropped() {
+    final ConditionRegistry<String> registry = newRegistry();
+    final List<ConditionRegistry.Registration<String>> registrations = new ArrayList<>();
+    final List<PreimageSha256Fulfillment> fulfillments = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      final PreimageSha256Fulfillment fulfillment =
+          new PreimageSha256Fulfillment(("preimage" + i).getBytes());
+      fulfillments.add(fulfillment);
+      registrations.add(
+          registry.register(fulfillment.getCondition(), "transfer" + i, Duration.ofMillis(50)));
+    }
+
+    // One of each is settled while queued for the wheel, and one of each while in the wheel
+    registry.cancel(registrations.get(0));
+    registry.match(fulfillments.get(1), MESSAGE);
+    registry.expire();
+    registry.cancel(registrations.get(2));
+
+    now.addAndGet(Duration.ofMillis(50).toNanos());
+    assertThat(registry.expire(), is(1));
+    assertThat(expired, is(Collections.singletonList("transfer3")));
+    for (int i = 0; i < 4; i++) {
+      assertThat(registrations.get(i).wheelNext, is(nullValue()));
+    }
+  }
+
+  @Test
+  public void testTimeToLiveBeyondNanosecondsIsClamped() {
+    final ConditionRegistry<String> registry = newRegistry();
+    final ConditionRegistry.Registration<String> registration = registry.register(
+        new PreimageSha256Fulfillment(AUTHOR.getBytes()).getCondition(), "transfer",
+        ChronoUnit.FOREVER.getDuration());
+
+    now.addAndGet(Duration.ofDays(365 * 100).toNanos());
+    assertThat(registry.expire(), is(0));
+    assertThat(registration.isPending(), is(true));
+  }
+
+  @Test
+  public void testRegistrationsExpireInOrderAcrossWheelLevels() {
+    final ConditionRegistry<String> registry = newRegistry();
+    final Random random = new Random(42);
+    final List<ConditionRegistry.Registration<String>> registrations = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      // Up to about a year, so that registrations are held at several levels of the wheel
+      final Duration timeToLive = Duration.ofMillis((long) Math.pow(10, random.nextDouble() * 10.5));
+      registrations.add(registry.register(
+          new PreimageSha256Fulfillment(("preimage" + i).getBytes()).getCondition(),
+          timeToLive.toString(), timeToLive));
+    }
+
+    final long start = now.get();
+    long previous = 0;
+    while (registry.size() > 0) {
+      now.addAndGet(Duration.ofMinutes(random.nextInt(60)).toNanos() + random.nextInt(100));
+      final int count = expired.size();
+      registry.expire();
+      final long elapsed = now.get() - start;
+      for (String expiry : expired.subList(count, expired.size())) {
+        final long timeToLive = Duration.parse(expiry).toNanos();
+        assertThat(timeToLive <= elapsed, is(true));
+        assertThat(timeToLive > previous - TICK.toNanos(), is(true));
+      }
+      for (ConditionRegistry.Registration<String> registration : registrations) {
+        if (registration.isPending()) {
+          assertThat(Duration.parse(registration.getAttachment()).toNanos()
+              > elapsed - TICK.toNanos(), is(true));
+        }
+      }
+      previous = elapsed;
+    }
+    assertThat(expired.size(), is(registrations.size()));
+  }
+
+  private ConditionRegistry<String> newRegistry() {
+    return new ConditionRegistry<>(new ConditionRegistry.Listener<String>() {
+      @Override
+      public void onMatch(
+          final ConditionRegistry.Registration<? extends String> registration,
+          final Fulfillment fulfillment
+      ) {
+        matched.add(registration.getAttachment());
+      }
+
+      @Override
+      public void onExpiry(final ConditionRegistry.Registration<? extends String> registration) {
+        expired.add(registration.getAttachment());
+      }
+    }, TICK, 0, now::get);
+  }
+}
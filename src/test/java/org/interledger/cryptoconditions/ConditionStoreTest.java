@@ -0,0 +1,223 @@
+package org.interledger.cryptoconditions;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for {@link ConditionStore}.
+ */
+public class ConditionStoreTest extends AbstractCryptoConditionTest {
+
+  private Path path;
+
+  @Before
+  public void setUp() throws IOException {
+    path = Files.createTempFile("conditions", ".dat");
+    Files.delete(path);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(path);
+    Files.deleteIfExists(indexPath());
+  }
+
+  @Test
+  public void testLookupsReturnStoredEncodings() throws Exception {
+    final PreimageSha256Fulfillment fulfillment = new PreimageSha256Fulfillment(AUTHOR.getBytes());
+    final PrefixSha256Fulfillment prefixed =
+        new PrefixSha256Fulfillment("prefix".getBytes(), 100, fulfillment);
+
+    try (ConditionStore store = new ConditionStore(path, 4096)) {
+      final long conditionId = store.appendCondition(prefixed.getCondition());
+      final long fulfillmentId = store.appendFulfillment(prefixed);
+      assertThat(store.appendCondition(prefixed.getCondition()), is(conditionId));
+      assertThat(store.size(), is(2L));
+
+      final ByteBuffer condition = store.findCondition(prefixed.getCondition());
+      assertThat(CryptoConditionReader.readCondition(condition), is(prefixed.getCondition()));
+      assertThat(toArray(condition),
+          is(CryptoConditionWriter.writeCondition(prefixed.getCondition())));
+      assertThat(ConditionView.peek(condition, 0).getCost(), is(prefixed.getCondition().getCost()));
+      assertThat(
+          CryptoConditionReader.readFulfillment(store.findFulfillment(prefixed.getCondition())),
+          is(prefixed));
+      assertThat(toArray(store.get(fulfillmentId)),
+          is(CryptoConditionWriter.writeFulfillment(prefixed)));
+
+      assertThat(store.findFulfillment(fulfillment.getCondition()), is(nullValue()));
+      assertThat(store.findCondition(fulfillment.getCondition()), is(nullValue()));
+    }
+  }
+
+  @Test
+  public void testStoreIsReadyAfterReopening() throws Exception {
+    final List<Fulfillment> fulfillments = fulfillments(3000);
+    try (ConditionStore store = new ConditionStore(path, 4096)) {
+      for (Fulfillment fulfillment : fulfillments) {
+        store.appendCondition(fulfillment.getCondition());
+        store.appendFulfillment(fulfillment);
+      }
+    }
+
+    try (ConditionStore store = new ConditionStore(path, 4096)) {
+      assertStored(store, fulfillments);
+    }
+  }
+
+  @Test
+  public void testIndexIsRebuiltIfNotClosedCleanly() throws Exception {
+    final List<Fulfillment> fulfillments = fulfillments(100);
+    try (ConditionStore store = new ConditionStore(path, 4096)) {
+      for (Fulfillment fulfillment : fulfillments.subList(0, 50)) {
+        store.appendCondition(fulfillment.getCondition());
+        store.appendFulfillment(fulfillment);
+      }
+      store.flush();
+      for (Fulfillment fulfillment : fulfillments.subList(50, 100)) {
+        store.appendCondition(fulfillment.getCondition());
+        store.appendFulfillment(fulfillment);
+      }
+
+      // Opened as if the first store had crashed
+      try (ConditionStore recovered = new ConditionStore(path, 4096)) {
+        assertStored(recovered, fulfillments);
+      }
+    }
+
+    Files.delete(indexPath());
+    try (ConditionStore store = new ConditionStore(path, 4096)) {
+      assertStored(store, fulfillments);
+    }
+  }
+
+  @Test
+  public void testStoreIsTruncatedAtCorruptRecord() throws Exception {
+    final List<Fulfillment> fulfillments = fulfillments(10);
+    final long lastId;
+    try (ConditionStore store = new ConditionStore(path, 4096)) {
+      for (Fulfillment fulfillment : fulfillments) {
+        store.appendCondition(fulfillment.getCondition());
+      }
+      final Condition last = new PreimageSha256Fulfillment("last".getBytes()).getCondition();
+      lastId = store.appendCondition(last);
+    }
+
+    final byte[] data = Files.readAllBytes(path);
+    data[(int) lastId + 50] ^= 1;
+    Files.write(path, data);
+    Files.delete(indexPath());
+
+    try (ConditionStore store = new ConditionStore(path, 4096)) {
+      assertThat(store.size(), is(10L));
+      final Condition replacement =
+          new PreimageSha256Fulfillment("other".getBytes()).getCondition();
+      assertThat(store.appendCondition(replacement), is(lastId));
+      assertThat(CryptoConditionReader.readCondition(store.findCondition(replacement)),
+          is(replacement));
+    }
+  }
+
+  @Test
+  public void testRecordsAfterCorruptRecordAreNotRecovered() throws Exception {
+    final Condition corrupt = new PreimageSha256Fulfillment("corrupt".getBytes()).getCondition();
+    final Condition after = new PreimageSha256Fulfillment("after".getBytes()).getCondition();
+    final long corruptId;
+    try (ConditionStore store = new ConditionStore(path, 4096)) {
+      for (Fulfillment fulfillment : fulfillments(10)) {
+        store.appendCondition(fulfillment.getCondition());
+      }
+      corruptId = store.appendCondition(corrupt);
+      store.appendCondition(after);
+    }
+
+    final byte[] data = Files.readAllBytes(path);
+    data[(int) corruptId + 50] ^= 1;
+    Files.write(path, data);
+    Files.delete(indexPath());
+
+    // A record of the same length takes the place of the corrupt one, ending where the next began
+    final Condition replacement = new PreimageSha256Fulfillment("replace".getBytes()).getCondition();
+    try (ConditionStore store = new ConditionStore(path, 4096)) {
+      assertThat(store.appendCondition(replacement), is(corruptId));
+    }
+    Files.delete(indexPath());
+
+    try (ConditionStore store = new ConditionStore(path, 4096)) {
+      assertThat(store.size(), is(11L));
+      assertThat(store.findCondition(after), is(nullValue()));
+      assertThat(store.findCondition(replacement) != null, is(true));
+    }
+  }
+
+  @Test
+  public void testIndexGrowsWithoutLeavingTemporaryFiles() throws Exception {
+    final List<Fulfillment> fulfillments = fulfillments(2000);
+    try (ConditionStore store = new ConditionStore(path, 1 << 20)) {
+      for (Fulfillment fulfillment : fulfillments) {
+        store.appendFulfillment(fulfillment);
+      }
+      for (Fulfillment fulfillment : fulfillments) {
+        assertThat(store.findFulfillment(fulfillment.getCondition()) != null, is(true));
+      }
+    }
+    assertThat(Files.exists(Paths.get(path + ".idx.tmp")), is(false));
+
+    try (ConditionStore store = new ConditionStore(path, 1 << 20)) {
+      assertThat(store.size(), is(2000L));
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testClosedStoreCannotBeRead() throws Exception {
+    final ConditionStore store = new ConditionStore(path, 4096);
+    store.close();
+    store.findCondition(new PreimageSha256Fulfillment(AUTHOR.getBytes()).getCondition());
+  }
+
+  private Path indexPath() {
+    return Paths.get(path.toString() + ".idx");
+  }
+
+  private static List<Fulfillment> fulfillments(final int count) {
+    final List<Fulfillment> fulfillments = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      final Fulfillment preimage = new PreimageSha256Fulfillment(("preimage" + i).getBytes());
+      fulfillments.add(i % 3 == 0
+          ? new PrefixSha256Fulfillment(new byte[i % 500], 10, preimage) : preimage);
+    }
+    return fulfillments;
+  }
+
+  private static void assertStored(final ConditionStore store, final List<Fulfillment> expected)
+      throws Exception {
+    assertThat(store.size(), is(2L * expected.size()));
+    for (Fulfillment fulfillment : expected) {
+      assertThat(
+          CryptoConditionReader.readCondition(store.findCondition(fulfillment.getCondition())),
+          is(fulfillment.getCondition()));
+      assertThat(
+          CryptoConditionReader.readFulfillment(store.findFulfillment(fulfillment.getCondition())),
+          is(fulfillment));
+    }
+  }
+
+  private static byte[] toArray(final ByteBuffer buffer) {
+    final byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+}
@@ -1,5 +1,6 @@
 package org.interledger.cryptoconditions;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -138,5 +139,60 @@ public class ConditionTypeTest {
     assertEquals(EnumSet.allOf(CryptoConditionType.class), set);
   }
 
-}
+  @Test
+  public void test_getTypeMask() {
+    for (CryptoConditionType type : CryptoConditionType.values()) {
+      assertEquals(1 << type.getTypeCode(), type.getTypeMask());
+      assertEquals(type, CryptoConditionType.valueOf(type.getTypeCode()));
+    }
+  }
+
+  @Test
+  public void test_getMaskOfTypes_roundTrip() {
+    for (int mask = 0; mask < 1 << CryptoConditionType.values().length; mask++) {
+      EnumSet<CryptoConditionType> set = CryptoConditionType.getTypesOfMask(mask);
+
+      assertEquals(mask, CryptoConditionType.getMaskOfTypes(set));
+      assertArrayEquals(CryptoConditionType.getEnumOfTypesAsBitString(set),
+          CryptoConditionType.getMaskAsBitString(mask));
+      if (mask != 0) {
+        // The empty set is encoded as a lone padding byte, which is not accepted when reading
+        assertEquals(mask, CryptoConditionType.getMaskFromBitString(
+            CryptoConditionType.getMaskAsBitString(mask)));
+      }
+      assertEquals(CryptoConditionType.getEnumOfTypesAsString(set),
+          CryptoConditionType.getMaskAsString(mask));
+      assertEquals(mask, CryptoConditionType.getMaskFromString(
+          CryptoConditionType.getMaskAsString(mask)));
+    }
+  }
+
+  @Test
+  public void test_getMaskFromString_Mixed_Case() {
+    assertEquals(CryptoConditionType.PREIMAGE_SHA256.getTypeMask()
+            | CryptoConditionType.RSA_SHA256.getTypeMask(),
+        CryptoConditionType.getMaskFromString("RSA-sha-256,preimage-SHA-256,"));
+  }
 
+  @Test(expected = IllegalArgumentException.class)
+  public void test_getMaskFromString_Unknown() {
+    CryptoConditionType.getMaskFromString("preimage-sha-256,,rsa-sha-256");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_getMaskFromBitString_Too_Few_Padding_Bits() {
+    CryptoConditionType.getMaskFromBitString(new byte[] {0x02, (byte) 0xF8});
+  }
+
+  @Test
+  public void test_compoundCondition_getSubtypeMask() {
+    PrefixSha256Condition condition = new PrefixSha256Condition(0, new byte[32],
+        EnumSet.of(CryptoConditionType.PREIMAGE_SHA256, CryptoConditionType.ED25519_SHA256));
+
+    assertEquals(CryptoConditionType.PREIMAGE_SHA256.getTypeMask()
+        | CryptoConditionType.ED25519_SHA256.getTypeMask(), condition.getSubtypeMask());
+    assertEquals(condition,
+        new PrefixSha256Condition(0, new byte[32], condition.getSubtypeMask()));
+  }
+
+}
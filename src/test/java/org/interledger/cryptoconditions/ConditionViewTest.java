@@ -0,0 +1,158 @@
+package org.interledger.cryptoconditions;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.Lists;
+import net.i2p.crypto.eddsa.EdDSAPublicKey;
+import org.interledger.cryptoconditions.der.DerEncodingException;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unit tests for {@link ConditionView}.
+ */
+public class ConditionViewTest extends AbstractCryptoConditionTest {
+
+  @Test
+  public void testPeekMatchesReader() throws Exception {
+    for (Condition condition : conditions()) {
+      final byte[] encoded = CryptoConditionWriter.writeCondition(condition);
+      assertView(ConditionView.peek(encoded, 0), CryptoConditionReader.readCondition(encoded));
+    }
+  }
+
+  @Test
+  public void testPeekDirectBuffer() throws Exception {
+    final Condition condition = conditions().get(2);
+    final byte[] encoded = CryptoConditionWriter.writeCondition(condition);
+
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.length + 3);
+    buffer.position(3);
+    buffer.put(encoded);
+    buffer.flip();
+
+    final ConditionView view = ConditionView.peek(buffer, 3);
+    assertView(view, condition);
+    assertThat(view.getOffset(), is(3));
+    assertThat(buffer.position(), is(0));
+  }
+
+  @Test
+  public void testReadSequenceWithOneView() throws Exception {
+    final List<Condition> conditions = conditions();
+    final byte[][] encodings = new byte[conditions.size()][];
+    int total = 0;
+    for (int i = 0; i < conditions.size(); i++) {
+      encodings[i] = CryptoConditionWriter.writeCondition(conditions.get(i));
+      total += encodings[i].length;
+    }
+    final byte[] buffer = new byte[total];
+    int position = 0;
+    for (byte[] encoding : encodings) {
+      System.arraycopy(encoding, 0, buffer, position, encoding.length);
+      position += encoding.length;
+    }
+
+    final ConditionView view = new ConditionView();
+    position = 0;
+    for (Condition condition : conditions) {
+      view.read(buffer, position);
+      assertView(view, condition);
+      position += view.getLength();
+    }
+    assertThat(position, is(buffer.length));
+  }
+
+  @Test
+  public void testPeekMalformed() throws Exception {
+    final byte[] encoded = CryptoConditionWriter.writeCondition(conditions().get(0));
+
+    try {
+      ConditionView.peek(Arrays.copyOf(encoded, encoded.length - 1), 0);
+      fail("Expected a DerEncodingException");
+    } catch (DerEncodingException e) {
+      assertThat(e.getOffset(), is(1));
+    }
+
+    encoded[0] = (byte) 0xA7;
+    try {
+      ConditionView.peek(encoded, 0);
+      fail("Expected a DerEncodingException");
+    } catch (DerEncodingException e) {
+      assertThat(e.getOffset(), is(0));
+    }
+  }
+
+  @Test
+  public void testPeekCostOutsideLongRange() throws Exception {
+    // A PREIMAGE-SHA-256 condition with a cost of -128
+    final byte[] negative = new byte[39];
+    negative[0] = (byte) 0xA0;
+    negative[1] = 0x25;
+    negative[2] = (byte) 0x80;
+    negative[3] = 0x20;
+    negative[36] = (byte) 0x81;
+    negative[37] = 0x01;
+    negative[38] = (byte) 0x80;
+    try {
+      ConditionView.peek(negative, 0);
+      fail("Expected a DerEncodingException");
+    } catch (DerEncodingException e) {
+      assertThat(e.getOffset(), is(38));
+    }
+
+    // A cost of 2^64, written in nine bytes
+    final byte[] wide = Arrays.copyOf(negative, 47);
+    wide[1] = 0x2D;
+    wide[37] = 0x09;
+    wide[38] = 0x01;
+    try {
+      ConditionView.peek(wide, 0);
+      fail("Expected a DerEncodingException");
+    } catch (DerEncodingException e) {
+      assertThat(e.getOffset(), is(38));
+    }
+
+    // Leading zeros are allowed, as long as the value fits
+    wide[38] = 0x00;
+    wide[46] = 0x07;
+    assertThat(ConditionView.peek(wide, 0).getCost(), is(7L));
+  }
+
+  private static void assertView(final ConditionView view, final Condition condition) {
+    assertThat(view.getType(), is(condition.getType()));
+    assertThat(view.getTypeCode(), is(condition.getType().getTypeCode()));
+    assertThat(view.getCost(), is(condition.getCost()));
+
+    final byte[] fingerprint = new byte[32];
+    view.getFingerprint().get(fingerprint);
+    assertThat(fingerprint, is(condition.getFingerprint()));
+
+    int subtypeMask = 0;
+    if (condition instanceof CompoundCondition) {
+      for (CryptoConditionType subtype : ((CompoundCondition) condition).getSubtypes()) {
+        subtypeMask |= 1 << subtype.getTypeCode();
+      }
+    }
+    assertThat(view.getSubtypeMask(), is(subtypeMask));
+  }
+
+  private static List<Condition> conditions() {
+    final Fulfillment preimage = new PreimageSha256Fulfillment(AUTHOR.getBytes());
+    final Fulfillment ed25519 = new Ed25519Sha256Fulfillment(
+        (EdDSAPublicKey) new net.i2p.crypto.eddsa.KeyPairGenerator().generateKeyPair().getPublic(),
+        new byte[64]);
+    final Fulfillment prefix = new PrefixSha256Fulfillment("prefix".getBytes(), 1000, preimage);
+    final Fulfillment threshold = new ThresholdSha256Fulfillment(
+        Collections.singletonList(ed25519.getCondition()), Lists.newArrayList(prefix));
+
+    return Arrays.asList(preimage.getCondition(), ed25519.getCondition(), prefix.getCondition(),
+        threshold.getCondition());
+  }
+}
@@ -2,6 +2,7 @@ package org.interledger.cryptoconditions;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 
 import com.google.common.collect.Lists;
 import net.i2p.crypto.eddsa.EdDSAEngine;
@@ -20,6 +21,7 @@ import java.security.Security;
 import java.security.Signature;
 import java.security.interfaces.RSAPublicKey;
 import java.security.spec.RSAKeyGenParameterSpec;
+import java.util.EnumSet;
 
 /**
  * Unit tests for {@link CryptoConditionReader}.
@@ -162,4 +164,123 @@ public class CryptoConditionReaderWriterTest {
     assertThat(readAndWrittenFulfillment, is(thresholdFulfillment));
   }
 
+  @Test
+  public void readNestedFulfillmentDerivesCondition() throws Exception {
+    final Fulfillment nestedFulfillment = new PrefixSha256Fulfillment(new byte[0], 2000,
+        new ThresholdSha256Fulfillment(
+            Lists.newArrayList(thresholdCondition),
+            Lists.newArrayList(thresholdFulfillment, prefixSha256Fulfillment, rsaFulfillment)
+        ));
+
+    final Fulfillment readFulfillment = CryptoConditionReader
+        .readFulfillment(CryptoConditionWriter.writeFulfillment(nestedFulfillment));
+    assertThat(readFulfillment.getCondition(), is(nestedFulfillment.getCondition()));
+    assertThat(CryptoConditionWriter.writeCondition(readFulfillment.getCondition()),
+        is(CryptoConditionWriter.writeCondition(nestedFulfillment.getCondition())));
+  }
+
+
+  @Test
+  public void readDeeplyNestedFulfillment() throws Exception {
+    // Deep enough to overflow the thread stack if each level were read by a recursive call.
+    final int depth = 50000;
+    Fulfillment fulfillment =
+        CryptoConditionReader.readFulfillment(prefixChain(depth), VerificationPolicy.UNRESTRICTED);
+
+    for (int i = 0; i < depth; i++) {
+      assertThat(fulfillment.getType(), is(CryptoConditionType.PREFIX_SHA256));
+      fulfillment = ((PrefixSha256Fulfillment) fulfillment).getSubfulfillment();
+    }
+    assertThat(fulfillment.getType(), is(CryptoConditionType.PREIMAGE_SHA256));
+  }
+
+  @Test
+  public void readDeeplyNestedFulfillmentWithPolicy() throws Exception {
+    final VerificationPolicy policy = new VerificationPolicy(Long.MAX_VALUE, 100, Long.MAX_VALUE,
+        EnumSet.allOf(CryptoConditionType.class));
+
+    assertThat(CryptoConditionReader.readFulfillment(prefixChain(99), policy).getType(),
+        is(CryptoConditionType.PREFIX_SHA256));
+    try {
+      CryptoConditionReader.readFulfillment(prefixChain(100), policy);
+      fail("Expected a VerificationPolicyException");
+    } catch (VerificationPolicyException e) {
+      assertThat(e.getReason(), is(VerificationPolicy.Reason.DEPTH_EXCEEDED));
+    }
+  }
+
+  @Test
+  public void readFulfillmentLimitsDepthByDefault() throws Exception {
+    // The deepest chain read by default is written and verified without overflowing the stack.
+    final byte[] deepest = prefixChain(VerificationPolicy.DEFAULT_MAX_DEPTH - 1);
+    final Fulfillment fulfillment = CryptoConditionReader.readFulfillment(deepest);
+    assertThat(CryptoConditionWriter.writeFulfillment(fulfillment), is(deepest));
+    assertThat(fulfillment.verify(fulfillment.getCondition(), new byte[0]), is(true));
+    assertThat(CryptoConditionReader.readFulfillment(deepest), is(fulfillment));
+
+    try {
+      CryptoConditionReader.readFulfillment(prefixChain(VerificationPolicy.DEFAULT_MAX_DEPTH));
+      fail("Expected a VerificationPolicyException");
+    } catch (VerificationPolicyException e) {
+      assertThat(e.getReason(), is(VerificationPolicy.Reason.DEPTH_EXCEEDED));
+    }
+  }
+
+  /**
+   * Encodes a chain of {@code depth} PREFIX-SHA-256 fulfillments, each with an empty prefix and a
+   * maximum message length of zero, around a PREIMAGE-SHA-256 fulfillment. The encoding is written
+   * directly, since writing such a chain with {@link CryptoConditionWriter} would itself recurse.
+   */
+  static byte[] prefixChain(final int depth) {
+    final byte[] preimage = new byte[] {(byte) 0xA0, 0x03, (byte) 0x80, 0x01, 0x41};
+    // The fixed fields of each level: an empty prefix and a maximum message length of zero.
+    final byte[] fields = new byte[] {(byte) 0x80, 0x00, (byte) 0x81, 0x01, 0x00};
+
+    final int[] sizes = new int[depth + 1];
+    sizes[0] = preimage.length;
+    for (int i = 1; i <= depth; i++) {
+      final int contentLength = fields.length + 1 + lengthOfLength(sizes[i - 1]) + sizes[i - 1];
+      sizes[i] = 1 + lengthOfLength(contentLength) + contentLength;
+    }
+
+    final byte[] encoded = new byte[sizes[depth]];
+    int position = 0;
+    for (int i = depth; i > 0; i--) {
+      encoded[position++] = (byte) 0xA1;
+      position = writeLength(encoded, position,
+          fields.length + 1 + lengthOfLength(sizes[i - 1]) + sizes[i - 1]);
+      System.arraycopy(fields, 0, encoded, position, fields.length);
+      position += fields.length;
+      encoded[position++] = (byte) 0xA2;
+      position = writeLength(encoded, position, sizes[i - 1]);
+    }
+    System.arraycopy(preimage, 0, encoded, position, preimage.length);
+    return encoded;
+  }
+
+  private static int lengthOfLength(final int length) {
+    if (length < 128) {
+      return 1;
+    }
+    int bytes = 1;
+    for (int remaining = length; remaining != 0; remaining >>>= 8) {
+      bytes++;
+    }
+    return bytes;
+  }
+
+  private static int writeLength(final byte[] buffer, final int offset, final int length) {
+    final int lengthOfLength = lengthOfLength(length);
+    int position = offset;
+    if (lengthOfLength == 1) {
+      buffer[position++] = (byte) length;
+      return position;
+    }
+    buffer[position++] = (byte) (0x80 | (lengthOfLength - 1));
+    for (int i = lengthOfLength - 2; i >= 0; i--) {
+      buffer[position++] = (byte) (length >>> (i * 8));
+    }
+    return position;
+  }
+
 }
\ No newline at end of file
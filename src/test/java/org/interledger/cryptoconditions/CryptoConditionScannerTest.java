@@ -0,0 +1,255 @@
+package org.interledger.cryptoconditions;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.interledger.cryptoconditions.der.DerEncodingException;
+import org.interledger.cryptoconditions.helpers.TestFulfillmentFactory;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for {@link CryptoConditionScanner}.
+ */
+public class CryptoConditionScannerTest extends AbstractCryptoConditionTest {
+
+  private static final byte[] MESSAGE = MESSAGE_PREIMAGE.getBytes();
+  private static final byte[] PREFIX = "prefix".getBytes();
+
+  private static KeyPair rsaKeyPair;
+  private static KeyPair edDsaKeyPair;
+
+  @BeforeClass
+  public static void setUpKeys() throws Exception {
+    Security.addProvider(new BouncyCastleProvider());
+
+    final KeyPairGenerator rsaKpg = KeyPairGenerator.getInstance("RSA");
+    rsaKpg.initialize(new RSAKeyGenParameterSpec(2048, new BigInteger("65537")));
+    rsaKeyPair = rsaKpg.generateKeyPair();
+    edDsaKeyPair = new net.i2p.crypto.eddsa.KeyPairGenerator().generateKeyPair();
+  }
+
+  @Test
+  public void testScanFulfillment() throws Exception {
+    final Fulfillment fulfillment = nestedFulfillment();
+    final List<String> events = new ArrayList<>();
+
+    CryptoConditionScanner.scanFulfillment(CryptoConditionWriter.writeFulfillment(fulfillment),
+        new FulfillmentVisitor() {
+          @Override
+          public boolean enterFulfillment(
+              CryptoConditionType type, int depth, int offset, int length
+          ) {
+            events.add("enter " + type + " " + depth);
+            return true;
+          }
+
+          @Override
+          public void visitPreimage(byte[] buffer, int offset, int length) {
+            events.add("preimage " + new String(buffer, offset, length));
+          }
+
+          @Override
+          public void visitPrefix(byte[] buffer, int offset, int length, long maxMessageLength) {
+            events.add("prefix " + length + " " + maxMessageLength);
+          }
+
+          @Override
+          public void visitPublicKey(
+              CryptoConditionType type, byte[] buffer, int offset, int length
+          ) {
+            events.add("key " + length);
+          }
+
+          @Override
+          public void visitSignature(
+              CryptoConditionType type, byte[] buffer, int offset, int length
+          ) {
+            events.add("signature " + length);
+          }
+
+          @Override
+          public void visitCondition(
+              CryptoConditionType type, long cost, byte[] buffer, int fingerprintOffset,
+              int subtypes
+          ) {
+            events.add("condition " + type + " " + cost);
+          }
+
+          @Override
+          public void exitFulfillment(CryptoConditionType type, int depth) {
+            events.add("exit " + type + " " + depth);
+          }
+        });
+
+    assertThat(events, is(Arrays.asList(
+        "enter PREFIX-SHA-256 1",
+        "prefix 0 " + MESSAGE.length,
+        "enter THRESHOLD-SHA-256 2",
+        "enter PREFIX-SHA-256 3",
+        "prefix " + PREFIX.length + " " + MESSAGE.length,
+        "enter RSA-SHA-256 4",
+        "key 256",
+        "signature 256",
+        "exit RSA-SHA-256 4",
+        "exit PREFIX-SHA-256 3",
+        "enter PREFIX-SHA-256 3",
+        "prefix " + PREFIX.length + " " + MESSAGE.length,
+        "enter ED25519-SHA-256 4",
+        "key 32",
+        "signature 64",
+        "exit ED25519-SHA-256 4",
+        "exit PREFIX-SHA-256 3",
+        "enter PREIMAGE-SHA-256 3",
+        "preimage " + AUTHOR,
+        "exit PREIMAGE-SHA-256 3",
+        "condition PREIMAGE-SHA-256 11",
+        "exit THRESHOLD-SHA-256 2",
+        "exit PREFIX-SHA-256 1")));
+  }
+
+  @Test
+  public void testScanFulfillmentSkipsSubtrees() throws Exception {
+    final List<CryptoConditionType> types = new ArrayList<>();
+
+    CryptoConditionScanner.scanFulfillment(
+        CryptoConditionWriter.writeFulfillment(nestedFulfillment()), new FulfillmentVisitor() {
+          @Override
+          public boolean enterFulfillment(
+              CryptoConditionType type, int depth, int offset, int length
+          ) {
+            types.add(type);
+            return type != CryptoConditionType.THRESHOLD_SHA256;
+          }
+
+          @Override
+          public void visitCondition(
+              CryptoConditionType type, long cost, byte[] buffer, int fingerprintOffset,
+              int subtypes
+          ) {
+            fail("Subconditions of a skipped fulfillment should not be visited");
+          }
+        });
+
+    assertThat(types, is(Arrays.asList(
+        CryptoConditionType.PREFIX_SHA256, CryptoConditionType.THRESHOLD_SHA256)));
+  }
+
+  @Test
+  public void testScanCondition() throws Exception {
+    final CompoundCondition condition = (CompoundCondition) nestedFulfillment().getCondition();
+
+    CryptoConditionScanner.scanCondition(CryptoConditionWriter.writeCondition(condition),
+        (type, cost, buffer, fingerprintOffset, subtypes) -> {
+          assertThat(type, is(condition.getType()));
+          assertThat(cost, is(condition.getCost()));
+          assertThat(Arrays.copyOfRange(buffer, fingerprintOffset, fingerprintOffset + 32),
+              is(condition.getFingerprint()));
+          int expectedSubtypes = 0;
+          for (CryptoConditionType subtype : condition.getSubtypes()) {
+            expectedSubtypes |= 1 << subtype.getTypeCode();
+          }
+          assertThat(subtypes, is(expectedSubtypes));
+        });
+  }
+
+  @Test
+  public void testValidate() throws Exception {
+    final Fulfillment fulfillment = nestedFulfillment();
+
+    CryptoConditionScanner.validateFulfillment(CryptoConditionWriter.writeFulfillment(fulfillment));
+    CryptoConditionScanner.validateCondition(
+        CryptoConditionWriter.writeCondition(fulfillment.getCondition()));
+  }
+
+  @Test
+  public void testValidateRejectsNonCanonicalEncodings() throws Exception {
+    // A PREIMAGE-SHA-256 fulfillment of "A", with a long form length that the reader accepts.
+    final byte[] longFormLength = {(byte) 0xA0, (byte) 0x81, 0x03, (byte) 0x80, 0x01, 0x41};
+    assertThat(CryptoConditionReader.readFulfillment(longFormLength),
+        is(new PreimageSha256Fulfillment("A".getBytes())));
+    CryptoConditionScanner.scanFulfillment(longFormLength, new FulfillmentVisitor() {
+    });
+    assertRejected(longFormLength, 1);
+
+    // A PREFIX-SHA-256 fulfillment with a redundant leading zero in its maximum message length.
+    final byte[] paddedInteger = {(byte) 0xA1, 0x0D, (byte) 0x80, 0x00, (byte) 0x81, 0x02, 0x00,
+        0x01, (byte) 0xA2, 0x05, (byte) 0xA0, 0x03, (byte) 0x80, 0x01, 0x41};
+    CryptoConditionScanner.scanFulfillment(paddedInteger, new FulfillmentVisitor() {
+    });
+    assertRejected(paddedInteger, 6);
+
+    final byte[] valid = CryptoConditionWriter.writeFulfillment(
+        new PreimageSha256Fulfillment("A".getBytes()));
+    assertRejected(Arrays.copyOf(valid, valid.length + 1), valid.length);
+  }
+
+  @Test
+  public void testScanRejectsIntegersOutsideLongRange() throws Exception {
+    // PREFIX-SHA-256 fulfillments whose maximum message length is 2^64 and -1.
+    final byte[] tooLarge = {(byte) 0xA1, 0x14, (byte) 0x80, 0x00, (byte) 0x81, 0x09, 0x01, 0x00,
+        0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0xA2, 0x05, (byte) 0xA0, 0x03,
+        (byte) 0x80, 0x01, 0x41};
+    final byte[] negative = {(byte) 0xA1, 0x0C, (byte) 0x80, 0x00, (byte) 0x81, 0x01, (byte) 0xFF,
+        (byte) 0xA2, 0x05, (byte) 0xA0, 0x03, (byte) 0x80, 0x01, 0x41};
+
+    for (byte[] encoded : Arrays.asList(tooLarge, negative)) {
+      try {
+        CryptoConditionScanner.scanFulfillment(encoded, new FulfillmentVisitor() {
+        });
+        fail("Expected a DerEncodingException");
+      } catch (DerEncodingException e) {
+        assertThat(e.getOffset(), is(6));
+      }
+    }
+  }
+
+  @Test
+  public void testScanRejectsMalformedEncodings() throws Exception {
+    final byte[] encoded = CryptoConditionWriter.writeFulfillment(nestedFulfillment());
+
+    try {
+      CryptoConditionScanner.scanFulfillment(Arrays.copyOf(encoded, encoded.length - 1),
+          new FulfillmentVisitor() {
+          });
+      fail("Expected a DerEncodingException");
+    } catch (DerEncodingException e) {
+      assertThat(e.getOffset() >= 0, is(true));
+    }
+
+    final byte[] unknownType = encoded.clone();
+    unknownType[0] = (byte) 0xA7;
+    try {
+      CryptoConditionScanner.scanFulfillment(unknownType, new FulfillmentVisitor() {
+      });
+      fail("Expected a DerEncodingException");
+    } catch (DerEncodingException e) {
+      assertThat(e.getOffset(), is(0));
+    }
+  }
+
+  private static void assertRejected(final byte[] encoded, final int offset) {
+    try {
+      CryptoConditionScanner.validateFulfillment(encoded);
+      fail("Expected a DerEncodingException");
+    } catch (DerEncodingException e) {
+      assertThat(e.getOffset(), is(offset));
+    }
+  }
+
+  private static Fulfillment nestedFulfillment() throws Exception {
+    return TestFulfillmentFactory.nestedFulfillment(PREFIX, AUTHOR.getBytes(), MESSAGE, rsaKeyPair,
+        edDsaKeyPair);
+  }
+}
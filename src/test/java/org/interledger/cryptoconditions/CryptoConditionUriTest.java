@@ -1,7 +1,9 @@
 package org.interledger.cryptoconditions;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import com.google.common.io.BaseEncoding;
 
@@ -9,6 +11,9 @@ import org.junit.Test;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.Buffer;
+import java.nio.CharBuffer;
+import java.util.Base64;
 import java.util.EnumSet;
 
 /**
@@ -48,4 +53,90 @@ public class CryptoConditionUriTest {
     assertEquals(EnumSet.of(CryptoConditionType.PREIMAGE_SHA256, CryptoConditionType.PREFIX_SHA256),
         compoundCondition.getSubtypes());
   }
+
+  @Test
+  public void test_parse_char_sequence() throws URISyntaxException {
+    String uri = "ni:///sha-256;47DEQpj8HBSa-_TImW-5JCeuQeRkm5NMpJWZG3hSuFU?fpt=threshold-sha-256"
+        + "&cost=1024&subtypes=ed25519-sha-256,rsa-sha-256";
+
+    Condition condition = CryptoConditionUri.parse(new StringBuilder(uri));
+
+    assertEquals(CryptoConditionUri.parse(URI.create(uri)), condition);
+    assertEquals(CryptoConditionType.THRESHOLD_SHA256, condition.getType());
+    assertEquals(1024, condition.getCost());
+    assertEquals(EnumSet.of(CryptoConditionType.ED25519_SHA256, CryptoConditionType.RSA_SHA256),
+        ((CompoundCondition) condition).getSubtypes());
+  }
+
+  @Test
+  public void test_parse_escaped_query() throws URISyntaxException {
+    URI uri = URI.create(
+        "ni:///sha-256;47DEQpj8HBSa-_TImW-5JCeuQeRkm5NMpJWZG3hSuFU?%66pt=preimage-sha-256"
+            + "&cost=%31%32#fragment");
+
+    Condition condition = CryptoConditionUri.parse(uri);
+
+    assertEquals(CryptoConditionType.PREIMAGE_SHA256, condition.getType());
+    assertEquals(12, condition.getCost());
+  }
+
+  @Test(expected = URISyntaxException.class)
+  public void test_parse_fingerprint_too_long() throws URISyntaxException {
+    StringBuilder uri = new StringBuilder("ni:///sha-256;");
+    for (int i = 0; i < 87; i++) {
+      uri.append('A');
+    }
+    CryptoConditionUri.parse(uri.append("?fpt=preimage-sha-256&cost=0"));
+  }
+
+  @Test
+  public void test_parse_fingerprint_fails_as_base64_decoder() throws URISyntaxException {
+    for (String fingerprint : new String[] {"A", "AAAAA"}) {
+      String expected = null;
+      try {
+        Base64.getUrlDecoder().decode(fingerprint);
+      } catch (IllegalArgumentException e) {
+        expected = e.getMessage();
+      }
+
+      try {
+        CryptoConditionUri.parse("ni:///sha-256;" + fingerprint + "?fpt=preimage-sha-256&cost=0");
+        fail("Expected an IllegalArgumentException");
+      } catch (IllegalArgumentException e) {
+        assertEquals(expected, e.getMessage());
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_parse_unknown_type() throws URISyntaxException {
+    CryptoConditionUri.parse(
+        "ni:///sha-256;47DEQpj8HBSa-_TImW-5JCeuQeRkm5NMpJWZG3hSuFU?fpt=sha-256&cost=0");
+  }
+
+  @Test
+  public void test_append_uri() throws Exception {
+    URI uri = URI.create(
+        "ni:///sha-256;47DEQpj8HBSa-_TImW-5JCeuQeRkm5NMpJWZG3hSuFU?cost=0&fpt=prefix-sha-256"
+            + "&subtypes=prefix-sha-256,preimage-sha-256");
+    Condition condition = CryptoConditionUri.parse(uri);
+
+    assertEquals(uri, CryptoConditionUri.toUri(condition));
+    assertEquals(uri.toString(), CryptoConditionUri.toUriString(condition));
+    assertEquals("<" + uri + ">",
+        CryptoConditionUri.appendUri(condition, new StringBuilder("<")).append('>').toString());
+
+    CharBuffer buffer = CharBuffer.allocate(256);
+    ((Buffer) CryptoConditionUri.appendUri(condition, buffer)).flip();
+    assertEquals(uri.toString(), buffer.toString());
+  }
+
+  @Test
+  public void test_to_string_is_cached() throws URISyntaxException {
+    Condition condition = CryptoConditionUri.parse(
+        "ni:///sha-256;47DEQpj8HBSa-_TImW-5JCeuQeRkm5NMpJWZG3hSuFU?cost=0&fpt=preimage-sha-256");
+
+    assertEquals(CryptoConditionUri.toUri(condition).toString(), condition.toString());
+    assertSame(condition.toString(), condition.toString());
+  }
 }
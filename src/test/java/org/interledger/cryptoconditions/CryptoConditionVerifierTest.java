@@ -0,0 +1,270 @@
+package org.interledger.cryptoconditions;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.interledger.cryptoconditions.der.DerEncodingException;
+import org.interledger.cryptoconditions.helpers.TestFulfillmentFactory;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+
+/**
+ * Unit tests for {@link CryptoConditionVerifier}.
+ */
+public class CryptoConditionVerifierTest extends AbstractCryptoConditionTest {
+
+  private static final byte[] MESSAGE = MESSAGE_PREIMAGE.getBytes();
+  private static final byte[] PREFIX = "prefix".getBytes();
+
+  private static KeyPair rsaKeyPair;
+  private static KeyPair edDsaKeyPair;
+
+  @BeforeClass
+  public static void setUpKeys() throws Exception {
+    Security.addProvider(new BouncyCastleProvider());
+
+    final KeyPairGenerator rsaKpg = KeyPairGenerator.getInstance("RSA");
+    rsaKpg.initialize(new RSAKeyGenParameterSpec(2048, new BigInteger("65537")));
+    rsaKeyPair = rsaKpg.generateKeyPair();
+    edDsaKeyPair = new net.i2p.crypto.eddsa.KeyPairGenerator().generateKeyPair();
+  }
+
+  @Test
+  public void testVerifyNestedFulfillment() throws Exception {
+    final Fulfillment fulfillment = nestedFulfillment();
+    final byte[] conditionDer = CryptoConditionWriter.writeCondition(fulfillment.getCondition());
+    final byte[] fulfillmentDer = CryptoConditionWriter.writeFulfillment(fulfillment);
+
+    final ByteBuffer message = ByteBuffer.allocateDirect(MESSAGE.length);
+    message.put(MESSAGE);
+    message.flip();
+
+    assertThat(CryptoConditionVerifier.verify(conditionDer, fulfillmentDer, message), is(true));
+    assertThat(message.remaining(), is(MESSAGE.length));
+
+    final byte[] tampered = MESSAGE.clone();
+    tampered[0] ^= 1;
+    assertThat(CryptoConditionVerifier.verify(conditionDer, fulfillmentDer,
+        ByteBuffer.wrap(tampered)), is(false));
+  }
+
+  @Test
+  public void testVerifyWrongCondition() throws Exception {
+    final Fulfillment fulfillment = nestedFulfillment();
+    final byte[] fulfillmentDer = CryptoConditionWriter.writeFulfillment(fulfillment);
+
+    final byte[] otherConditionDer = CryptoConditionWriter.writeCondition(
+        new PreimageSha256Fulfillment(AUTHOR.getBytes()).getCondition());
+    assertThat(CryptoConditionVerifier.verify(otherConditionDer, fulfillmentDer,
+        ByteBuffer.wrap(MESSAGE)), is(false));
+
+    // Same fingerprint, different cost.
+    final PrefixSha256Condition condition = (PrefixSha256Condition) fulfillment.getCondition();
+    final byte[] wrongCostDer = CryptoConditionWriter.writeCondition(new PrefixSha256Condition(
+        condition.getCost() + 1, condition.getFingerprint(), condition.getSubtypes()));
+    assertThat(CryptoConditionVerifier.verify(wrongCostDer, fulfillmentDer,
+        ByteBuffer.wrap(MESSAGE)), is(false));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testVerifyMessageTooLong() throws Exception {
+    final Fulfillment fulfillment = new PrefixSha256Fulfillment(PREFIX, MESSAGE.length - 1,
+        new PreimageSha256Fulfillment(AUTHOR.getBytes()));
+
+    CryptoConditionVerifier.verify(
+        CryptoConditionWriter.writeCondition(fulfillment.getCondition()),
+        CryptoConditionWriter.writeFulfillment(fulfillment), ByteBuffer.wrap(MESSAGE));
+  }
+
+  @Test(expected = DerEncodingException.class)
+  public void testVerifyTruncatedFulfillment() throws Exception {
+    final Fulfillment fulfillment = nestedFulfillment();
+    final byte[] fulfillmentDer = CryptoConditionWriter.writeFulfillment(fulfillment);
+
+    CryptoConditionVerifier.verify(
+        CryptoConditionWriter.writeCondition(fulfillment.getCondition()),
+        Arrays.copyOf(fulfillmentDer, fulfillmentDer.length - 1), ByteBuffer.wrap(MESSAGE));
+  }
+
+  @Test
+  public void testVerifyReportsMalformedEncodingWithStackTrace() throws Exception {
+    final Fulfillment fulfillment = new PrefixSha256Fulfillment(PREFIX, MESSAGE.length,
+        new PreimageSha256Fulfillment(AUTHOR.getBytes()));
+    final byte[] fulfillmentDer = CryptoConditionWriter.writeFulfillment(fulfillment);
+
+    try {
+      CryptoConditionVerifier.verify(
+          CryptoConditionWriter.writeCondition(fulfillment.getCondition()),
+          Arrays.copyOf(fulfillmentDer, fulfillmentDer.length - 1), ByteBuffer.wrap(MESSAGE));
+      fail("Expected a DerEncodingException");
+    } catch (DerEncodingException e) {
+      assertThat(e.getStackTrace().length > 0, is(true));
+      assertThat(e.getOffset() >= 0, is(true));
+      assertThat(e.getMessage() != null, is(true));
+    }
+  }
+
+  @Test
+  public void testTryVerify() throws Exception {
+    final Fulfillment fulfillment = nestedFulfillment();
+    final byte[] conditionDer = CryptoConditionWriter.writeCondition(fulfillment.getCondition());
+    final byte[] fulfillmentDer = CryptoConditionWriter.writeFulfillment(fulfillment);
+
+    assertThat(CryptoConditionVerifier.tryVerify(conditionDer, fulfillmentDer,
+        ByteBuffer.wrap(MESSAGE)), is(VerificationResult.VALID));
+
+    final byte[] tampered = MESSAGE.clone();
+    tampered[0] ^= 1;
+    assertThat(CryptoConditionVerifier.tryVerify(conditionDer, fulfillmentDer,
+        ByteBuffer.wrap(tampered)), is(VerificationResult.INVALID));
+  }
+
+  @Test
+  public void testTryVerifyMalformed() throws Exception {
+    final Fulfillment fulfillment = nestedFulfillment();
+    final byte[] conditionDer = CryptoConditionWriter.writeCondition(fulfillment.getCondition());
+    final byte[] fulfillmentDer = CryptoConditionWriter.writeFulfillment(fulfillment);
+    final byte[] truncated = Arrays.copyOf(fulfillmentDer, fulfillmentDer.length - 1);
+
+    final VerificationResult result =
+        CryptoConditionVerifier.tryVerify(conditionDer, truncated, ByteBuffer.wrap(MESSAGE));
+    assertThat(result.getStatus(), is(VerificationResult.Status.MALFORMED_ENCODING));
+    try {
+      CryptoConditionVerifier.verify(conditionDer, truncated, ByteBuffer.wrap(MESSAGE));
+      fail("Expected a DerEncodingException");
+    } catch (DerEncodingException e) {
+      assertThat(e.getOffset(), is(result.getOffset()));
+    }
+
+    assertThat(CryptoConditionVerifier.tryVerify(Arrays.copyOf(conditionDer, 3), fulfillmentDer,
+        ByteBuffer.wrap(MESSAGE)).getStatus(), is(VerificationResult.Status.MALFORMED_CONDITION));
+
+    // A context-specific tag of 7 is not a known type.
+    final byte[] unknownType = fulfillmentDer.clone();
+    unknownType[0] = (byte) 0xA7;
+    assertThat(CryptoConditionVerifier.tryVerify(conditionDer, unknownType,
+        ByteBuffer.wrap(MESSAGE)), is(new VerificationResult(
+            VerificationResult.Status.UNKNOWN_TYPE, 0)));
+  }
+
+  @Test
+  public void testTryVerifyMessageTooLong() throws Exception {
+    final Fulfillment fulfillment = new PrefixSha256Fulfillment(PREFIX, MESSAGE.length - 1,
+        new PreimageSha256Fulfillment(AUTHOR.getBytes()));
+
+    assertThat(CryptoConditionVerifier.tryVerify(
+        CryptoConditionWriter.writeCondition(fulfillment.getCondition()),
+        CryptoConditionWriter.writeFulfillment(fulfillment), ByteBuffer.wrap(MESSAGE)),
+        is(new VerificationResult(VerificationResult.Status.MESSAGE_TOO_LONG, 0)));
+  }
+
+  @Test
+  public void testMessageTooLongCheckedInSameOrderAsFulfillment() throws Exception {
+    final PrefixSha256Fulfillment tooShort = new PrefixSha256Fulfillment(PREFIX,
+        MESSAGE.length - 1, new PreimageSha256Fulfillment(AUTHOR.getBytes()));
+    final PrefixSha256Condition otherCondition = new PrefixSha256Fulfillment(PREFIX,
+        MESSAGE.length - 1, new PreimageSha256Fulfillment(MESSAGE)).getCondition();
+
+    // The root PREFIX-SHA-256 fulfillment checks the message length before its condition.
+    assertThat(throwsTooLong(() -> tooShort.verify(otherCondition, MESSAGE)), is(true));
+    assertThat(throwsTooLong(() -> CryptoConditionVerifier.verify(
+        CryptoConditionWriter.writeCondition(otherCondition),
+        CryptoConditionWriter.writeFulfillment(tooShort), ByteBuffer.wrap(MESSAGE))), is(true));
+
+    // Fulfillments below a threshold are only reached if the condition of the threshold matches.
+    final ThresholdSha256Fulfillment threshold = new ThresholdSha256Fulfillment(
+        Collections.emptyList(), Collections.singletonList(tooShort));
+    final ThresholdSha256Condition otherThreshold = new ThresholdSha256Fulfillment(
+        Collections.emptyList(), Collections.singletonList(
+            new PreimageSha256Fulfillment(MESSAGE))).getCondition();
+    assertThat(threshold.verify(otherThreshold, MESSAGE), is(false));
+    assertThat(CryptoConditionVerifier.verify(
+        CryptoConditionWriter.writeCondition(otherThreshold),
+        CryptoConditionWriter.writeFulfillment(threshold), ByteBuffer.wrap(MESSAGE)), is(false));
+
+    assertThat(throwsTooLong(() -> threshold.verify(threshold.getCondition(), MESSAGE)),
+        is(true));
+    assertThat(throwsTooLong(() -> CryptoConditionVerifier.verify(
+        CryptoConditionWriter.writeCondition(threshold.getCondition()),
+        CryptoConditionWriter.writeFulfillment(threshold), ByteBuffer.wrap(MESSAGE))), is(true));
+  }
+
+  private interface Verification {
+
+    boolean verify() throws Exception;
+  }
+
+  private static boolean throwsTooLong(final Verification verification) throws Exception {
+    try {
+      verification.verify();
+      return false;
+    } catch (IllegalArgumentException e) {
+      return true;
+    }
+  }
+
+  @Test
+  public void testTryVerifyPolicy() throws Exception {
+    final Fulfillment fulfillment = nestedFulfillment();
+    final byte[] conditionDer = CryptoConditionWriter.writeCondition(fulfillment.getCondition());
+    final byte[] fulfillmentDer = CryptoConditionWriter.writeFulfillment(fulfillment);
+
+    final VerificationPolicy cheap = new VerificationPolicy(
+        fulfillment.getCondition().getCost() - 1, 10, Long.MAX_VALUE,
+        EnumSet.allOf(CryptoConditionType.class));
+    assertThat(CryptoConditionVerifier.tryVerify(conditionDer, fulfillmentDer,
+        ByteBuffer.wrap(MESSAGE), cheap).getStatus(), is(VerificationResult.Status.COST_EXCEEDED));
+
+    final VerificationPolicy noRsa = new VerificationPolicy(Long.MAX_VALUE, 10, Long.MAX_VALUE,
+        EnumSet.complementOf(EnumSet.of(CryptoConditionType.RSA_SHA256)));
+    assertThat(CryptoConditionVerifier.tryVerify(conditionDer, fulfillmentDer,
+        ByteBuffer.wrap(MESSAGE), noRsa).getStatus(),
+        is(VerificationResult.Status.TYPE_NOT_ALLOWED));
+
+    final VerificationPolicy shallow = new VerificationPolicy(Long.MAX_VALUE, 3, Long.MAX_VALUE,
+        EnumSet.allOf(CryptoConditionType.class));
+    final VerificationResult result = CryptoConditionVerifier.tryVerify(conditionDer,
+        fulfillmentDer, ByteBuffer.wrap(MESSAGE), shallow);
+    assertThat(result.getStatus(), is(VerificationResult.Status.DEPTH_EXCEEDED));
+    assertThat(result.getOffset() > 0, is(true));
+  }
+
+  @Test
+  public void testDefaultPolicyLimitsDepth() throws Exception {
+    final byte[] deepest =
+        CryptoConditionReaderWriterTest.prefixChain(VerificationPolicy.DEFAULT_MAX_DEPTH - 1);
+    final byte[] conditionDer = CryptoConditionWriter.writeCondition(
+        CryptoConditionReader.readFulfillment(deepest).getCondition());
+    assertThat(CryptoConditionVerifier.verify(conditionDer, deepest, ByteBuffer.allocate(0)),
+        is(true));
+
+    // Deep enough to overflow the thread stack if the walk were not stopped at the maximum depth.
+    final byte[] tooDeep = CryptoConditionReaderWriterTest.prefixChain(10000);
+    assertThat(CryptoConditionVerifier.tryVerify(conditionDer, tooDeep, ByteBuffer.allocate(0))
+        .getStatus(), is(VerificationResult.Status.DEPTH_EXCEEDED));
+    try {
+      CryptoConditionVerifier.verify(conditionDer, tooDeep, ByteBuffer.allocate(0));
+      fail("Expected a VerificationPolicyException");
+    } catch (VerificationPolicyException e) {
+      assertThat(e.getReason(), is(VerificationPolicy.Reason.DEPTH_EXCEEDED));
+    }
+  }
+
+  private static Fulfillment nestedFulfillment() throws Exception {
+    return TestFulfillmentFactory.nestedFulfillment(PREFIX, AUTHOR.getBytes(), MESSAGE, rsaKeyPair,
+        edDsaKeyPair);
+  }
+
+}
@@ -0,0 +1,96 @@
+package org.interledger.cryptoconditions;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Unit tests for {@link FingerprintMap} and {@link ConcurrentFingerprintMap}.
+ */
+public class FingerprintMapTest extends AbstractCryptoConditionTest {
+
+  @Test
+  public void testConditionAndBytesAreTheSameKey() {
+    final FingerprintMap<String> map = new FingerprintMap<>();
+    final Condition condition = new PreimageSha256Fulfillment(AUTHOR.getBytes()).getCondition();
+
+    assertThat(map.put(condition, "first"), is(nullValue()));
+    assertThat(map.get(condition.getFingerprint(), 0), is("first"));
+    assertThat(map.putIfAbsent(condition, "second"), is("first"));
+    assertThat(map.put(condition.getFingerprint(), 0, "second"), is("first"));
+    assertThat(map.size(), is(1));
+
+    assertThat(map.remove(condition.getFingerprint(), 0, "first"), is(false));
+    assertThat(map.remove(condition), is("second"));
+    assertThat(map.containsKey(condition), is(false));
+    assertThat(map.isEmpty(), is(true));
+  }
+
+  @Test
+  public void testMatchesHashMapWithCollidingFingerprints() {
+    final Random random = new Random(42);
+    final List<byte[]> fingerprints = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      final byte[] fingerprint = new byte[32];
+      random.nextBytes(fingerprint);
+      // Force long probe sequences by sharing the bits that choose the slot
+      fingerprint[7] &= 0x03;
+      fingerprints.add(fingerprint);
+    }
+
+    final FingerprintMap<Integer> map = new FingerprintMap<>();
+    final Map<String, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 100000; i++) {
+      final byte[] fingerprint = fingerprints.get(random.nextInt(fingerprints.size()));
+      final String key = Arrays.toString(fingerprint);
+      if (random.nextBoolean()) {
+        assertThat(map.put(fingerprint, 0, i), is(expected.put(key, i)));
+      } else {
+        assertThat(map.remove(fingerprint, 0), is(expected.remove(key)));
+      }
+    }
+
+    assertThat(map.size(), is(expected.size()));
+    for (byte[] fingerprint : fingerprints) {
+      assertThat(map.get(fingerprint, 0), is(expected.get(Arrays.toString(fingerprint))));
+    }
+    map.forEach((fingerprint, value) ->
+        assertThat(value, is(expected.get(Arrays.toString(fingerprint)))));
+  }
+
+  @Test
+  public void testBulkLoad() {
+    final byte[] buffer = new byte[32 * 100 + 5];
+    new Random(7).nextBytes(buffer);
+    final List<Integer> values = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      values.add(i);
+    }
+
+    final FingerprintMap<Integer> map = new FingerprintMap<>();
+    map.putAll(buffer, 5, values);
+    final ConcurrentFingerprintMap<Integer> concurrentMap = new ConcurrentFingerprintMap<>(100);
+    concurrentMap.putAll(map);
+
+    assertThat(map.size(), is(100));
+    assertThat(concurrentMap.size(), is(100L));
+    for (int i = 0; i < 100; i++) {
+      assertThat(map.get(buffer, 5 + 32 * i), is(i));
+      assertThat(concurrentMap.get(buffer, 5 + 32 * i), is(i));
+    }
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testShortFingerprint() {
+    new FingerprintMap<String>().get(new byte[32], 1);
+  }
+}
@@ -0,0 +1,52 @@
+package org.interledger.cryptoconditions;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link FingerprintSet} and {@link ConcurrentFingerprintSet}.
+ */
+public class FingerprintSetTest extends AbstractCryptoConditionTest {
+
+  @Test
+  public void testAddContainsRemove() {
+    final FingerprintSet set = new FingerprintSet();
+    final Condition condition = new PreimageSha256Fulfillment(AUTHOR.getBytes()).getCondition();
+
+    assertThat(set.add(condition), is(true));
+    assertThat(set.add(condition.getFingerprint(), 0), is(false));
+    assertThat(set.contains(condition), is(true));
+    assertThat(set.remove(condition), is(true));
+    assertThat(set.contains(condition), is(false));
+    assertThat(set.isEmpty(), is(true));
+  }
+
+  @Test
+  public void testAddAllAndIterate() {
+    final byte[] buffer = new byte[32 * 1000];
+    new Random(3).nextBytes(buffer);
+    // The last fingerprint repeats the first
+    System.arraycopy(buffer, 0, buffer, 32 * 999, 32);
+
+    final FingerprintSet set = new FingerprintSet();
+    assertThat(set.addAll(buffer, 0, 1000), is(999));
+
+    final ConcurrentFingerprintSet concurrentSet = new ConcurrentFingerprintSet();
+    final AtomicInteger count = new AtomicInteger();
+    set.forEach(fingerprint -> {
+      count.incrementAndGet();
+      concurrentSet.add(fingerprint, 0);
+    });
+
+    assertThat(count.get(), is(999));
+    assertThat(concurrentSet.size(), is(999L));
+    for (int i = 0; i < 1000; i++) {
+      assertThat(concurrentSet.contains(buffer, 32 * i), is(true));
+    }
+  }
+}
@@ -0,0 +1,193 @@
+package org.interledger.cryptoconditions;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.interledger.cryptoconditions.der.DerEncodingException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for {@link FulfillmentLog}.
+ */
+public class FulfillmentLogTest extends AbstractCryptoConditionTest {
+
+  private Path directory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("fulfillments");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  @Test
+  public void testRecordsAreReadAsAppended() throws Exception {
+    final List<Fulfillment> fulfillments = fulfillments(200);
+    try (FulfillmentLog log = FulfillmentLog.open(directory)) {
+      for (int i = 0; i < fulfillments.size(); i++) {
+        assertThat(log.append(fulfillments.get(i)), is((long) i));
+      }
+      assertReadable(log, fulfillments);
+    }
+  }
+
+  @Test
+  public void testRepeatedSubconditionsAreStoredOnce() throws Exception {
+    final List<Fulfillment> fulfillments = fulfillments(200);
+    try (FulfillmentLog log = FulfillmentLog.open(directory)) {
+      for (Fulfillment fulfillment : fulfillments) {
+        log.append(fulfillment);
+      }
+      // The shared subconditions and the repeated prefix subtree
+      assertThat(log.getDictionarySize(), is(9));
+      assertThat(log.getCompressedBytes() * 3 < log.getUncompressedBytes(), is(true));
+    }
+  }
+
+  @Test
+  public void testLogIsReadableAfterReopening() throws Exception {
+    final List<Fulfillment> fulfillments = fulfillments(100);
+    try (FulfillmentLog log = new FulfillmentLog(directory, 4096)) {
+      for (Fulfillment fulfillment : fulfillments.subList(0, 50)) {
+        log.append(fulfillment);
+      }
+    }
+    try (FulfillmentLog log = new FulfillmentLog(directory, 4096)) {
+      assertThat(log.size(), is(50L));
+      for (Fulfillment fulfillment : fulfillments.subList(50, 100)) {
+        log.append(fulfillment);
+      }
+    }
+    try (FulfillmentLog log = new FulfillmentLog(directory, 4096)) {
+      assertReadable(log, fulfillments);
+    }
+  }
+
+  @Test
+  public void testReplayStartsAtAnyRecordAcrossSegments() throws Exception {
+    final List<Fulfillment> fulfillments = fulfillments(300);
+    try (FulfillmentLog log = new FulfillmentLog(directory, 1024)) {
+      for (Fulfillment fulfillment : fulfillments) {
+        log.append(fulfillment);
+      }
+      assertThat(segments() > 5, is(true));
+
+      final List<byte[]> encodings = new ArrayList<>();
+      for (Fulfillment fulfillment : fulfillments) {
+        encodings.add(CryptoConditionWriter.writeFulfillment(fulfillment));
+      }
+      final List<Long> ids = new ArrayList<>();
+      log.replay(123, (encoding, id) -> {
+        ids.add(id);
+        assertThat(Arrays.equals(encoding, encodings.get((int) id)), is(true));
+      });
+      assertThat(ids.size(), is(177));
+      assertThat(ids.get(0), is(123L));
+    }
+  }
+
+  @Test
+  public void testLogIsTruncatedAtCorruptRecord() throws Exception {
+    final List<Fulfillment> fulfillments = fulfillments(20);
+    try (FulfillmentLog log = FulfillmentLog.open(directory)) {
+      for (Fulfillment fulfillment : fulfillments) {
+        log.append(fulfillment);
+      }
+    }
+
+    final Path segment = directory.resolve(String.format("%020d.log", 0));
+    final byte[] data = Files.readAllBytes(segment);
+    data[data.length - 3] ^= 1;
+    Files.write(segment, data);
+
+    try (FulfillmentLog log = FulfillmentLog.open(directory)) {
+      assertThat(log.size(), is(19L));
+      assertReadable(log, fulfillments.subList(0, 19));
+      assertThat(log.append(fulfillments.get(19)), is(19L));
+    }
+  }
+
+  @Test
+  public void testDeeplyNestedFulfillmentIsReadAsAppended() throws Exception {
+    final byte[] encoding = CryptoConditionReaderWriterTest.prefixChain(10000);
+    try (FulfillmentLog log = FulfillmentLog.open(directory)) {
+      log.appendEncoded(encoding);
+      assertThat(Arrays.equals(log.readEncoded(0), encoding), is(true));
+    }
+  }
+
+  @Test(expected = DerEncodingException.class)
+  public void testNonCanonicalEncodingIsNotAppended() throws Exception {
+    try (FulfillmentLog log = FulfillmentLog.open(directory)) {
+      // A PREIMAGE-SHA-256 fulfillment with a long form length
+      log.appendEncoded(new byte[] {(byte) 0xA0, (byte) 0x81, 0x03, (byte) 0x80, 0x01, 0x41});
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownRecordCannotBeRead() throws Exception {
+    try (FulfillmentLog log = FulfillmentLog.open(directory)) {
+      log.append(new PreimageSha256Fulfillment(AUTHOR.getBytes()));
+      log.readEncoded(1);
+    }
+  }
+
+  private int segments() throws IOException {
+    int segments = 0;
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.log")) {
+      for (Path ignored : files) {
+        segments++;
+      }
+    }
+    return segments;
+  }
+
+  /**
+   * Threshold fulfillments over a few shared subconditions and a shared prefix subtree, as a
+   * connector would see for many payments with the same parties.
+   */
+  private static List<Fulfillment> fulfillments(final int count) {
+    final List<Condition> shared = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      shared.add(new PreimageSha256Fulfillment(("party" + i).getBytes()).getCondition());
+    }
+    final Fulfillment prefixed = new PrefixSha256Fulfillment("ledger".getBytes(), 100,
+        new PreimageSha256Fulfillment(AUTHOR.getBytes()));
+
+    final List<Fulfillment> fulfillments = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      final Fulfillment preimage = new PreimageSha256Fulfillment(("payment" + i).getBytes());
+      fulfillments.add(i % 10 == 0 ? preimage : new ThresholdSha256Fulfillment(shared,
+          Arrays.asList(preimage, prefixed)));
+    }
+    return fulfillments;
+  }
+
+  private static void assertReadable(final FulfillmentLog log, final List<Fulfillment> expected)
+      throws Exception {
+    assertThat(log.size(), is((long) expected.size()));
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(log.read(i), is(expected.get(i)));
+      assertThat(Arrays.equals(log.readEncoded(i),
+          CryptoConditionWriter.writeFulfillment(expected.get(i))), is(true));
+    }
+  }
+}
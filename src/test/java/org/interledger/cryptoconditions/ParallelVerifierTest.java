@@ -0,0 +1,102 @@
+package org.interledger.cryptoconditions;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import com.google.common.collect.Lists;
+
+import org.interledger.cryptoconditions.helpers.StubFulfillment;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Unit tests for {@link ParallelVerifier}.
+ */
+public class ParallelVerifierTest extends AbstractCryptoConditionTest {
+
+  private static final byte[] MESSAGE = MESSAGE_PREIMAGE.getBytes();
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testVerifyNestedThresholdInParallel() {
+    final ThresholdSha256Fulfillment fulfillment = new ThresholdSha256Fulfillment(
+        Collections.emptyList(),
+        Lists.newArrayList(
+            new PreimageSha256Fulfillment(AUTHOR.getBytes()),
+            new PrefixSha256Fulfillment("prefix".getBytes(), MESSAGE.length,
+                new ThresholdSha256Fulfillment(Collections.emptyList(), Lists.newArrayList(
+                    new PreimageSha256Fulfillment("one".getBytes()),
+                    new PreimageSha256Fulfillment("two".getBytes())
+                ))
+            )
+        )
+    );
+
+    final ParallelVerifier verifier = new ParallelVerifier(executor, 0);
+    assertThat(verifier.verify(fulfillment, fulfillment.getCondition(), MESSAGE), is(true));
+    assertThat(verifier.verify(fulfillment,
+        new PreimageSha256Fulfillment(AUTHOR.getBytes()).getCondition(), MESSAGE), is(false));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testVerifyNestedMessageTooLong() {
+    final ThresholdSha256Fulfillment fulfillment = new ThresholdSha256Fulfillment(
+        Collections.emptyList(),
+        Lists.newArrayList(
+            new PreimageSha256Fulfillment(AUTHOR.getBytes()),
+            new PrefixSha256Fulfillment("prefix".getBytes(), MESSAGE.length - 1,
+                new PreimageSha256Fulfillment("one".getBytes()))
+        )
+    );
+
+    new ParallelVerifier(executor, 0).verify(fulfillment, fulfillment.getCondition(), MESSAGE);
+  }
+
+  @Test
+  public void testFailureCancelsOutstandingLeaves() {
+    final StubFulfillment failing = new StubFulfillment("failing", false);
+    final StubFulfillment outstanding = new StubFulfillment("outstanding", true);
+    final ThresholdSha256Fulfillment fulfillment = new ThresholdSha256Fulfillment(
+        Collections.emptyList(), Lists.newArrayList(failing, outstanding)
+    );
+
+    // A single-threaded executor runs the failing leaf first, so the second never starts.
+    final ParallelVerifier verifier = new ParallelVerifier(executor, 0);
+    assertThat(verifier.verify(fulfillment, fulfillment.getCondition(), MESSAGE), is(false));
+
+    assertThat(failing.getVerifications(), is(1));
+    assertThat(outstanding.getVerifications(), is(0));
+  }
+
+  @Test
+  public void testCheapFulfillmentVerifiedInline() {
+    final StubFulfillment first = new StubFulfillment("first", true);
+    final StubFulfillment second = new StubFulfillment("second", true);
+    final ThresholdSha256Fulfillment fulfillment = new ThresholdSha256Fulfillment(
+        Collections.emptyList(), Lists.newArrayList(first, second)
+    );
+
+    // Two preimages are far below the default threshold, so nothing may be submitted.
+    final ParallelVerifier verifier = new ParallelVerifier(runnable -> {
+      throw new AssertionError("Cheap fulfillments should not be fanned out.");
+    });
+    assertThat(verifier.verify(fulfillment, fulfillment.getCondition(), MESSAGE), is(true));
+  }
+}
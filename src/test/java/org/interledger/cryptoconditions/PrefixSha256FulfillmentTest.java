@@ -0,0 +1,50 @@
+package org.interledger.cryptoconditions;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.interledger.cryptoconditions.helpers.StubFulfillment;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Unit tests {@link PrefixSha256Fulfillment}.
+ */
+public class PrefixSha256FulfillmentTest extends AbstractCryptoConditionTest {
+
+  private static final byte[] MESSAGE = MESSAGE_PREIMAGE.getBytes();
+
+  @Test
+  public void testVerifyByteBuffer() {
+    final PrefixSha256Fulfillment fulfillment = new PrefixSha256Fulfillment(
+        "prefix".getBytes(), MESSAGE.length, new PreimageSha256Fulfillment(AUTHOR.getBytes()));
+
+    final ByteBuffer message = ByteBuffer.allocateDirect(MESSAGE.length);
+    message.put(MESSAGE);
+    message.flip();
+
+    assertThat(fulfillment.verify(fulfillment.getCondition(), message), is(true));
+    assertThat(message.remaining(), is(MESSAGE.length));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testVerifyByteBufferTooLong() {
+    final PrefixSha256Fulfillment fulfillment = new PrefixSha256Fulfillment(
+        "prefix".getBytes(), MESSAGE.length - 1, new PreimageSha256Fulfillment(AUTHOR.getBytes()));
+
+    fulfillment.verify(fulfillment.getCondition(), ByteBuffer.wrap(MESSAGE));
+  }
+
+  @Test
+  public void testVerifyByteBufferThroughUnknownFulfillment() {
+    // Fulfillments from outside this library receive a gathered copy of the prefixed message.
+    final StubFulfillment stub = new StubFulfillment("stub", true);
+    final PrefixSha256Fulfillment fulfillment =
+        new PrefixSha256Fulfillment("prefix".getBytes(), MESSAGE.length, stub);
+
+    assertThat(fulfillment.verify(fulfillment.getCondition(), ByteBuffer.wrap(MESSAGE)), is(true));
+    assertThat(stub.getVerifications(), is(1));
+  }
+}
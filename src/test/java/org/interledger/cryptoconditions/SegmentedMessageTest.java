@@ -0,0 +1,78 @@
+package org.interledger.cryptoconditions;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import net.i2p.crypto.eddsa.EdDSAEngine;
+import net.i2p.crypto.eddsa.EdDSAPublicKey;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.util.Arrays;
+
+/**
+ * Unit tests for {@link SegmentedMessage}.
+ */
+public class SegmentedMessageTest extends AbstractCryptoConditionTest {
+
+  private static final byte[] MESSAGE = MESSAGE_PREIMAGE.getBytes();
+
+  @Test
+  public void testPrependDoesNotChangeOriginal() {
+    final SegmentedMessage message = SegmentedMessage.of(MESSAGE);
+    final SegmentedMessage prefixed = message.prepend("outer ".getBytes())
+        .prepend("inner ".getBytes());
+
+    assertThat(message.toByteArray(), is(MESSAGE));
+    assertThat(prefixed.length(), is(12L + MESSAGE.length));
+    assertThat(new String(prefixed.toByteArray()), is("inner outer " + MESSAGE_PREIMAGE));
+  }
+
+  @Test
+  public void testUpdateToDigestMatchesGatheredMessage() throws Exception {
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(MESSAGE.length + 2);
+    buffer.put((byte) 1).put(MESSAGE).put((byte) 2);
+    buffer.position(1);
+    buffer.limit(1 + MESSAGE.length);
+    final SegmentedMessage message = SegmentedMessage.of(buffer).prepend(AUTHOR.getBytes());
+
+    final MessageDigest segmented = MessageDigest.getInstance("SHA-256");
+    message.updateTo(segmented);
+
+    assertThat(segmented.digest(),
+        is(MessageDigest.getInstance("SHA-256").digest((AUTHOR + MESSAGE_PREIMAGE).getBytes())));
+    // Segments are never consumed, so the message can be read again.
+    assertThat(message.toByteArray(), is((AUTHOR + MESSAGE_PREIMAGE).getBytes()));
+  }
+
+  @Test
+  public void testVerifyDeepPrefixChain() throws Exception {
+    final byte[] message = new byte[1024 * 1024];
+    Arrays.fill(message, (byte) 'x');
+    final int depth = 64;
+
+    // The signed message is every prefix, outermost last, followed by the original message.
+    final KeyPair keyPair = new net.i2p.crypto.eddsa.KeyPairGenerator().generateKeyPair();
+    final Signature edDsaSigner = new EdDSAEngine(MessageDigest.getInstance("SHA-512"));
+    edDsaSigner.initSign(keyPair.getPrivate());
+    for (int i = depth - 1; i >= 0; i--) {
+      edDsaSigner.update(("prefix" + i).getBytes());
+    }
+    edDsaSigner.update(message);
+
+    Fulfillment fulfillment =
+        new Ed25519Sha256Fulfillment((EdDSAPublicKey) keyPair.getPublic(), edDsaSigner.sign());
+    for (int i = depth - 1; i >= 0; i--) {
+      fulfillment = new PrefixSha256Fulfillment(("prefix" + i).getBytes(), Integer.MAX_VALUE,
+          fulfillment);
+    }
+
+    assertThat(fulfillment.verify(fulfillment.getCondition(), message), is(true));
+    message[0] = 'y';
+    assertThat(fulfillment.verify(fulfillment.getCondition(), message), is(false));
+  }
+}
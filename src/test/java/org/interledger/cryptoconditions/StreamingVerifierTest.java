@@ -0,0 +1,147 @@
+package org.interledger.cryptoconditions;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import com.google.common.collect.Lists;
+import net.i2p.crypto.eddsa.EdDSAEngine;
+import net.i2p.crypto.eddsa.EdDSAPublicKey;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.Security;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Unit tests for {@link StreamingVerifier}.
+ */
+public class StreamingVerifierTest extends AbstractCryptoConditionTest {
+
+  private static final byte[] PREFIX = "prefix".getBytes();
+
+  private static KeyPair rsaKeyPair;
+  private static KeyPair edDsaKeyPair;
+  private static byte[] message;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @BeforeClass
+  public static void setUpKeys() throws Exception {
+    Security.addProvider(new BouncyCastleProvider());
+
+    final KeyPairGenerator rsaKpg = KeyPairGenerator.getInstance("RSA");
+    rsaKpg.initialize(new RSAKeyGenParameterSpec(2048, new BigInteger("65537")));
+    rsaKeyPair = rsaKpg.generateKeyPair();
+    edDsaKeyPair = new net.i2p.crypto.eddsa.KeyPairGenerator().generateKeyPair();
+
+    // Large enough to be read in several chunks.
+    message = new byte[300 * 1024];
+    new Random(1).nextBytes(message);
+  }
+
+  @Test
+  public void testVerifyStreamedRsaThroughPrefixAndThreshold() throws Exception {
+    final Fulfillment fulfillment = new ThresholdSha256Fulfillment(Collections.emptyList(),
+        Lists.newArrayList(
+            new PreimageSha256Fulfillment(AUTHOR.getBytes()),
+            new PrefixSha256Fulfillment(PREFIX, message.length, rsaFulfillment(prefixed()))
+        ));
+
+    assertThat(StreamingVerifier.verify(fulfillment, fulfillment.getCondition(),
+        new ByteArrayInputStream(message)), is(true));
+    assertThat(fulfillment.verify(fulfillment.getCondition(), message), is(true));
+
+    final byte[] tampered = message.clone();
+    tampered[tampered.length - 1] ^= 1;
+    assertThat(StreamingVerifier.verify(fulfillment, fulfillment.getCondition(),
+        new ByteArrayInputStream(tampered)), is(false));
+  }
+
+  @Test
+  public void testVerifyStreamedEd25519FromChannel() throws Exception {
+    final Fulfillment fulfillment =
+        new PrefixSha256Fulfillment(PREFIX, message.length, ed25519Fulfillment(prefixed()));
+
+    assertThat(StreamingVerifier.verify(fulfillment, fulfillment.getCondition(),
+        Channels.newChannel(new ByteArrayInputStream(message))), is(true));
+    assertThat(StreamingVerifier.verify(fulfillment, fulfillment.getCondition(),
+        Channels.newChannel(new ByteArrayInputStream(PREFIX))), is(false));
+  }
+
+  @Test
+  public void testVerifyWrongCondition() throws Exception {
+    final Fulfillment fulfillment = new PreimageSha256Fulfillment(AUTHOR.getBytes());
+
+    assertThat(StreamingVerifier.verify(fulfillment,
+        new PreimageSha256Fulfillment(PREFIX).getCondition(), new ByteArrayInputStream(message)),
+        is(false));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testVerifyStreamedMessageTooLong() throws Exception {
+    final Fulfillment fulfillment = new PrefixSha256Fulfillment("outer".getBytes(), message.length,
+        new PrefixSha256Fulfillment(PREFIX, message.length, rsaFulfillment(prefixed())));
+
+    // The inner prefix sees "outer" followed by the message, which exceeds its limit.
+    StreamingVerifier.verify(fulfillment, fulfillment.getCondition(),
+        new ByteArrayInputStream(message));
+  }
+
+  @Test
+  public void testVerifyMappedFile() throws Exception {
+    final File file = temporaryFolder.newFile();
+    Files.write(file.toPath(), message);
+
+    final Fulfillment fulfillment = new ThresholdSha256Fulfillment(Collections.emptyList(),
+        Lists.newArrayList(
+            new PrefixSha256Fulfillment(PREFIX, message.length, rsaFulfillment(prefixed())),
+            new PrefixSha256Fulfillment(PREFIX, message.length, ed25519Fulfillment(prefixed()))
+        ));
+
+    assertThat(StreamingVerifier.verify(fulfillment, fulfillment.getCondition(), file.toPath()),
+        is(true));
+
+    Files.write(file.toPath(), PREFIX);
+    assertThat(StreamingVerifier.verify(fulfillment, fulfillment.getCondition(), file.toPath()),
+        is(false));
+  }
+
+  private static byte[] prefixed() {
+    final byte[] prefixed = new byte[PREFIX.length + message.length];
+    System.arraycopy(PREFIX, 0, prefixed, 0, PREFIX.length);
+    System.arraycopy(message, 0, prefixed, PREFIX.length, message.length);
+    return prefixed;
+  }
+
+  private static RsaSha256Fulfillment rsaFulfillment(final byte[] signed) throws Exception {
+    final Signature rsaSigner = Signature.getInstance(RsaSha256Fulfillment.SHA_256_WITH_RSA_PSS);
+    rsaSigner.initSign(rsaKeyPair.getPrivate());
+    rsaSigner.update(signed);
+    return new RsaSha256Fulfillment((RSAPublicKey) rsaKeyPair.getPublic(), rsaSigner.sign());
+  }
+
+  private static Ed25519Sha256Fulfillment ed25519Fulfillment(final byte[] signed)
+      throws Exception {
+    final Signature edDsaSigner = new EdDSAEngine(MessageDigest.getInstance("SHA-512"));
+    edDsaSigner.initSign(edDsaKeyPair.getPrivate());
+    edDsaSigner.update(signed);
+    return new Ed25519Sha256Fulfillment(
+        (EdDSAPublicKey) edDsaKeyPair.getPublic(), edDsaSigner.sign());
+  }
+}
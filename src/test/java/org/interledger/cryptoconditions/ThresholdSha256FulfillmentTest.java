@@ -0,0 +1,75 @@
+package org.interledger.cryptoconditions;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import com.google.common.collect.Lists;
+
+import org.interledger.cryptoconditions.helpers.StubFulfillment;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+/**
+ * Unit tests for {@link ThresholdSha256Fulfillment}.
+ */
+public class ThresholdSha256FulfillmentTest extends AbstractCryptoConditionTest {
+
+  private static final byte[] MESSAGE = MESSAGE_PREIMAGE.getBytes();
+
+  @Test
+  public void testCheapestFailingLeafRejectsFirst() {
+    final StubFulfillment expensive = new StubFulfillment("expensive", 262144L, true);
+    final StubFulfillment nestedExpensive = new StubFulfillment("nested", 131072L, true);
+    final StubFulfillment cheapInvalid = new StubFulfillment("cheap", 32L, false);
+
+    // The cheap, invalid leaf is listed last and nested inside a prefix.
+    final ThresholdSha256Fulfillment fulfillment = new ThresholdSha256Fulfillment(
+        Collections.emptyList(),
+        Lists.newArrayList(
+            expensive,
+            nestedExpensive,
+            new PrefixSha256Fulfillment("prefix".getBytes(), MESSAGE.length, cheapInvalid)
+        )
+    );
+
+    assertThat(fulfillment.verify(fulfillment.getCondition(), MESSAGE), is(false));
+    assertThat(cheapInvalid.getVerifications(), is(1));
+    assertThat(expensive.getVerifications(), is(0));
+    assertThat(nestedExpensive.getVerifications(), is(0));
+  }
+
+  @Test
+  public void testStructureCheckedBeforeAnyLeaf() {
+    final StubFulfillment leaf = new StubFulfillment("leaf", true);
+    final ThresholdSha256Fulfillment fulfillment = new ThresholdSha256Fulfillment(
+        Collections.emptyList(),
+        Lists.newArrayList(
+            leaf,
+            new PrefixSha256Fulfillment("prefix".getBytes(), MESSAGE.length - 1,
+                new PreimageSha256Fulfillment(AUTHOR.getBytes()))
+        )
+    );
+
+    try {
+      fulfillment.verify(fulfillment.getCondition(), MESSAGE);
+      throw new AssertionError("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException e) {
+      assertThat(leaf.getVerifications(), is(0));
+    }
+  }
+
+  @Test
+  public void testAllLeavesVerifiedWhenValid() {
+    final StubFulfillment first = new StubFulfillment("first", true);
+    final StubFulfillment second = new StubFulfillment("second", true);
+    final ThresholdSha256Fulfillment fulfillment = new ThresholdSha256Fulfillment(
+        Collections.emptyList(), Lists.newArrayList(first, second)
+    );
+
+    assertThat(fulfillment.verify(fulfillment.getCondition(), MESSAGE), is(true));
+    assertThat(first.getVerifications(), is(1));
+    assertThat(second.getVerifications(), is(1));
+  }
+}
@@ -31,6 +31,7 @@ import org.junit.runners.Parameterized.Parameters;
 import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.security.Provider;
 import java.security.Security;
 import java.security.interfaces.RSAPublicKey;
@@ -39,6 +40,7 @@ import java.util.Base64;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This class tests the Java implementation of crypto-conditions based on a set of pre-computed and
@@ -176,6 +178,48 @@ public class ValidVectorTest {
     assertThat(controlFulfillment.verify(conditionFromTestVectorUri, messageBytes), is(true));
   }
 
+  /**
+   * This test parses the fulfillment binary and verifies it using a {@link ParallelVerifier} that
+   * fans every leaf out, asserting that the result matches sequential verification.
+   */
+  @Test
+  public void testParseFulfillmentFromBinaryAndVerifyInParallel() throws Exception {
+    final Condition conditionFromTestVectorUri = CryptoConditionUri
+        .parse(URI.create(testVector.getConditionUri()));
+    final byte[] messageBytes = BaseEncoding.base16().decode(testVector.getMessage());
+
+    final Fulfillment controlFulfillment = CryptoConditionReader
+        .readFulfillment(BaseEncoding.base16().decode(testVector.getFulfillment()));
+
+    final ParallelVerifier verifier = new ParallelVerifier(ForkJoinPool.commonPool(), 0);
+    assertThat(verifier.verify(controlFulfillment, conditionFromTestVectorUri, messageBytes),
+        is(true));
+  }
+
+  /**
+   * This test parses the fulfillment from binary and verifies it against a message held in a
+   * direct {@link ByteBuffer}, asserting that the buffer is left untouched.
+   */
+  @Test
+  public void testParseFulfillmentFromBinaryAndVerifyDirectBuffer() throws Exception {
+    final Condition conditionFromTestVectorUri = CryptoConditionUri
+        .parse(URI.create(testVector.getConditionUri()));
+    final byte[] messageBytes = BaseEncoding.base16().decode(testVector.getMessage());
+
+    final Fulfillment controlFulfillment = CryptoConditionReader
+        .readFulfillment(BaseEncoding.base16().decode(testVector.getFulfillment()));
+
+    // Surround the message with other bytes, so that only the remaining bytes may be read.
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(messageBytes.length + 2);
+    buffer.put((byte) 0xFF).put(messageBytes).put((byte) 0xFF);
+    buffer.position(1);
+    buffer.limit(1 + messageBytes.length);
+
+    assertThat(controlFulfillment.verify(conditionFromTestVectorUri, buffer), is(true));
+    assertThat(buffer.position(), is(1));
+    assertThat(buffer.remaining(), is(messageBytes.length));
+  }
+
   /**
    * This test reads the binary condition and binary fulfillment data, and then asserts that the
    * condition verifies the fulfillment.
@@ -191,6 +235,39 @@ public class ValidVectorTest {
     assertTrue(fulfillmentFromBinary.verify(conditionFromBinary, messageBinary));
   }
 
+  /**
+   * This test verifies the binary fulfillment against the binary condition directly, without
+   * decoding either of them, and checks that a different message is rejected where the fulfillment
+   * signs it.
+   */
+  @Test
+  public void testVerifyBinaryConditionAgainstBinaryFulfillment() throws DerEncodingException {
+    final byte[] messageBinary = BaseEncoding.base16().decode(testVector.getMessage());
+    final byte[] conditionBinary = BaseEncoding.base16().decode(testVector.getConditionBinary());
+    final byte[] fulfillmentBinary = BaseEncoding.base16().decode(testVector.getFulfillment());
+
+    assertTrue(CryptoConditionVerifier.verify(conditionBinary, fulfillmentBinary,
+        ByteBuffer.wrap(messageBinary)));
+
+    final Condition condition = CryptoConditionReader.readCondition(conditionBinary);
+    final Fulfillment fulfillment = CryptoConditionReader.readFulfillment(fulfillmentBinary);
+    final byte[] otherMessage = Arrays.copyOf(messageBinary, messageBinary.length + 1);
+    boolean expected;
+    try {
+      expected = fulfillment.verify(condition, otherMessage);
+    } catch (IllegalArgumentException e) {
+      expected = false;
+    }
+    boolean actual;
+    try {
+      actual = CryptoConditionVerifier.verify(conditionBinary, fulfillmentBinary,
+          ByteBuffer.wrap(otherMessage));
+    } catch (IllegalArgumentException e) {
+      actual = false;
+    }
+    assertThat(actual, is(expected));
+  }
+
   /**
    * This test parses fulfillment binary from the test vector, and then validates that
    * this value matches the fingerprint from an actual Condition generated from the testVector
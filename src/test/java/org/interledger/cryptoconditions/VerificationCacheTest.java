@@ -0,0 +1,124 @@
+package org.interledger.cryptoconditions;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import net.i2p.crypto.eddsa.EdDSAEngine;
+import net.i2p.crypto.eddsa.EdDSAPublicKey;
+
+import org.interledger.cryptoconditions.helpers.StubFulfillment;
+
+import org.junit.Test;
+
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit tests for {@link VerificationCache}.
+ */
+public class VerificationCacheTest extends AbstractCryptoConditionTest {
+
+  private static final byte[] MESSAGE = MESSAGE_PREIMAGE.getBytes();
+
+  private final AtomicLong now = new AtomicLong();
+
+  @Test
+  public void testRepeatedVerificationIsAHit() {
+    final VerificationCache cache = newCache(100, false);
+    final PrefixSha256Fulfillment fulfillment = new PrefixSha256Fulfillment(
+        "prefix".getBytes(), MESSAGE.length, new PreimageSha256Fulfillment(AUTHOR.getBytes()));
+
+    assertThat(cache.verify(fulfillment, fulfillment.getCondition(), MESSAGE), is(true));
+    assertThat(cache.verify(fulfillment, fulfillment.getCondition(), MESSAGE), is(true));
+    assertThat(cache.verify(fulfillment, fulfillment.getCondition(), "other".getBytes()), is(true));
+
+    assertThat(cache.getHitCount(), is(1L));
+    assertThat(cache.getMissCount(), is(2L));
+    assertThat(cache.getHitRate(), is(1d / 3));
+    assertThat(cache.size(), is(2L));
+  }
+
+  @Test
+  public void testConditionIsNeverCached() {
+    final VerificationCache cache = newCache(100, false);
+    final PreimageSha256Fulfillment fulfillment = new PreimageSha256Fulfillment(AUTHOR.getBytes());
+    cache.verify(fulfillment, fulfillment.getCondition(), MESSAGE);
+
+    final PreimageSha256Condition wrongCost =
+        new PreimageSha256Condition(1000, fulfillment.getCondition().getFingerprint());
+    assertThat(cache.verify(fulfillment, wrongCost, MESSAGE), is(false));
+    assertThat(cache.getHitCount(), is(0L));
+  }
+
+  @Test
+  public void testInvalidResultsCachedUnlessOnlyCachingValid() throws Exception {
+    final KeyPair keyPair = new net.i2p.crypto.eddsa.KeyPairGenerator().generateKeyPair();
+    final Signature edDsaSigner = new EdDSAEngine(MessageDigest.getInstance("SHA-512"));
+    edDsaSigner.initSign(keyPair.getPrivate());
+    edDsaSigner.update("other".getBytes());
+    final Ed25519Sha256Fulfillment invalid =
+        new Ed25519Sha256Fulfillment((EdDSAPublicKey) keyPair.getPublic(), edDsaSigner.sign());
+
+    final VerificationCache cachingAll = newCache(100, false);
+    final VerificationCache cachingValid = newCache(100, true);
+    for (int i = 0; i < 2; i++) {
+      assertThat(cachingAll.verify(invalid, invalid.getCondition(), MESSAGE), is(false));
+      assertThat(cachingValid.verify(invalid, invalid.getCondition(), MESSAGE), is(false));
+    }
+
+    assertThat(cachingAll.getHitCount(), is(1L));
+    assertThat(cachingValid.getHitCount(), is(0L));
+    assertThat(cachingValid.size(), is(0L));
+  }
+
+  @Test
+  public void testExpiredResultIsVerifiedAgain() {
+    final VerificationCache cache = newCache(100, false);
+    final PreimageSha256Fulfillment fulfillment = new PreimageSha256Fulfillment(AUTHOR.getBytes());
+
+    cache.verify(fulfillment, fulfillment.getCondition(), MESSAGE);
+    now.addAndGet(Duration.ofMinutes(1).toNanos() - 1);
+    cache.verify(fulfillment, fulfillment.getCondition(), MESSAGE);
+    now.incrementAndGet();
+    cache.verify(fulfillment, fulfillment.getCondition(), MESSAGE);
+
+    assertThat(cache.getHitCount(), is(1L));
+    assertThat(cache.getMissCount(), is(2L));
+    assertThat(cache.getEvictionCount(), is(1L));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedResultIsEvicted() {
+    final VerificationCache cache = newCache(1, false);
+    final PreimageSha256Fulfillment first = new PreimageSha256Fulfillment("first".getBytes());
+    final PreimageSha256Fulfillment second = new PreimageSha256Fulfillment("second".getBytes());
+
+    cache.verify(first, first.getCondition(), MESSAGE);
+    cache.verify(second, second.getCondition(), MESSAGE);
+    cache.verify(first, first.getCondition(), MESSAGE);
+
+    assertThat(cache.getHitCount(), is(0L));
+    assertThat(cache.getEvictionCount(), is(2L));
+    assertThat(cache.size(), is(1L));
+  }
+
+  @Test
+  public void testUnencodableFulfillmentIsNotCached() {
+    final VerificationCache cache = newCache(100, false);
+    final StubFulfillment fulfillment = new StubFulfillment("stub", true);
+
+    cache.verify(fulfillment, fulfillment.getCondition(), MESSAGE);
+    cache.verify(fulfillment, fulfillment.getCondition(), MESSAGE);
+
+    assertThat(fulfillment.getVerifications(), is(2));
+    assertThat(cache.getMissCount(), is(0L));
+    assertThat(cache.size(), is(0L));
+  }
+
+  private VerificationCache newCache(final int maximumSize, final boolean onlyCacheValid) {
+    return new VerificationCache(maximumSize, Duration.ofMinutes(1), onlyCacheValid, now::get);
+  }
+}
@@ -0,0 +1,141 @@
+package org.interledger.cryptoconditions;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.EnumSet;
+
+/**
+ * Unit tests for {@link VerificationPolicy}.
+ */
+public class VerificationPolicyTest extends AbstractCryptoConditionTest {
+
+  private static final byte[] MESSAGE = MESSAGE_PREIMAGE.getBytes();
+
+  private static final EnumSet<CryptoConditionType> ALL_TYPES =
+      EnumSet.allOf(CryptoConditionType.class);
+
+  @Test
+  public void testUnrestrictedPolicyVerifies() throws Exception {
+    final Fulfillment fulfillment = nestedFulfillment(3);
+
+    assertThat(fulfillment.verify(fulfillment.getCondition(), MESSAGE,
+        VerificationPolicy.UNRESTRICTED), is(true));
+    assertThat(fulfillment.verify(fulfillment.getCondition(), ByteBuffer.wrap(MESSAGE),
+        VerificationPolicy.UNRESTRICTED), is(true));
+    assertThat(CryptoConditionReader.readFulfillment(
+        CryptoConditionWriter.writeFulfillment(fulfillment), VerificationPolicy.UNRESTRICTED),
+        is(fulfillment));
+  }
+
+  @Test
+  public void testCostExceeded() throws Exception {
+    final Fulfillment fulfillment = nestedFulfillment(1);
+    final VerificationPolicy policy = new VerificationPolicy(
+        fulfillment.getCondition().getCost() - 1, 10, Long.MAX_VALUE, ALL_TYPES);
+
+    assertRejected(fulfillment, policy, VerificationPolicy.Reason.COST_EXCEEDED);
+  }
+
+  @Test
+  public void testDepthExceeded() throws Exception {
+    final Fulfillment fulfillment = nestedFulfillment(3);
+    final VerificationPolicy policy =
+        new VerificationPolicy(Long.MAX_VALUE, 4, Long.MAX_VALUE, ALL_TYPES);
+
+    assertRejected(fulfillment, policy, VerificationPolicy.Reason.DEPTH_EXCEEDED);
+
+    // One more level is enough.
+    final VerificationPolicy deeperPolicy =
+        new VerificationPolicy(Long.MAX_VALUE, 5, Long.MAX_VALUE, ALL_TYPES);
+    assertThat(fulfillment.verify(fulfillment.getCondition(), MESSAGE, deeperPolicy), is(true));
+  }
+
+  @Test
+  public void testMessageTooLong() throws Exception {
+    final Fulfillment fulfillment = nestedFulfillment(1);
+    final VerificationPolicy policy =
+        new VerificationPolicy(Long.MAX_VALUE, 10, MESSAGE.length - 1, ALL_TYPES);
+
+    try {
+      fulfillment.verify(fulfillment.getCondition(), MESSAGE, policy);
+      fail("Expected a VerificationPolicyException");
+    } catch (VerificationPolicyException e) {
+      assertThat(e.getReason(), is(VerificationPolicy.Reason.MESSAGE_TOO_LONG));
+    }
+    try {
+      CryptoConditionVerifier.verify(
+          CryptoConditionWriter.writeCondition(fulfillment.getCondition()),
+          CryptoConditionWriter.writeFulfillment(fulfillment), ByteBuffer.wrap(MESSAGE), policy);
+      fail("Expected a VerificationPolicyException");
+    } catch (VerificationPolicyException e) {
+      assertThat(e.getReason(), is(VerificationPolicy.Reason.MESSAGE_TOO_LONG));
+    }
+  }
+
+  @Test
+  public void testTypeNotAllowed() throws Exception {
+    final Fulfillment fulfillment = nestedFulfillment(1);
+    final VerificationPolicy policy = new VerificationPolicy(Long.MAX_VALUE, 10, Long.MAX_VALUE,
+        EnumSet.complementOf(EnumSet.of(CryptoConditionType.THRESHOLD_SHA256)));
+
+    assertRejected(fulfillment, policy, VerificationPolicy.Reason.TYPE_NOT_ALLOWED);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidMaxDepth() {
+    new VerificationPolicy(Long.MAX_VALUE, 0, Long.MAX_VALUE, ALL_TYPES);
+  }
+
+  /**
+   * Asserts that verifying {@code fulfillment} against its own condition is rejected for the same
+   * reason by every API that accepts a policy.
+   */
+  private static void assertRejected(
+      final Fulfillment fulfillment, final VerificationPolicy policy,
+      final VerificationPolicy.Reason reason
+  ) throws Exception {
+    final byte[] conditionDer = CryptoConditionWriter.writeCondition(fulfillment.getCondition());
+    final byte[] fulfillmentDer = CryptoConditionWriter.writeFulfillment(fulfillment);
+
+    try {
+      fulfillment.verify(fulfillment.getCondition(), MESSAGE, policy);
+      fail("Expected a VerificationPolicyException");
+    } catch (VerificationPolicyException e) {
+      assertThat(e.getReason(), is(reason));
+    }
+    try {
+      CryptoConditionReader.readFulfillment(fulfillmentDer, policy);
+      fail("Expected a VerificationPolicyException");
+    } catch (VerificationPolicyException e) {
+      assertThat(e.getReason(), is(reason));
+    }
+    try {
+      CryptoConditionVerifier.verify(conditionDer, fulfillmentDer, ByteBuffer.wrap(MESSAGE),
+          policy);
+      fail("Expected a VerificationPolicyException");
+    } catch (VerificationPolicyException e) {
+      assertThat(e.getReason(), is(reason));
+    }
+  }
+
+  /**
+   * Creates a chain of {@code prefixes} PREFIX-SHA-256 fulfillments around a THRESHOLD-SHA-256
+   * fulfillment of a single PREIMAGE-SHA-256 fulfillment, so the chain has a depth of {@code
+   * prefixes + 2}.
+   */
+  private static Fulfillment nestedFulfillment(final int prefixes) {
+    Fulfillment fulfillment = new ThresholdSha256Fulfillment(Collections.emptyList(),
+        Lists.newArrayList(new PreimageSha256Fulfillment(AUTHOR.getBytes())));
+    for (int i = 0; i < prefixes; i++) {
+      fulfillment = new PrefixSha256Fulfillment(new byte[0], MESSAGE.length, fulfillment);
+    }
+    return fulfillment;
+  }
+}
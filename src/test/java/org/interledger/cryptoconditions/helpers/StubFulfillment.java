@@ -0,0 +1,58 @@
+package org.interledger.cryptoconditions.helpers;
+
+import org.interledger.cryptoconditions.CryptoConditionType;
+import org.interledger.cryptoconditions.FulfillmentBase;
+import org.interledger.cryptoconditions.PreimageSha256Condition;
+import org.interledger.cryptoconditions.PreimageSha256Fulfillment;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A leaf fulfillment that returns a fixed verification result and counts how often it was
+ * verified, so that tests can observe which leaves a verifier actually checked.
+ */
+public class StubFulfillment extends FulfillmentBase<PreimageSha256Condition> {
+
+  private final AtomicInteger verifications = new AtomicInteger();
+  private final PreimageSha256Condition condition;
+  private final boolean valid;
+
+  /**
+   * Constructs a stub whose condition has the cost of the supplied preimage.
+   *
+   * @param preimage A {@link String} used to derive the fingerprint of the condition.
+   * @param valid    The result that every verification returns.
+   */
+  public StubFulfillment(final String preimage, final boolean valid) {
+    this(preimage, preimage.length(), valid);
+  }
+
+  /**
+   * Constructs a stub whose condition has the supplied cost.
+   *
+   * @param preimage A {@link String} used to derive the fingerprint of the condition.
+   * @param cost     The cost of the condition.
+   * @param valid    The result that every verification returns.
+   */
+  public StubFulfillment(final String preimage, final long cost, final boolean valid) {
+    super(CryptoConditionType.PREIMAGE_SHA256);
+    this.condition = new PreimageSha256Condition(cost,
+        new PreimageSha256Fulfillment(preimage.getBytes()).getCondition().getFingerprint());
+    this.valid = valid;
+  }
+
+  @Override
+  public PreimageSha256Condition getCondition() {
+    return condition;
+  }
+
+  @Override
+  public boolean verify(final PreimageSha256Condition condition, final byte[] message) {
+    verifications.incrementAndGet();
+    return valid;
+  }
+
+  public int getVerifications() {
+    return verifications.get();
+  }
+}
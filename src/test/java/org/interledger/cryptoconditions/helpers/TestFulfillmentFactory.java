@@ -0,0 +1,71 @@
+package org.interledger.cryptoconditions.helpers;
+
+import net.i2p.crypto.eddsa.EdDSAEngine;
+import net.i2p.crypto.eddsa.EdDSAPublicKey;
+
+import org.interledger.cryptoconditions.Ed25519Sha256Fulfillment;
+import org.interledger.cryptoconditions.Fulfillment;
+import org.interledger.cryptoconditions.PrefixSha256Fulfillment;
+import org.interledger.cryptoconditions.PreimageSha256Fulfillment;
+import org.interledger.cryptoconditions.RsaSha256Fulfillment;
+import org.interledger.cryptoconditions.ThresholdSha256Fulfillment;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * A helper class to create valid fulfillments that nest every type.
+ */
+public class TestFulfillmentFactory {
+
+  /**
+   * Creates a PREFIX-SHA-256 fulfillment with an empty prefix of a THRESHOLD-SHA-256 fulfillment
+   * with an unfulfilled PREIMAGE-SHA-256 subcondition and three subfulfillments: an RSA-SHA-256
+   * fulfillment and an ED25519-SHA-256 fulfillment, each inside a PREFIX-SHA-256 fulfillment with
+   * {@code prefix}, and a PREIMAGE-SHA-256 fulfillment of {@code preimage}.
+   *
+   * @param prefix       The prefix of the PREFIX-SHA-256 fulfillments around the signatures.
+   * @param preimage     The preimage of the PREIMAGE-SHA-256 subfulfillment.
+   * @param message      The message that the fulfillment must be verified against.
+   * @param rsaKeyPair   An RSA {@link KeyPair} to sign with, which requires a provider of {@link
+   *                     RsaSha256Fulfillment#SHA_256_WITH_RSA_PSS}.
+   * @param edDsaKeyPair An Ed25519 {@link KeyPair} to sign with.
+   *
+   * @return A {@link Fulfillment} that is valid for {@code message}.
+   */
+  public static Fulfillment nestedFulfillment(
+      final byte[] prefix, final byte[] preimage, final byte[] message, final KeyPair rsaKeyPair,
+      final KeyPair edDsaKeyPair
+  ) throws GeneralSecurityException {
+    final byte[] prefixed = new byte[prefix.length + message.length];
+    System.arraycopy(prefix, 0, prefixed, 0, prefix.length);
+    System.arraycopy(message, 0, prefixed, prefix.length, message.length);
+
+    final Signature rsaSigner = Signature.getInstance(RsaSha256Fulfillment.SHA_256_WITH_RSA_PSS);
+    rsaSigner.initSign(rsaKeyPair.getPrivate());
+    rsaSigner.update(prefixed);
+    final Fulfillment rsaFulfillment =
+        new RsaSha256Fulfillment((RSAPublicKey) rsaKeyPair.getPublic(), rsaSigner.sign());
+
+    final Signature edDsaSigner = new EdDSAEngine(MessageDigest.getInstance("SHA-512"));
+    edDsaSigner.initSign(edDsaKeyPair.getPrivate());
+    edDsaSigner.update(prefixed);
+    final Fulfillment ed25519Fulfillment = new Ed25519Sha256Fulfillment(
+        (EdDSAPublicKey) edDsaKeyPair.getPublic(), edDsaSigner.sign());
+
+    return new PrefixSha256Fulfillment(new byte[0], message.length,
+        new ThresholdSha256Fulfillment(
+            Collections.singletonList(
+                new PreimageSha256Fulfillment("unfulfilled".getBytes()).getCondition()),
+            Arrays.asList(
+                new PrefixSha256Fulfillment(prefix, message.length, rsaFulfillment),
+                new PrefixSha256Fulfillment(prefix, message.length, ed25519Fulfillment),
+                new PreimageSha256Fulfillment(preimage)
+            )));
+  }
+}